@@ -36,7 +36,7 @@ dependencies {
 // Apply a specific Java toolchain to ease working on different environments.
 java {
     toolchain {
-        languageVersion.set(JavaLanguageVersion.of(8))
+        languageVersion.set(JavaLanguageVersion.of(17))
     }
 }
 
@@ -45,6 +45,51 @@ application {
     mainClass.set("ticket.booking.TrainBookingApp")
 }
 
+// Forward the storage backend choice, e.g. ./gradlew run -Dbooking.storage=log
+tasks.named<JavaExec>("run") {
+    systemProperty("booking.storage", providers.systemProperty("booking.storage").getOrElse("json"))
+}
+
+// Class-data sharing: a training run records every class loaded on the way to
+// the first frame into a dynamic AppCDS archive, and runWithCds maps that
+// archive in so those classes skip parsing and verification. CDS only archives
+// classes from jars, so both runs use the application jar rather than the
+// classes directory. Opt-in: the training run opens the UI and needs a display
+// (xvfb-run on CI), so it is not part of assemble or build.
+val cdsArchive = layout.buildDirectory.file("cds/app.jsa")
+val cdsClasspath = files(tasks.named("jar"), configurations.named("runtimeClasspath"))
+
+val cdsArchiveTask = tasks.register<JavaExec>("cdsArchive") {
+    group = "distribution"
+    description = "Starts the app through its first frame and dumps the loaded classes to build/cds/app.jsa"
+    javaLauncher.set(javaToolchains.launcherFor(java.toolchain))
+    classpath = cdsClasspath
+    mainClass.set(application.mainClass)
+    // Seed data goes to a scratch directory, not the working copy's data/
+    val trainingDir = layout.buildDirectory.dir("cds/training")
+    workingDir(trainingDir)
+    jvmArgs("-XX:ArchiveClassesAtExit=${cdsArchive.get().asFile}")
+    systemProperty("booking.startup.exitAfterFirstFrame", "true")
+    inputs.files(cdsClasspath)
+    outputs.file(cdsArchive)
+    doFirst {
+        delete(trainingDir)
+        trainingDir.get().asFile.mkdirs()
+    }
+}
+
+// Same as run, with the archive; compare the startup.interactive log line of the two
+tasks.register<JavaExec>("runWithCds") {
+    group = "application"
+    description = "Runs the app with the class-data sharing archive"
+    dependsOn(cdsArchiveTask)
+    javaLauncher.set(javaToolchains.launcherFor(java.toolchain))
+    classpath = cdsClasspath
+    mainClass.set(application.mainClass)
+    jvmArgs("-XX:SharedArchiveFile=${cdsArchive.get().asFile}")
+    systemProperty("booking.storage", providers.systemProperty("booking.storage").getOrElse("json"))
+}
+
 // Configure test task to use JUnit Platform
 tasks.named<Test>("test") {
     useJUnitPlatform()
@@ -0,0 +1,231 @@
+package ticket.booking;
+
+import ticket.booking.export.ChangeLog;
+import ticket.booking.logging.Log;
+import ticket.booking.logging.Logger;
+import ticket.booking.metrics.Metrics;
+import ticket.booking.metrics.MetricsReporter;
+import ticket.booking.service.BookingStatistics;
+import ticket.booking.service.CatalogReloader;
+import ticket.booking.service.SeatInventory;
+import ticket.booking.service.ServiceDateArchiver;
+import ticket.booking.service.TrainCatalog;
+import ticket.booking.service.WaitlistEngine;
+import ticket.booking.util.CityDatabase;
+import ticket.booking.util.DatabaseManager;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs application initialization as a graph of background stages, with a readiness signal.
+ *
+ * Each stage starts as soon as the stages it names have finished, so independent
+ * work (hashing the default admin's password, generating seed trains, building
+ * the city table, opening the change log) overlaps instead of queueing on the
+ * main thread. {@link #getReady()} completes once every stage has finished, or
+ * exceptionally with the first failure; the UI and any server endpoint await
+ * it before taking requests.
+ *
+ * Times are measured from JVM start: each stage logs its own duration, the
+ * whole graph logs {@code startup.ready}, and the caller reports the moment the
+ * app can be used with {@link #markInteractive()}, published as the
+ * {@code startup.interactive.ms} gauge.
+ */
+public class AppStartup {
+    private static final Logger log = Log.getLogger(AppStartup.class);
+    public static final String EXIT_AFTER_FIRST_FRAME_PROPERTY = "booking.startup.exitAfterFirstFrame";
+    private static final AppStartup INSTANCE = new AppStartup();
+
+    private final long originMillis = jvmStartMillis();
+    private final Map<String, Stage> stages = new LinkedHashMap<>();
+    private final Map<String, String[]> dependencies = new HashMap<>();
+    private final Map<String, Long> stageMillis = new ConcurrentHashMap<>();
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+    private volatile long interactiveMillis = -1;
+    private ExecutorService executor;
+
+    AppStartup() {}
+
+    static {
+        Metrics.gauge("startup.interactive.ms", () -> INSTANCE.interactiveMillis);
+    }
+
+    /**
+     * A unit of startup work
+     */
+    @FunctionalInterface
+    public interface Stage {
+        void run() throws Exception;
+    }
+
+    public static AppStartup getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts the application's stages on the shared instance; later calls do nothing
+     */
+    public static AppStartup startFromSystemProperties() {
+        synchronized (INSTANCE) {
+            if (INSTANCE.executor == null) {
+                INSTANCE.stage("users", DatabaseManager::initUsers)
+                        .stage("trains", DatabaseManager::initTrains)
+                        .stage("cities", CityDatabase::preload)
+                        .stage("metrics", MetricsReporter::startFromSystemProperties)
+                        .stage("export", ChangeLog::startFromSystemProperties)
+                        .stage("seats", SeatInventory::startFromSystemProperties)
+                        .stage("archiver", ServiceDateArchiver::startFromSystemProperties, "trains", "seats")
+                        .stage("waitlist", WaitlistEngine::getInstance, "users", "trains", "seats")
+                        .stage("catalog", () -> TrainCatalog.getInstance().getHeaders(), "trains")
+                        .stage("statistics", BookingStatistics::startFromSystemProperties, "trains", "cities")
+                        .stage("reloader", CatalogReloader::startFromSystemProperties, "catalog")
+                        .start();
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Adds a stage that runs once all of the named, previously added stages have finished
+     */
+    public synchronized AppStartup stage(String name, Stage work, String... after) {
+        if (executor != null) {
+            throw new IllegalStateException("Startup already running");
+        }
+        if (stages.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate startup stage: " + name);
+        }
+        for (String dependency : after) {
+            if (!stages.containsKey(dependency)) {
+                throw new IllegalArgumentException("Stage " + name + " runs after unknown stage " + dependency);
+            }
+        }
+        stages.put(name, work);
+        dependencies.put(name, after);
+        return this;
+    }
+
+    /**
+     * Starts the stages on a small pool of daemon threads; returns the readiness future
+     */
+    public synchronized CompletableFuture<Void> start() {
+        if (executor != null) {
+            return ready;
+        }
+        executor = newExecutor();
+        log.info("startup.begin", "stages", stages.size(), "sinceJvmStartMillis", elapsedMillis());
+        Map<String, CompletableFuture<Void>> running = new HashMap<>();
+        for (Map.Entry<String, Stage> stage : stages.entrySet()) {
+            String name = stage.getKey();
+            String[] after = dependencies.get(name);
+            CompletableFuture<?>[] waitFor = new CompletableFuture<?>[after.length];
+            for (int i = 0; i < after.length; i++) {
+                waitFor[i] = running.get(after[i]);
+            }
+            running.put(name, CompletableFuture.allOf(waitFor)
+                    .thenRunAsync(() -> runStage(name, stage.getValue()), executor));
+        }
+        CompletableFuture.allOf(running.values().toArray(new CompletableFuture<?>[0]))
+                .whenComplete((ignored, error) -> {
+                    executor.shutdown();
+                    if (error != null) {
+                        ready.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+                    } else {
+                        log.info("startup.ready", "millis", elapsedMillis());
+                        ready.complete(null);
+                    }
+                });
+        return ready;
+    }
+
+    /**
+     * Completes when every stage has finished, or exceptionally if one failed
+     */
+    public CompletableFuture<Void> getReady() {
+        return ready;
+    }
+
+    /**
+     * Blocks until startup has finished; returns false on timeout
+     */
+    public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            ready.get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Startup failed", e.getCause());
+        }
+    }
+
+    /**
+     * Records that the app has become usable, e.g. the first window is showing
+     */
+    public void markInteractive() {
+        if (interactiveMillis < 0) {
+            interactiveMillis = elapsedMillis();
+            log.info("startup.interactive", "millis", interactiveMillis, "stageMillis", getStageMillis());
+        }
+    }
+
+    /**
+     * Milliseconds from JVM start to {@link #markInteractive()}, or -1 before that
+     */
+    public long getInteractiveMillis() {
+        return interactiveMillis;
+    }
+
+    /**
+     * How long each finished stage took, in milliseconds
+     */
+    public Map<String, Long> getStageMillis() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(stageMillis));
+    }
+
+    private void runStage(String name, Stage work) {
+        long start = System.nanoTime();
+        try {
+            work.run();
+        } catch (Exception e) {
+            log.error("startup.stage.failed", e, "stage", name);
+            throw new IllegalStateException("Startup stage " + name + " failed", e);
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        stageMillis.put(name, millis);
+        log.debug("startup.stage.done", "stage", name, "millis", millis);
+    }
+
+    private long elapsedMillis() {
+        return System.currentTimeMillis() - originMillis;
+    }
+
+    private static ExecutorService newExecutor() {
+        int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "startup-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static long jvmStartMillis() {
+        return ProcessHandle.current().info().startInstant()
+                .map(Instant::toEpochMilli)
+                .orElseGet(System::currentTimeMillis);
+    }
+}
@@ -3,17 +3,21 @@ package ticket.booking;
 import ticket.booking.gui.LoginPanel;
 import ticket.booking.gui.MainFrame;
 import ticket.booking.service.UserBookingService;
-import ticket.booking.util.DatabaseManager;
 import ticket.booking.util.UIThemeManager;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 
 /**
  * Main entry point for the Train Booking Application
  */
 public class TrainBookingApp {
     public static void main(String[] args) {
+        // Open the database and start background services in parallel while the UI sets up
+        AppStartup startup = AppStartup.startFromSystemProperties();
+
         // Set application look and feel
         try {
             // Use Nimbus look and feel for a modern appearance
@@ -31,44 +35,66 @@ public class TrainBookingApp {
 
             // Set custom colors
             UIThemeManager.setupTheme();
-
-            // Initialize the database
-            DatabaseManager.initDatabase();
-
         } catch (Exception e) {
             System.err.println("Could not set look and feel: " + e.getMessage());
         }
 
+        boolean exitAfterFirstFrame = Boolean.getBoolean(AppStartup.EXIT_AFTER_FIRST_FRAME_PROPERTY);
+        if (exitAfterFirstFrame && GraphicsEnvironment.isHeadless()) {
+            // A class-data sharing training run has to reach the first frame to record the UI classes
+            System.err.println("Training run needs a display (e.g. xvfb-run)");
+            System.exit(1);
+        }
+
         // Start the application on the Event Dispatch Thread
         SwingUtilities.invokeLater(() -> {
-            try {
-                // Display splash screen
-                showSplashScreen();
-
-                // Create user booking service
-                UserBookingService userBookingService = new UserBookingService();
-
-                // Create main application frame with the service
-                MainFrame mainFrame = new MainFrame(userBookingService);
-
-                // Set the login panel as the content pane
-                mainFrame.setContentPane(new LoginPanel(mainFrame, userBookingService));
-                mainFrame.setVisible(true);
-            } catch (Exception e) {
-                JOptionPane.showMessageDialog(null,
-                        "Error initializing application: " + e.getMessage(),
-                        "Application Error",
-                        JOptionPane.ERROR_MESSAGE);
-                e.printStackTrace();
-                System.exit(1);
-            }
+            // Display splash screen until startup has finished
+            JWindow splashScreen = showSplashScreen();
+
+            startup.getReady().whenComplete((ignored, error) -> SwingUtilities.invokeLater(() -> {
+                splashScreen.dispose();
+                try {
+                    if (error != null) {
+                        throw error instanceof Exception ? (Exception) error : new Exception(error);
+                    }
+
+                    // Create user booking service
+                    UserBookingService userBookingService = new UserBookingService();
+
+                    // Create main application frame with the service
+                    MainFrame mainFrame = new MainFrame(userBookingService);
+
+                    // Set the login panel as the content pane
+                    mainFrame.setContentPane(new LoginPanel(mainFrame, userBookingService));
+                    if (exitAfterFirstFrame) {
+                        // Class-data sharing training run: paint the first frame, so its classes are recorded too, then leave
+                        mainFrame.addWindowListener(new WindowAdapter() {
+                            @Override
+                            public void windowOpened(WindowEvent e) {
+                                JRootPane root = mainFrame.getRootPane();
+                                root.paintImmediately(0, 0, root.getWidth(), root.getHeight());
+                                System.exit(0);
+                            }
+                        });
+                    }
+                    mainFrame.setVisible(true);
+                    startup.markInteractive();
+                } catch (Exception e) {
+                    JOptionPane.showMessageDialog(null,
+                            "Error initializing application: " + e.getMessage(),
+                            "Application Error",
+                            JOptionPane.ERROR_MESSAGE);
+                    e.printStackTrace();
+                    System.exit(1);
+                }
+            }));
         });
     }
 
     /**
-     * Shows a splash screen for 2 seconds when the application starts
+     * Shows a splash screen while the application starts; the caller closes it
      */
-    private static void showSplashScreen() {
+    private static JWindow showSplashScreen() {
         JWindow splashScreen = new JWindow();
         JPanel content = new JPanel(new BorderLayout());
         content.setBorder(BorderFactory.createLineBorder(new Color(41, 128, 185), 2));
@@ -109,14 +135,6 @@ public class TrainBookingApp {
         splashScreen.setLocationRelativeTo(null);
         splashScreen.setVisible(true);
 
-        // Close splash after 2 seconds
-        new Thread(() -> {
-            try {
-                Thread.sleep(2000);
-                splashScreen.dispose();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        }).start();
+        return splashScreen;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,44 @@
+package ticket.booking.entities;
+
+/**
+ * A seat in a train's seat map, addressed by row (coach) and column
+ */
+public final class SeatPosition {
+    private final int row;
+    private final int col;
+
+    public SeatPosition(int row, int col) {
+        this.row = row;
+        this.col = col;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public int getCol() {
+        return col;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SeatPosition)) {
+            return false;
+        }
+        SeatPosition other = (SeatPosition) o;
+        return row == other.row && col == other.col;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * row + col;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Row %d Seat %d", row + 1, col + 1);
+    }
+}
@@ -27,6 +27,10 @@ public class Ticket{
 
     private Train train;
 
+    private Integer seatRow;
+
+    private Integer seatCol;
+
     public Ticket(){}
 
     public Ticket(String ticketId, String userId, String source, String destination, String dateOfTravel, Train train){
@@ -90,4 +94,24 @@ public class Ticket{
         this.train = train;
     }
 
+    public Integer getSeatRow(){
+        return seatRow;
+    }
+
+    public void setSeatRow(Integer seatRow){
+        this.seatRow = seatRow;
+    }
+
+    public Integer getSeatCol(){
+        return seatCol;
+    }
+
+    public void setSeatCol(Integer seatCol){
+        this.seatCol = seatCol;
+    }
+
+    public boolean hasSeat(){
+        return seatRow != null && seatCol != null;
+    }
+
 }
\ No newline at end of file
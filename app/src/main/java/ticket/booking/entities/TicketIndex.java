@@ -0,0 +1,114 @@
+package ticket.booking.entities;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * A user's tickets, indexed by ticket ID and ordered by travel date.
+ *
+ * Lookup and removal by ID are a hash lookup plus one tree operation, and
+ * upcoming trips are a tail view of the date tree, so both stay O(log n)
+ * however many tickets a corporate account holds. Tickets on the same date
+ * keep the order they were added in. Tickets whose travel date can't be
+ * parsed sort before every real date.
+ *
+ * Not thread-safe; it belongs to one user's session.
+ */
+public class TicketIndex {
+    private final Map<String, Ticket> byId = new HashMap<>();
+    private final NavigableMap<LocalDate, Map<String, Ticket>> byDate = new TreeMap<>();
+
+    public TicketIndex() {
+    }
+
+    public TicketIndex(Collection<Ticket> tickets) {
+        for (Ticket ticket : tickets) {
+            add(ticket);
+        }
+    }
+
+    /**
+     * Adds a ticket, replacing any ticket with the same ID
+     */
+    public void add(Ticket ticket) {
+        remove(ticket.getTicketId());
+        byId.put(ticket.getTicketId(), ticket);
+        byDate.computeIfAbsent(travelDate(ticket), date -> new LinkedHashMap<>()).put(ticket.getTicketId(), ticket);
+    }
+
+    /**
+     * Gets a ticket by ID, or null if the user has no such ticket
+     */
+    public Ticket get(String ticketId) {
+        return byId.get(ticketId);
+    }
+
+    /**
+     * Removes a ticket by ID and returns it, or null if the user has no such ticket
+     */
+    public Ticket remove(String ticketId) {
+        Ticket ticket = byId.remove(ticketId);
+        if (ticket != null) {
+            LocalDate date = travelDate(ticket);
+            Map<String, Ticket> sameDay = byDate.get(date);
+            sameDay.remove(ticketId);
+            if (sameDay.isEmpty()) {
+                byDate.remove(date);
+            }
+        }
+        return ticket;
+    }
+
+    /**
+     * Gets the tickets travelling on or after a date, soonest first
+     */
+    public List<Ticket> getUpcoming(LocalDate from) {
+        return flatten(byDate.tailMap(from, true));
+    }
+
+    /**
+     * Gets every ticket, earliest travel date first
+     */
+    public List<Ticket> getAll() {
+        return flatten(byDate);
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    public boolean isEmpty() {
+        return byId.isEmpty();
+    }
+
+    /**
+     * Gets the date part of a ticket's travel date, accepting plain dates and ISO timestamps
+     */
+    public static LocalDate travelDate(Ticket ticket) {
+        String value = ticket.getDateOfTravel();
+        if (value == null || value.length() < 10) {
+            return LocalDate.MIN;
+        }
+        try {
+            return LocalDate.parse(value.substring(0, 10));
+        } catch (DateTimeParseException e) {
+            return LocalDate.MIN;
+        }
+    }
+
+    private List<Ticket> flatten(Map<LocalDate, Map<String, Ticket>> dates) {
+        List<Ticket> tickets = new ArrayList<>();
+        for (Map<String, Ticket> sameDay : dates.values()) {
+            tickets.addAll(sameDay.values());
+        }
+        return tickets;
+    }
+}
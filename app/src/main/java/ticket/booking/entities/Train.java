@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 @JsonNaming(PropertyNamingStrategy.SnakeCaseStrategy.class)
@@ -18,6 +19,8 @@ public class Train {
     private List<List<Integer>> seats = new ArrayList<>();
     private Map<String, String> stationTimes = new HashMap<>();
     private List<String> stations = new ArrayList<>();
+    // Seats sold per service date (ISO date -> seat matrix); seats above is the template layout
+    private Map<String, List<List<Integer>>> datedSeats = new TreeMap<>();
 
     public Train() {}
 
@@ -69,6 +72,14 @@ public class Train {
         this.stations = stations;
     }
 
+    public Map<String, List<List<Integer>>> getDatedSeats() {
+        return datedSeats;
+    }
+
+    public void setDatedSeats(Map<String, List<List<Integer>>> datedSeats) {
+        this.datedSeats = datedSeats != null ? new TreeMap<>(datedSeats) : new TreeMap<>();
+    }
+
     public String getTrainInfo() {
         return String.format("Train ID: %s Train No: %s", trainId, trainNo);
     }
@@ -0,0 +1,60 @@
+package ticket.booking.entities;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Lightweight, immutable description of a train: just enough to answer route
+ * searches without loading its seat map or timetable
+ */
+public final class TrainHeader {
+    private final String trainId;
+    private final String trainNo;
+    private final List<String> stations;
+
+    public TrainHeader(String trainId, String trainNo, List<String> stations) {
+        this.trainId = trainId;
+        this.trainNo = trainNo;
+        this.stations = stations == null
+                ? Collections.<String>emptyList()
+                : Collections.unmodifiableList(new ArrayList<>(stations));
+    }
+
+    public String getTrainId() {
+        return trainId;
+    }
+
+    public String getTrainNo() {
+        return trainNo;
+    }
+
+    public List<String> getStations() {
+        return stations;
+    }
+
+    /**
+     * Gets the position of a station's first call on the route (case-insensitive), or -1 if the train doesn't stop there
+     */
+    public int getStopIndex(String station) {
+        for (int stop = 0; stop < stations.size(); stop++) {
+            if (stations.get(stop).equalsIgnoreCase(station)) {
+                return stop;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks whether the train's first call at source comes before its first call at destination (case-insensitive)
+     */
+    public boolean servesRoute(String source, String destination) {
+        int from = getStopIndex(source);
+        int to = getStopIndex(destination);
+        return from >= 0 && to > from;
+    }
+
+    public static TrainHeader of(Train train) {
+        return new TrainHeader(train.getTrainId(), train.getTrainNo(), train.getStations());
+    }
+}
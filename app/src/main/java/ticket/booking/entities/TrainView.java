@@ -0,0 +1,301 @@
+package ticket.booking.entities;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, compact read model of a train's route, timetable and template seat layout.
+ *
+ * Everything is held in flat arrays indexed by stop or coach: no lists of boxed
+ * seats and no map nodes per station, and nothing is handed out that a caller
+ * could change. Views can therefore be shared across threads and caches
+ * without copying. {@link Train} remains the mutable form used for storage and
+ * for seat maps sold per service date, which this model leaves out.
+ *
+ * Views are made with a {@link Builder}, either from ingested data or from a
+ * stored {@link Train} via {@link #of}.
+ */
+public final class TrainView {
+    private static final int NO_TIME = -1;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private final String trainId;
+    private final String trainNo;
+    private final String[] stations;
+    // Second of day at each stop, NO_TIME when the timetable has no entry
+    private final int[] stopSeconds;
+    // Coach r holds seats rowStarts[r] until rowStarts[r + 1] in the bit set
+    private final int[] rowStarts;
+    private final long[] bookedSeats;
+
+    private TrainView(Builder builder) {
+        this.trainId = builder.trainId;
+        this.trainNo = builder.trainNo;
+        this.stations = builder.stations.toArray(new String[0]);
+        this.stopSeconds = new int[stations.length];
+        for (int stop = 0; stop < stations.length; stop++) {
+            stopSeconds[stop] = secondOfDay(builder.times.get(stations[stop]));
+        }
+        List<List<Integer>> seats = builder.seats;
+        this.rowStarts = new int[seats.size() + 1];
+        for (int row = 0; row < seats.size(); row++) {
+            rowStarts[row + 1] = rowStarts[row] + seats.get(row).size();
+        }
+        this.bookedSeats = new long[(rowStarts[seats.size()] + 63) >>> 6];
+        for (int row = 0; row < seats.size(); row++) {
+            List<Integer> coach = seats.get(row);
+            for (int col = 0; col < coach.size(); col++) {
+                Integer seat = coach.get(col);
+                if (seat != null && seat != 0) {
+                    int bit = rowStarts[row] + col;
+                    bookedSeats[bit >>> 6] |= 1L << bit;
+                }
+            }
+        }
+    }
+
+    public static Builder builder(String trainId, String trainNo) {
+        return new Builder(trainId, trainNo);
+    }
+
+    /**
+     * Builds the read model of a stored train
+     */
+    public static TrainView of(Train train) {
+        Builder builder = builder(train.getTrainId(), train.getTrainNo());
+        Map<String, String> times = train.getStationTimes() == null ? Collections.emptyMap() : train.getStationTimes();
+        if (train.getStations() != null) {
+            for (String station : train.getStations()) {
+                String time = times.get(station);
+                builder.stop(station, time != null ? time : times.get(station.toLowerCase()));
+            }
+        }
+        return builder.seats(train.getSeats()).build();
+    }
+
+    public String getTrainId() {
+        return trainId;
+    }
+
+    public String getTrainNo() {
+        return trainNo;
+    }
+
+    public int getStopCount() {
+        return stations.length;
+    }
+
+    public String getStation(int stop) {
+        return stations[stop];
+    }
+
+    /**
+     * Gets the stations in route order, as a read-only view
+     */
+    public List<String> getStations() {
+        return Collections.unmodifiableList(Arrays.asList(stations));
+    }
+
+    /**
+     * Gets the position of a station's first call on the route (case-insensitive), or -1 if the train doesn't stop there
+     */
+    public int getStopIndex(String station) {
+        for (int stop = 0; stop < stations.length; stop++) {
+            if (stations[stop].equalsIgnoreCase(station)) {
+                return stop;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks whether the train's first call at source comes before its first call at destination,
+     * the same rule as {@link TrainHeader#servesRoute}
+     */
+    public boolean servesRoute(String source, String destination) {
+        int from = getStopIndex(source);
+        int to = getStopIndex(destination);
+        return from >= 0 && to > from;
+    }
+
+    /**
+     * Gets the timetabled time at a stop, or null if there is none
+     */
+    public LocalTime getTime(int stop) {
+        int seconds = stopSeconds[stop];
+        return seconds == NO_TIME ? null : LocalTime.ofSecondOfDay(seconds);
+    }
+
+    /**
+     * Gets the timetabled time at a station, or null if the train doesn't stop there or has no time for it
+     */
+    public LocalTime getTime(String station) {
+        int stop = getStopIndex(station);
+        return stop < 0 ? null : getTime(stop);
+    }
+
+    public int getRowCount() {
+        return rowStarts.length - 1;
+    }
+
+    public int getSeatCount(int row) {
+        return rowStarts[row + 1] - rowStarts[row];
+    }
+
+    public int getTotalSeats() {
+        return rowStarts[rowStarts.length - 1];
+    }
+
+    /**
+     * Checks whether a seat is marked booked in the template layout
+     */
+    public boolean isBooked(int row, int col) {
+        if (row < 0 || row >= getRowCount() || col < 0 || col >= getSeatCount(row)) {
+            return false;
+        }
+        int bit = rowStarts[row] + col;
+        return (bookedSeats[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Copies the view back into a mutable train, e.g. to store it
+     */
+    public Train toTrain() {
+        List<List<Integer>> seats = new ArrayList<>(getRowCount());
+        for (int row = 0; row < getRowCount(); row++) {
+            List<Integer> coach = new ArrayList<>(getSeatCount(row));
+            for (int col = 0; col < getSeatCount(row); col++) {
+                coach.add(isBooked(row, col) ? 1 : 0);
+            }
+            seats.add(coach);
+        }
+        Map<String, String> times = new HashMap<>();
+        for (int stop = 0; stop < stations.length; stop++) {
+            LocalTime time = getTime(stop);
+            if (time != null) {
+                times.put(stations[stop], time.format(TIME_FORMAT));
+            }
+        }
+        return new Train(trainId, trainNo, seats, times, new ArrayList<>(Arrays.asList(stations)));
+    }
+
+    /**
+     * Estimates the heap retained by this view, assuming compressed references
+     */
+    public long estimateHeapBytes() {
+        long bytes = align(12 + 6 * 4);
+        bytes += stringBytes(trainId) + stringBytes(trainNo);
+        bytes += arrayBytes(stations.length, 4);
+        for (String station : stations) {
+            bytes += stringBytes(station);
+        }
+        bytes += arrayBytes(stopSeconds.length, 4) + arrayBytes(rowStarts.length, 4) + arrayBytes(bookedSeats.length, 8);
+        return bytes;
+    }
+
+    /**
+     * Estimates the heap a stored train retains for the same data (route, timetable
+     * and template seats, not dated seat maps), for comparison with {@link #estimateHeapBytes()}
+     */
+    public static long estimateHeapBytes(Train train) {
+        long bytes = align(12 + 5 * 4);
+        bytes += stringBytes(train.getTrainId()) + stringBytes(train.getTrainNo());
+        List<List<Integer>> seats = train.getSeats() == null ? Collections.emptyList() : train.getSeats();
+        bytes += listBytes(seats.size());
+        for (List<Integer> coach : seats) {
+            // Small Integers come from the shared cache, so only the lists count
+            bytes += listBytes(coach.size());
+        }
+        List<String> stations = train.getStations() == null ? Collections.emptyList() : train.getStations();
+        bytes += listBytes(stations.size());
+        for (String station : stations) {
+            bytes += stringBytes(station);
+        }
+        Map<String, String> times = train.getStationTimes() == null ? Collections.emptyMap() : train.getStationTimes();
+        int table = Integer.highestOneBit(Math.max(1, times.size() * 4 / 3)) << 1;
+        bytes += align(12 + 6 * 4) + arrayBytes(table, 4);
+        for (Map.Entry<String, String> time : times.entrySet()) {
+            bytes += align(12 + 4 + 3 * 4) + stringBytes(time.getKey()) + stringBytes(time.getValue());
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Train ID: %s Train No: %s", trainId, trainNo);
+    }
+
+    private static int secondOfDay(String time) {
+        try {
+            return time == null ? NO_TIME : LocalTime.parse(time).toSecondOfDay();
+        } catch (DateTimeParseException e) {
+            return NO_TIME;
+        }
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    private static long arrayBytes(int length, int elementBytes) {
+        return align(16 + (long) length * elementBytes);
+    }
+
+    private static long stringBytes(String value) {
+        return value == null ? 0 : align(24) + arrayBytes(value.length(), 1);
+    }
+
+    private static long listBytes(int size) {
+        return align(12 + 2 * 4) + arrayBytes(size, 4);
+    }
+
+    /**
+     * Collects a train's stops and seat layout; only the id and number are required
+     */
+    public static final class Builder {
+        private final String trainId;
+        private final String trainNo;
+        private final List<String> stations = new ArrayList<>();
+        private final Map<String, String> times = new LinkedHashMap<>();
+        private List<List<Integer>> seats = Collections.emptyList();
+
+        private Builder(String trainId, String trainNo) {
+            this.trainId = trainId;
+            this.trainNo = trainNo;
+        }
+
+        /**
+         * Adds the next stop on the route with its timetabled time ({@code HH:mm[:ss]}), which may be null
+         */
+        public Builder stop(String station, String time) {
+            stations.add(station);
+            if (time != null) {
+                times.put(station, time);
+            }
+            return this;
+        }
+
+        /**
+         * Sets the template seat layout, one list per coach with 1 for a booked seat
+         */
+        public Builder seats(List<List<Integer>> seats) {
+            this.seats = seats == null ? Collections.emptyList() : seats;
+            return this;
+        }
+
+        public TrainView build() {
+            if (trainId == null) {
+                throw new IllegalStateException("A train needs an id");
+            }
+            return new TrainView(this);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package ticket.booking.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -14,6 +16,8 @@ public class User {
     private String phone;
     private String name;
     private List<Ticket> tickets;
+    // Built lazily from tickets, which it then replaces
+    private TicketIndex ticketIndex;
 
     // Default constructor for Jackson
     public User() {
@@ -91,24 +95,36 @@ public class User {
         this.name = name;
     }
 
+    /**
+     * Gets the tickets in travel-date order, as stored with the user
+     */
     public List<Ticket> getTickets() {
-        return tickets;
+        return ticketIndex != null ? ticketIndex.getAll() : tickets;
     }
 
     public void setTickets(List<Ticket> tickets) {
-        this.tickets = tickets;
+        this.tickets = tickets != null ? tickets : new ArrayList<>();
+        this.ticketIndex = null;
+    }
+
+    /**
+     * Gets the ticket index, building it from the stored tickets on first use
+     */
+    @JsonIgnore
+    public TicketIndex getTicketIndex() {
+        if (ticketIndex == null) {
+            ticketIndex = new TicketIndex(tickets);
+            // The index holds the tickets from now on
+            tickets = null;
+        }
+        return ticketIndex;
     }
 
     public void addTicket(Ticket ticket) {
-        if (this.tickets == null) {
-            this.tickets = new ArrayList<>();
-        }
-        this.tickets.add(ticket);
+        getTicketIndex().add(ticket);
     }
 
     public void removeTicket(String ticketId) {
-        if (this.tickets != null) {
-            this.tickets.removeIf(ticket -> ticket.getTicketId().equals(ticketId));
-        }
+        getTicketIndex().remove(ticketId);
     }
-}
\ No newline at end of file
+}
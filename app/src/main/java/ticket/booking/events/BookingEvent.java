@@ -0,0 +1,111 @@
+package ticket.booking.events;
+
+import ticket.booking.entities.SeatPosition;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable record of one booking change for a train on a service date
+ */
+public final class BookingEvent {
+    private final BookingEventType type;
+    private final String trainId;
+    private final LocalDate date;
+    private final List<SeatPosition> seats;
+    private final String userId;
+    private final String ticketId;
+    private final int[] fares;
+    private final long timestampMillis;
+
+    private BookingEvent(BookingEventType type, String trainId, LocalDate date, List<SeatPosition> seats,
+                         String userId, String ticketId, int[] fares) {
+        if (fares != null && fares.length != seats.size()) {
+            throw new IllegalArgumentException("Expected one fare per seat, got " + fares.length + " for " + seats.size());
+        }
+        this.type = type;
+        this.trainId = trainId;
+        this.date = date;
+        this.seats = Collections.unmodifiableList(new ArrayList<>(seats));
+        this.userId = userId;
+        this.ticketId = ticketId;
+        this.fares = fares == null ? null : fares.clone();
+        this.timestampMillis = System.currentTimeMillis();
+    }
+
+    public static BookingEvent seatsBooked(String trainId, LocalDate date, List<SeatPosition> seats) {
+        return seatsBooked(trainId, date, seats, null);
+    }
+
+    /**
+     * Seats sold together with the fare charged for each, in the same order; fares may be null if unpriced
+     */
+    public static BookingEvent seatsBooked(String trainId, LocalDate date, List<SeatPosition> seats, int[] fares) {
+        return new BookingEvent(BookingEventType.SEATS_BOOKED, trainId, date, seats, null, null, fares);
+    }
+
+    public static BookingEvent seatsReleased(String trainId, LocalDate date, List<SeatPosition> seats) {
+        return new BookingEvent(BookingEventType.SEATS_RELEASED, trainId, date, seats, null, null, null);
+    }
+
+    public static BookingEvent ticketsIssued(String userId, String trainId, LocalDate date, List<SeatPosition> seats) {
+        return new BookingEvent(BookingEventType.TICKETS_ISSUED, trainId, date, seats, userId, null, null);
+    }
+
+    public static BookingEvent ticketCancelled(String userId, String ticketId, String trainId, LocalDate date,
+                                               List<SeatPosition> seats) {
+        return new BookingEvent(BookingEventType.TICKET_CANCELLED, trainId, date, seats, userId, ticketId, null);
+    }
+
+    public BookingEventType getType() {
+        return type;
+    }
+
+    public String getTrainId() {
+        return trainId;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public List<SeatPosition> getSeats() {
+        return seats;
+    }
+
+    /**
+     * Gets the user behind a ticket event, or null for seat events
+     */
+    public String getUserId() {
+        return userId;
+    }
+
+    /**
+     * Gets the cancelled ticket, or null for other events
+     */
+    public String getTicketId() {
+        return ticketId;
+    }
+
+    /**
+     * Gets the fare charged for the seat at an index of {@link #getSeats()}, or -1 if the seat wasn't priced
+     */
+    public int getFare(int index) {
+        return fares == null ? -1 : fares[index];
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public boolean isSeatChange() {
+        return type == BookingEventType.SEATS_BOOKED || type == BookingEventType.SEATS_RELEASED;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + trainId + " " + date + " " + seats;
+    }
+}
@@ -0,0 +1,17 @@
+package ticket.booking.events;
+
+import java.util.List;
+
+/**
+ * Subscriber callback. Runs on the subscriber's own thread and receives every
+ * event that was published since the previous call, in publication order.
+ *
+ * Handlers must not book or release seats on their thread: publishers may be
+ * waiting for this subscriber to make room while holding a seat lock.
+ */
+public interface BookingEventHandler {
+    /**
+     * Handles a batch of events; the list is only valid for the duration of the call
+     */
+    void onEvents(List<BookingEvent> batch) throws Exception;
+}
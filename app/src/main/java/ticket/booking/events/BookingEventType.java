@@ -0,0 +1,13 @@
+package ticket.booking.events;
+
+/**
+ * Kinds of change published on the {@link EventBus}
+ */
+public enum BookingEventType {
+    // Seat-level changes, published by the seat inventory in the order they were applied
+    SEATS_BOOKED,
+    SEATS_RELEASED,
+    // Ticket-level changes, published by the booking service
+    TICKETS_ISSUED,
+    TICKET_CANCELLED
+}
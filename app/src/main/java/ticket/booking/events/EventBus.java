@@ -0,0 +1,264 @@
+package ticket.booking.events;
+
+import ticket.booking.logging.Log;
+import ticket.booking.logging.Logger;
+import ticket.booking.metrics.Counter;
+import ticket.booking.metrics.Metrics;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process stream of {@link BookingEvent}s on a fixed-size ring, in the style
+ * of the LMAX Disruptor.
+ *
+ * Producers claim a sequence with a CAS and publish the slot by writing its
+ * sequence number last; nothing is locked. Every subscriber runs on its own
+ * thread with its own cursor and takes everything published since its last
+ * pass as one batch, so a slow subscriber catches up in large batches rather
+ * than falling further behind. A slot is reused only once every subscriber
+ * has passed it: when the ring is full, publishers wait (backpressure) instead
+ * of dropping events. Events reach each subscriber in publication order, so
+ * everything published under a train's seat lock stays ordered per train.
+ *
+ * Sized by the {@code booking.events.ringSize} system property (default 8192).
+ */
+public class EventBus implements Closeable {
+    private static final Logger log = Log.getLogger(EventBus.class);
+    public static final String RING_SIZE_PROPERTY = "booking.events.ringSize";
+    private static final int MAX_BATCH = 1024;
+    private static final int SPIN_TRIES = 100;
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private static final Counter PUBLISHED = Metrics.counter("events.published");
+    private static final Counter BACKPRESSURE = Metrics.counter("events.backpressure");
+
+    private static volatile EventBus shared;
+
+    private final Slot[] slots;
+    private final int mask;
+    // Next sequence to hand out
+    private final AtomicLong claimed = new AtomicLong();
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private volatile boolean running = true;
+
+    public EventBus(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new Slot[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+            slots[i].published = i - size;
+        }
+    }
+
+    /**
+     * Gets the process-wide bus
+     */
+    public static EventBus getInstance() {
+        EventBus bus = shared;
+        if (bus == null) {
+            synchronized (EventBus.class) {
+                bus = shared;
+                if (bus == null) {
+                    bus = new EventBus(Integer.getInteger(RING_SIZE_PROPERTY, 8192));
+                    EventBus gauged = bus;
+                    Metrics.gauge("events.lag", gauged::getLag);
+                    Runtime.getRuntime().addShutdownHook(new Thread(gauged::close, "event-bus-shutdown"));
+                    shared = bus;
+                }
+            }
+        }
+        return bus;
+    }
+
+    /**
+     * Starts a subscriber that receives every event published from now on
+     */
+    public void subscribe(String name, BookingEventHandler handler) {
+        Subscriber subscriber = new Subscriber(name, handler);
+        // Join the gating set before picking the start so no slot can be reused under us
+        subscriber.next = Long.MAX_VALUE;
+        subscribers.add(subscriber);
+        subscriber.next = claimed.get();
+        subscriber.thread.start();
+    }
+
+    /**
+     * Publishes an event, waiting while the ring is full
+     */
+    public void publish(BookingEvent event) {
+        int idle = 0;
+        boolean waited = false;
+        while (true) {
+            long sequence = claimed.get();
+            if (sequence - slowestSubscriber(sequence) >= slots.length) {
+                waited = true;
+                idle = idle(idle);
+                continue;
+            }
+            if (claimed.compareAndSet(sequence, sequence + 1)) {
+                write(sequence, event);
+                break;
+            }
+        }
+        if (waited) {
+            BACKPRESSURE.increment();
+        }
+    }
+
+    /**
+     * Publishes an event only if there is room; returns false if the ring is full
+     */
+    public boolean tryPublish(BookingEvent event) {
+        while (true) {
+            long sequence = claimed.get();
+            if (sequence - slowestSubscriber(sequence) >= slots.length) {
+                return false;
+            }
+            if (claimed.compareAndSet(sequence, sequence + 1)) {
+                write(sequence, event);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Waits until every subscriber has handled everything published so far; returns false on timeout
+     */
+    public boolean awaitDrained(long timeout, TimeUnit unit) {
+        long target = claimed.get();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int idle = 0;
+        while (slowestSubscriber(target) < target) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            idle = idle(idle);
+        }
+        return true;
+    }
+
+    /**
+     * Gets how many events the slowest subscriber is behind
+     */
+    public long getLag() {
+        long head = claimed.get();
+        return head - slowestSubscriber(head);
+    }
+
+    /**
+     * Lets subscribers finish what was published, then stops them
+     */
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        awaitDrained(5, TimeUnit.SECONDS);
+        running = false;
+        for (Subscriber subscriber : subscribers) {
+            LockSupport.unpark(subscriber.thread);
+            try {
+                subscriber.thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        // Stopped subscribers no longer gate the ring, so late publishers don't block
+        subscribers.clear();
+    }
+
+    private void write(long sequence, BookingEvent event) {
+        Slot slot = slots[(int) sequence & mask];
+        slot.event = event;
+        slot.published = sequence;
+        PUBLISHED.increment();
+    }
+
+    private long slowestSubscriber(long head) {
+        long slowest = head;
+        for (Subscriber subscriber : subscribers) {
+            slowest = Math.min(slowest, subscriber.next);
+        }
+        return slowest;
+    }
+
+    /**
+     * Spins briefly, then yields, then parks; returns the updated idle count
+     */
+    private static int idle(int idle) {
+        if (idle < SPIN_TRIES) {
+            return idle + 1;
+        }
+        if (idle < 2 * SPIN_TRIES) {
+            Thread.yield();
+            return idle + 1;
+        }
+        LockSupport.parkNanos(PARK_NANOS);
+        return idle;
+    }
+
+    /**
+     * One subscriber's thread and cursor
+     */
+    private final class Subscriber implements Runnable {
+        private final String name;
+        private final BookingEventHandler handler;
+        private final Thread thread;
+        // Next sequence this subscriber will read; slots before it may be reused
+        private volatile long next;
+
+        private Subscriber(String name, BookingEventHandler handler) {
+            this.name = name;
+            this.handler = handler;
+            this.thread = new Thread(this, "event-" + name);
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            List<BookingEvent> batch = new ArrayList<>();
+            List<BookingEvent> view = Collections.unmodifiableList(batch);
+            int idle = 0;
+            while (true) {
+                long sequence = next;
+                while (batch.size() < MAX_BATCH) {
+                    Slot slot = slots[(int) sequence & mask];
+                    if (slot.published != sequence) {
+                        break;
+                    }
+                    batch.add(slot.event);
+                    sequence++;
+                }
+                if (batch.isEmpty()) {
+                    if (!running) {
+                        return;
+                    }
+                    idle = idle(idle);
+                    continue;
+                }
+                idle = 0;
+                try {
+                    handler.onEvents(view);
+                } catch (Exception e) {
+                    log.error("events.handler.failed", e, "subscriber", name, "events", batch.size());
+                }
+                batch.clear();
+                next = sequence;
+            }
+        }
+    }
+
+    private static final class Slot {
+        volatile long published;
+        BookingEvent event;
+    }
+}
@@ -0,0 +1,273 @@
+package ticket.booking.export;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import ticket.booking.entities.SeatPosition;
+import ticket.booking.events.BookingEvent;
+import ticket.booking.events.BookingEventHandler;
+import ticket.booking.events.BookingEventType;
+import ticket.booking.events.EventBus;
+import ticket.booking.logging.Log;
+import ticket.booking.logging.Logger;
+import ticket.booking.storage.AtomicFileWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Append-only export of booking changes for analytics, so reporting jobs can
+ * tail what changed instead of re-reading the whole users and trains files.
+ *
+ * Every {@link BookingEvent} becomes one JSON line in {@code changes.jsonl}.
+ * A record's offset is its byte position in the file, so reading from an
+ * offset is a single seek. Consumers keep their position in
+ * {@code offsets/<consumer>.offset}, written atomically by {@link #commit}.
+ *
+ * The log is fed by an {@link EventBus} subscriber. Appends go to the page
+ * cache on the subscriber's thread and are synced to disk once a second by a
+ * background flusher, so the export never waits on the disk in line with a
+ * booking. A partial last line left by a crash is cut off when the log is opened.
+ *
+ * The directory comes from the {@code booking.export.dir} system property
+ * (default {@code data/export}).
+ */
+public class ChangeLog implements BookingEventHandler, Closeable {
+    private static final Logger log = Log.getLogger(ChangeLog.class);
+    public static final String DIR_PROPERTY = "booking.export.dir";
+    public static final String LOG_FILE = "changes.jsonl";
+    public static final String OFFSETS_DIR = "offsets";
+    private static final Pattern CONSUMER_NAME = Pattern.compile("[A-Za-z0-9._-]+");
+    private static final int READ_BYTES = 64 * 1024;
+
+    private final Path logFile;
+    private final Path offsetsDir;
+    private final FileChannel channel;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Only touched by the subscriber thread
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    // Bytes appended so far; records below it are complete and readable
+    private volatile long end;
+    private ScheduledExecutorService flusher;
+
+    public ChangeLog(Path dir) throws IOException {
+        Files.createDirectories(dir.resolve(OFFSETS_DIR));
+        this.logFile = dir.resolve(LOG_FILE);
+        this.offsetsDir = dir.resolve(OFFSETS_DIR);
+        this.channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.end = dropPartialTail();
+    }
+
+    /**
+     * Opens the log configured by system properties and subscribes it to the booking event bus
+     */
+    public static ChangeLog startFromSystemProperties() throws IOException {
+        ChangeLog changeLog = new ChangeLog(Paths.get(System.getProperty(DIR_PROPERTY, "data/export")));
+        changeLog.start(EventBus.getInstance());
+        return changeLog;
+    }
+
+    /**
+     * Subscribes to a bus and starts syncing appends to disk once a second
+     */
+    public synchronized void start(EventBus bus) {
+        if (flusher != null) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "change-log-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, 1, 1, TimeUnit.SECONDS);
+        bus.subscribe("export", this);
+    }
+
+    /**
+     * Appends a batch of events with one write
+     */
+    @Override
+    public void onEvents(List<BookingEvent> batch) throws IOException {
+        long offset = end;
+        pending.reset();
+        for (BookingEvent event : batch) {
+            byte[] line = objectMapper.writeValueAsBytes(encode(offset + pending.size(), event));
+            pending.write(line);
+            pending.write('\n');
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(pending.toByteArray());
+        long position = offset;
+        while (bytes.hasRemaining()) {
+            position += channel.write(bytes, position);
+        }
+        end = position;
+    }
+
+    /**
+     * Reads up to {@code max} records starting at an offset taken from a record,
+     * a commit or {@link #getEndOffset}. Returns an empty list at the end of the log.
+     */
+    public List<ChangeRecord> read(long offset, int max) throws IOException {
+        long limit = end;
+        if (offset < 0 || offset > limit || (offset > 0 && byteAt(offset - 1) != '\n')) {
+            throw new IllegalArgumentException("Not a record offset: " + offset);
+        }
+        List<ChangeRecord> records = new ArrayList<>();
+        int size = READ_BYTES;
+        while (records.size() < max && offset < limit) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size, limit - offset));
+            while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) >= 0) {
+                // Read until the buffer is full
+            }
+            byte[] bytes = buffer.array();
+            int start = 0;
+            for (int i = 0; i < bytes.length && records.size() < max; i++) {
+                if (bytes[i] == '\n') {
+                    records.add(decode(offset + start, offset + i + 1, bytes, start, i - start));
+                    start = i + 1;
+                }
+            }
+            if (start == 0) {
+                // One record is longer than the buffer
+                size *= 2;
+            }
+            offset += start;
+        }
+        return records;
+    }
+
+    /**
+     * Gets the offset just past the last complete record
+     */
+    public long getEndOffset() {
+        return end;
+    }
+
+    /**
+     * Records how far a consumer has read, replacing its offset file atomically
+     */
+    public void commit(String consumer, long offset) throws IOException {
+        AtomicFileWriter.write(offsetFile(consumer), Long.toString(offset).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Gets a consumer's last committed offset, or 0 if it never committed
+     */
+    public long getCommittedOffset(String consumer) throws IOException {
+        Path file = offsetFile(consumer);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        return Long.parseLong(new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim());
+    }
+
+    public Path getLogFile() {
+        return logFile;
+    }
+
+    /**
+     * Syncs appended records to disk
+     */
+    public void flush() {
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            log.warn("export.flush.failed", e, "file", logFile);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdown();
+            flusher = null;
+        }
+        if (channel.isOpen()) {
+            channel.force(false);
+            channel.close();
+        }
+    }
+
+    private ObjectNode encode(long offset, BookingEvent event) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("offset", offset);
+        node.put("type", event.getType().name());
+        node.put("train_id", event.getTrainId());
+        node.put("date", event.getDate().toString());
+        ArrayNode seats = node.putArray("seats");
+        for (SeatPosition seat : event.getSeats()) {
+            seats.addArray().add(seat.getRow()).add(seat.getCol());
+        }
+        if (event.getUserId() != null) {
+            node.put("user_id", event.getUserId());
+        }
+        if (event.getTicketId() != null) {
+            node.put("ticket_id", event.getTicketId());
+        }
+        node.put("timestamp", event.getTimestampMillis());
+        return node;
+    }
+
+    private ChangeRecord decode(long offset, long nextOffset, byte[] bytes, int start, int length) throws IOException {
+        JsonNode node = objectMapper.readTree(new String(bytes, start, length, StandardCharsets.UTF_8));
+        List<SeatPosition> seats = new ArrayList<>();
+        for (JsonNode seat : node.path("seats")) {
+            seats.add(new SeatPosition(seat.get(0).asInt(), seat.get(1).asInt()));
+        }
+        return new ChangeRecord(offset, nextOffset,
+                BookingEventType.valueOf(node.get("type").asText()),
+                node.get("train_id").asText(),
+                LocalDate.parse(node.get("date").asText()),
+                Collections.unmodifiableList(seats),
+                node.hasNonNull("user_id") ? node.get("user_id").asText() : null,
+                node.hasNonNull("ticket_id") ? node.get("ticket_id").asText() : null,
+                node.path("timestamp").asLong());
+    }
+
+    private Path offsetFile(String consumer) {
+        if (!CONSUMER_NAME.matcher(consumer).matches()) {
+            throw new IllegalArgumentException("Invalid consumer name: " + consumer);
+        }
+        return offsetsDir.resolve(consumer + ".offset");
+    }
+
+    private byte byteAt(long position) throws IOException {
+        ByteBuffer one = ByteBuffer.allocate(1);
+        channel.read(one, position);
+        return one.get(0);
+    }
+
+    /**
+     * Cuts off a last line that a crash left half-written; returns the new end
+     */
+    private long dropPartialTail() throws IOException {
+        long size = channel.size();
+        long position = size;
+        while (position > 0 && byteAt(position - 1) != '\n') {
+            position--;
+        }
+        if (position < size) {
+            channel.truncate(position);
+            log.warn("export.tail.truncated", "file", logFile, "bytes", size - position);
+        }
+        return position;
+    }
+}
@@ -0,0 +1,77 @@
+package ticket.booking.export;
+
+import ticket.booking.entities.SeatPosition;
+import ticket.booking.events.BookingEventType;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * One booking change read back from the {@link ChangeLog}, with its position in the log
+ */
+public final class ChangeRecord {
+    private final long offset;
+    private final long nextOffset;
+    private final BookingEventType type;
+    private final String trainId;
+    private final LocalDate date;
+    private final List<SeatPosition> seats;
+    private final String userId;
+    private final String ticketId;
+    private final long timestampMillis;
+
+    ChangeRecord(long offset, long nextOffset, BookingEventType type, String trainId, LocalDate date,
+                 List<SeatPosition> seats, String userId, String ticketId, long timestampMillis) {
+        this.offset = offset;
+        this.nextOffset = nextOffset;
+        this.type = type;
+        this.trainId = trainId;
+        this.date = date;
+        this.seats = seats;
+        this.userId = userId;
+        this.ticketId = ticketId;
+        this.timestampMillis = timestampMillis;
+    }
+
+    /**
+     * Gets where this record starts in the log
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Gets the offset to read from to continue after this record
+     */
+    public long getNextOffset() {
+        return nextOffset;
+    }
+
+    public BookingEventType getType() {
+        return type;
+    }
+
+    public String getTrainId() {
+        return trainId;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public List<SeatPosition> getSeats() {
+        return seats;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getTicketId() {
+        return ticketId;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+}
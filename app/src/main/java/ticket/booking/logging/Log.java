@@ -0,0 +1,155 @@
+package ticket.booking.logging;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous structured logging.
+ *
+ * Log calls only copy references into a preallocated ring buffer; a single
+ * background thread formats the entries as {@code key=value} lines and writes
+ * them in batches. A full ring drops entries instead of blocking the caller.
+ *
+ * Configured with the {@code booking.log.level} (default INFO) and
+ * {@code booking.log.file} (default standard error) system properties.
+ */
+public class Log {
+    public static final String LEVEL_PROPERTY = "booking.log.level";
+    public static final String FILE_PROPERTY = "booking.log.file";
+    private static final int RING_CAPACITY = 8192;
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+
+    private static final LogRingBuffer ring = new LogRingBuffer(RING_CAPACITY);
+    private static volatile LogLevel level = LogLevel.valueOf(System.getProperty(LEVEL_PROPERTY, "INFO").toUpperCase());
+    private static final Writer out = openOutput();
+    private static final Thread writerThread = startWriter();
+
+    private Log() {}
+
+    /**
+     * Gets a logger named after the class
+     */
+    public static Logger getLogger(Class<?> type) {
+        return new Logger(type.getSimpleName(), 1);
+    }
+
+    /**
+     * Changes the minimum level at runtime
+     */
+    public static void setLevel(LogLevel newLevel) {
+        level = newLevel;
+    }
+
+    public static LogLevel getLevel() {
+        return level;
+    }
+
+    /**
+     * Number of entries dropped because the ring was full
+     */
+    public static long getDroppedCount() {
+        return ring.getDropped();
+    }
+
+    /**
+     * Blocks until every entry logged so far has been written
+     */
+    public static void flush() {
+        while (!ring.isEmpty()) {
+            LockSupport.unpark(writerThread);
+            Thread.yield();
+        }
+        synchronized (out) {
+            flushOutput();
+        }
+    }
+
+    static boolean isEnabled(LogLevel entryLevel) {
+        return entryLevel.compareTo(level) >= 0;
+    }
+
+    static void publish(LogLevel entryLevel, String logger, String event, Object[] fields, Throwable error) {
+        ring.offer(entryLevel, logger, event, fields, error);
+    }
+
+    private static Thread startWriter() {
+        Thread thread = new Thread(Log::writeLoop, "log-writer");
+        thread.setDaemon(true);
+        thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "log-writer-shutdown"));
+        return thread;
+    }
+
+    private static void writeLoop() {
+        StringBuilder line = new StringBuilder(256);
+        SimpleDateFormat timestamp = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS");
+        Date date = new Date();
+        while (true) {
+            int drained;
+            synchronized (out) {
+                drained = ring.drain(slot -> {
+                    line.setLength(0);
+                    date.setTime(slot.timestampMillis);
+                    format(line, timestamp.format(date), slot);
+                    try {
+                        out.write(line.toString());
+                    } catch (IOException e) {
+                        // Nowhere left to report it
+                    }
+                });
+                if (drained > 0) {
+                    flushOutput();
+                }
+            }
+            if (drained == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private static void format(StringBuilder line, String time, LogRingBuffer.Slot slot) {
+        line.append(time).append(' ').append(slot.level).append(' ')
+                .append('[').append(slot.thread).append("] ")
+                .append(slot.logger).append(' ').append(slot.event);
+        Object[] fields = slot.fields;
+        if (fields != null) {
+            for (int i = 0; i + 1 < fields.length; i += 2) {
+                line.append(' ').append(fields[i]).append('=').append(fields[i + 1]);
+            }
+        }
+        line.append('\n');
+        if (slot.error != null) {
+            StringWriter trace = new StringWriter();
+            slot.error.printStackTrace(new PrintWriter(trace));
+            line.append(trace);
+        }
+    }
+
+    private static Writer openOutput() {
+        String file = System.getProperty(FILE_PROPERTY);
+        try {
+            if (file != null) {
+                return new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not open log file " + file + ": " + e.getMessage());
+        }
+        return new OutputStreamWriter(System.err, StandardCharsets.UTF_8);
+    }
+
+    private static void flushOutput() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            // Nowhere left to report it
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package ticket.booking.logging;
+
+/**
+ * Log severity, in increasing order; OFF disables logging entirely
+ */
+public enum LogLevel {
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR,
+    OFF
+}
@@ -0,0 +1,97 @@
+package ticket.booking.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-size multi-producer, single-consumer ring of preallocated log slots.
+ *
+ * Producers claim a sequence with a CAS and publish the slot by writing its
+ * sequence number last. When the ring is full the entry is dropped and counted
+ * rather than making the caller wait.
+ */
+final class LogRingBuffer {
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long consumed;
+
+    LogRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new Slot[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+            slots[i].published = i - size;
+        }
+    }
+
+    /**
+     * Publishes an entry; returns false and counts a drop if the ring is full
+     */
+    boolean offer(LogLevel level, String logger, String event, Object[] fields, Throwable error) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed >= slots.length) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        Slot slot = slots[(int) sequence & mask];
+        slot.timestampMillis = System.currentTimeMillis();
+        slot.thread = Thread.currentThread().getName();
+        slot.level = level;
+        slot.logger = logger;
+        slot.event = event;
+        slot.fields = fields;
+        slot.error = error;
+        slot.published = sequence;
+        return true;
+    }
+
+    /**
+     * Hands every published entry, in order, to the consumer; returns how many were drained
+     */
+    int drain(SlotConsumer consumer) {
+        long next = consumed;
+        int drained = 0;
+        while (true) {
+            Slot slot = slots[(int) next & mask];
+            if (slot.published != next) {
+                break;
+            }
+            consumer.accept(slot);
+            slot.fields = null;
+            slot.error = null;
+            next++;
+            drained++;
+        }
+        consumed = next;
+        return drained;
+    }
+
+    long getDropped() {
+        return dropped.get();
+    }
+
+    boolean isEmpty() {
+        return consumed == claimed.get();
+    }
+
+    interface SlotConsumer {
+        void accept(Slot slot);
+    }
+
+    static final class Slot {
+        volatile long published;
+        long timestampMillis;
+        String thread;
+        LogLevel level;
+        String logger;
+        String event;
+        Object[] fields;
+        Throwable error;
+    }
+}
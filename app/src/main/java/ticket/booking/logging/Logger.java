@@ -0,0 +1,62 @@
+package ticket.booking.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Structured logger: an event name plus alternating key/value fields, e.g.
+ * {@code log.info("booking.confirmed", "trainId", id, "seats", 2)}.
+ *
+ * Calls return immediately; see {@link Log} for how entries are written.
+ */
+public final class Logger {
+    private final String name;
+    private final int sampleEvery;
+    private final AtomicLong calls;
+
+    Logger(String name, int sampleEvery) {
+        this.name = name;
+        this.sampleEvery = sampleEvery;
+        this.calls = sampleEvery > 1 ? new AtomicLong() : null;
+    }
+
+    /**
+     * Returns a logger that only keeps one in every {@code n} entries, for chatty events
+     */
+    public Logger sampled(int n) {
+        return new Logger(name, Math.max(1, n));
+    }
+
+    public boolean isDebugEnabled() {
+        return Log.isEnabled(LogLevel.DEBUG);
+    }
+
+    public void debug(String event, Object... fields) {
+        log(LogLevel.DEBUG, event, null, fields);
+    }
+
+    public void info(String event, Object... fields) {
+        log(LogLevel.INFO, event, null, fields);
+    }
+
+    public void warn(String event, Object... fields) {
+        log(LogLevel.WARN, event, null, fields);
+    }
+
+    public void warn(String event, Throwable error, Object... fields) {
+        log(LogLevel.WARN, event, error, fields);
+    }
+
+    public void error(String event, Throwable error, Object... fields) {
+        log(LogLevel.ERROR, event, error, fields);
+    }
+
+    private void log(LogLevel level, String event, Throwable error, Object[] fields) {
+        if (!Log.isEnabled(level)) {
+            return;
+        }
+        if (calls != null && calls.getAndIncrement() % sampleEvery != 0) {
+            return;
+        }
+        Log.publish(level, name, event, fields, error);
+    }
+}
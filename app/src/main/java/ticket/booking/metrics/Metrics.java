@@ -0,0 +1,71 @@
+package ticket.booking.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide registry of counters, gauges and latency histograms.
+ *
+ * Call sites look a metric up once and keep the reference in a static field,
+ * so the hot path only pays for a striped increment or a histogram record.
+ */
+public class Metrics {
+    private static final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    private Metrics() {}
+
+    /**
+     * Gets or creates a counter
+     */
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    /**
+     * Registers a gauge read on demand when metrics are reported
+     */
+    public static void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Gets or creates a latency histogram
+     */
+    public static LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Renders every metric as "name value" lines, sorted by name; latencies are in microseconds
+     */
+    public static String render() {
+        Map<String, String> lines = new TreeMap<>();
+        for (Map.Entry<String, Counter> counter : counters.entrySet()) {
+            lines.put(counter.getKey(), Long.toString(counter.getValue().get()));
+        }
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            lines.put(gauge.getKey(), Long.toString(gauge.getValue().getAsLong()));
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            String name = entry.getKey();
+            LatencyHistogram histogram = entry.getValue();
+            lines.put(name + ".count", Long.toString(histogram.getCount()));
+            lines.put(name + ".mean_us", LatencyHistogram.micros(histogram.getMeanNanos()));
+            lines.put(name + ".p50_us", LatencyHistogram.micros(histogram.getPercentileNanos(50)));
+            lines.put(name + ".p99_us", LatencyHistogram.micros(histogram.getPercentileNanos(99)));
+            lines.put(name + ".p999_us", LatencyHistogram.micros(histogram.getPercentileNanos(99.9)));
+            lines.put(name + ".max_us", LatencyHistogram.micros(histogram.getMaxNanos()));
+        }
+
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, String> line : lines.entrySet()) {
+            text.append(line.getKey()).append(' ').append(line.getValue()).append('\n');
+        }
+        return text.toString();
+    }
+}
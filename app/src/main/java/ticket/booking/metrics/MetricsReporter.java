@@ -0,0 +1,66 @@
+package ticket.booking.metrics;
+
+import ticket.booking.logging.Log;
+import ticket.booking.logging.Logger;
+import ticket.booking.storage.AtomicFileWriter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically dumps {@link Metrics#render()} to a text file.
+ *
+ * Configured with the {@code booking.metrics.file} (default {@code data/metrics.txt})
+ * and {@code booking.metrics.intervalSec} (default 10, 0 disables) system properties.
+ */
+public class MetricsReporter {
+    private static final Logger log = Log.getLogger(MetricsReporter.class);
+    public static final String FILE_PROPERTY = "booking.metrics.file";
+    public static final String INTERVAL_PROPERTY = "booking.metrics.intervalSec";
+
+    private final Path file;
+    private final ScheduledExecutorService scheduler;
+
+    private MetricsReporter(Path file, long intervalSeconds) {
+        this.file = file;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::dump, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Starts the reporter as configured by system properties; returns null if disabled
+     */
+    public static MetricsReporter startFromSystemProperties() {
+        long interval = Long.getLong(INTERVAL_PROPERTY, 10);
+        if (interval <= 0) {
+            return null;
+        }
+        Path file = Paths.get(System.getProperty(FILE_PROPERTY, "data/metrics.txt"));
+        return new MetricsReporter(file, interval);
+    }
+
+    /**
+     * Writes the current metrics to the dump file
+     */
+    public void dump() {
+        try {
+            AtomicFileWriter.write(file, Metrics.render().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            log.warn("metrics.dump.failed", e, "file", file);
+        }
+    }
+
+    public void stop() {
+        scheduler.shutdown();
+        dump();
+    }
+}
@@ -0,0 +1,110 @@
+package ticket.booking.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact, immutable seat availability of one train on one date: free and
+ * total seats per class, and free seats per class on every route segment.
+ *
+ * Built from {@link OccupancyCounters} without touching a seat map; this is
+ * what list and search views show instead of the whole {@code Train}.
+ */
+public final class AvailabilitySummary {
+    private static final TravelClass[] CLASSES = TravelClass.values();
+
+    private final String trainId;
+    private final LocalDate date;
+    // Indexed by TravelClass ordinal; segments are [class][segment]
+    private final int[] totalSeats;
+    private final int[][] freeBySegment;
+
+    AvailabilitySummary(String trainId, LocalDate date, int[] totalSeats, int[][] freeBySegment) {
+        this.trainId = trainId;
+        this.date = date;
+        this.totalSeats = totalSeats;
+        this.freeBySegment = freeBySegment;
+    }
+
+    public String getTrainId() {
+        return trainId;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    /**
+     * Gets the classes this train carries
+     */
+    public List<TravelClass> getClasses() {
+        List<TravelClass> classes = new ArrayList<>();
+        for (TravelClass travelClass : CLASSES) {
+            if (totalSeats[travelClass.ordinal()] > 0) {
+                classes.add(travelClass);
+            }
+        }
+        return Collections.unmodifiableList(classes);
+    }
+
+    /**
+     * Gets the whole-route free seats of every class the train carries
+     */
+    public Map<TravelClass, Integer> getFreeSeatsByClass() {
+        Map<TravelClass, Integer> free = new EnumMap<>(TravelClass.class);
+        for (TravelClass travelClass : getClasses()) {
+            free.put(travelClass, getFreeSeats(travelClass));
+        }
+        return free;
+    }
+
+    public int getTotalSeats(TravelClass travelClass) {
+        return totalSeats[travelClass.ordinal()];
+    }
+
+    /**
+     * Gets the seats of a class that are free for the whole route
+     */
+    public int getFreeSeats(TravelClass travelClass) {
+        return getFreeSeats(travelClass, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Gets the seats of a class free on every segment between two stops
+     */
+    public int getFreeSeats(TravelClass travelClass, int fromStop, int toStop) {
+        int[] segments = freeBySegment[travelClass.ordinal()];
+        int free = totalSeats[travelClass.ordinal()];
+        int last = Math.min(toStop, segments.length);
+        for (int i = Math.max(0, fromStop); i < last; i++) {
+            free = Math.min(free, segments[i]);
+        }
+        return free;
+    }
+
+    /**
+     * Gets the free seats of all classes between two stops
+     */
+    public int getFreeSeats(int fromStop, int toStop) {
+        int free = 0;
+        for (TravelClass travelClass : CLASSES) {
+            free += getFreeSeats(travelClass, fromStop, toStop);
+        }
+        return free;
+    }
+
+    /**
+     * Gets the free seats of a class on one segment
+     */
+    public int getFreeSeatsOnSegment(TravelClass travelClass, int segment) {
+        return freeBySegment[travelClass.ordinal()][segment];
+    }
+
+    public int getSegmentCount() {
+        return freeBySegment[0].length;
+    }
+}
@@ -0,0 +1,660 @@
+package ticket.booking.service;
+
+import ticket.booking.entities.SeatPosition;
+import ticket.booking.entities.Train;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * One bit per seat for every (train, service date), kept in fixed-size
+ * {@link ByteBuffer} chunks: the part {@link OffHeapSeatStore} and
+ * {@link SeatLedger} share, and what {@link SeatInventory} mirrors its
+ * seat maps into when a store is attached.
+ *
+ * Seats are addressed by (train, date, coach, seat), where a coach is a row of
+ * the train's template layout. Each train has a directory ring with one word
+ * per service day; an entry packs the date and the address of that date's
+ * partition. A partition is its header words, the first counting booked seats
+ * plus a dirty bit, followed by the seat bits.
+ *
+ * Seat changes are lock-free: a compare-and-set on the 64-bit word holding
+ * the seat, then an atomic add on the count. Only creating a partition takes
+ * a lock. Multi-seat bookings set seats one by one and undo them if one is
+ * taken, so a reader may see a group half-booked for a moment but never
+ * double-sold.
+ *
+ * Memory of evicted partitions is reused, so every operation runs inside a
+ * read epoch. {@link #evictBefore} unlinks partitions, starts a new epoch and
+ * waits for operations from the old one to finish before the memory can be
+ * handed out again; a booking that raced the eviction therefore never writes
+ * into another date's seats.
+ */
+public abstract class BitmapSeatStore implements Closeable {
+    public static final int DEFAULT_SERVICE_DAYS = 128;
+
+    private static final VarHandle WORDS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    static final long DIRTY = Long.MIN_VALUE;
+    // Directory entry: (epoch day + 1) << 40 | word address of the partition
+    private static final int DAY_SHIFT = 40;
+    private static final long OFFSET_MASK = (1L << DAY_SHIFT) - 1;
+    // Reader counts per epoch parity, striped by thread and padded to a cache line
+    private static final int STRIPES = 16;
+    private static final int PAD = 8;
+
+    final int serviceDays;
+    final int chunkBytes;
+    private final int headerWords;
+    final ConcurrentMap<String, TrainEntry> trains = new ConcurrentHashMap<>();
+
+    // Both guarded by allocLock; the array is republished whole when a chunk is added
+    volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    long dataEnd;
+    final Object allocLock = new Object();
+    private final Map<Integer, Deque<Long>> freeByWords = new HashMap<>();
+    private long usedBytes;
+
+    private final AtomicLongArray readers = new AtomicLongArray(2 * STRIPES * PAD);
+    private final Object reclaimLock = new Object();
+    private volatile long epoch;
+
+    BitmapSeatStore(int serviceDays, int chunkBytes, int headerWords) {
+        if (chunkBytes <= 0 || chunkBytes % Long.BYTES != 0) {
+            throw new IllegalArgumentException("Chunk size must be a positive multiple of 8: " + chunkBytes);
+        }
+        this.serviceDays = serviceDays;
+        this.chunkBytes = chunkBytes;
+        this.headerWords = headerWords;
+    }
+
+    /**
+     * Gets a train's coach layout: the seat count of each row of its template
+     */
+    public static int[] coachLayout(Train train) {
+        List<List<Integer>> rows = train.getSeats();
+        int[] seatsPerCoach = new int[rows.size()];
+        for (int i = 0; i < seatsPerCoach.length; i++) {
+            seatsPerCoach[i] = rows.get(i).size();
+        }
+        return seatsPerCoach;
+    }
+
+    /**
+     * Registers a train with one coach per row of its template layout
+     */
+    public void register(Train train) {
+        register(train.getTrainId(), coachLayout(train));
+    }
+
+    /**
+     * Registers a train's coach layout; registering the same layout again does nothing
+     */
+    public void register(String trainId, int[] seatsPerCoach) {
+        TrainEntry existing = trains.get(trainId);
+        if (existing == null) {
+            synchronized (this) {
+                existing = trains.get(trainId);
+                if (existing == null) {
+                    trains.put(trainId, createEntry(trainId, seatsPerCoach.clone(), null));
+                    return;
+                }
+            }
+        }
+        if (!Arrays.equals(existing.coachSeats, seatsPerCoach)) {
+            throw new IllegalStateException("Train " + trainId + " is already registered with another layout");
+        }
+    }
+
+    /**
+     * Registers a train's coach layout, replacing a different one it had.
+     * Returns false if the layout was replaced, dropping every partition of the old one.
+     */
+    public synchronized boolean relayout(String trainId, int[] seatsPerCoach) {
+        TrainEntry existing = trains.get(trainId);
+        if (existing == null) {
+            trains.put(trainId, createEntry(trainId, seatsPerCoach.clone(), null));
+            return true;
+        }
+        if (Arrays.equals(existing.coachSeats, seatsPerCoach)) {
+            return true;
+        }
+        synchronized (existing) {
+            // No new partitions for the old layout from here on
+            existing.retired = true;
+        }
+        List<Long> dropped = new ArrayList<>();
+        for (int slot = 0; slot < serviceDays; slot++) {
+            long address = existing.slotAddress(slot);
+            long value = word(address);
+            if (value != 0 && cas(address, value, 0L)) {
+                dropped.add(blockOf(value));
+            }
+        }
+        // The directory is reused by the new layout, so nothing may still read it the old way
+        awaitReaders();
+        trains.put(trainId, createEntry(trainId, seatsPerCoach.clone(), existing));
+        for (long block : dropped) {
+            free(block, existing.words);
+        }
+        return false;
+    }
+
+    /**
+     * Gets the coach layout a train is registered with, or null if it isn't registered
+     */
+    public int[] getCoachLayout(String trainId) {
+        TrainEntry entry = trains.get(trainId);
+        return entry == null ? null : entry.coachSeats.clone();
+    }
+
+    /**
+     * Whether a train's registered layout has the seat
+     */
+    public boolean hasSeat(String trainId, int coach, int seat) {
+        TrainEntry entry = trains.get(trainId);
+        return entry != null && entry.isValidSeat(coach, seat);
+    }
+
+    /**
+     * Atomically books a seat; returns false if it is invalid or already taken
+     */
+    public boolean tryBook(String trainId, LocalDate date, int coach, int seat) {
+        int reader = enter();
+        try {
+            TrainEntry entry = entry(trainId);
+            if (!entry.isValidSeat(coach, seat)) {
+                return false;
+            }
+            long block = partition(entry, date, true, null);
+            if (!setBit(block, entry.bitOf(coach, seat), true)) {
+                return false;
+            }
+            addBooked(block, 1);
+            return true;
+        } finally {
+            exit(reader);
+        }
+    }
+
+    /**
+     * Atomically releases a booked seat; returns false if it was not booked
+     */
+    public boolean release(String trainId, LocalDate date, int coach, int seat) {
+        int reader = enter();
+        try {
+            TrainEntry entry = entry(trainId);
+            if (!entry.isValidSeat(coach, seat)) {
+                return false;
+            }
+            long block = partition(entry, date, false, null);
+            if (block < 0 || !setBit(block, entry.bitOf(coach, seat), false)) {
+                return false;
+            }
+            addBooked(block, -1);
+            return true;
+        } finally {
+            exit(reader);
+        }
+    }
+
+    /**
+     * Books every listed seat, or none of them if any is invalid, taken or repeated
+     */
+    public boolean tryBookAll(String trainId, LocalDate date, List<SeatPosition> seats) {
+        int reader = enter();
+        try {
+            TrainEntry entry = entry(trainId);
+            if (seats.isEmpty()) {
+                return false;
+            }
+            for (SeatPosition seat : seats) {
+                if (!entry.isValidSeat(seat.getRow(), seat.getCol())) {
+                    return false;
+                }
+            }
+            long block = partition(entry, date, true, null);
+            for (int i = 0; i < seats.size(); i++) {
+                SeatPosition seat = seats.get(i);
+                if (!setBit(block, entry.bitOf(seat.getRow(), seat.getCol()), true)) {
+                    for (int j = 0; j < i; j++) {
+                        setBit(block, entry.bitOf(seats.get(j).getRow(), seats.get(j).getCol()), false);
+                    }
+                    return false;
+                }
+            }
+            addBooked(block, seats.size());
+            return true;
+        } finally {
+            exit(reader);
+        }
+    }
+
+    public boolean isBooked(String trainId, LocalDate date, int coach, int seat) {
+        int reader = enter();
+        try {
+            TrainEntry entry = entry(trainId);
+            if (!entry.isValidSeat(coach, seat)) {
+                return false;
+            }
+            long block = partition(entry, date, false, null);
+            return block >= 0 && isSet(block, entry.bitOf(coach, seat));
+        } finally {
+            exit(reader);
+        }
+    }
+
+    /**
+     * Gets how many seats are booked on a date, without scanning the seat bits
+     */
+    public int getBookedSeats(String trainId, LocalDate date) {
+        int reader = enter();
+        try {
+            long block = partition(entry(trainId), date, false, null);
+            return block < 0 ? 0 : (int) (word(block) & ~DIRTY);
+        } finally {
+            exit(reader);
+        }
+    }
+
+    public int getTotalSeats(String trainId) {
+        return entry(trainId).totalSeats;
+    }
+
+    /**
+     * Whether the store holds a partition for the date
+     */
+    public boolean contains(String trainId, LocalDate date) {
+        int reader = enter();
+        try {
+            TrainEntry entry = trains.get(trainId);
+            return entry != null && partition(entry, date, false, null) >= 0;
+        } finally {
+            exit(reader);
+        }
+    }
+
+    /**
+     * Copies a date's seats into a heap snapshot, e.g. to draw the seat map
+     */
+    public SeatMapSnapshot snapshot(String trainId, LocalDate date) {
+        int reader = enter();
+        try {
+            TrainEntry entry = entry(trainId);
+            return snapshot(trainId, entry, partition(entry, date, false, null));
+        } finally {
+            exit(reader);
+        }
+    }
+
+    /**
+     * Gets a date's seats, first filling a new partition from {@code initial}
+     * (every seat not available counts as booked) if the store has none for the date
+     */
+    public SeatMapSnapshot load(String trainId, LocalDate date, SeatMapSnapshot initial) {
+        int reader = enter();
+        try {
+            TrainEntry entry = entry(trainId);
+            return snapshot(trainId, entry, partition(entry, date, true, initial));
+        } finally {
+            exit(reader);
+        }
+    }
+
+    /**
+     * Drops every partition for dates before the cutoff and keeps its memory for reuse,
+     * once no booking that may still see it is running. Returns how many partitions were dropped.
+     */
+    public int evictBefore(LocalDate cutoff) {
+        long cutoffDay = cutoff.toEpochDay();
+        List<long[]> dropped = new ArrayList<>();
+        for (TrainEntry entry : trains.values()) {
+            for (int slot = 0; slot < serviceDays; slot++) {
+                long address = entry.slotAddress(slot);
+                long value = word(address);
+                if (value != 0 && dayOf(value) < cutoffDay && cas(address, value, 0L)) {
+                    dropped.add(new long[]{blockOf(value), entry.words});
+                }
+            }
+        }
+        if (!dropped.isEmpty()) {
+            awaitReaders();
+            for (long[] block : dropped) {
+                free(block[0], (int) block[1]);
+            }
+        }
+        return dropped.size();
+    }
+
+    /**
+     * Gets the bytes held by live and reusable partitions
+     */
+    public long getUsedBytes() {
+        synchronized (allocLock) {
+            return usedBytes;
+        }
+    }
+
+    /**
+     * Gets the bytes reserved in chunks
+     */
+    public long getReservedBytes() {
+        return (long) chunks.length * chunkBytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+
+    /**
+     * Creates the entry for a newly registered train, or for a new layout of {@code replaced}
+     */
+    abstract TrainEntry createEntry(String trainId, int[] seatsPerCoach, TrainEntry replaced);
+
+    /**
+     * Maps or allocates the chunk with the given index
+     */
+    abstract ByteBuffer newChunk(int index) throws IOException;
+
+    /**
+     * Called under the allocation lock for every partition handed out, after its seats are cleared
+     */
+    void formatPartition(long block, int words, boolean reused) {
+    }
+
+    /**
+     * Starts an operation that may read partitions; pass the result to {@link #exit}
+     */
+    final int enter() {
+        int stripe = Thread.currentThread().hashCode() & (STRIPES - 1);
+        while (true) {
+            int parity = (int) (epoch & 1);
+            int index = (parity * STRIPES + stripe) * PAD;
+            readers.getAndIncrement(index);
+            if ((epoch & 1) == parity) {
+                return index;
+            }
+            // Raced a new epoch: register under that one instead
+            readers.getAndDecrement(index);
+        }
+    }
+
+    final void exit(int reader) {
+        readers.getAndDecrement(reader);
+    }
+
+    /**
+     * Starts a new epoch and waits until every operation from the previous one has finished
+     */
+    final void awaitReaders() {
+        synchronized (reclaimLock) {
+            int parity = (int) (epoch & 1);
+            epoch++;
+            for (int stripe = 0; stripe < STRIPES; stripe++) {
+                int index = (parity * STRIPES + stripe) * PAD;
+                while (readers.get(index) != 0) {
+                    Thread.onSpinWait();
+                }
+            }
+        }
+    }
+
+    TrainEntry entry(String trainId) {
+        TrainEntry entry = trains.get(trainId);
+        if (entry == null) {
+            throw new IllegalArgumentException("Unknown train: " + trainId);
+        }
+        return entry;
+    }
+
+    /**
+     * Finds a date's partition, optionally creating it filled from {@code initial}; returns -1 if there is none
+     */
+    private long partition(TrainEntry entry, LocalDate date, boolean create, SeatMapSnapshot initial) {
+        if (entry.retired) {
+            // Its directory may already belong to the new layout
+            throw new IllegalStateException("Train layout changed while booking on " + date);
+        }
+        long day = date.toEpochDay();
+        long address = entry.slotAddress((int) Math.floorMod(day, (long) serviceDays));
+        long value = word(address);
+        if (value != 0 && dayOf(value) == day) {
+            return blockOf(value);
+        }
+        if (!create) {
+            if (value != 0) {
+                throw new IllegalStateException("Service date " + date + " is outside the " + serviceDays + "-day horizon");
+            }
+            return -1;
+        }
+        synchronized (entry) {
+            if (entry.retired) {
+                throw new IllegalStateException("Train layout changed while booking on " + date);
+            }
+            value = word(address);
+            if (value != 0) {
+                if (dayOf(value) == day) {
+                    return blockOf(value);
+                }
+                throw new IllegalStateException("Service date " + date + " is outside the " + serviceDays + "-day horizon");
+            }
+            long block = allocatePartition(entry.words);
+            if (initial != null) {
+                fill(entry, block, initial);
+            }
+            setWord(address, ((day + 1) << DAY_SHIFT) | (block / Long.BYTES));
+            return block;
+        }
+    }
+
+    /**
+     * Sets the bits of a partition nobody else can see yet
+     */
+    private void fill(TrainEntry entry, long block, SeatMapSnapshot seats) {
+        int booked = 0;
+        for (int coach = 0; coach < Math.min(entry.coachSeats.length, seats.getRowCount()); coach++) {
+            for (int seat = 0; seat < Math.min(entry.coachSeats[coach], seats.getSeatCount(coach)); seat++) {
+                if (!seats.isAvailable(coach, seat) && setBit(block, entry.bitOf(coach, seat), true)) {
+                    booked++;
+                }
+            }
+        }
+        addBooked(block, booked);
+    }
+
+    private SeatMapSnapshot snapshot(String trainId, TrainEntry entry, long block) {
+        List<List<Integer>> seats = new ArrayList<>(entry.coachSeats.length);
+        for (int coach = 0; coach < entry.coachSeats.length; coach++) {
+            List<Integer> row = new ArrayList<>(entry.coachSeats[coach]);
+            for (int seat = 0; seat < entry.coachSeats[coach]; seat++) {
+                boolean booked = block >= 0 && isSet(block, entry.bitOf(coach, seat));
+                row.add(booked ? SeatMapSnapshot.BOOKED : SeatMapSnapshot.AVAILABLE);
+            }
+            seats.add(row);
+        }
+        return SeatMapSnapshot.of(trainId, seats);
+    }
+
+    private boolean setBit(long block, int bit, boolean booked) {
+        long address = block + (long) (headerWords + (bit >>> 6)) * Long.BYTES;
+        ByteBuffer chunk = chunkAt(address);
+        int index = indexAt(address);
+        long mask = 1L << bit;
+        while (true) {
+            long old = (long) WORDS.getVolatile(chunk, index);
+            if (((old & mask) != 0) == booked) {
+                return false;
+            }
+            if (WORDS.compareAndSet(chunk, index, old, booked ? old | mask : old & ~mask)) {
+                return true;
+            }
+        }
+    }
+
+    private boolean isSet(long block, int bit) {
+        return (word(block + (long) (headerWords + (bit >>> 6)) * Long.BYTES) & (1L << bit)) != 0;
+    }
+
+    /**
+     * Adjusts the booked count and marks the partition dirty in one CAS
+     */
+    private void addBooked(long block, int delta) {
+        ByteBuffer chunk = chunkAt(block);
+        int index = indexAt(block);
+        while (true) {
+            long old = (long) WORDS.getVolatile(chunk, index);
+            if (WORDS.compareAndSet(chunk, index, old, ((old & ~DIRTY) + delta) | DIRTY)) {
+                return;
+            }
+        }
+    }
+
+    final long word(long address) {
+        return (long) WORDS.getVolatile(chunkAt(address), indexAt(address));
+    }
+
+    final void setWord(long address, long value) {
+        WORDS.setVolatile(chunkAt(address), indexAt(address), value);
+    }
+
+    final boolean cas(long address, long expected, long value) {
+        return WORDS.compareAndSet(chunkAt(address), indexAt(address), expected, value);
+    }
+
+    final ByteBuffer chunkAt(long address) {
+        return chunks[(int) (address / chunkBytes)];
+    }
+
+    final int indexAt(long address) {
+        return (int) (address % chunkBytes);
+    }
+
+    /**
+     * Hands out a cleared partition, reusing freed memory of the same size first
+     */
+    private long allocatePartition(int words) {
+        synchronized (allocLock) {
+            Deque<Long> free = freeByWords.get(words);
+            boolean reused = free != null && !free.isEmpty();
+            long block;
+            if (reused) {
+                block = free.pop();
+                for (int i = headerWords; i < words; i++) {
+                    setWord(block + (long) i * Long.BYTES, 0L);
+                }
+            } else {
+                block = allocate((long) words * Long.BYTES);
+                usedBytes += (long) words * Long.BYTES;
+            }
+            // New and reused partitions start dirty: nothing about them has been checkpointed
+            setWord(block, DIRTY);
+            formatPartition(block, words, reused);
+            return block;
+        }
+    }
+
+    /**
+     * Takes bytes from the end of the data, starting a new chunk when they don't fit the current one
+     */
+    final long allocate(long bytes) {
+        synchronized (allocLock) {
+            if (bytes > chunkBytes) {
+                throw new IllegalArgumentException("A partition of " + bytes + " bytes doesn't fit a " + chunkBytes + "-byte chunk");
+            }
+            long chunkEnd = (dataEnd / chunkBytes + 1) * chunkBytes;
+            if (dataEnd + bytes > chunkEnd) {
+                dataEnd = chunkEnd;
+            }
+            int chunk = (int) (dataEnd / chunkBytes);
+            if (chunk >= chunks.length) {
+                grow(chunk + 1);
+            }
+            long block = dataEnd;
+            dataEnd += bytes;
+            return block;
+        }
+    }
+
+    final void free(long block, int words) {
+        synchronized (allocLock) {
+            freeByWords.computeIfAbsent(words, size -> new ArrayDeque<>()).push(block);
+        }
+    }
+
+    private void grow(int chunkCount) {
+        if ((long) chunkCount * chunkBytes / Long.BYTES > OFFSET_MASK) {
+            throw new IllegalStateException("Seat store is full");
+        }
+        ByteBuffer[] grown = Arrays.copyOf(chunks, chunkCount);
+        for (int i = chunks.length; i < chunkCount; i++) {
+            try {
+                grown[i] = newChunk(i);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not add seat store chunk " + i, e);
+            }
+        }
+        chunks = grown;
+    }
+
+    static long dayOf(long value) {
+        return (value >>> DAY_SHIFT) - 1;
+    }
+
+    static long blockOf(long value) {
+        return (value & OFFSET_MASK) * Long.BYTES;
+    }
+
+    /**
+     * Coach geometry of one registered train and where its directory lives
+     */
+    static final class TrainEntry {
+        final int index;
+        final int[] coachSeats;
+        final int[] coachStart;
+        final int totalSeats;
+        final int words;
+        final long directory;
+        /** Set, under this entry's lock, once the train has been given another layout */
+        volatile boolean retired;
+
+        TrainEntry(int index, int[] coachSeats, long directory, int headerWords) {
+            this.index = index;
+            this.coachSeats = coachSeats;
+            this.coachStart = new int[coachSeats.length];
+            int bits = 0;
+            for (int i = 0; i < coachSeats.length; i++) {
+                coachStart[i] = bits;
+                bits += coachSeats[i];
+            }
+            this.totalSeats = bits;
+            this.words = headerWords + (bits + 63) / 64;
+            this.directory = directory;
+        }
+
+        long slotAddress(int slot) {
+            return directory + (long) slot * Long.BYTES;
+        }
+
+        boolean isValidSeat(int coach, int seat) {
+            return coach >= 0 && coach < coachSeats.length && seat >= 0 && seat < coachSeats[coach];
+        }
+
+        int bitOf(int coach, int seat) {
+            return coachStart[coach] + seat;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package ticket.booking.service;
+
+import ticket.booking.entities.Train;
+import ticket.booking.events.BookingEvent;
+import ticket.booking.events.BookingEventType;
+import ticket.booking.events.EventBus;
+import ticket.booking.metrics.Counter;
+import ticket.booking.metrics.Metrics;
+import ticket.booking.util.DatabaseManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Everything that follows a booking change, run by {@link EventBus} subscribers
+ * instead of on the booking path.
+ *
+ * <ul>
+ *   <li>persistence: writes back the seat maps a batch of seat changes touched</li>
+ *   <li>waitlist: wakes the {@link WaitlistEngine} for dates where seats were released</li>
+ *   <li>metrics: counts booked and cancelled seats and issued tickets</li>
+ * </ul>
+ *
+ * Subscribers run while bookers may be waiting on a full ring with a seat lock
+ * held, so none of them books or releases seats itself; the waitlist only flags
+ * the queue and its own worker does the promotion.
+ */
+final class BookingSideEffects {
+    private static final Counter SEATS_BOOKED = Metrics.counter("booking.seats");
+    private static final Counter SEATS_CANCELLED = Metrics.counter("cancel.seats");
+    private static final Counter TICKETS_ISSUED = Metrics.counter("booking.tickets");
+    private static final Counter TICKETS_CANCELLED = Metrics.counter("cancel.tickets");
+
+    private static final AtomicBoolean installed = new AtomicBoolean();
+
+    private BookingSideEffects() {
+    }
+
+    /**
+     * Subscribes the side effects to the process-wide bus; later calls do nothing.
+     * Called before anything can book, i.e. before the shared waitlist restores its queues.
+     */
+    static void install() {
+        if (!installed.compareAndSet(false, true)) {
+            return;
+        }
+        EventBus bus = EventBus.getInstance();
+        bus.subscribe("persistence", BookingSideEffects::persist);
+        bus.subscribe("waitlist", BookingSideEffects::wakeWaitlist);
+        bus.subscribe("metrics", BookingSideEffects::count);
+    }
+
+    private static void persist(List<BookingEvent> batch) {
+        Map<String, Set<LocalDate>> touched = new LinkedHashMap<>();
+        for (BookingEvent event : batch) {
+            if (event.isSeatChange()) {
+                touched.computeIfAbsent(event.getTrainId(), id -> new TreeSet<>()).add(event.getDate());
+            }
+        }
+        if (!touched.isEmpty()) {
+            persistSeatMaps(touched);
+        }
+    }
+
+    private static void wakeWaitlist(List<BookingEvent> batch) {
+        WaitlistEngine waitlist = WaitlistEngine.getInstance();
+        for (BookingEvent event : batch) {
+            if (event.getType() == BookingEventType.SEATS_RELEASED) {
+                waitlist.seatsReleased(event.getTrainId(), event.getDate());
+            }
+        }
+    }
+
+    private static void count(List<BookingEvent> batch) {
+        for (BookingEvent event : batch) {
+            switch (event.getType()) {
+                case SEATS_BOOKED:
+                    SEATS_BOOKED.add(event.getSeats().size());
+                    break;
+                case SEATS_RELEASED:
+                    SEATS_CANCELLED.add(event.getSeats().size());
+                    break;
+                case TICKETS_ISSUED:
+                    TICKETS_ISSUED.add(event.getSeats().size());
+                    break;
+                case TICKET_CANCELLED:
+                    TICKETS_CANCELLED.increment();
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Writes the live seat maps of the touched service dates back to the trains
+     * database in one transaction. Only the touched trains are loaded and saved,
+     * and each date is written as it is now, so the last writer always includes
+     * every committed booking. The template layout in {@code Train.seats} is left alone.
+     */
+    static void persistSeatMaps(Map<String, Set<LocalDate>> touched) {
+        DatabaseManager.transaction(engine -> {
+            List<Train> changed = new ArrayList<>(touched.size());
+            for (Map.Entry<String, Set<LocalDate>> train : touched.entrySet()) {
+                Train stored = engine.loadTrain(train.getKey());
+                if (stored == null) {
+                    continue;
+                }
+                Map<LocalDate, SeatMapSnapshot> live = SeatInventory.getInstance().snapshots(train.getKey());
+                for (LocalDate date : train.getValue()) {
+                    // Dates evicted since are the archiver's to write
+                    SeatMapSnapshot snapshot = live.get(date);
+                    if (snapshot != null) {
+                        stored.getDatedSeats().put(date.toString(), snapshot.toSeatList());
+                    }
+                }
+                changed.add(stored);
+            }
+            if (!changed.isEmpty()) {
+                engine.upsertTrains(changed);
+            }
+            return null;
+        });
+    }
+}
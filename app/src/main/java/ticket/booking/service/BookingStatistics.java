@@ -0,0 +1,436 @@
+package ticket.booking.service;
+
+import ticket.booking.entities.SeatPosition;
+import ticket.booking.entities.Train;
+import ticket.booking.entities.TrainHeader;
+import ticket.booking.events.BookingEvent;
+import ticket.booking.events.BookingEventHandler;
+import ticket.booking.events.BookingEventType;
+import ticket.booking.events.EventBus;
+import ticket.booking.logging.Log;
+import ticket.booking.logging.Logger;
+import ticket.booking.util.CityDatabase;
+import ticket.booking.util.DatabaseManager;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Occupancy and revenue totals per train, route, region and service day, kept
+ * up to date from booking events so the statistics screen never walks a seat
+ * map or a user's tickets.
+ *
+ * The statistics subscribe to the {@link EventBus} first and then seed train by
+ * train from the stored seat maps, so no seat booked or released while seeding
+ * is missed; an event for a train not seeded yet seeds that train on the spot.
+ * A stored seat map may already hold changes whose events are still queued, so
+ * until an event newer than a date's seed arrives, each seat of that date is
+ * only counted when an event actually changes it from what was seeded. Every
+ * ticket holds one seat, so the seat on its train and date is the ticket's key.
+ *
+ * A train's route is its first to last station and its region is the region of
+ * the first station in {@link CityDatabase}. A service date's seats count
+ * towards capacity from its first sale. Revenue is the fare the inventory
+ * charged each seat, demand surcharge included, as carried by its
+ * {@code SEATS_BOOKED} event; it is remembered per seat, so a release takes back
+ * exactly what the booking added. Seats sold before the statistics started, or
+ * without a fare on their event, count at the published fare.
+ *
+ * Reads are single map lookups on immutable {@link OccupancyStats}; the top
+ * routes are re-ranked incrementally and published as a ready-made list.
+ * All updates come from one thread at a time.
+ *
+ * The number of top routes comes from the {@code booking.stats.topRoutes} system property.
+ */
+public class BookingStatistics implements BookingEventHandler {
+    private static final Logger log = Log.getLogger(BookingStatistics.class);
+    public static final String TOP_ROUTES_PROPERTY = "booking.stats.topRoutes";
+    public static final String OTHER_REGION = "Other";
+    private static final BookingStatistics INSTANCE = new BookingStatistics(Integer.getInteger(TOP_ROUTES_PROPERTY, 10));
+    private static final Comparator<OccupancyStats> BUSIEST_FIRST =
+            Comparator.comparingLong(OccupancyStats::getBookedSeats).reversed().thenComparing(OccupancyStats::getKey);
+
+    private final int topRouteCount;
+    private final FareEngine fares = FareEngine.getInstance();
+
+    private final ConcurrentMap<String, OccupancyStats> byTrain = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, OccupancyStats> byRoute = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, OccupancyStats> byRegion = new ConcurrentHashMap<>();
+    private final ConcurrentMap<LocalDate, OccupancyStats> byDay = new ConcurrentHashMap<>();
+    private volatile OccupancyStats overall = OccupancyStats.empty("all");
+    private volatile List<OccupancyStats> topRoutes = Collections.emptyList();
+
+    // Writer state, guarded by this
+    private final Map<String, TrainProfile> profiles = new HashMap<>();
+    private final Set<String> countedDates = new HashSet<>();
+    private final TreeSet<OccupancyStats> routeRanking = new TreeSet<>(BUSIEST_FIRST);
+    // Fare charged per booked seat, by train and date, then by row << 16 | column
+    private final Map<String, Map<Integer, Integer>> chargedFares = new HashMap<>();
+    // Booked seats per date as last seeded from the store, until an event newer than the seed arrives
+    private final Map<String, SeedWindow> seedWindows = new HashMap<>();
+    private boolean started;
+
+    public BookingStatistics(int topRouteCount) {
+        this.topRouteCount = topRouteCount;
+    }
+
+    /**
+     * Gets the process-wide statistics
+     */
+    public static BookingStatistics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Seeds the shared statistics from the trains database and keeps them current from the booking event bus
+     */
+    public static BookingStatistics startFromSystemProperties() {
+        INSTANCE.start(EventBus.getInstance());
+        return INSTANCE;
+    }
+
+    /**
+     * Subscribes to a bus and then seeds from the trains database one train at a time; later calls do nothing
+     */
+    public void start(EventBus bus) {
+        synchronized (this) {
+            if (started) {
+                return;
+            }
+            started = true;
+        }
+        long start = System.nanoTime();
+        bus.subscribe("statistics", this);
+        List<TrainHeader> headers = DatabaseManager.loadTrainHeaders();
+        for (TrainHeader header : headers) {
+            // Dates an event has already counted are skipped
+            Train train = DatabaseManager.loadTrain(header.getTrainId());
+            if (train != null) {
+                seed(Collections.singletonList(train));
+            }
+        }
+        // Once the events queued behind the seed are in, no stored change can be counted twice
+        if (bus.awaitDrained(5, TimeUnit.SECONDS)) {
+            synchronized (this) {
+                seedWindows.clear();
+            }
+        }
+        log.info("stats.seeded", "trains", headers.size(), "millis", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Counts the seats already sold on every stored service date of these trains; pass
+     * trains as just read from the store, since events older than the read are matched against them
+     */
+    public synchronized void seed(Collection<Train> trains) {
+        long seededAt = System.currentTimeMillis();
+        for (Train train : trains) {
+            TrainProfile profile = profiles.computeIfAbsent(train.getTrainId(), id -> profileOf(train));
+            for (Map.Entry<String, List<List<Integer>>> dated : train.getDatedSeats().entrySet()) {
+                LocalDate date;
+                try {
+                    date = LocalDate.parse(dated.getKey());
+                } catch (DateTimeParseException e) {
+                    continue;
+                }
+                String key = dateKey(profile.trainId, date);
+                if (countedDates.add(key)) {
+                    long[] totals = profile.count(dated.getValue());
+                    apply(profile, date, totals[0], totals[1], totals[2]);
+                    seedWindows.put(key, new SeedWindow(seededAt, dated.getValue()));
+                }
+            }
+        }
+        publishTopRoutes();
+    }
+
+    @Override
+    public synchronized void onEvents(List<BookingEvent> batch) {
+        boolean changed = false;
+        for (BookingEvent event : batch) {
+            int sign;
+            if (event.getType() == BookingEventType.SEATS_BOOKED) {
+                sign = 1;
+            } else if (event.getType() == BookingEventType.SEATS_RELEASED) {
+                sign = -1;
+            } else {
+                continue;
+            }
+            TrainProfile profile = profileFor(event.getTrainId());
+            if (profile == null) {
+                continue;
+            }
+            String key = dateKey(profile.trainId, event.getDate());
+            if (countedDates.add(key)) {
+                // The inventory opened this date from the template layout
+                apply(profile, event.getDate(), profile.templateBooked, profile.templateCapacity, profile.templateRevenue);
+            }
+            SeedWindow window = seedWindows.get(key);
+            if (window != null && event.getTimestampMillis() > window.seededAtMillis) {
+                // The bus is in order, so every event the seed may have seen is already in
+                seedWindows.remove(key);
+                window = null;
+            }
+            long seats = 0;
+            long revenue = 0;
+            for (int i = 0; i < event.getSeats().size(); i++) {
+                SeatPosition seat = event.getSeats().get(i);
+                if (window != null && !window.update(seatKey(seat), sign > 0)) {
+                    // Already counted by the seed
+                    continue;
+                }
+                seats++;
+                revenue += sign > 0 ? charge(profile, event.getDate(), seat, event.getFare(i))
+                        : refund(profile, event.getDate(), seat);
+            }
+            apply(profile, event.getDate(), sign * seats, 0, sign * revenue);
+            changed = true;
+        }
+        if (changed) {
+            publishTopRoutes();
+        }
+    }
+
+    /**
+     * Gets the totals of a train over every counted service date
+     */
+    public OccupancyStats getTrainStats(String trainId) {
+        return orEmpty(byTrain.get(trainId), trainId);
+    }
+
+    /**
+     * Gets the totals of every train running from origin to terminus
+     */
+    public OccupancyStats getRouteStats(String origin, String terminus) {
+        String route = routeKey(origin, terminus);
+        return orEmpty(byRoute.get(route), route);
+    }
+
+    /**
+     * Gets the totals of every train starting in a region
+     */
+    public OccupancyStats getRegionStats(String region) {
+        return orEmpty(byRegion.get(region), region);
+    }
+
+    /**
+     * Gets the totals of every train on one service date
+     */
+    public OccupancyStats getDayStats(LocalDate date) {
+        OccupancyStats stats = byDay.get(date);
+        return stats != null ? stats : OccupancyStats.empty(date.toString());
+    }
+
+    /**
+     * Gets the totals across all trains and dates
+     */
+    public OccupancyStats getOverall() {
+        return overall;
+    }
+
+    /**
+     * Gets the routes with the most booked seats, busiest first
+     */
+    public List<OccupancyStats> getTopRoutes() {
+        return topRoutes;
+    }
+
+    /**
+     * Gets the region names that have totals, for the dashboard's breakdown
+     */
+    public Set<String> getRegions() {
+        return Collections.unmodifiableSet(byRegion.keySet());
+    }
+
+    /**
+     * Builds the key routes are reported under
+     */
+    public static String routeKey(String origin, String terminus) {
+        return origin.toLowerCase() + "-" + terminus.toLowerCase();
+    }
+
+    private void apply(TrainProfile profile, LocalDate date, long booked, long capacity, long revenue) {
+        byTrain.put(profile.trainId, orEmpty(byTrain.get(profile.trainId), profile.trainId).plus(booked, capacity, revenue));
+        byRegion.put(profile.region, orEmpty(byRegion.get(profile.region), profile.region).plus(booked, capacity, revenue));
+        byDay.put(date, getDayStats(date).plus(booked, capacity, revenue));
+        overall = overall.plus(booked, capacity, revenue);
+
+        OccupancyStats route = orEmpty(byRoute.get(profile.route), profile.route);
+        routeRanking.remove(route);
+        route = route.plus(booked, capacity, revenue);
+        routeRanking.add(route);
+        byRoute.put(profile.route, route);
+    }
+
+    private void publishTopRoutes() {
+        List<OccupancyStats> top = new ArrayList<>(Math.min(topRouteCount, routeRanking.size()));
+        for (OccupancyStats route : routeRanking) {
+            if (top.size() == topRouteCount) {
+                break;
+            }
+            top.add(route);
+        }
+        topRoutes = Collections.unmodifiableList(top);
+    }
+
+    /**
+     * Gets a train's profile, first counting its stored dates if it hasn't been seeded yet
+     */
+    private TrainProfile profileFor(String trainId) {
+        TrainProfile profile = profiles.get(trainId);
+        if (profile == null) {
+            Train train = DatabaseManager.loadTrain(trainId);
+            if (train == null) {
+                log.warn("stats.train.unknown", "trainId", trainId);
+                return null;
+            }
+            seed(Collections.singletonList(train));
+            profile = profiles.get(trainId);
+        }
+        return profile;
+    }
+
+    /**
+     * Remembers what a newly booked seat was charged, or its published fare if the event carried none
+     */
+    private int charge(TrainProfile profile, LocalDate date, SeatPosition seat, int charged) {
+        int fare = charged >= 0 ? charged : profile.fare(seat.getRow());
+        chargedFares.computeIfAbsent(dateKey(profile.trainId, date), key -> new HashMap<>()).put(seatKey(seat), fare);
+        return fare;
+    }
+
+    /**
+     * Gives back what a released seat was charged, or its published fare if it was sold before the statistics started
+     */
+    private int refund(TrainProfile profile, LocalDate date, SeatPosition seat) {
+        Map<Integer, Integer> charged = chargedFares.get(dateKey(profile.trainId, date));
+        Integer fare = charged == null ? null : charged.remove(seatKey(seat));
+        return fare != null ? fare : profile.fare(seat.getRow());
+    }
+
+    private TrainProfile profileOf(Train train) {
+        List<String> stations = train.getStations() == null ? Collections.emptyList() : train.getStations();
+        String origin = stations.isEmpty() ? "" : stations.get(0);
+        String terminus = stations.isEmpty() ? "" : stations.get(stations.size() - 1);
+
+        TravelClass[] rowClasses = CoachLayout.rowClasses(train.getTrainId(), train.getSeats().size());
+        int[] rowFares = new int[rowClasses.length];
+        TrainHeader header = TrainHeader.of(train);
+        for (int row = 0; row < rowClasses.length; row++) {
+            FareQuote quote = fares.quote(header, origin, terminus, rowClasses[row], null);
+            rowFares[row] = quote == null ? 0 : quote.getTotalFare();
+        }
+        TrainProfile profile = new TrainProfile(train.getTrainId(), routeKey(origin, terminus), regionOf(origin), rowFares);
+        long[] template = profile.count(train.getSeats());
+        profile.templateBooked = template[0];
+        profile.templateCapacity = template[1];
+        profile.templateRevenue = template[2];
+        return profile;
+    }
+
+    private static String regionOf(String station) {
+        CityDatabase.CityInfo city = CityDatabase.getCityById(station);
+        if (city == null) {
+            city = CityDatabase.getCityByName(station);
+        }
+        return city == null ? OTHER_REGION : city.getRegion();
+    }
+
+    private static String dateKey(String trainId, LocalDate date) {
+        return trainId + '|' + date;
+    }
+
+    private static int seatKey(SeatPosition seat) {
+        return seat.getRow() << 16 | seat.getCol();
+    }
+
+    private static OccupancyStats orEmpty(OccupancyStats stats, String key) {
+        return stats != null ? stats : OccupancyStats.empty(key);
+    }
+
+    /**
+     * The booked seats of a date as the seed counted them, kept current by the events that followed
+     */
+    private static final class SeedWindow {
+        private final long seededAtMillis;
+        private final Set<Integer> booked = new HashSet<>();
+
+        private SeedWindow(long seededAtMillis, List<List<Integer>> seats) {
+            this.seededAtMillis = seededAtMillis;
+            for (int row = 0; row < seats.size(); row++) {
+                for (int col = 0; col < seats.get(row).size(); col++) {
+                    Integer seat = seats.get(row).get(col);
+                    if (seat != null && seat == SeatMapSnapshot.BOOKED) {
+                        booked.add(row << 16 | col);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Records a seat booked or released; false if the seat already was
+         */
+        private boolean update(int seat, boolean book) {
+            return book ? booked.add(seat) : booked.remove(seat);
+        }
+    }
+
+    /**
+     * What the statistics need to know about a train, resolved once
+     */
+    private static final class TrainProfile {
+        private final String trainId;
+        private final String route;
+        private final String region;
+        private final int[] rowFares;
+        private long templateBooked;
+        private long templateCapacity;
+        private long templateRevenue;
+
+        private TrainProfile(String trainId, String route, String region, int[] rowFares) {
+            this.trainId = trainId;
+            this.route = route;
+            this.region = region;
+            this.rowFares = rowFares;
+        }
+
+        private int fare(int row) {
+            if (rowFares.length == 0) {
+                return 0;
+            }
+            return rowFares[Math.min(Math.max(row, 0), rowFares.length - 1)];
+        }
+
+        /**
+         * Counts booked seats, seats and booked revenue of a seat map
+         */
+        private long[] count(List<List<Integer>> seats) {
+            long booked = 0;
+            long capacity = 0;
+            long revenue = 0;
+            for (int row = 0; row < seats.size(); row++) {
+                for (Integer seat : seats.get(row)) {
+                    capacity++;
+                    if (seat != null && seat == SeatMapSnapshot.BOOKED) {
+                        booked++;
+                        revenue += fare(row);
+                    }
+                }
+            }
+            return new long[]{booked, capacity, revenue};
+        }
+    }
+}
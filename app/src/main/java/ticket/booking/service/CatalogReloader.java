@@ -0,0 +1,241 @@
+package ticket.booking.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ticket.booking.entities.Train;
+import ticket.booking.entities.TrainHeader;
+import ticket.booking.logging.Log;
+import ticket.booking.logging.Logger;
+import ticket.booking.metrics.Counter;
+import ticket.booking.metrics.Metrics;
+import ticket.booking.storage.JsonFileStorageEngine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks up catalog edits while the app is running, without a restart or a full reload.
+ *
+ * Watches the data directory. When {@code trains.json} changes, storage
+ * re-indexes it and keeps the header of every train whose JSON didn't change
+ * outside its seat maps, so the trains with a new header are exactly the ones
+ * that changed and the app's own seat-map writes reload nothing. Only those
+ * are parsed, into their {@link ticket.booking.entities.TrainView} and fare
+ * table. Searches already running keep the header list they started with; the
+ * next search sees the new one.
+ *
+ * A drop-in {@code trains-delta.json} (a JSON array of trains) is upserted in
+ * one transaction, keeping seats already sold when the delta has none, and is
+ * then renamed to {@code .applied}, or to {@code .rejected} if it can't be read.
+ *
+ * Live seat inventory is left alone, for changed trains too: dates already on
+ * sale keep their seat maps, and a changed layout applies to dates opened later.
+ *
+ * The directory comes from the {@code booking.catalog.watchDir} system property (default {@code data}).
+ */
+public class CatalogReloader implements Closeable {
+    private static final Logger log = Log.getLogger(CatalogReloader.class);
+    public static final String WATCH_DIR_PROPERTY = "booking.catalog.watchDir";
+    public static final String DELTA_FILE = "trains-delta.json";
+    public static final String APPLIED_SUFFIX = ".applied";
+    public static final String REJECTED_SUFFIX = ".rejected";
+    private static final long DEBOUNCE_MILLIS = 200;
+    private static final Counter RELOADS = Metrics.counter("catalog.reloads");
+    private static final TypeReference<List<Train>> TRAIN_LIST = new TypeReference<List<Train>>() {};
+
+    private final Path dir;
+    private final TrainCatalog catalog;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Header instances as of the last reload, by train id
+    private Map<String, TrainHeader> known = Collections.emptyMap();
+    private volatile long reloadCount;
+    private WatchService watcher;
+    private Thread thread;
+
+    public CatalogReloader(Path dir, TrainCatalog catalog) {
+        this.dir = dir;
+        this.catalog = catalog;
+    }
+
+    /**
+     * Starts watching the configured directory for the shared catalog
+     */
+    public static CatalogReloader startFromSystemProperties() throws IOException {
+        CatalogReloader reloader = new CatalogReloader(Paths.get(System.getProperty(WATCH_DIR_PROPERTY, "data")),
+                TrainCatalog.getInstance());
+        reloader.start();
+        return reloader;
+    }
+
+    /**
+     * Applies any delta already waiting, then watches for changes on a daemon thread
+     */
+    public synchronized void start() throws IOException {
+        if (watcher != null) {
+            return;
+        }
+        Files.createDirectories(dir);
+        known = byId(catalog.getHeaders());
+        watcher = dir.getFileSystem().newWatchService();
+        dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        if (Files.exists(dir.resolve(DELTA_FILE))) {
+            applyDelta();
+        }
+        thread = new Thread(this::watch, "catalog-reloader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Finds the trains that changed in storage since the last reload and prepares them;
+     * returns the ids of added or changed trains
+     */
+    public synchronized List<String> reload() {
+        long start = System.nanoTime();
+        List<TrainHeader> latest = catalog.getHeaders();
+        Map<String, TrainHeader> current = byId(latest);
+        List<String> changed = new ArrayList<>();
+        for (TrainHeader header : latest) {
+            if (known.get(header.getTrainId()) != header) {
+                // Parse just this train, so the first search after the swap finds it ready
+                catalog.getView(header);
+                FareEngine.getInstance().tableFor(header);
+                changed.add(header.getTrainId());
+            }
+        }
+        int removed = 0;
+        for (String trainId : known.keySet()) {
+            if (!current.containsKey(trainId)) {
+                removed++;
+            }
+        }
+        known = current;
+        if (!changed.isEmpty() || removed > 0) {
+            RELOADS.increment();
+            reloadCount++;
+            log.debug("catalog.reloaded", "changed", changed.size(), "removed", removed,
+                    "millis", (System.nanoTime() - start) / 1_000_000);
+        }
+        return changed;
+    }
+
+    /**
+     * Upserts the trains in the drop-in delta file and reloads them; returns false if there was
+     * no delta or it was rejected
+     */
+    public synchronized boolean applyDelta() {
+        Path delta = dir.resolve(DELTA_FILE);
+        if (!Files.exists(delta)) {
+            return false;
+        }
+        List<Train> trains;
+        try {
+            trains = objectMapper.readValue(delta.toFile(), TRAIN_LIST);
+        } catch (IOException e) {
+            log.warn("catalog.delta.rejected", e, "file", delta);
+            moveAside(delta, REJECTED_SUFFIX);
+            return false;
+        }
+        if (!TrainService.saveTrains(trains)) {
+            // Storage failed; leave the delta in place for the next change to retry
+            log.warn("catalog.delta.failed", "file", delta, "trains", trains.size());
+            return false;
+        }
+        moveAside(delta, APPLIED_SUFFIX);
+        log.info("catalog.delta.applied", "trains", trains.size(), "changed", reload().size());
+        return true;
+    }
+
+    /**
+     * Number of reloads that found changed or removed trains
+     */
+    public long getReloadCount() {
+        return reloadCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        Thread running;
+        synchronized (this) {
+            if (watcher == null) {
+                return;
+            }
+            watcher.close();
+            watcher = null;
+            running = thread;
+        }
+        try {
+            running.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void watch() {
+        WatchService service;
+        synchronized (this) {
+            service = watcher;
+        }
+        while (true) {
+            try {
+                boolean trainsChanged = false;
+                boolean deltaDropped = false;
+                // Wait for a change, then let a burst of writes settle before reading
+                WatchKey key = service.take();
+                while (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        Object name = event.context();
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                                || JsonFileStorageEngine.TRAINS_FILE.equals(String.valueOf(name))) {
+                            trainsChanged = true;
+                        } else if (DELTA_FILE.equals(String.valueOf(name))) {
+                            deltaDropped = true;
+                        }
+                    }
+                    key.reset();
+                    key = service.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                if (deltaDropped) {
+                    applyDelta();
+                } else if (trainsChanged) {
+                    reload();
+                }
+            } catch (ClosedWatchServiceException | InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                log.warn("catalog.reload.failed", e, "dir", dir);
+            }
+        }
+    }
+
+    private void moveAside(Path file, String suffix) {
+        try {
+            Files.move(file, file.resolveSibling(file.getFileName() + suffix), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("catalog.delta.move.failed", e, "file", file);
+        }
+    }
+
+    private static Map<String, TrainHeader> byId(List<TrainHeader> headers) {
+        Map<String, TrainHeader> result = new HashMap<>(headers.size() * 2);
+        for (TrainHeader header : headers) {
+            result.put(header.getTrainId(), header);
+        }
+        return result;
+    }
+}
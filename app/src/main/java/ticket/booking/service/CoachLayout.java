@@ -0,0 +1,50 @@
+package ticket.booking.service;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Which class of travel each coach (seat-map row) of a train belongs to.
+ *
+ * Seat maps carry no class information, so the layout follows the train type:
+ * each type lists its classes from most to least premium, the premium coaches
+ * are placed at the end of the train and every remaining coach is the least
+ * premium class. A four-coach Rajdhani is therefore 3A, 3A, 2A, 1A.
+ */
+public final class CoachLayout {
+    private static final Map<TrainType, TravelClass[]> CLASSES_BY_TYPE = new EnumMap<>(TrainType.class);
+
+    static {
+        CLASSES_BY_TYPE.put(TrainType.RAJDHANI, new TravelClass[]{TravelClass.AC_FIRST, TravelClass.AC_TWO_TIER, TravelClass.AC_THREE_TIER});
+        CLASSES_BY_TYPE.put(TrainType.DURONTO, new TravelClass[]{TravelClass.AC_FIRST, TravelClass.AC_TWO_TIER, TravelClass.AC_THREE_TIER, TravelClass.SLEEPER});
+        CLASSES_BY_TYPE.put(TrainType.VANDE_BHARAT, new TravelClass[]{TravelClass.AC_FIRST, TravelClass.AC_CHAIR_CAR});
+        CLASSES_BY_TYPE.put(TrainType.SHATABDI, new TravelClass[]{TravelClass.AC_FIRST, TravelClass.AC_CHAIR_CAR});
+        CLASSES_BY_TYPE.put(TrainType.SUPERFAST, new TravelClass[]{TravelClass.AC_TWO_TIER, TravelClass.AC_THREE_TIER, TravelClass.SLEEPER});
+        CLASSES_BY_TYPE.put(TrainType.PASSENGER, new TravelClass[]{TravelClass.SECOND_SITTING});
+        CLASSES_BY_TYPE.put(TrainType.EXPRESS, new TravelClass[]{TravelClass.AC_THREE_TIER, TravelClass.SLEEPER});
+    }
+
+    private CoachLayout() {
+    }
+
+    /**
+     * Gets the class of every coach of a train with the given number of coaches
+     */
+    public static TravelClass[] rowClasses(String trainId, int rows) {
+        TravelClass[] classes = CLASSES_BY_TYPE.get(TrainType.of(trainId));
+        TravelClass[] layout = new TravelClass[rows];
+        for (int row = 0; row < rows; row++) {
+            int fromEnd = rows - 1 - row;
+            layout[row] = classes[Math.min(fromEnd, classes.length - 1)];
+        }
+        return layout;
+    }
+
+    /**
+     * Gets the least premium class a train carries, which is what a search without a class is priced in
+     */
+    public static TravelClass cheapestClass(String trainId) {
+        TravelClass[] classes = CLASSES_BY_TYPE.get(TrainType.of(trainId));
+        return classes[classes.length - 1];
+    }
+}
@@ -0,0 +1,44 @@
+package ticket.booking.service;
+
+import ticket.booking.entities.TrainHeader;
+
+import java.time.LocalDate;
+
+/**
+ * Raises fares as a journey's busiest segment fills up, reading the live
+ * {@link OccupancyCounters} rather than the seat map.
+ *
+ * Below half full there is no surcharge; then 10%, 25% and finally 50% of the
+ * base fare once the train is 90% booked.
+ */
+public class DemandSurcharge implements FareSurcharge {
+    private static final double[] LOAD_THRESHOLDS = {0.5, 0.75, 0.9};
+    private static final double[] SURCHARGE_RATES = {0.10, 0.25, 0.50};
+
+    private final OccupancyCounters occupancy;
+
+    public DemandSurcharge(OccupancyCounters occupancy) {
+        this.occupancy = occupancy;
+    }
+
+    @Override
+    public int surcharge(TrainHeader train, int fromStop, int toStop, TravelClass travelClass, LocalDate date, int baseFare) {
+        if (date == null) {
+            return 0;
+        }
+        return (int) Math.round(baseFare * rateFor(occupancy.getLoadFactor(train.getTrainId(), date, fromStop, toStop)));
+    }
+
+    /**
+     * Gets the surcharge rate for a load factor
+     */
+    static double rateFor(double loadFactor) {
+        double rate = 0;
+        for (int i = 0; i < LOAD_THRESHOLDS.length; i++) {
+            if (loadFactor >= LOAD_THRESHOLDS[i]) {
+                rate = SURCHARGE_RATES[i];
+            }
+        }
+        return rate;
+    }
+}
@@ -0,0 +1,80 @@
+package ticket.booking.service;
+
+import ticket.booking.entities.TrainHeader;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Distance-based fares.
+ *
+ * Each train's {@link FareTable} is built once per header and reused, so quoting
+ * any segment is two lookups and a subtraction. The base fare is the chargeable
+ * distance times the sleeper rate, scaled by class and train type; reservation,
+ * train-type and any registered {@link FareSurcharge}s are added on top; the
+ * shared engine always includes the {@link DemandSurcharge}.
+ */
+public class FareEngine {
+    static final double BASE_RATE_PER_KM = 0.45;
+    static final int MIN_CHARGEABLE_KM = 50;
+    private static final FareEngine INSTANCE = new FareEngine();
+
+    static {
+        INSTANCE.addSurcharge(new DemandSurcharge(OccupancyCounters.getInstance()));
+    }
+
+    // Rebuilt when the catalog hands out a new header for the train
+    private final ConcurrentMap<String, FareTable> tables = new ConcurrentHashMap<>();
+    private final List<FareSurcharge> surcharges = new CopyOnWriteArrayList<>();
+
+    /**
+     * Gets the process-wide fare engine
+     */
+    public static FareEngine getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers a dynamic surcharge applied to every later quote
+     */
+    public void addSurcharge(FareSurcharge surcharge) {
+        surcharges.add(surcharge);
+    }
+
+    /**
+     * Gets the precomputed distances for a train
+     */
+    public FareTable tableFor(TrainHeader header) {
+        FareTable table = tables.get(header.getTrainId());
+        if (table == null || table.getHeader() != header) {
+            table = FareTable.of(header);
+            tables.put(header.getTrainId(), table);
+        }
+        return table;
+    }
+
+    /**
+     * Prices a journey; returns null if the train does not run from source to destination
+     */
+    public FareQuote quote(TrainHeader header, String source, String destination, TravelClass travelClass, LocalDate date) {
+        FareTable table = tableFor(header);
+        int fromStop = table.getStopIndex(source);
+        int toStop = table.getStopIndex(destination);
+        double distance = table.getDistanceKm(fromStop, toStop);
+        if (distance < 0) {
+            return null;
+        }
+        int chargeableKm = Math.max(MIN_CHARGEABLE_KM, (int) Math.round(distance));
+        TrainType type = table.getTrainType();
+        int baseFare = (int) Math.round(chargeableKm * BASE_RATE_PER_KM * travelClass.getMultiplier() * type.getMultiplier());
+
+        int surcharge = travelClass.getReservationCharge() + type.getSurcharge();
+        for (FareSurcharge extra : surcharges) {
+            surcharge += extra.surcharge(header, fromStop, toStop, travelClass, date, baseFare);
+        }
+        return new FareQuote(travelClass, (int) Math.round(distance), baseFare, surcharge);
+    }
+}
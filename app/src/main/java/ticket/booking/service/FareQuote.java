@@ -0,0 +1,46 @@
+package ticket.booking.service;
+
+/**
+ * Priced journey for one class of travel. Amounts are whole rupees.
+ */
+public final class FareQuote {
+    private final TravelClass travelClass;
+    private final int distanceKm;
+    private final int baseFare;
+    private final int surcharge;
+
+    public FareQuote(TravelClass travelClass, int distanceKm, int baseFare, int surcharge) {
+        this.travelClass = travelClass;
+        this.distanceKm = distanceKm;
+        this.baseFare = baseFare;
+        this.surcharge = surcharge;
+    }
+
+    public TravelClass getTravelClass() {
+        return travelClass;
+    }
+
+    public int getDistanceKm() {
+        return distanceKm;
+    }
+
+    public int getBaseFare() {
+        return baseFare;
+    }
+
+    /**
+     * Gets reservation, train-type and dynamic surcharges combined
+     */
+    public int getSurcharge() {
+        return surcharge;
+    }
+
+    public int getTotalFare() {
+        return baseFare + surcharge;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %d km: Rs %d", travelClass.getCode(), distanceKm, getTotalFare());
+    }
+}
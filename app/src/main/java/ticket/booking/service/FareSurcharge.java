@@ -0,0 +1,16 @@
+package ticket.booking.service;
+
+import ticket.booking.entities.TrainHeader;
+
+import java.time.LocalDate;
+
+/**
+ * Extra charge applied on top of the distance fare when a quote is made,
+ * e.g. for peak dates or high demand
+ */
+public interface FareSurcharge {
+    /**
+     * Gets the surcharge in rupees for a journey between two stop indexes with the given base fare
+     */
+    int surcharge(TrainHeader train, int fromStop, int toStop, TravelClass travelClass, LocalDate date, int baseFare);
+}
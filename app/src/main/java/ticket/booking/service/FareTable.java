@@ -0,0 +1,105 @@
+package ticket.booking.service;
+
+import ticket.booking.entities.TrainHeader;
+import ticket.booking.util.CityDatabase;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Precomputed route distances for one train.
+ *
+ * Holds the cumulative distance from the origin to every stop, so the distance
+ * of any segment is a subtraction of two prefix sums. Hops are great-circle
+ * distances between the stations' coordinates scaled by {@link #ROUTE_FACTOR},
+ * since track is never a straight line; a hop touching a station that is not in
+ * {@link CityDatabase} counts as {@link #UNKNOWN_HOP_KM}.
+ */
+public final class FareTable {
+    static final double ROUTE_FACTOR = 1.2;
+    static final double UNKNOWN_HOP_KM = 100.0;
+    private static final double EARTH_RADIUS_KM = 6371.0;
+
+    private final TrainHeader header;
+    private final TrainType trainType;
+    private final Map<String, Integer> stopIndex;
+    private final double[] cumulativeKm;
+
+    private FareTable(TrainHeader header, Map<String, Integer> stopIndex, double[] cumulativeKm) {
+        this.header = header;
+        this.trainType = TrainType.of(header.getTrainId());
+        this.stopIndex = stopIndex;
+        this.cumulativeKm = cumulativeKm;
+    }
+
+    /**
+     * Builds the prefix sums over a train's stops
+     */
+    public static FareTable of(TrainHeader header) {
+        List<String> stations = header.getStations();
+        Map<String, Integer> stopIndex = new HashMap<>();
+        double[] cumulativeKm = new double[stations.size()];
+        CityDatabase.CityInfo previous = null;
+        for (int i = 0; i < stations.size(); i++) {
+            CityDatabase.CityInfo city = CityDatabase.getCityById(stations.get(i));
+            if (i > 0) {
+                double hop = previous != null && city != null ? ROUTE_FACTOR * haversineKm(previous, city) : UNKNOWN_HOP_KM;
+                cumulativeKm[i] = cumulativeKm[i - 1] + hop;
+            }
+            // First occurrence wins for routes that pass a station twice
+            stopIndex.putIfAbsent(stations.get(i).toLowerCase(), i);
+            previous = city;
+        }
+        return new FareTable(header, stopIndex, cumulativeKm);
+    }
+
+    /**
+     * Gets the distance from source to destination along the route, or -1 if the train doesn't run that way
+     */
+    public double getDistanceKm(String source, String destination) {
+        return getDistanceKm(getStopIndex(source), getStopIndex(destination));
+    }
+
+    /**
+     * Gets the distance between two stop indexes, or -1 if they are not in travel order
+     */
+    public double getDistanceKm(int fromStop, int toStop) {
+        if (fromStop < 0 || toStop < 0 || fromStop >= toStop) {
+            return -1;
+        }
+        return cumulativeKm[toStop] - cumulativeKm[fromStop];
+    }
+
+    /**
+     * Gets the position of a station on the route, or -1 if the train doesn't stop there
+     */
+    public int getStopIndex(String station) {
+        Integer index = stopIndex.get(station.toLowerCase());
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Gets the total length of the route
+     */
+    public double getRouteKm() {
+        return cumulativeKm.length == 0 ? 0 : cumulativeKm[cumulativeKm.length - 1];
+    }
+
+    public TrainHeader getHeader() {
+        return header;
+    }
+
+    public TrainType getTrainType() {
+        return trainType;
+    }
+
+    static double haversineKm(CityDatabase.CityInfo a, CityDatabase.CityInfo b) {
+        double dLat = Math.toRadians(b.getLatitude() - a.getLatitude());
+        double dLon = Math.toRadians(b.getLongitude() - a.getLongitude());
+        double h = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(a.getLatitude())) * Math.cos(Math.toRadians(b.getLatitude()))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.sqrt(h));
+    }
+}
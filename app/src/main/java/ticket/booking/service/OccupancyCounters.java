@@ -0,0 +1,172 @@
+package ticket.booking.service;
+
+import java.time.LocalDate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Live booked-seat counts per train, service date, class of travel and route segment.
+ *
+ * Segment {@code i} is the hop from stop {@code i} to stop {@code i + 1}. The
+ * counts are adjusted by {@link SeatInventory} under the same lock that
+ * publishes the seat change, so pricing and availability views can read them
+ * without ever looking at a seat map. Reads are lock-free.
+ */
+public class OccupancyCounters {
+    private static final OccupancyCounters INSTANCE = new OccupancyCounters();
+    private static final int CLASS_COUNT = TravelClass.values().length;
+
+    private final ConcurrentMap<String, SegmentCounts> counts = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the process-wide counters
+     */
+    public static OccupancyCounters getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Sets a train's counts for a date when its seat partition is loaded; returns false and keeps
+     * the counts if the date already has some, since bookings may have moved them since.
+     * {@link #remove} them first to start over. Both arrays are indexed by {@link TravelClass} ordinal.
+     */
+    public boolean seed(String trainId, LocalDate date, int stops, int[] capacityByClass, int[] bookedByClass) {
+        SegmentCounts segments = new SegmentCounts(capacityByClass.clone(), Math.max(1, stops - 1));
+        for (int c = 0; c < CLASS_COUNT; c++) {
+            for (int i = 0; i < segments.segments; i++) {
+                segments.booked.set(c * segments.segments + i, bookedByClass[c]);
+            }
+        }
+        return counts.putIfAbsent(key(trainId, date), segments) == null;
+    }
+
+    /**
+     * Adjusts the booked count of a class on segments {@code fromStop} up to {@code toStop} by {@code seats}
+     */
+    public void add(String trainId, LocalDate date, TravelClass travelClass, int fromStop, int toStop, int seats) {
+        SegmentCounts segments = counts.get(key(trainId, date));
+        if (segments == null) {
+            return;
+        }
+        int base = travelClass.ordinal() * segments.segments;
+        int last = Math.min(toStop, segments.segments);
+        for (int i = Math.max(0, fromStop); i < last; i++) {
+            segments.booked.addAndGet(base + i, seats);
+        }
+    }
+
+    /**
+     * Adjusts the booked count of a class on every segment of the route
+     */
+    public void addWholeRoute(String trainId, LocalDate date, TravelClass travelClass, int seats) {
+        add(trainId, date, travelClass, 0, Integer.MAX_VALUE, seats);
+    }
+
+    /**
+     * Gets the seats of a class booked on one segment, or 0 if the date has not been loaded
+     */
+    public int getBooked(String trainId, LocalDate date, TravelClass travelClass, int segment) {
+        SegmentCounts segments = counts.get(key(trainId, date));
+        if (segments == null || segment < 0 || segment >= segments.segments) {
+            return 0;
+        }
+        return segments.booked.get(travelClass.ordinal() * segments.segments + segment);
+    }
+
+    /**
+     * Gets the load factor of a class between two stops: booked seats on the busiest
+     * segment over the class's capacity, or 0 if the date has not been loaded
+     */
+    public double getLoadFactor(String trainId, LocalDate date, TravelClass travelClass, int fromStop, int toStop) {
+        SegmentCounts segments = counts.get(key(trainId, date));
+        if (segments == null || segments.capacity[travelClass.ordinal()] == 0) {
+            return 0;
+        }
+        return (double) busiest(segments, travelClass.ordinal(), fromStop, toStop) / segments.capacity[travelClass.ordinal()];
+    }
+
+    /**
+     * Gets the load factor of the whole train between two stops
+     */
+    public double getLoadFactor(String trainId, LocalDate date, int fromStop, int toStop) {
+        SegmentCounts segments = counts.get(key(trainId, date));
+        if (segments == null) {
+            return 0;
+        }
+        int capacity = 0;
+        int busiest = 0;
+        int last = Math.min(toStop, segments.segments);
+        for (int i = Math.max(0, fromStop); i < last; i++) {
+            int booked = 0;
+            for (int c = 0; c < CLASS_COUNT; c++) {
+                booked += segments.booked.get(c * segments.segments + i);
+            }
+            busiest = Math.max(busiest, booked);
+        }
+        for (int c = 0; c < CLASS_COUNT; c++) {
+            capacity += segments.capacity[c];
+        }
+        return capacity == 0 ? 0 : (double) busiest / capacity;
+    }
+
+    /**
+     * Gets the availability projection of a train on a date, or null if the date has not been loaded
+     */
+    public AvailabilitySummary summarize(String trainId, LocalDate date) {
+        SegmentCounts segments = counts.get(key(trainId, date));
+        if (segments == null) {
+            return null;
+        }
+        int[][] free = new int[CLASS_COUNT][segments.segments];
+        for (int c = 0; c < CLASS_COUNT; c++) {
+            for (int i = 0; i < segments.segments; i++) {
+                free[c][i] = segments.capacity[c] - segments.booked.get(c * segments.segments + i);
+            }
+        }
+        return new AvailabilitySummary(trainId, date, segments.capacity.clone(), free);
+    }
+
+    /**
+     * Checks whether a train's counts for a date are being maintained
+     */
+    public boolean isTracked(String trainId, LocalDate date) {
+        return counts.containsKey(key(trainId, date));
+    }
+
+    /**
+     * Forgets the counts of a train on a date
+     */
+    public void remove(String trainId, LocalDate date) {
+        counts.remove(key(trainId, date));
+    }
+
+    private static int busiest(SegmentCounts segments, int classIndex, int fromStop, int toStop) {
+        int busiest = 0;
+        int base = classIndex * segments.segments;
+        int last = Math.min(toStop, segments.segments);
+        for (int i = Math.max(0, fromStop); i < last; i++) {
+            busiest = Math.max(busiest, segments.booked.get(base + i));
+        }
+        return busiest;
+    }
+
+    private static String key(String trainId, LocalDate date) {
+        return trainId + '|' + date;
+    }
+
+    /**
+     * Capacity per class and booked seats per class and segment, flattened as [class * segments + segment]
+     */
+    private static final class SegmentCounts {
+        private final int[] capacity;
+        private final int segments;
+        private final AtomicIntegerArray booked;
+
+        private SegmentCounts(int[] capacity, int segments) {
+            this.capacity = capacity;
+            this.segments = segments;
+            this.booked = new AtomicIntegerArray(CLASS_COUNT * segments);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package ticket.booking.service;
+
+/**
+ * Immutable totals for one statistics key (a train, route, region or service day):
+ * seats booked, seats offered and the revenue of the booked seats at published fares
+ */
+public final class OccupancyStats {
+    private final String key;
+    private final long bookedSeats;
+    private final long capacity;
+    private final long revenue;
+
+    public OccupancyStats(String key, long bookedSeats, long capacity, long revenue) {
+        this.key = key;
+        this.bookedSeats = bookedSeats;
+        this.capacity = capacity;
+        this.revenue = revenue;
+    }
+
+    /**
+     * Gets empty totals for a key nothing has been sold under
+     */
+    public static OccupancyStats empty(String key) {
+        return new OccupancyStats(key, 0, 0, 0);
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getBookedSeats() {
+        return bookedSeats;
+    }
+
+    /**
+     * Seats offered over every service date counted so far
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Revenue of the booked seats in rupees, excluding demand surcharges
+     */
+    public long getRevenue() {
+        return revenue;
+    }
+
+    /**
+     * Booked seats over capacity, or 0 when nothing is offered
+     */
+    public double getOccupancy() {
+        return capacity == 0 ? 0 : (double) bookedSeats / capacity;
+    }
+
+    /**
+     * Returns these totals adjusted by a change
+     */
+    OccupancyStats plus(long bookedDelta, long capacityDelta, long revenueDelta) {
+        return new OccupancyStats(key, bookedSeats + bookedDelta, capacity + capacityDelta, revenue + revenueDelta);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d/%d seats (%.1f%%), Rs %d", key, bookedSeats, capacity, getOccupancy() * 100, revenue);
+    }
+}
@@ -0,0 +1,44 @@
+package ticket.booking.service;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Seat state for very large fleets, held outside the Java heap.
+ *
+ * Every (train, service date) partition is one bit per seat plus a header word
+ * counting booked seats, laid out as described in {@link BitmapSeatStore}.
+ * Partitions and the per-train date directories live in direct
+ * {@link ByteBuffer} slabs, so the heap holds only one small entry per train,
+ * however many dates and seats are on sale.
+ *
+ * Each train's directory is a ring with one entry per service day
+ * ({@code serviceDays}, e.g. the 120-day booking horizon plus slack). Memory
+ * from {@link #evictBefore} is reused for new partitions once the bookings
+ * that might still see it have finished.
+ */
+public class OffHeapSeatStore extends BitmapSeatStore {
+    public static final int DEFAULT_CHUNK_BYTES = 64 << 20;
+
+    private static final int HEADER_WORDS = 1;
+
+    public OffHeapSeatStore() {
+        this(DEFAULT_SERVICE_DAYS, DEFAULT_CHUNK_BYTES);
+    }
+
+    public OffHeapSeatStore(int serviceDays, int chunkBytes) {
+        super(serviceDays, chunkBytes, HEADER_WORDS);
+    }
+
+    @Override
+    TrainEntry createEntry(String trainId, int[] seatsPerCoach, TrainEntry replaced) {
+        // A new layout keeps the old directory, whose slots were cleared when its partitions were dropped
+        long directory = replaced != null ? replaced.directory : allocate((long) serviceDays * Long.BYTES);
+        return new TrainEntry(trains.size(), seatsPerCoach, directory, HEADER_WORDS);
+    }
+
+    @Override
+    ByteBuffer newChunk(int index) {
+        // Direct buffers start zeroed; the aligned slice keeps every word atomic
+        return ByteBuffer.allocateDirect(chunkBytes + Long.BYTES).alignedSlice(Long.BYTES);
+    }
+}
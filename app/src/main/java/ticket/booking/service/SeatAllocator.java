@@ -0,0 +1,97 @@
+package ticket.booking.service;
+
+import ticket.booking.entities.SeatPosition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Server-side best-available seat allocation.
+ *
+ * Coaches (rows) are first screened with the snapshot's per-row free-run
+ * summaries, so full or fragmented coaches are skipped without scanning their
+ * seats. Among coaches that can seat the whole group together, the allocator
+ * prefers blocks matching the seat preference, then the emptiest coach to
+ * balance load, then the tightest free run to keep large blocks for large groups.
+ */
+public class SeatAllocator {
+
+    /**
+     * Picks {@code count} adjacent seats in one coach, or returns null if no coach fits the group
+     */
+    public List<SeatPosition> allocate(SeatMapSnapshot seats, int count, SeatPreference preference) {
+        if (count <= 0) {
+            return null;
+        }
+
+        int bestRow = -1;
+        int bestStart = -1;
+        int bestMatches = -1;
+        int bestFree = -1;
+        int bestRunLength = Integer.MAX_VALUE;
+
+        for (int i = 0; i < seats.getRowCount(); i++) {
+            // Summary check: skip coaches that cannot hold the group
+            if (seats.getLongestFreeRun(i) < count) {
+                continue;
+            }
+            int free = seats.getAvailableSeats(i);
+            int seatsInRow = seats.getSeatCount(i);
+            int runStart = 0;
+
+            for (int j = 0; j <= seatsInRow; j++) {
+                if (j < seatsInRow && seats.isAvailable(i, j)) {
+                    continue;
+                }
+                int runLength = j - runStart;
+                if (runLength >= count) {
+                    // Slide the group window across the run and keep the best placement
+                    for (int start = runStart; start + count <= j; start++) {
+                        int matches = countMatches(preference, start, count, seatsInRow);
+                        if (isBetter(matches, free, runLength, bestMatches, bestFree, bestRunLength)) {
+                            bestRow = i;
+                            bestStart = start;
+                            bestMatches = matches;
+                            bestFree = free;
+                            bestRunLength = runLength;
+                        }
+                    }
+                }
+                runStart = j + 1;
+            }
+        }
+
+        if (bestRow < 0) {
+            return null;
+        }
+        List<SeatPosition> allocated = new ArrayList<>(count);
+        for (int j = 0; j < count; j++) {
+            allocated.add(new SeatPosition(bestRow, bestStart + j));
+        }
+        return allocated;
+    }
+
+    private static int countMatches(SeatPreference preference, int start, int count, int seatsInRow) {
+        if (preference == SeatPreference.ANY) {
+            return 0;
+        }
+        int matches = 0;
+        for (int col = start; col < start + count; col++) {
+            if (preference.matches(col, seatsInRow)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    private static boolean isBetter(int matches, int free, int runLength,
+                                    int bestMatches, int bestFree, int bestRunLength) {
+        if (matches != bestMatches) {
+            return matches > bestMatches;
+        }
+        if (free != bestFree) {
+            return free > bestFree;
+        }
+        return runLength < bestRunLength;
+    }
+}
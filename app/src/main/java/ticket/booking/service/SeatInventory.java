@@ -0,0 +1,569 @@
+package ticket.booking.service;
+
+import ticket.booking.entities.SeatPosition;
+import ticket.booking.entities.Train;
+import ticket.booking.entities.TrainHeader;
+import ticket.booking.events.BookingEvent;
+import ticket.booking.events.EventBus;
+import ticket.booking.logging.Log;
+import ticket.booking.logging.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Live seat state for every train and service date, shared by all booking sessions.
+ *
+ * Inventory is partitioned by service date. A date's partition is created the
+ * first time it is touched, from the seats already sold for that date or else
+ * from the train's template layout ({@code Train.seats}), so memory follows the
+ * dates actually being sold. Past dates are dropped with {@link #evictBefore};
+ * after that, writes to dates before the cutoff are refused rather than reseeding
+ * them, and a writer that raced the eviction re-checks its partition under the lock.
+ *
+ * Each partition gets its own lock stripe, so writers on different trains or
+ * dates never contend. Readers never lock: they read the latest published
+ * {@link SeatMapSnapshot}, which stays consistent for as long as they hold it.
+ * Every published change also adjusts the {@link OccupancyCounters} under the
+ * same lock, against the class its coach has in the {@link CoachLayout}. Seats
+ * are sold for the whole route, so each change counts on every segment.
+ * When an {@link EventBus} is attached, each change is also published there
+ * before the lock is released, so subscribers see a train's changes in order;
+ * each sale carries the whole-route fare {@link FareEngine} quoted for its seats
+ * at the load they were sold at.
+ *
+ * A {@link BitmapSeatStore} can back the seat maps, chosen at startup with the
+ * {@code booking.seats.store} system property: {@code heap} (default, none),
+ * {@code offheap} ({@link OffHeapSeatStore}) or {@code ledger}
+ * ({@link SeatLedger} in {@code booking.seats.ledger}, default
+ * {@code data/seats.ledger}). Every change is written through to the store
+ * under the partition lock, and a date is seeded from the store when it holds
+ * the date, so after a restart the ledger's seats are served without replaying
+ * {@code dated_seats}.
+ */
+public class SeatInventory {
+    private static final Logger log = Log.getLogger(SeatInventory.class);
+    public static final String STORE_PROPERTY = "booking.seats.store";
+    public static final String LEDGER_PROPERTY = "booking.seats.ledger";
+    private static final SeatInventory INSTANCE = new SeatInventory(OccupancyCounters.getInstance(), EventBus.getInstance());
+
+    private final ConcurrentMap<String, ConcurrentNavigableMap<LocalDate, TrainSeats>> trains = new ConcurrentHashMap<>();
+    private final SeatAllocator allocator = new SeatAllocator();
+    private final OccupancyCounters occupancy;
+    private final EventBus events;
+    private final FareEngine fares = FareEngine.getInstance();
+    private volatile LocalDate evictedBefore = LocalDate.MIN;
+    private volatile BitmapSeatStore store;
+
+    public SeatInventory() {
+        this(new OccupancyCounters());
+    }
+
+    public SeatInventory(OccupancyCounters occupancy) {
+        this(occupancy, null);
+    }
+
+    public SeatInventory(OccupancyCounters occupancy, EventBus events) {
+        this.occupancy = occupancy;
+        this.events = events;
+    }
+
+    /**
+     * Gets the process-wide inventory
+     */
+    public static SeatInventory getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Attaches the seat store selected by system properties to the shared inventory,
+     * closing it when the JVM exits
+     */
+    public static SeatInventory startFromSystemProperties() throws IOException {
+        String name = System.getProperty(STORE_PROPERTY, "heap");
+        BitmapSeatStore store;
+        switch (name.toLowerCase()) {
+            case "heap":
+                return INSTANCE;
+            case "offheap":
+                store = new OffHeapSeatStore();
+                break;
+            case "ledger":
+                Path file = Paths.get(System.getProperty(LEDGER_PROPERTY, "data/seats.ledger"));
+                if (file.getParent() != null) {
+                    Files.createDirectories(file.getParent());
+                }
+                store = SeatLedger.open(file);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown seat store: " + name);
+        }
+        INSTANCE.attach(store);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                store.close();
+            } catch (IOException e) {
+                log.warn("inventory.storeCloseFailed", e);
+            }
+        }, "seat-store-shutdown"));
+        return INSTANCE;
+    }
+
+    /**
+     * Backs the seat maps with a store; only allowed before any date has been touched
+     */
+    public synchronized void attach(BitmapSeatStore store) {
+        if (this.store != null || !trains.isEmpty()) {
+            throw new IllegalStateException("A seat store must be attached before the inventory is used");
+        }
+        this.store = store;
+    }
+
+    public BitmapSeatStore getStore() {
+        return store;
+    }
+
+    /**
+     * Gets today's seat map for a train
+     */
+    public SeatMapSnapshot snapshot(Train train) {
+        return snapshot(train, LocalDate.now());
+    }
+
+    /**
+     * Gets the seat map for a train on a service date, creating the partition on first use
+     */
+    public SeatMapSnapshot snapshot(Train train, LocalDate date) {
+        TrainSeats state = stateFor(train, date);
+        if (state == null) {
+            // Evicted dates are only read back, never reseeded
+            List<List<Integer>> sold = train.getDatedSeats().get(date.toString());
+            return SeatMapSnapshot.of(train.getTrainId(), sold != null ? sold : train.getSeats());
+        }
+        return state.current;
+    }
+
+    /**
+     * Gets the seat maps of every service date currently held for a train, oldest first
+     */
+    public Map<LocalDate, SeatMapSnapshot> snapshots(String trainId) {
+        Map<LocalDate, SeatMapSnapshot> result = new LinkedHashMap<>();
+        ConcurrentNavigableMap<LocalDate, TrainSeats> dates = trains.get(trainId);
+        if (dates != null) {
+            for (Map.Entry<LocalDate, TrainSeats> date : dates.entrySet()) {
+                result.put(date.getKey(), date.getValue().current);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Atomically books a seat for today; returns false if it is invalid or already taken
+     */
+    public boolean tryBook(Train train, int row, int col) {
+        return tryBook(train, LocalDate.now(), row, col);
+    }
+
+    /**
+     * Atomically books a seat on a service date; returns false if it is invalid or already taken
+     */
+    public boolean tryBook(Train train, LocalDate date, int row, int col) {
+        return update(train, date, row, col, SeatMapSnapshot.AVAILABLE, SeatMapSnapshot.BOOKED);
+    }
+
+    /**
+     * Atomically releases today's booked seat; returns false if it was not booked
+     */
+    public boolean release(Train train, int row, int col) {
+        return release(train, LocalDate.now(), row, col);
+    }
+
+    /**
+     * Atomically releases a booked seat on a service date; returns false if it was not booked
+     */
+    public boolean release(Train train, LocalDate date, int row, int col) {
+        return update(train, date, row, col, SeatMapSnapshot.BOOKED, SeatMapSnapshot.AVAILABLE);
+    }
+
+    /**
+     * Atomically books every listed seat for today, or none of them
+     */
+    public boolean tryBookAll(Train train, List<SeatPosition> seats) {
+        return tryBookAll(train, LocalDate.now(), seats);
+    }
+
+    /**
+     * Atomically books every listed seat on a service date, or none of them if any is invalid, taken or repeated
+     */
+    public boolean tryBookAll(Train train, LocalDate date, List<SeatPosition> seats) {
+        if (seats.isEmpty()) {
+            return false;
+        }
+        TrainSeats state = lock(train, date);
+        if (state == null) {
+            return false;
+        }
+        try {
+            SeatMapSnapshot current = state.current;
+            Set<SeatPosition> unique = new HashSet<>(seats);
+            if (unique.size() != seats.size()) {
+                return false;
+            }
+            for (SeatPosition seat : seats) {
+                if (!current.isAvailable(seat.getRow(), seat.getCol())) {
+                    return false;
+                }
+            }
+            if (!writeThrough(train, date, seats, true)) {
+                return false;
+            }
+            int[] charged = price(date, state, seats);
+            state.current = current.withSeats(seats, SeatMapSnapshot.BOOKED);
+            count(train, date, state, seats, 1);
+            publish(BookingEvent.seatsBooked(train.getTrainId(), date, seats, charged));
+            return true;
+        } finally {
+            state.lock.unlock();
+        }
+    }
+
+    /**
+     * Atomically books the best block of {@code count} adjacent seats in one coach for today.
+     * Returns the booked seats, or an empty list if no coach has such a block.
+     */
+    public List<SeatPosition> bookAdjacent(Train train, int count) {
+        return bookBestAvailable(train, LocalDate.now(), count, SeatPreference.ANY);
+    }
+
+    /**
+     * Atomically allocates and books {@code count} adjacent seats in one coach on a service date,
+     * honouring the seat preference where possible. Returns an empty list if the group doesn't fit.
+     */
+    public List<SeatPosition> bookBestAvailable(Train train, LocalDate date, int count, SeatPreference preference) {
+        TrainSeats state = lock(train, date);
+        if (state == null) {
+            return Collections.emptyList();
+        }
+        try {
+            SeatMapSnapshot current = state.current;
+            List<SeatPosition> seats = allocator.allocate(current, count, preference);
+            if (seats == null || !writeThrough(train, date, seats, true)) {
+                return Collections.emptyList();
+            }
+            int[] charged = price(date, state, seats);
+            state.current = current.withSeats(seats, SeatMapSnapshot.BOOKED);
+            count(train, date, state, seats, 1);
+            publish(BookingEvent.seatsBooked(train.getTrainId(), date, seats, charged));
+            return seats;
+        } finally {
+            state.lock.unlock();
+        }
+    }
+
+    /**
+     * Drops every partition of a train so the next access reseeds it
+     */
+    public void evict(String trainId) {
+        ConcurrentNavigableMap<LocalDate, TrainSeats> dates = trains.get(trainId);
+        if (dates == null) {
+            return;
+        }
+        // Counts go before the map does, so a reseed never finds the old ones
+        synchronized (dates) {
+            for (Map.Entry<LocalDate, TrainSeats> date : dates.entrySet()) {
+                retire(date.getValue());
+                occupancy.remove(trainId, date.getKey());
+            }
+            trains.remove(trainId, dates);
+        }
+    }
+
+    /**
+     * Drops all partitions for service dates before the cutoff and returns their final seat maps, per train
+     */
+    public Map<String, Map<LocalDate, SeatMapSnapshot>> evictBefore(LocalDate cutoff) {
+        if (cutoff.isAfter(evictedBefore)) {
+            // Raised first, so no writer reseeds a date while it is being dropped
+            evictedBefore = cutoff;
+        }
+        Map<String, Map<LocalDate, SeatMapSnapshot>> evicted = new LinkedHashMap<>();
+        for (Map.Entry<String, ConcurrentNavigableMap<LocalDate, TrainSeats>> train : trains.entrySet()) {
+            Map<LocalDate, SeatMapSnapshot> dates = new LinkedHashMap<>();
+            for (LocalDate date : train.getValue().headMap(cutoff).keySet()) {
+                TrainSeats state = train.getValue().remove(date);
+                occupancy.remove(train.getKey(), date);
+                if (state != null) {
+                    // Wait out any writer still holding the stripe so the archived map is final
+                    state.lock.lock();
+                    try {
+                        state.retired = true;
+                        dates.put(date, state.current);
+                    } finally {
+                        state.lock.unlock();
+                    }
+                }
+            }
+            if (!dates.isEmpty()) {
+                evicted.put(train.getKey(), dates);
+            }
+        }
+        BitmapSeatStore store = this.store;
+        if (store != null) {
+            store.evictBefore(cutoff);
+        }
+        return evicted;
+    }
+
+    private boolean update(Train train, LocalDate date, int row, int col, int expected, int value) {
+        TrainSeats state = lock(train, date);
+        if (state == null) {
+            return false;
+        }
+        try {
+            SeatMapSnapshot current = state.current;
+            if (!current.isValidSeat(row, col) || current.getSeat(row, col) != expected) {
+                return false;
+            }
+            List<SeatPosition> seat = Collections.singletonList(new SeatPosition(row, col));
+            if (!writeThrough(train, date, seat, value == SeatMapSnapshot.BOOKED)) {
+                return false;
+            }
+            int[] charged = value == SeatMapSnapshot.BOOKED ? price(date, state, seat) : null;
+            state.current = current.withSeat(row, col, value);
+            occupancy.addWholeRoute(train.getTrainId(), date, state.rowClasses[row], value == SeatMapSnapshot.BOOKED ? 1 : -1);
+            publish(value == SeatMapSnapshot.BOOKED
+                    ? BookingEvent.seatsBooked(train.getTrainId(), date, seat, charged)
+                    : BookingEvent.seatsReleased(train.getTrainId(), date, seat));
+            return true;
+        } finally {
+            state.lock.unlock();
+        }
+    }
+
+    /**
+     * Locks the live partition for a date, or returns null if the date has been evicted.
+     * The partition is checked again once locked, since eviction may have dropped it in between.
+     */
+    private TrainSeats lock(Train train, LocalDate date) {
+        while (true) {
+            TrainSeats state = stateFor(train, date);
+            if (state == null) {
+                return null;
+            }
+            state.lock.lock();
+            if (!state.retired && !date.isBefore(evictedBefore)) {
+                return state;
+            }
+            state.lock.unlock();
+            if (date.isBefore(evictedBefore)) {
+                return null;
+            }
+        }
+    }
+
+    private void retire(TrainSeats state) {
+        state.lock.lock();
+        try {
+            state.retired = true;
+        } finally {
+            state.lock.unlock();
+        }
+    }
+
+    /**
+     * Gets a date's partition, seeding it on first use; null for dates before the eviction cutoff.
+     * First loads of a train's dates run one at a time under its date map, so a date is seeded,
+     * counted and loaded from the store exactly once.
+     */
+    private TrainSeats stateFor(Train train, LocalDate date) {
+        while (true) {
+            ConcurrentNavigableMap<LocalDate, TrainSeats> dates = trains.get(train.getTrainId());
+            if (dates == null) {
+                dates = trains.computeIfAbsent(train.getTrainId(), id -> new ConcurrentSkipListMap<>());
+            }
+            TrainSeats state = dates.get(date);
+            if (state != null) {
+                return state;
+            }
+            if (date.isBefore(evictedBefore)) {
+                return null;
+            }
+            ConcurrentNavigableMap<LocalDate, TrainSeats> live = dates;
+            synchronized (live) {
+                // The train may have been evicted while this thread waited
+                if (trains.get(train.getTrainId()) == live) {
+                    return live.computeIfAbsent(date, serviceDate -> seed(train, serviceDate, live));
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds a date's partition and seeds its counters; runs under the train's date map
+     */
+    private TrainSeats seed(Train train, LocalDate date, ConcurrentNavigableMap<LocalDate, TrainSeats> dates) {
+        // Seats already sold for this date, else a fresh copy of the template layout
+        List<List<Integer>> sold = train.getDatedSeats().get(date.toString());
+        SeatMapSnapshot initial = SeatMapSnapshot.of(train.getTrainId(), sold != null ? sold : train.getSeats());
+        BitmapSeatStore store = this.store;
+        if (store != null) {
+            int[] layout = BitmapSeatStore.coachLayout(train);
+            if (layout.length > 0 && !Arrays.equals(layout, store.getCoachLayout(train.getTrainId()))) {
+                relayout(store, train.getTrainId(), layout, dates);
+            }
+            if (store.getCoachLayout(train.getTrainId()) != null) {
+                // The store has every change written through, so it wins over dated_seats unless the layout changed
+                initial = store.load(train.getTrainId(), date, initial);
+            }
+        }
+        TravelClass[] rowClasses = CoachLayout.rowClasses(train.getTrainId(), initial.getRowCount());
+        int[] capacity = new int[TravelClass.values().length];
+        int[] booked = new int[capacity.length];
+        for (int row = 0; row < initial.getRowCount(); row++) {
+            capacity[rowClasses[row].ordinal()] += initial.getSeatCount(row);
+            booked[rowClasses[row].ordinal()] += initial.getSeatCount(row) - initial.getAvailableSeats(row);
+        }
+        int stops = train.getStations() == null ? 0 : train.getStations().size();
+        occupancy.seed(train.getTrainId(), date, stops, capacity, booked);
+        // Dates of a train share one header, so the fare engine keeps a single table for it
+        TrainHeader header = TrainHeader.of(train);
+        Map.Entry<LocalDate, TrainSeats> other = dates.firstEntry();
+        if (other != null && Objects.equals(other.getValue().header.getStations(), header.getStations())) {
+            header = other.getValue().header;
+        }
+        return new TrainSeats(initial, rowClasses, header);
+    }
+
+    /**
+     * Gives the store a train's new layout and writes every live date of the train back into it,
+     * since the store drops the partitions of the old layout. Runs under the train's date map,
+     * with every live partition locked so no write lands in between.
+     */
+    private void relayout(BitmapSeatStore store, String trainId, int[] layout,
+                          ConcurrentNavigableMap<LocalDate, TrainSeats> dates) {
+        List<TrainSeats> live = new ArrayList<>(dates.values());
+        for (TrainSeats state : live) {
+            state.lock.lock();
+        }
+        try {
+            if (store.relayout(trainId, layout)) {
+                return;
+            }
+            int reseeded = 0;
+            for (Map.Entry<LocalDate, TrainSeats> date : dates.entrySet()) {
+                if (!date.getValue().retired) {
+                    // Dates on sale keep their seat maps; the store mirrors the seats both layouts have
+                    store.load(trainId, date.getKey(), date.getValue().current);
+                    reseeded++;
+                }
+            }
+            log.info("inventory.relayout", "train", trainId, "coaches", layout.length, "liveDates", reseeded);
+        } finally {
+            for (TrainSeats state : live) {
+                state.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Applies a change to the attached store; false if the store disagrees with the published seat map.
+     * Seats the store's layout doesn't have, on dates opened before a layout change, stay on the heap only.
+     */
+    private boolean writeThrough(Train train, LocalDate date, List<SeatPosition> seats, boolean booked) {
+        BitmapSeatStore store = this.store;
+        if (store == null) {
+            return true;
+        }
+        List<SeatPosition> backed = new ArrayList<>(seats.size());
+        for (SeatPosition seat : seats) {
+            if (store.hasSeat(train.getTrainId(), seat.getRow(), seat.getCol())) {
+                backed.add(seat);
+            }
+        }
+        if (backed.isEmpty()) {
+            return true;
+        }
+        seats = backed;
+        boolean applied;
+        if (booked) {
+            applied = store.tryBookAll(train.getTrainId(), date, seats);
+        } else {
+            applied = true;
+            for (SeatPosition seat : seats) {
+                applied &= store.release(train.getTrainId(), date, seat.getRow(), seat.getCol());
+            }
+        }
+        if (!applied) {
+            log.warn("inventory.storeMismatch", "train", train.getTrainId(), "date", date, "seats", seats.size());
+        }
+        return applied;
+    }
+
+    private void publish(BookingEvent event) {
+        if (events != null) {
+            events.publish(event);
+        }
+    }
+
+    /**
+     * Quotes the whole-route fare of each seat about to be sold, before the sale counts towards
+     * the load; null when no bus is attached to hear about it
+     */
+    private int[] price(LocalDate date, TrainSeats state, List<SeatPosition> seats) {
+        List<String> stations = state.header.getStations();
+        if (events == null || stations == null || stations.isEmpty()) {
+            return null;
+        }
+        int[] charged = new int[seats.size()];
+        for (int i = 0; i < charged.length; i++) {
+            FareQuote quote = fares.quote(state.header, stations.get(0), stations.get(stations.size() - 1),
+                    state.rowClasses[seats.get(i).getRow()], date);
+            charged[i] = quote == null ? 0 : quote.getTotalFare();
+        }
+        return charged;
+    }
+
+    /**
+     * Counts newly booked seats against their coach's class
+     */
+    private void count(Train train, LocalDate date, TrainSeats state, List<SeatPosition> seats, int delta) {
+        for (SeatPosition seat : seats) {
+            occupancy.addWholeRoute(train.getTrainId(), date, state.rowClasses[seat.getRow()], delta);
+        }
+    }
+
+    /**
+     * Lock stripe and published snapshot for one train on one service date
+     */
+    private static final class TrainSeats {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final TravelClass[] rowClasses;
+        private final TrainHeader header;
+        private volatile SeatMapSnapshot current;
+        /** Set under the lock once the partition has been dropped; writers must look it up again */
+        private boolean retired;
+
+        private TrainSeats(SeatMapSnapshot initial, TravelClass[] rowClasses, TrainHeader header) {
+            this.current = initial;
+            this.rowClasses = rowClasses;
+            this.header = header;
+        }
+    }
+}
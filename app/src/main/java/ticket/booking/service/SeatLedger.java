@@ -0,0 +1,432 @@
+package ticket.booking.service;
+
+import ticket.booking.logging.Log;
+import ticket.booking.logging.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Seat state kept in a memory-mapped file whose layout is the live layout,
+ * so a restart maps the file and serves bookings without replaying anything.
+ *
+ * The file is a sequence of {@code chunkBytes} chunks, each mapped once:
+ * <pre>
+ *   header      magic, version, geometry, open/clean state, CRC32
+ *   train table one fixed entry per train: ID, coach layout, CRC32
+ *   directories one ring of service days per train, each entry packing the date
+ *               and the offset of that date's partition
+ *   partitions  [booked count | dirty bit] [word count | CRC32] [one bit per seat]
+ * </pre>
+ * Seat changes are the CAS operations of {@link BitmapSeatStore} on the mapped
+ * words, and mark their partition dirty. {@link #checkpoint} flushes the file
+ * and records a CRC for every dirty partition.
+ *
+ * Torn writes are detected on open. A header or train entry failing its CRC
+ * is rejected. A partition marked clean whose CRC doesn't match was torn
+ * after its last checkpoint. Booked counts are checked against the seat bits
+ * and repaired. The findings are available from {@link #getTornPartitions}
+ * and its neighbours.
+ *
+ * Words are little-endian, so ledger files move between machines.
+ */
+public class SeatLedger extends BitmapSeatStore {
+    private static final Logger log = Log.getLogger(SeatLedger.class);
+    public static final int DEFAULT_MAX_TRAINS = 65_536;
+    public static final int DEFAULT_CHUNK_BYTES = 256 << 20;
+
+    private static final long MAGIC = 0x3147_444C_5441_4553L; // "SEATLDG1" little-endian
+    private static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 4096;
+    private static final int H_VERSION = 8;
+    private static final int H_SERVICE_DAYS = 12;
+    private static final int H_MAX_TRAINS = 16;
+    private static final int H_CHUNK_BYTES = 20;
+    private static final int H_STATE = 24;
+    private static final int H_CHECKPOINT = 32;
+    private static final int H_CRC = 40;
+    private static final int STATE_CLEAN = 0;
+    private static final int STATE_OPEN = 1;
+
+    private static final int ENTRY_BYTES = 256;
+    private static final int E_ID = 4;
+    private static final int MAX_ID_BYTES = 60;
+    private static final int E_COACHES = 64;
+    private static final int E_SEATS = 68;
+    private static final int MAX_COACHES = 64;
+    private static final int E_CRC = 200;
+
+    private static final int BLOCK_HEADER_WORDS = 2;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final int maxTrains;
+    private final long directoryStart;
+    private final long dataStart;
+    private final boolean cleanShutdown;
+
+    // Guarded by this
+    private int trainSlots;
+
+    private int tornTrains;
+    private int tornPartitions;
+    private int repairedCounts;
+
+    private SeatLedger(Path file, FileChannel channel, int serviceDays, int maxTrains, int chunkBytes,
+                       boolean cleanShutdown) {
+        super(serviceDays, chunkBytes, BLOCK_HEADER_WORDS);
+        this.file = file;
+        this.channel = channel;
+        this.maxTrains = maxTrains;
+        this.directoryStart = HEADER_BYTES + (long) maxTrains * ENTRY_BYTES;
+        this.dataStart = directoryStart + (long) maxTrains * serviceDays * Long.BYTES;
+        this.cleanShutdown = cleanShutdown;
+    }
+
+    /**
+     * Opens a ledger, creating it with the default geometry if the file doesn't exist
+     */
+    public static SeatLedger open(Path file) throws IOException {
+        return open(file, DEFAULT_SERVICE_DAYS, DEFAULT_MAX_TRAINS, DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * Opens a ledger. The geometry is used only to create a new file; an
+     * existing file keeps the geometry in its header.
+     */
+    public static SeatLedger open(Path file, int serviceDays, int maxTrains, int chunkBytes) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            SeatLedger ledger = channel.size() == 0
+                    ? create(file, channel, serviceDays, maxTrains, chunkBytes)
+                    : load(file, channel);
+            ledger.writeHeader(STATE_OPEN);
+            ledger.force(0);
+            return ledger;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static SeatLedger create(Path file, FileChannel channel, int serviceDays, int maxTrains,
+                                     int chunkBytes) throws IOException {
+        SeatLedger ledger = new SeatLedger(file, channel, serviceDays, maxTrains, chunkBytes, true);
+        if (ledger.dataStart > chunkBytes) {
+            throw new IllegalArgumentException("The first " + chunkBytes
+                    + "-byte chunk can't hold the train table and directories (" + ledger.dataStart + " bytes)");
+        }
+        ledger.chunks = new ByteBuffer[]{ledger.newChunk(0)};
+        ledger.dataEnd = ledger.dataStart;
+        return ledger;
+    }
+
+    private static SeatLedger load(Path file, FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        channel.read(header, 0);
+        if (header.getLong(0) != MAGIC) {
+            throw new IOException(file + " is not a seat ledger");
+        }
+        if (header.getLong(H_CRC) != crc(header, 0, H_CRC)) {
+            throw new IOException("Seat ledger header in " + file + " is corrupt (torn write?)");
+        }
+        if (header.getInt(H_VERSION) != VERSION) {
+            throw new IOException("Unsupported seat ledger version " + header.getInt(H_VERSION) + " in " + file);
+        }
+        SeatLedger ledger = new SeatLedger(file, channel, header.getInt(H_SERVICE_DAYS), header.getInt(H_MAX_TRAINS),
+                header.getInt(H_CHUNK_BYTES), header.getInt(H_STATE) == STATE_CLEAN);
+        int chunkCount = (int) ((channel.size() + ledger.chunkBytes - 1) / ledger.chunkBytes);
+        ByteBuffer[] chunks = new ByteBuffer[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            chunks[i] = ledger.newChunk(i);
+        }
+        ledger.chunks = chunks;
+        ledger.recover();
+        return ledger;
+    }
+
+    /**
+     * Records a CRC for every partition changed since the last checkpoint and
+     * flushes the file, so a later open can tell torn partitions from good ones
+     */
+    public synchronized void checkpoint() {
+        int reader = enter();
+        try {
+            for (TrainEntry entry : trains.values()) {
+                for (int slot = 0; slot < serviceDays; slot++) {
+                    long value = word(entry.slotAddress(slot));
+                    if (value == 0) {
+                        continue;
+                    }
+                    long block = blockOf(value);
+                    long counted;
+                    do {
+                        counted = word(block);
+                    } while ((counted & DIRTY) != 0 && !cas(block, counted, counted & ~DIRTY));
+                    if ((counted & DIRTY) != 0) {
+                        // Changes after the flag was cleared mark it dirty again
+                        setWord(block + Long.BYTES, ((long) entry.words << 32) | blockCrc(block, entry.words));
+                    }
+                }
+            }
+        } finally {
+            exit(reader);
+        }
+        for (int i = 0; i < chunks.length; i++) {
+            force(i);
+        }
+        writeHeader(STATE_OPEN);
+        force(0);
+    }
+
+    /**
+     * Checkpoints and marks the file cleanly closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+        checkpoint();
+        writeHeader(STATE_CLEAN);
+        force(0);
+        channel.close();
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public int getTrainCount() {
+        return trains.size();
+    }
+
+    /**
+     * Whether the previous process closed the ledger cleanly
+     */
+    public boolean wasCleanShutdown() {
+        return cleanShutdown;
+    }
+
+    /**
+     * Gets how many train entries failed their CRC on open and were skipped
+     */
+    public int getTornTrains() {
+        return tornTrains;
+    }
+
+    /**
+     * Gets how many partitions failed their checkpoint CRC on open
+     */
+    public int getTornPartitions() {
+        return tornPartitions;
+    }
+
+    /**
+     * Gets how many booked counts disagreed with the seat bits on open and were recounted
+     */
+    public int getRepairedCounts() {
+        return repairedCounts;
+    }
+
+    /**
+     * Writes the train's entry into the train table, in its old slot when the layout is replaced
+     */
+    @Override
+    TrainEntry createEntry(String trainId, int[] seatsPerCoach, TrainEntry replaced) {
+        byte[] id = trainId.getBytes(StandardCharsets.UTF_8);
+        if (id.length == 0 || id.length > MAX_ID_BYTES || seatsPerCoach.length > MAX_COACHES) {
+            throw new IllegalArgumentException("Train " + trainId + " doesn't fit a ledger entry");
+        }
+        for (int i = 0; i < seatsPerCoach.length; i++) {
+            if (seatsPerCoach[i] < 0 || seatsPerCoach[i] > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("Coach " + i + " of " + trainId + " has " + seatsPerCoach[i] + " seats");
+            }
+        }
+        int index;
+        if (replaced != null) {
+            index = replaced.index;
+        } else if (trainSlots == maxTrains) {
+            throw new IllegalStateException("Seat ledger is full: " + maxTrains + " trains");
+        } else {
+            index = trainSlots++;
+        }
+        ByteBuffer chunk = chunks[0];
+        int base = HEADER_BYTES + index * ENTRY_BYTES;
+        chunk.putInt(base, id.length);
+        for (int i = 0; i < id.length; i++) {
+            chunk.put(base + E_ID + i, id[i]);
+        }
+        chunk.putInt(base + E_COACHES, seatsPerCoach.length);
+        for (int i = 0; i < seatsPerCoach.length; i++) {
+            chunk.putShort(base + E_SEATS + i * 2, (short) seatsPerCoach[i]);
+        }
+        chunk.putLong(base + E_CRC, crc(chunk, base, base + E_CRC));
+        return entryAt(index, seatsPerCoach);
+    }
+
+    @Override
+    ByteBuffer newChunk(int index) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, (long) index * chunkBytes, chunkBytes);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    /**
+     * Records the size of new partitions, which is how {@link #scanBlocks} walks the data after a restart
+     */
+    @Override
+    void formatPartition(long block, int words, boolean reused) {
+        if (!reused) {
+            setWord(block + Long.BYTES, (long) words << 32);
+        }
+    }
+
+    private TrainEntry entryAt(int index, int[] coachSeats) {
+        return new TrainEntry(index, coachSeats, directoryStart + (long) index * serviceDays * Long.BYTES,
+                BLOCK_HEADER_WORDS);
+    }
+
+    /**
+     * Rebuilds the train map, finds the end of the data and the free partitions,
+     * and checks every live partition against its CRC and booked count
+     */
+    private void recover() {
+        ByteBuffer chunk = chunks[0];
+        for (int index = 0; index < maxTrains; index++) {
+            int base = HEADER_BYTES + index * ENTRY_BYTES;
+            int idLength = chunk.getInt(base);
+            if (idLength == 0) {
+                break;
+            }
+            trainSlots = index + 1;
+            if (idLength > MAX_ID_BYTES || chunk.getLong(base + E_CRC) != crc(chunk, base, base + E_CRC)) {
+                tornTrains++;
+                continue;
+            }
+            byte[] id = new byte[idLength];
+            for (int i = 0; i < idLength; i++) {
+                id[i] = chunk.get(base + E_ID + i);
+            }
+            int[] coachSeats = new int[chunk.getInt(base + E_COACHES)];
+            for (int i = 0; i < coachSeats.length; i++) {
+                coachSeats[i] = chunk.getShort(base + E_SEATS + i * 2);
+            }
+            trains.put(new String(id, StandardCharsets.UTF_8), entryAt(index, coachSeats));
+        }
+
+        Map<Long, Integer> blocks = scanBlocks();
+        for (TrainEntry entry : trains.values()) {
+            for (int slot = 0; slot < serviceDays; slot++) {
+                long address = entry.slotAddress(slot);
+                long value = word(address);
+                if (value == 0) {
+                    continue;
+                }
+                Integer words = blocks.remove(blockOf(value));
+                if (words == null || words != entry.words) {
+                    // The directory points at something that isn't this train's partition
+                    setWord(address, 0L);
+                    tornPartitions++;
+                    continue;
+                }
+                verify(blockOf(value), entry.words);
+            }
+        }
+        for (Map.Entry<Long, Integer> unused : blocks.entrySet()) {
+            free(unused.getKey(), unused.getValue());
+        }
+        if (tornTrains + tornPartitions + repairedCounts > 0 || !cleanShutdown) {
+            log.warn("ledger.recovered", "file", file, "clean", cleanShutdown, "tornTrains", tornTrains,
+                    "tornPartitions", tornPartitions, "repairedCounts", repairedCounts);
+        }
+    }
+
+    /**
+     * Walks the partitions from the start of the data area; returns offset to word count
+     */
+    private Map<Long, Integer> scanBlocks() {
+        Map<Long, Integer> blocks = new HashMap<>();
+        long mapped = (long) chunks.length * chunkBytes;
+        long position = dataStart;
+        dataEnd = dataStart;
+        while (position < mapped) {
+            long chunkEnd = (position / chunkBytes + 1) * chunkBytes;
+            if (position + BLOCK_HEADER_WORDS * Long.BYTES > chunkEnd) {
+                position = chunkEnd;
+                continue;
+            }
+            int words = (int) (word(position + Long.BYTES) >>> 32);
+            if (words == 0) {
+                // Nothing more in this chunk
+                position = chunkEnd;
+                continue;
+            }
+            if (words < BLOCK_HEADER_WORDS || position + (long) words * Long.BYTES > chunkEnd) {
+                tornPartitions++;
+                break;
+            }
+            blocks.put(position, words);
+            position += (long) words * Long.BYTES;
+            dataEnd = position;
+        }
+        return blocks;
+    }
+
+    private void verify(long block, int words) {
+        long counted = word(block);
+        if ((counted & DIRTY) == 0 && (int) word(block + Long.BYTES) != (int) blockCrc(block, words)) {
+            tornPartitions++;
+            counted |= DIRTY;
+        }
+        long booked = 0;
+        for (int i = BLOCK_HEADER_WORDS; i < words; i++) {
+            booked += Long.bitCount(word(block + (long) i * Long.BYTES));
+        }
+        if ((counted & ~DIRTY) != booked) {
+            repairedCounts++;
+            counted = booked | DIRTY;
+        }
+        setWord(block, counted);
+    }
+
+    private void force(int chunk) {
+        ((MappedByteBuffer) chunks[chunk]).force();
+    }
+
+    private synchronized void writeHeader(int state) {
+        ByteBuffer header = chunks[0];
+        header.putLong(0, MAGIC);
+        header.putInt(H_VERSION, VERSION);
+        header.putInt(H_SERVICE_DAYS, serviceDays);
+        header.putInt(H_MAX_TRAINS, maxTrains);
+        header.putInt(H_CHUNK_BYTES, chunkBytes);
+        header.putInt(H_STATE, state);
+        header.putLong(H_CHECKPOINT, System.currentTimeMillis());
+        header.putLong(H_CRC, crc(header, 0, H_CRC));
+    }
+
+    private long blockCrc(long block, int words) {
+        long start = block + (long) BLOCK_HEADER_WORDS * Long.BYTES;
+        return crc(chunkAt(block), indexAt(start), indexAt(start) + (words - BLOCK_HEADER_WORDS) * Long.BYTES);
+    }
+
+    private static long crc(ByteBuffer buffer, int from, int to) {
+        ByteBuffer range = buffer.duplicate();
+        range.limit(to).position(from);
+        CRC32 crc = new CRC32();
+        crc.update(range);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,183 @@
+package ticket.booking.service;
+
+import ticket.booking.entities.SeatPosition;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable, versioned view of a train's seat map.
+ *
+ * Every booking or cancellation publishes a new snapshot; readers keep whatever
+ * version they grabbed and never see a half-applied change. Rows that did not
+ * change are shared between consecutive versions, so a write only copies the
+ * touched row and the row table.
+ */
+public final class SeatMapSnapshot {
+    public static final int AVAILABLE = 0;
+    public static final int BOOKED = 1;
+
+    private final String trainId;
+    private final long version;
+    private final int[][] rows;
+    // Per-row free-run summaries, recomputed only for rows a write touches
+    private final int[] freeInRow;
+    private final int[] longestRunInRow;
+    private final int availableSeats;
+    private final int totalSeats;
+
+    private SeatMapSnapshot(String trainId, long version, int[][] rows, int[] freeInRow, int[] longestRunInRow,
+                            int availableSeats, int totalSeats) {
+        this.trainId = trainId;
+        this.version = version;
+        this.rows = rows;
+        this.freeInRow = freeInRow;
+        this.longestRunInRow = longestRunInRow;
+        this.availableSeats = availableSeats;
+        this.totalSeats = totalSeats;
+    }
+
+    /**
+     * Builds the initial snapshot from a train's persisted seat matrix
+     */
+    public static SeatMapSnapshot of(String trainId, List<List<Integer>> seats) {
+        int rowCount = seats == null ? 0 : seats.size();
+        int[][] rows = new int[rowCount][];
+        int[] freeInRow = new int[rowCount];
+        int[] longestRunInRow = new int[rowCount];
+        int available = 0;
+        int total = 0;
+
+        for (int i = 0; i < rowCount; i++) {
+            List<Integer> source = seats.get(i);
+            int[] row = new int[source == null ? 0 : source.size()];
+            for (int j = 0; j < row.length; j++) {
+                Integer value = source.get(j);
+                row[j] = value == null ? AVAILABLE : value;
+            }
+            rows[i] = row;
+            summarizeRow(rows, i, freeInRow, longestRunInRow);
+            available += freeInRow[i];
+            total += row.length;
+        }
+
+        return new SeatMapSnapshot(trainId, 0L, rows, freeInRow, longestRunInRow, available, total);
+    }
+
+    /**
+     * Returns a new version with a single seat changed; unchanged rows are shared
+     */
+    SeatMapSnapshot withSeat(int row, int col, int value) {
+        return withSeats(Collections.singletonList(new SeatPosition(row, col)), value);
+    }
+
+    /**
+     * Returns a new version with all given seats set to the value, copying each touched row once
+     */
+    SeatMapSnapshot withSeats(Collection<SeatPosition> seats, int value) {
+        int[][] nextRows = rows.clone();
+        int[] nextFree = freeInRow.clone();
+        int[] nextLongest = longestRunInRow.clone();
+        boolean[] copied = new boolean[rows.length];
+
+        for (SeatPosition seat : seats) {
+            int row = seat.getRow();
+            if (!copied[row]) {
+                nextRows[row] = rows[row].clone();
+                copied[row] = true;
+            }
+            nextRows[row][seat.getCol()] = value;
+        }
+
+        int available = availableSeats;
+        for (int i = 0; i < copied.length; i++) {
+            if (copied[i]) {
+                available -= freeInRow[i];
+                summarizeRow(nextRows, i, nextFree, nextLongest);
+                available += nextFree[i];
+            }
+        }
+        return new SeatMapSnapshot(trainId, version + 1, nextRows, nextFree, nextLongest, available, totalSeats);
+    }
+
+    /**
+     * Recomputes the free count and longest free run of one row
+     */
+    private static void summarizeRow(int[][] rows, int row, int[] freeInRow, int[] longestRunInRow) {
+        int free = 0;
+        int run = 0;
+        int longest = 0;
+        for (int value : rows[row]) {
+            if (value == AVAILABLE) {
+                free++;
+                run++;
+                longest = Math.max(longest, run);
+            } else {
+                run = 0;
+            }
+        }
+        freeInRow[row] = free;
+        longestRunInRow[row] = longest;
+    }
+
+    public String getTrainId() {
+        return trainId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getRowCount() {
+        return rows.length;
+    }
+
+    public int getSeatCount(int row) {
+        return rows[row].length;
+    }
+
+    public int getAvailableSeats(int row) {
+        return freeInRow[row];
+    }
+
+    public int getLongestFreeRun(int row) {
+        return longestRunInRow[row];
+    }
+
+    public int getAvailableSeats() {
+        return availableSeats;
+    }
+
+    public int getTotalSeats() {
+        return totalSeats;
+    }
+
+    public boolean isValidSeat(int row, int col) {
+        return row >= 0 && row < rows.length && col >= 0 && col < rows[row].length;
+    }
+
+    public boolean isAvailable(int row, int col) {
+        return isValidSeat(row, col) && rows[row][col] == AVAILABLE;
+    }
+
+    public int getSeat(int row, int col) {
+        return rows[row][col];
+    }
+
+    /**
+     * Copies the snapshot back into the mutable shape used by {@code Train} and the JSON files
+     */
+    public List<List<Integer>> toSeatList() {
+        List<List<Integer>> seats = new ArrayList<>(rows.length);
+        for (int[] row : rows) {
+            List<Integer> copy = new ArrayList<>(row.length);
+            for (int value : row) {
+                copy.add(value);
+            }
+            seats.add(copy);
+        }
+        return seats;
+    }
+}
@@ -0,0 +1,26 @@
+package ticket.booking.service;
+
+/**
+ * Seat position preference used by the seat allocator.
+ * Coaches are laid out with the aisle in the middle of each row.
+ */
+public enum SeatPreference {
+    ANY,
+    WINDOW,
+    AISLE;
+
+    /**
+     * Checks whether a seat at the given column matches this preference
+     */
+    public boolean matches(int col, int seatsInRow) {
+        switch (this) {
+            case WINDOW:
+                return col == 0 || col == seatsInRow - 1;
+            case AISLE:
+                int half = seatsInRow / 2;
+                return seatsInRow > 2 && (col == half - 1 || col == half);
+            default:
+                return true;
+        }
+    }
+}
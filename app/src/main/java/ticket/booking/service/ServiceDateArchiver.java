@@ -0,0 +1,183 @@
+package ticket.booking.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import ticket.booking.entities.Train;
+import ticket.booking.logging.Log;
+import ticket.booking.logging.Logger;
+import ticket.booking.util.DatabaseManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves departed service dates out of the live inventory and the trains database.
+ *
+ * Once a date has passed its seat maps are only of historical interest, so they
+ * are appended to {@code seat-maps.jsonl} in the archive directory (one JSON
+ * object per train and date) and dropped from memory and from {@code dated_seats}.
+ * Their waitlists are dropped as well.
+ * Runs at startup and then shortly after every midnight.
+ *
+ * Configured with the {@code booking.archive.dir} system property (default {@code data/archive}).
+ */
+public class ServiceDateArchiver {
+    private static final Logger log = Log.getLogger(ServiceDateArchiver.class);
+    public static final String DIR_PROPERTY = "booking.archive.dir";
+    public static final String ARCHIVE_FILE = "seat-maps.jsonl";
+
+    private final Path archiveFile;
+    private final SeatInventory inventory;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ScheduledExecutorService scheduler;
+
+    public ServiceDateArchiver(Path archiveDir, SeatInventory inventory) {
+        this.archiveFile = archiveDir.resolve(ARCHIVE_FILE);
+        this.inventory = inventory;
+    }
+
+    /**
+     * Starts the daily archiver as configured by system properties
+     */
+    public static ServiceDateArchiver startFromSystemProperties() {
+        Path dir = Paths.get(System.getProperty(DIR_PROPERTY, "data/archive"));
+        ServiceDateArchiver archiver = new ServiceDateArchiver(dir, SeatInventory.getInstance());
+        archiver.start();
+        return archiver;
+    }
+
+    /**
+     * Archives once now and then after every midnight
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "service-date-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        LocalDateTime now = LocalDateTime.now();
+        long untilMidnight = Duration.between(now, now.toLocalDate().plusDays(1).atStartOfDay()).toMillis();
+        scheduler.execute(this::archiveDeparted);
+        scheduler.scheduleAtFixedRate(this::archiveDeparted, untilMidnight + 1000,
+                TimeUnit.DAYS.toMillis(1), TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Archives every service date before today; returns the number of train-dates archived
+     */
+    public int archiveDeparted() {
+        LocalDate today = LocalDate.now();
+        WaitlistEngine.getInstance().evictBefore(today);
+        try {
+            return archiveBefore(today);
+        } catch (IOException e) {
+            log.warn("archive.failed", e, "file", archiveFile);
+            return 0;
+        }
+    }
+
+    /**
+     * Archives every service date before the cutoff; returns the number of train-dates archived
+     */
+    public int archiveBefore(LocalDate cutoff) throws IOException {
+        // Take the partitions out of memory first so no new writes land on them
+        Map<String, Map<LocalDate, SeatMapSnapshot>> evicted = inventory.evictBefore(cutoff);
+        String cutoffKey = cutoff.toString();
+
+        Integer archived = DatabaseManager.transaction(engine -> {
+            List<Train> trains = engine.loadTrains();
+            ByteArrayOutputStream records = new ByteArrayOutputStream();
+            int count = 0;
+            for (Train train : trains) {
+                Map<LocalDate, SeatMapSnapshot> live = evicted.remove(train.getTrainId());
+                Iterator<Map.Entry<String, List<List<Integer>>>> dates = train.getDatedSeats().entrySet().iterator();
+                while (dates.hasNext()) {
+                    Map.Entry<String, List<List<Integer>>> date = dates.next();
+                    // ISO dates sort lexically, and dated_seats is a sorted map
+                    if (date.getKey().compareTo(cutoffKey) >= 0) {
+                        break;
+                    }
+                    SeatMapSnapshot snapshot = live == null ? null : live.remove(LocalDate.parse(date.getKey()));
+                    writeRecord(records, train.getTrainId(), date.getKey(),
+                            snapshot != null ? snapshot.toSeatList() : date.getValue());
+                    dates.remove();
+                    count++;
+                }
+                if (live != null) {
+                    // Partitions that were never persisted still belong in the archive
+                    for (Map.Entry<LocalDate, SeatMapSnapshot> date : live.entrySet()) {
+                        writeRecord(records, train.getTrainId(), date.getKey().toString(), date.getValue().toSeatList());
+                        count++;
+                    }
+                }
+            }
+            if (count > 0) {
+                append(records.toByteArray());
+                engine.saveTrains(trains);
+            }
+            return count;
+        });
+
+        if (archived == null) {
+            throw new IOException("Could not archive service dates before " + cutoff);
+        }
+        if (archived > 0) {
+            log.info("archive.completed", "before", cutoff, "trainDates", archived, "file", archiveFile);
+        }
+        return archived;
+    }
+
+    public Path getArchiveFile() {
+        return archiveFile;
+    }
+
+    private void writeRecord(ByteArrayOutputStream out, String trainId, String date, List<List<Integer>> seats)
+            throws IOException {
+        ObjectNode record = objectMapper.createObjectNode();
+        record.put("train_id", trainId);
+        record.put("date", date);
+        record.set("seats", objectMapper.valueToTree(seats));
+        out.write(objectMapper.writeValueAsBytes(record));
+        out.write('\n');
+    }
+
+    /**
+     * Appends and fsyncs before the trains database forgets the dates
+     */
+    private void append(byte[] bytes) throws IOException {
+        Files.createDirectories(archiveFile.toAbsolutePath().getParent());
+        try (FileChannel channel = FileChannel.open(archiveFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+    }
+}
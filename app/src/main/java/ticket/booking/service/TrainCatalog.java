@@ -0,0 +1,277 @@
+package ticket.booking.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import ticket.booking.entities.Train;
+import ticket.booking.entities.TrainHeader;
+import ticket.booking.entities.TrainView;
+import ticket.booking.logging.Log;
+import ticket.booking.logging.Logger;
+import ticket.booking.metrics.Metrics;
+import ticket.booking.util.DatabaseManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Read side of the train catalog.
+ *
+ * Searches run over lightweight {@link TrainHeader}s only. A train's seat map
+ * and timetable are loaded from storage the first time it is actually needed
+ * and kept in a bounded cache, so heap use follows the working set rather than
+ * the size of the fleet. The cache is keyed by header instance: when storage
+ * re-indexes a changed catalog, stale details simply stop being reachable.
+ *
+ * Paged queries read immutable {@link TrainView}s from a cache of their own,
+ * which hold a route and timetable in a fraction of the heap of a {@link Train};
+ * the estimated total is reported as the {@code catalog.views.bytes} gauge.
+ *
+ * The cache size comes from the {@code booking.catalog.cacheSize} system property.
+ */
+public class TrainCatalog {
+    public static final String CACHE_SIZE_PROPERTY = "booking.catalog.cacheSize";
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final Logger log = Log.getLogger(TrainCatalog.class);
+    private static final TrainCatalog INSTANCE = new TrainCatalog(Long.getLong(CACHE_SIZE_PROPERTY, 128));
+
+    static {
+        Metrics.gauge("catalog.views.bytes", INSTANCE::getCachedViewBytes);
+    }
+
+    private final Cache<TrainHeader, Train> details;
+    private final Cache<TrainHeader, TrainView> views;
+
+    public TrainCatalog(long maxCachedTrains) {
+        // weakKeys() makes the cache compare headers by identity
+        this.details = CacheBuilder.newBuilder()
+                .maximumSize(maxCachedTrains)
+                .weakKeys()
+                .build();
+        this.views = CacheBuilder.newBuilder()
+                .maximumSize(maxCachedTrains)
+                .weakKeys()
+                .build();
+    }
+
+    /**
+     * Gets the process-wide catalog
+     */
+    public static TrainCatalog getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Lists every train header
+     */
+    public List<TrainHeader> getHeaders() {
+        return DatabaseManager.loadTrainHeaders();
+    }
+
+    /**
+     * Finds headers of trains stopping at source before destination
+     */
+    public List<TrainHeader> findHeaders(String source, String destination) {
+        List<TrainHeader> matches = new ArrayList<>();
+        for (TrainHeader header : getHeaders()) {
+            if (header.servesRoute(source, destination)) {
+                matches.add(header);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Finds trains between source and destination, loading details only for matches
+     */
+    public List<Train> search(String source, String destination) {
+        List<Train> trains = new ArrayList<>();
+        for (TrainHeader header : findHeaders(source, destination)) {
+            Train train = getTrain(header);
+            if (train != null) {
+                trains.add(train);
+            }
+        }
+        return trains;
+    }
+
+    /**
+     * Finds trains between source and destination with the fare for the segment already attached.
+     * Demand pricing reads the live occupancy counters, not the seat maps.
+     */
+    public List<TrainSearchResult> searchWithFares(String source, String destination, LocalDate date,
+                                                   TravelClass travelClass) {
+        FareEngine fares = FareEngine.getInstance();
+        OccupancyCounters occupancy = OccupancyCounters.getInstance();
+        List<TrainSearchResult> results = new ArrayList<>();
+        for (TrainHeader header : findHeaders(source, destination)) {
+            Train train = getTrain(header);
+            if (train != null) {
+                if (!occupancy.isTracked(header.getTrainId(), date)) {
+                    // Load the date's seats once; from then on the counters price it
+                    SeatInventory.getInstance().snapshot(train, date);
+                }
+                FareQuote fare = fares.quote(header, source, destination, travelClass, date);
+                results.add(new TrainSearchResult(header, train, source, destination, date, fare));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Runs a filtered, sorted search and returns one page of lightweight rows.
+     * Only the best {@code limit + 1} rows are kept, in a bounded heap, so a page
+     * costs O(n log k) however many trains match.
+     */
+    public TrainPage query(TrainQuery query) {
+        Comparator<TrainSummary> order = query.comparator();
+        // Max-heap on the page order: the head is the worst row kept so far
+        PriorityQueue<TrainSummary> best = new PriorityQueue<>(query.getLimit() + 1, order.reversed());
+        int matched = 0;
+        for (TrainHeader header : findHeaders(query.getSource(), query.getDestination())) {
+            if (!query.acceptsType(TrainType.of(header.getTrainId()))) {
+                continue;
+            }
+            TrainView view = getView(header);
+            if (view == null) {
+                continue;
+            }
+            TrainSummary summary = summarize(header, view, query);
+            if (summary == null) {
+                continue;
+            }
+            if (!query.accepts(summary)) {
+                continue;
+            }
+            matched++;
+            best.offer(summary);
+            if (best.size() > query.getLimit() + 1) {
+                best.poll();
+            }
+        }
+
+        List<TrainSummary> rows = new ArrayList<>(best);
+        rows.sort(order);
+        if (rows.size() <= query.getLimit()) {
+            return new TrainPage(rows, null, matched);
+        }
+        List<TrainSummary> page = new ArrayList<>(rows.subList(0, query.getLimit()));
+        return new TrainPage(page, query.cursorAfter(page.get(page.size() - 1)), matched);
+    }
+
+    private TrainSummary summarize(TrainHeader header, TrainView view, TrainQuery query) {
+        LocalTime departure = view.getTime(query.getSource());
+        LocalTime arrival = view.getTime(query.getDestination());
+        int duration = -1;
+        if (departure != null && arrival != null) {
+            // Timetables hold clock times only, so an earlier arrival means the next day
+            duration = (int) ((Duration.between(departure, arrival).toMinutes() + MINUTES_PER_DAY) % MINUTES_PER_DAY);
+        }
+        AvailabilitySummary availability = OccupancyCounters.getInstance().summarize(header.getTrainId(), query.getDate());
+        if (availability == null) {
+            // First look at this date: the full train is needed once to seed its seats
+            Train train = getTrain(header);
+            if (train == null) {
+                return null;
+            }
+            availability = availability(train, query.getDate());
+        }
+        FareTable route = FareEngine.getInstance().tableFor(header);
+        int fromStop = route.getStopIndex(query.getSource());
+        int toStop = route.getStopIndex(query.getDestination());
+        int available = query.getTravelClass() == null
+                ? availability.getFreeSeats(fromStop, toStop)
+                : availability.getFreeSeats(query.getTravelClass(), fromStop, toStop);
+        TravelClass priceClass = query.getTravelClass() != null
+                ? query.getTravelClass()
+                : CoachLayout.cheapestClass(header.getTrainId());
+        FareQuote fare = FareEngine.getInstance().quote(header, query.getSource(), query.getDestination(),
+                priceClass, query.getDate());
+        return new TrainSummary(header.getTrainId(), header.getTrainNo(), TrainType.of(header.getTrainId()),
+                query.getSource(), query.getDestination(), departure, arrival, duration, available, fare, availability);
+    }
+
+    /**
+     * Gets the availability projection of a train on a date, loading its seats only the first time
+     */
+    public AvailabilitySummary availability(Train train, LocalDate date) {
+        OccupancyCounters occupancy = OccupancyCounters.getInstance();
+        AvailabilitySummary summary = occupancy.summarize(train.getTrainId(), date);
+        if (summary == null) {
+            // Seeds the counters from the date's seats; from then on they are kept current
+            SeatInventory.getInstance().snapshot(train, date);
+            summary = occupancy.summarize(train.getTrainId(), date);
+        }
+        return summary;
+    }
+
+    /**
+     * Gets the full train for a header, loading it on first access; null if it is gone
+     */
+    public Train getTrain(TrainHeader header) {
+        try {
+            return details.get(header, () -> {
+                Train train = DatabaseManager.loadTrain(header.getTrainId());
+                if (train == null) {
+                    throw new MissingTrainException();
+                }
+                return train;
+            });
+        } catch (ExecutionException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the read model of a train for a header, building it on first access; null if the train is gone
+     */
+    public TrainView getView(TrainHeader header) {
+        try {
+            return views.get(header, () -> {
+                Train train = details.getIfPresent(header);
+                if (train == null) {
+                    train = DatabaseManager.loadTrain(header.getTrainId());
+                }
+                if (train == null) {
+                    throw new MissingTrainException();
+                }
+                TrainView view = TrainView.of(train);
+                log.debug("catalog.view.built", "trainId", header.getTrainId(),
+                        "viewBytes", view.estimateHeapBytes(), "trainBytes", TrainView.estimateHeapBytes(train));
+                return view;
+            });
+        } catch (ExecutionException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Estimated heap held by the cached train views
+     */
+    public long getCachedViewBytes() {
+        long bytes = 0;
+        for (TrainView view : views.asMap().values()) {
+            bytes += view.estimateHeapBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Number of trains whose details are currently held in memory
+     */
+    public long getCachedTrainCount() {
+        return details.size();
+    }
+
+    /**
+     * Signals a header whose train vanished from storage; Guava caches can't hold nulls
+     */
+    private static final class MissingTrainException extends Exception {
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -0,0 +1,41 @@
+package ticket.booking.service;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of search results and the cursor to fetch the next one
+ */
+public final class TrainPage {
+    private final List<TrainSummary> items;
+    private final String nextCursor;
+    private final int matched;
+
+    public TrainPage(List<TrainSummary> items, String nextCursor, int matched) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextCursor = nextCursor;
+        this.matched = matched;
+    }
+
+    public List<TrainSummary> getItems() {
+        return items;
+    }
+
+    /**
+     * Gets the cursor for {@link TrainQuery.Builder#after(String)}, or null on the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+
+    /**
+     * Gets how many trains passed the filters after the cursor, across this and later pages
+     */
+    public int getMatched() {
+        return matched;
+    }
+}
@@ -0,0 +1,240 @@
+package ticket.booking.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Search request: route, date and class, optional filters, sort order and page.
+ *
+ * Pages are cursor-based: a cursor names the last row of the previous page by
+ * its sort value and train ID, so the next page starts strictly after it even
+ * if trains were added or booked in between. Build one with {@link #builder}.
+ */
+public final class TrainQuery {
+    public static final int DEFAULT_LIMIT = 20;
+    public static final int MAX_LIMIT = 100;
+
+    private final String source;
+    private final String destination;
+    private final LocalDate date;
+    private final TravelClass travelClass;
+    private final LocalTime departureFrom;
+    private final LocalTime departureTo;
+    private final int maxDurationMinutes;
+    private final int minAvailableSeats;
+    private final Set<TrainType> trainTypes;
+    private final TrainSortKey sortKey;
+    private final int limit;
+    private final String afterTrainId;
+    private final long afterValue;
+
+    private TrainQuery(Builder builder) {
+        this.source = builder.source;
+        this.destination = builder.destination;
+        this.date = builder.date;
+        this.travelClass = builder.travelClass;
+        this.departureFrom = builder.departureFrom;
+        this.departureTo = builder.departureTo;
+        this.maxDurationMinutes = builder.maxDurationMinutes;
+        this.minAvailableSeats = builder.minAvailableSeats;
+        this.trainTypes = builder.trainTypes.isEmpty() ? EnumSet.allOf(TrainType.class) : EnumSet.copyOf(builder.trainTypes);
+        this.sortKey = builder.sortKey;
+        this.limit = builder.limit;
+
+        String after = null;
+        long value = 0;
+        if (builder.cursor != null) {
+            // Cursor layout: SORT_KEY:value:trainId
+            String[] parts = new String(Base64.getUrlDecoder().decode(builder.cursor), StandardCharsets.UTF_8).split(":", 3);
+            if (parts.length != 3 || !parts[0].equals(sortKey.name())) {
+                throw new IllegalArgumentException("Cursor does not belong to a " + sortKey + " search");
+            }
+            value = Long.parseLong(parts[1]);
+            after = parts[2];
+        }
+        this.afterTrainId = after;
+        this.afterValue = value;
+    }
+
+    /**
+     * Starts a query for trains from source to destination
+     */
+    public static Builder builder(String source, String destination) {
+        return new Builder(source, destination);
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    /**
+     * Gets the requested class, or null for any class
+     */
+    public TravelClass getTravelClass() {
+        return travelClass;
+    }
+
+    public TrainSortKey getSortKey() {
+        return sortKey;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Checks the train type before anything about the train is loaded
+     */
+    public boolean acceptsType(TrainType type) {
+        return trainTypes.contains(type);
+    }
+
+    /**
+     * Checks a result against the filters and the cursor
+     */
+    public boolean accepts(TrainSummary summary) {
+        if (departureFrom != null || departureTo != null) {
+            LocalTime departure = summary.getDeparture();
+            if (departure == null
+                    || (departureFrom != null && departure.isBefore(departureFrom))
+                    || (departureTo != null && departure.isAfter(departureTo))) {
+                return false;
+            }
+        }
+        if (maxDurationMinutes > 0
+                && (summary.getDurationMinutes() < 0 || summary.getDurationMinutes() > maxDurationMinutes)) {
+            return false;
+        }
+        if (summary.getAvailableSeats() < minAvailableSeats) {
+            return false;
+        }
+        return afterTrainId == null || compareToCursor(summary) > 0;
+    }
+
+    /**
+     * Gets the result order: sort value, then train ID
+     */
+    public Comparator<TrainSummary> comparator() {
+        return (a, b) -> {
+            int byValue = Long.compare(sortKey.valueOf(a), sortKey.valueOf(b));
+            return byValue != 0 ? byValue : a.getTrainId().compareTo(b.getTrainId());
+        };
+    }
+
+    /**
+     * Encodes a cursor pointing just past the given row
+     */
+    public String cursorAfter(TrainSummary last) {
+        String raw = sortKey.name() + ":" + sortKey.valueOf(last) + ":" + last.getTrainId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private int compareToCursor(TrainSummary summary) {
+        int byValue = Long.compare(sortKey.valueOf(summary), afterValue);
+        return byValue != 0 ? byValue : summary.getTrainId().compareTo(afterTrainId);
+    }
+
+    /**
+     * Collects optional filters; only source and destination are required
+     */
+    public static final class Builder {
+        private final String source;
+        private final String destination;
+        private LocalDate date = LocalDate.now();
+        private TravelClass travelClass;
+        private LocalTime departureFrom;
+        private LocalTime departureTo;
+        private int maxDurationMinutes;
+        private int minAvailableSeats;
+        private final Set<TrainType> trainTypes = EnumSet.noneOf(TrainType.class);
+        private TrainSortKey sortKey = TrainSortKey.DEPARTURE;
+        private int limit = DEFAULT_LIMIT;
+        private String cursor;
+
+        private Builder(String source, String destination) {
+            this.source = source;
+            this.destination = destination;
+        }
+
+        public Builder date(LocalDate date) {
+            this.date = date;
+            return this;
+        }
+
+        /**
+         * Counts seats and prices fares in one class; by default all classes
+         * count and each train is priced in its cheapest class
+         */
+        public Builder travelClass(TravelClass travelClass) {
+            this.travelClass = travelClass;
+            return this;
+        }
+
+        /**
+         * Keeps trains leaving the source between the two times, inclusive; either may be null
+         */
+        public Builder departingBetween(LocalTime from, LocalTime to) {
+            this.departureFrom = from;
+            this.departureTo = to;
+            return this;
+        }
+
+        public Builder maxDurationMinutes(int minutes) {
+            this.maxDurationMinutes = minutes;
+            return this;
+        }
+
+        public Builder minAvailableSeats(int seats) {
+            this.minAvailableSeats = seats;
+            return this;
+        }
+
+        /**
+         * Restricts results to these train types; by default every type is included
+         */
+        public Builder trainTypes(TrainType... types) {
+            for (TrainType type : types) {
+                trainTypes.add(type);
+            }
+            return this;
+        }
+
+        public Builder sortBy(TrainSortKey sortKey) {
+            this.sortKey = sortKey;
+            return this;
+        }
+
+        /**
+         * Sets the page size, capped at {@link #MAX_LIMIT}
+         */
+        public Builder limit(int limit) {
+            this.limit = Math.max(1, Math.min(limit, MAX_LIMIT));
+            return this;
+        }
+
+        /**
+         * Continues from a previous page's {@link TrainPage#getNextCursor()}
+         */
+        public Builder after(String cursor) {
+            this.cursor = cursor;
+            return this;
+        }
+
+        public TrainQuery build() {
+            return new TrainQuery(this);
+        }
+    }
+}
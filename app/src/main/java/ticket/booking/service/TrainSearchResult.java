@@ -0,0 +1,52 @@
+package ticket.booking.service;
+
+import ticket.booking.entities.Train;
+import ticket.booking.entities.TrainHeader;
+
+import java.time.LocalDate;
+
+/**
+ * One train found by a search, priced for the searched segment and class
+ */
+public final class TrainSearchResult {
+    private final TrainHeader header;
+    private final Train train;
+    private final String source;
+    private final String destination;
+    private final LocalDate date;
+    private final FareQuote fare;
+
+    public TrainSearchResult(TrainHeader header, Train train, String source, String destination,
+                             LocalDate date, FareQuote fare) {
+        this.header = header;
+        this.train = train;
+        this.source = source;
+        this.destination = destination;
+        this.date = date;
+        this.fare = fare;
+    }
+
+    public TrainHeader getHeader() {
+        return header;
+    }
+
+    public Train getTrain() {
+        return train;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public FareQuote getFare() {
+        return fare;
+    }
+}
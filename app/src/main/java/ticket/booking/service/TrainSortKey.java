@@ -0,0 +1,28 @@
+package ticket.booking.service;
+
+/**
+ * Orders for train search results. Ties are broken by train ID so pages are stable.
+ */
+public enum TrainSortKey {
+    DEPARTURE,
+    DURATION,
+    FARE,
+    // Most seats first
+    AVAILABILITY;
+
+    /**
+     * Gets the value a summary is ordered by, ascending
+     */
+    long valueOf(TrainSummary summary) {
+        switch (this) {
+            case DURATION:
+                return summary.getDurationMinutes() < 0 ? Long.MAX_VALUE : summary.getDurationMinutes();
+            case FARE:
+                return summary.getFare() == null ? Long.MAX_VALUE : summary.getFare().getTotalFare();
+            case AVAILABILITY:
+                return -summary.getAvailableSeats();
+            default:
+                return summary.getDeparture() == null ? Long.MAX_VALUE : summary.getDeparture().toSecondOfDay();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package ticket.booking.service;
+
+import java.time.LocalTime;
+
+/**
+ * Lightweight search result row: what a results list shows, without the seat matrix or timetable
+ */
+public final class TrainSummary {
+    private final String trainId;
+    private final String trainNo;
+    private final TrainType trainType;
+    private final String source;
+    private final String destination;
+    private final LocalTime departure;
+    private final LocalTime arrival;
+    private final int durationMinutes;
+    private final int availableSeats;
+    private final FareQuote fare;
+    private final AvailabilitySummary availability;
+
+    public TrainSummary(String trainId, String trainNo, TrainType trainType, String source, String destination,
+                        LocalTime departure, LocalTime arrival, int durationMinutes, int availableSeats,
+                        FareQuote fare, AvailabilitySummary availability) {
+        this.trainId = trainId;
+        this.trainNo = trainNo;
+        this.trainType = trainType;
+        this.source = source;
+        this.destination = destination;
+        this.departure = departure;
+        this.arrival = arrival;
+        this.durationMinutes = durationMinutes;
+        this.availableSeats = availableSeats;
+        this.fare = fare;
+        this.availability = availability;
+    }
+
+    public String getTrainId() {
+        return trainId;
+    }
+
+    public String getTrainNo() {
+        return trainNo;
+    }
+
+    public TrainType getTrainType() {
+        return trainType;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    /**
+     * Gets the departure from the source station, or null if the timetable doesn't list it
+     */
+    public LocalTime getDeparture() {
+        return departure;
+    }
+
+    public LocalTime getArrival() {
+        return arrival;
+    }
+
+    /**
+     * Gets the journey time, or -1 if the timetable doesn't list both stations
+     */
+    public int getDurationMinutes() {
+        return durationMinutes;
+    }
+
+    /**
+     * Gets the seats free for this journey in the searched class, or in all classes
+     */
+    public int getAvailableSeats() {
+        return availableSeats;
+    }
+
+    public FareQuote getFare() {
+        return fare;
+    }
+
+    /**
+     * Gets free seats per class and segment for the whole train
+     */
+    public AvailabilitySummary getAvailability() {
+        return availability;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s %s-%s %s (%d min, %d seats)", trainNo, trainId, source, destination,
+                departure, durationMinutes, availableSeats);
+    }
+}
@@ -0,0 +1,48 @@
+package ticket.booking.service;
+
+/**
+ * Train categories, recognised from the train ID prefix, with their fare
+ * multiplier and flat superfast surcharge
+ */
+public enum TrainType {
+    RAJDHANI("rajdhani_", 1.25, 75),
+    DURONTO("duronto_", 1.2, 75),
+    VANDE_BHARAT("vande_bharat_", 1.35, 60),
+    SHATABDI("shatabdi_", 1.2, 45),
+    SUPERFAST("superfast_", 1.1, 30),
+    PASSENGER("passenger_", 0.8, 0),
+    EXPRESS("", 1.0, 15);
+
+    private final String idPrefix;
+    private final double multiplier;
+    private final int surcharge;
+
+    TrainType(String idPrefix, double multiplier, int surcharge) {
+        this.idPrefix = idPrefix;
+        this.multiplier = multiplier;
+        this.surcharge = surcharge;
+    }
+
+    /**
+     * Gets the type of a train from its ID, defaulting to an ordinary express
+     */
+    public static TrainType of(String trainId) {
+        if (trainId != null) {
+            String id = trainId.toLowerCase();
+            for (TrainType type : values()) {
+                if (!type.idPrefix.isEmpty() && id.startsWith(type.idPrefix)) {
+                    return type;
+                }
+            }
+        }
+        return EXPRESS;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public int getSurcharge() {
+        return surcharge;
+    }
+}
@@ -0,0 +1,36 @@
+package ticket.booking.service;
+
+/**
+ * Classes of travel with their fare multiplier over the sleeper base rate and
+ * the flat reservation charge added to every ticket
+ */
+public enum TravelClass {
+    SECOND_SITTING("2S", 0.6, 15),
+    SLEEPER("SL", 1.0, 20),
+    AC_CHAIR_CAR("CC", 2.0, 40),
+    AC_THREE_TIER("3A", 2.6, 40),
+    AC_TWO_TIER("2A", 3.8, 50),
+    AC_FIRST("1A", 6.3, 60);
+
+    private final String code;
+    private final double multiplier;
+    private final int reservationCharge;
+
+    TravelClass(String code, double multiplier, int reservationCharge) {
+        this.code = code;
+        this.multiplier = multiplier;
+        this.reservationCharge = reservationCharge;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public int getReservationCharge() {
+        return reservationCharge;
+    }
+}
@@ -1,23 +1,48 @@
 package ticket.booking.service;
 
+import ticket.booking.entities.SeatPosition;
 import ticket.booking.entities.Ticket;
+import ticket.booking.entities.TicketIndex;
 import ticket.booking.entities.Train;
 import ticket.booking.entities.User;
+import ticket.booking.events.BookingEvent;
+import ticket.booking.events.EventBus;
+import ticket.booking.logging.Log;
+import ticket.booking.logging.Logger;
+import ticket.booking.metrics.Counter;
+import ticket.booking.metrics.LatencyHistogram;
+import ticket.booking.metrics.Metrics;
 import ticket.booking.util.DatabaseManager;
+import ticket.booking.util.IdGenerator;
 
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * Service class for managing user bookings
  */
 public class UserBookingService {
+    private static final LatencyHistogram SEARCH_LATENCY = Metrics.histogram("search.latency");
+    private static final LatencyHistogram BOOKING_LATENCY = Metrics.histogram("booking.latency");
+    private static final LatencyHistogram CANCEL_LATENCY = Metrics.histogram("cancel.latency");
+    private static final Counter BOOKINGS_REJECTED = Metrics.counter("booking.rejected");
+
+    private static final Logger log = Log.getLogger(UserBookingService.class);
+    // Per-ticket detail is chatty for large accounts, so keep one line in ten
+    private static final Logger ticketLog = log.sampled(10);
+
+    private final SeatInventory seatInventory = SeatInventory.getInstance();
+    private final WaitlistEngine waitlist = WaitlistEngine.getInstance();
+    private final EventBus events = EventBus.getInstance();
+    private final IdGenerator ids = IdGenerator.getInstance();
     private User currentUser;
-    private List<Ticket> userTickets;
+    private long seenPromotions;
 
     public UserBookingService() {
-        this.userTickets = new ArrayList<>();
+        BookingSideEffects.install();
     }
 
     /**
@@ -25,6 +50,8 @@ public class UserBookingService {
      */
     public void setCurrentUser(User user) {
         this.currentUser = user;
+        // The user record was just read, so it already holds every promotion so far
+        this.seenPromotions = waitlist.getPromotedCount();
         fetchBookings();
     }
 
@@ -36,174 +63,463 @@ public class UserBookingService {
     }
 
     /**
-     * Fetches all bookings for the current user
+     * Fetches all bookings for the current user from the tickets stored with them
      */
     public void fetchBookings() {
-        // In a real application, this would fetch from a database
-        // For now, we'll use a simple in-memory list
-        userTickets = new ArrayList<>();
-
-        // Add some mock data if needed
         if (currentUser != null) {
-            System.out.println("User has " + userTickets.size() + " tickets.");
-            for (Ticket ticket : userTickets) {
-                System.out.println("Ticket ID: " + ticket.getTicketId() +
-                        " belongs to User " + ticket.getUserId() +
-                        " from " + ticket.getSource() +
-                        " to " + ticket.getDestination() +
-                        " on " + ticket.getDateOfTravel());
+            TicketIndex tickets = currentUser.getTicketIndex();
+            log.info("bookings.fetched", "userId", currentUser.getUserId(), "tickets", tickets.size());
+            if (log.isDebugEnabled()) {
+                for (Ticket ticket : tickets.getAll()) {
+                    ticketLog.debug("ticket", "ticketId", ticket.getTicketId(), "userId", ticket.getUserId(),
+                            "from", ticket.getSource(), "to", ticket.getDestination(), "date", ticket.getDateOfTravel());
+                }
             }
         }
     }
 
     /**
-     * Gets all tickets for the current user
+     * Gets all tickets for the current user, earliest travel date first
      */
     public List<Ticket> getUserTickets() {
-        return userTickets;
+        if (currentUser == null) {
+            return Collections.emptyList();
+        }
+        collectConfirmedTickets();
+        return currentUser.getTicketIndex().getAll();
     }
 
     /**
-     * Gets trains between source and destination
+     * Gets the current user's tickets travelling today or later, soonest first
      */
-    public List<Train> getTrains(String source, String destination) {
-        List<Train> allTrains = DatabaseManager.loadTrains();
-        List<Train> matchingTrains = new ArrayList<>();
-
-        for (Train train : allTrains) {
-            List<String> stations = train.getStations();
-            if (stations != null) {
-                int sourceIndex = -1;
-                int destIndex = -1;
-
-                // Find indices of source and destination stations
-                for (int i = 0; i < stations.size(); i++) {
-                    if (stations.get(i).equalsIgnoreCase(source)) {
-                        sourceIndex = i;
-                    }
-                    if (stations.get(i).equalsIgnoreCase(destination)) {
-                        destIndex = i;
-                    }
-                }
+    public List<Ticket> getUpcomingTickets() {
+        if (currentUser == null) {
+            return Collections.emptyList();
+        }
+        collectConfirmedTickets();
+        return currentUser.getTicketIndex().getUpcoming(LocalDate.now());
+    }
 
-                // Add train if source comes before destination
-                if (sourceIndex >= 0 && destIndex >= 0 && sourceIndex < destIndex) {
-                    matchingTrains.add(train);
+    /**
+     * Picks up seats confirmed off the waitlist since the last look. Promotions store
+     * their tickets with the user directly, so the stored record is re-read whenever
+     * anyone has been promoted; only tickets the database couldn't take are handed over.
+     */
+    private void collectConfirmedTickets() {
+        long promoted = waitlist.getPromotedCount();
+        if (promoted != seenPromotions) {
+            seenPromotions = promoted;
+            String userId = currentUser.getUserId();
+            for (User user : DatabaseManager.loadUsers()) {
+                if (user.getUserId().equals(userId)) {
+                    mergeStoredTickets(user.getTickets(), null);
+                    break;
                 }
             }
         }
+        List<Ticket> confirmed = waitlist.takeConfirmed(currentUser.getUserId());
+        if (!confirmed.isEmpty()) {
+            for (Ticket ticket : confirmed) {
+                currentUser.addTicket(ticket);
+            }
+            persistTickets(null);
+        }
+    }
+
+    /**
+     * Joins the RAC/waitlist queue for a full train on a service date.
+     * Returns the entry, or null if the date has departed or the waitlist is closed.
+     */
+    public WaitlistEntry joinWaitlist(Train train, LocalDate date) {
+        return logJoined(train, date, waitlist.join(train, date, currentUser.getUserId()));
+    }
+
+    /**
+     * Joins the RAC/waitlist queue for a full train on a service date, travelling from source to destination.
+     * Returns the entry, or null if the date has departed, the train doesn't serve the segment or the waitlist is closed.
+     */
+    public WaitlistEntry joinWaitlist(Train train, LocalDate date, String source, String destination) {
+        return logJoined(train, date, waitlist.join(train, date, currentUser.getUserId(), source, destination));
+    }
+
+    private static WaitlistEntry logJoined(Train train, LocalDate date, WaitlistEntry entry) {
+        if (entry != null) {
+            log.info("waitlist.joined", "trainId", train.getTrainId(), "date", date, "source", entry.getSource(),
+                    "destination", entry.getDestination(), "position", entry.getJoinedAs());
+        }
+        return entry;
+    }
 
-        return matchingTrains;
+    /**
+     * Leaves the waitlist; returns false if the entry was already confirmed or cancelled
+     */
+    public boolean cancelWaitlist(String entryId) {
+        return waitlist.cancel(entryId);
+    }
+
+    /**
+     * Gets the current user's waitlist entries that have not been turned into tickets yet
+     */
+    public List<WaitlistEntry> getWaitlistEntries() {
+        return currentUser == null ? Collections.<WaitlistEntry>emptyList() : waitlist.entriesFor(currentUser.getUserId());
+    }
+
+    /**
+     * Gets trains between source and destination
+     */
+    public List<Train> getTrains(String source, String destination) {
+        long start = System.nanoTime();
+        try {
+            return findTrains(source, destination);
+        } finally {
+            SEARCH_LATENCY.recordSince(start);
+        }
+    }
+
+    /**
+     * Searches trains for a date and class, each result carrying its fare
+     */
+    public List<TrainSearchResult> searchTrains(String source, String destination, LocalDate date,
+                                                TravelClass travelClass) {
+        long start = System.nanoTime();
+        try {
+            return TrainCatalog.getInstance().searchWithFares(source, destination, date, travelClass);
+        } finally {
+            SEARCH_LATENCY.recordSince(start);
+        }
+    }
+
+    /**
+     * Gets free seats per class and segment of a train on a date, without its seat map
+     */
+    public AvailabilitySummary getAvailability(Train train, LocalDate date) {
+        return TrainCatalog.getInstance().availability(train, date);
+    }
+
+    /**
+     * Runs a filtered, sorted and paginated search returning lightweight rows
+     */
+    public TrainPage searchTrains(TrainQuery query) {
+        long start = System.nanoTime();
+        try {
+            return TrainCatalog.getInstance().query(query);
+        } finally {
+            SEARCH_LATENCY.recordSince(start);
+        }
+    }
+
+    private List<Train> findTrains(String source, String destination) {
+        // Route matching runs on headers; seat maps and timetables load only for matches
+        return TrainCatalog.getInstance().search(source, destination);
+    }
+
+    /**
+     * Gets a consistent, read-only view of the train's seat map for today
+     */
+    public SeatMapSnapshot getSeatMap(Train train) {
+        return getSeatMap(train, LocalDate.now());
+    }
+
+    /**
+     * Gets a consistent, read-only view of the train's seat map on a service date
+     */
+    public SeatMapSnapshot getSeatMap(Train train, LocalDate date) {
+        return seatInventory.snapshot(train, date);
     }
 
     /**
      * Books a seat on a train
      */
     public boolean bookTrainSeat(Train train, int row, int col) {
+        return bookTrainSeat(train, LocalDate.now(), row, col);
+    }
+
+    /**
+     * Books a seat on a train for a service date
+     */
+    public boolean bookTrainSeat(Train train, LocalDate date, int row, int col) {
+        return !bookSeats(train, date, Collections.singletonList(new SeatPosition(row, col))).isEmpty();
+    }
+
+    /**
+     * Books a group of named seats as one unit: either every seat is booked and
+     * persisted with a single write, or nothing is. Returns the new tickets, or an
+     * empty list if any seat is invalid or taken.
+     */
+    public List<Ticket> bookSeats(Train train, List<SeatPosition> seats) {
+        return bookSeats(train, LocalDate.now(), seats);
+    }
+
+    /**
+     * Books a group of named seats for a service date as one unit
+     */
+    public List<Ticket> bookSeats(Train train, LocalDate date, List<SeatPosition> seats) {
+        long start = System.nanoTime();
+        boolean claimed = false;
         try {
-            // Update the seat status in the train object
-            List<List<Integer>> seats = train.getSeats();
-            if (row >= 0 && row < seats.size() &&
-                    col >= 0 && col < seats.get(row).size()) {
-
-                // Check if seat is available
-                if (seats.get(row).get(col) != 0) {
-                    return false; // Seat already booked
-                }
+            // Claim all seats under the lock stripe of the train's date partition
+            if (!isBookable(train, date) || !seatInventory.tryBookAll(train, date, seats)) {
+                BOOKINGS_REJECTED.increment();
+                return Collections.emptyList();
+            }
+            claimed = true;
+            return issueTickets(train, date, seats);
+        } catch (Exception e) {
+            log.error("booking.failed", e, "trainId", train.getTrainId(), "seats", seats.size());
+            if (claimed) {
+                releaseSeats(train, date, seats);
+            }
+            return Collections.emptyList();
+        } finally {
+            BOOKING_LATENCY.recordSince(start);
+        }
+    }
 
-                // Mark seat as booked
-                seats.get(row).set(col, 1);
-                train.setSeats(seats);
-
-                // Create a new ticket
-                String ticketId = "TN" + System.currentTimeMillis();
-                Ticket ticket = new Ticket(
-                        ticketId,
-                        currentUser.getUserId(),
-                        "Source", // Replace with actual source
-                        "Destination", // Replace with actual destination
-                        java.time.LocalDate.now().toString(),
-                        train
-                );
-
-                // Add to user's tickets
-                userTickets.add(ticket);
-
-                // Update train in database
-                List<Train> allTrains = DatabaseManager.loadTrains();
-                for (int i = 0; i < allTrains.size(); i++) {
-                    if (allTrains.get(i).getTrainId().equals(train.getTrainId())) {
-                        allTrains.set(i, train);
-                        break;
-                    }
-                }
-                DatabaseManager.saveTrains(allTrains);
+    /**
+     * Books the best block of adjacent seats in a single coach for a group.
+     * Returns the new tickets, or an empty list if no coach can seat the group together.
+     */
+    public List<Ticket> bookAdjacentSeats(Train train, int count) {
+        return bookBestAvailableSeats(train, count, SeatPreference.ANY);
+    }
 
-                return true;
+    /**
+     * Lets the server pick the best adjacent seats for a group, balancing load across
+     * coaches and honouring a window or aisle preference where possible.
+     */
+    public List<Ticket> bookBestAvailableSeats(Train train, int count, SeatPreference preference) {
+        return bookBestAvailableSeats(train, LocalDate.now(), count, preference);
+    }
+
+    /**
+     * Lets the server pick the best adjacent seats for a group on a service date
+     */
+    public List<Ticket> bookBestAvailableSeats(Train train, LocalDate date, int count, SeatPreference preference) {
+        long start = System.nanoTime();
+        List<SeatPosition> seats = Collections.emptyList();
+        try {
+            if (isBookable(train, date)) {
+                seats = seatInventory.bookBestAvailable(train, date, count, preference);
             }
-            return false;
+            if (seats.isEmpty()) {
+                BOOKINGS_REJECTED.increment();
+                return Collections.emptyList();
+            }
+            return issueTickets(train, date, seats);
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("booking.failed", e, "trainId", train.getTrainId(), "seats", count);
+            releaseSeats(train, date, seats);
+            return Collections.emptyList();
+        } finally {
+            BOOKING_LATENCY.recordSince(start);
+        }
+    }
+
+    /**
+     * Service dates that have already departed can no longer be sold, and while
+     * anyone is waitlisted the freed seats belong to the queue
+     */
+    private boolean isBookable(Train train, LocalDate date) {
+        if (date.isBefore(LocalDate.now())) {
+            log.warn("booking.pastDate", "trainId", train.getTrainId(), "date", date);
             return false;
         }
+        return !waitlist.hasWaiting(train.getTrainId(), date);
+    }
+
+    /**
+     * Creates one ticket per claimed seat; persistence follows from the seat events on the bus
+     */
+    private List<Ticket> issueTickets(Train train, LocalDate date, List<SeatPosition> seats) {
+        List<Ticket> tickets = new ArrayList<>(seats.size());
+        for (SeatPosition seat : seats) {
+            Ticket ticket = new Ticket(
+                    ids.next("TN"),
+                    currentUser.getUserId(),
+                    "Source", // Replace with actual source
+                    "Destination", // Replace with actual destination
+                    date.toString(),
+                    train
+            );
+            ticket.setSeatRow(seat.getRow());
+            ticket.setSeatCol(seat.getCol());
+            tickets.add(ticket);
+        }
+
+        // Add to user's tickets, taking them back out if they can't be stored
+        try {
+            for (Ticket ticket : tickets) {
+                currentUser.addTicket(ticket);
+            }
+            persistTickets(null);
+        } catch (RuntimeException e) {
+            for (Ticket ticket : tickets) {
+                currentUser.getTicketIndex().remove(ticket.getTicketId());
+            }
+            throw e;
+        }
+        log.debug("booking.confirmed", "trainId", train.getTrainId(), "date", date, "seats", tickets.size());
+        events.publish(BookingEvent.ticketsIssued(currentUser.getUserId(), train.getTrainId(), date, seats));
+
+        return tickets;
     }
 
     /**
      * Cancels a booking
      */
     public boolean cancelBooking(String ticketId) {
+        long start = System.nanoTime();
+        Ticket ticket = currentUser == null ? null : currentUser.getTicketIndex().get(ticketId);
+        if (ticket == null) {
+            CANCEL_LATENCY.recordSince(start);
+            return false;
+        }
+        List<SeatPosition> released = Collections.emptyList();
+        Train train = null;
+        LocalDate date = null;
         try {
-            Ticket ticketToRemove = null;
-
-            // Find the ticket
-            for (Ticket ticket : userTickets) {
-                if (ticket.getTicketId().equals(ticketId)) {
-                    ticketToRemove = ticket;
-                    break;
+            // Free the seat before dropping the ticket, so a failure leaves both in place
+            train = trainOf(ticket);
+            if (train == null) {
+                log.warn("cancel.unknownTrain", "ticketId", ticketId);
+                return false;
+            }
+            date = serviceDateOf(ticket);
+            if (date.isBefore(LocalDate.now())) {
+                // The train has left; its seat map may already be archived
+                log.warn("cancel.pastDate", "ticketId", ticketId, "date", date);
+                return false;
+            }
+            if (ticket.hasSeat()) {
+                if (seatInventory.release(train, date, ticket.getSeatRow(), ticket.getSeatCol())) {
+                    released = Collections.singletonList(new SeatPosition(ticket.getSeatRow(), ticket.getSeatCol()));
                 }
+            } else {
+                // Older tickets don't record their seat, so free the first booked one
+                released = releaseFirstBookedSeat(train, date);
             }
 
-            if (ticketToRemove != null) {
-                // Remove from user's tickets
-                userTickets.remove(ticketToRemove);
-
-                // Update seat status in train
-                Train train = ticketToRemove.getTrain();
+            currentUser.getTicketIndex().remove(ticketId);
+            persistTickets(ticketId);
 
-                // Find the seat (this is simplified - in a real app you'd store seat info in the ticket)
-                // For now, we'll just find any seat that's booked
-                List<List<Integer>> seats = train.getSeats();
-                boolean seatFound = false;
+            // Persistence and waitlist promotion follow from the release event, off this path
+            events.publish(BookingEvent.ticketCancelled(ticket.getUserId(), ticketId,
+                    train.getTrainId(), date, released));
+            return true;
+        } catch (Exception e) {
+            log.error("cancel.failed", e, "ticketId", ticketId);
+            // Put the ticket back and take its seat again
+            currentUser.getTicketIndex().add(ticket);
+            if (!released.isEmpty() && !seatInventory.tryBookAll(train, date, released)) {
+                log.warn("cancel.seatLost", "ticketId", ticketId, "trainId", train.getTrainId(), "date", date);
+            }
+            return false;
+        } finally {
+            CANCEL_LATENCY.recordSince(start);
+        }
+    }
 
-                for (int i = 0; i < seats.size() && !seatFound; i++) {
-                    for (int j = 0; j < seats.get(i).size() && !seatFound; j++) {
-                        if (seats.get(i).get(j) == 1) {
-                            // Mark seat as available
-                            seats.get(i).set(j, 0);
-                            seatFound = true;
-                        }
+    /**
+     * Writes the current user's tickets back to the users database. Tickets are
+     * stored with a seatless copy of their train, so a user record doesn't carry
+     * a seat map per ticket. Users not in the database (e.g. guests) are skipped.
+     * Tickets stored meanwhile by waitlist promotion are kept and picked up, except
+     * the one being cancelled, if any.
+     */
+    private void persistTickets(String cancelledTicketId) {
+        String userId = currentUser.getUserId();
+        DatabaseManager.transaction(engine -> {
+            List<User> users = engine.loadUsers();
+            for (User user : users) {
+                if (user.getUserId().equals(userId)) {
+                    mergeStoredTickets(user.getTickets(), cancelledTicketId);
+                    List<Ticket> stored = new ArrayList<>();
+                    for (Ticket ticket : currentUser.getTicketIndex().getAll()) {
+                        stored.add(storedCopy(ticket));
                     }
+                    user.setTickets(stored);
+                    engine.saveUsers(users);
+                    break;
                 }
+            }
+            return null;
+        });
+    }
 
-                train.setSeats(seats);
+    /**
+     * Adds stored tickets this session hasn't seen yet, such as ones issued off the waitlist
+     */
+    private void mergeStoredTickets(List<Ticket> stored, String cancelledTicketId) {
+        TicketIndex index = currentUser.getTicketIndex();
+        for (Ticket ticket : stored) {
+            if (index.get(ticket.getTicketId()) == null && !ticket.getTicketId().equals(cancelledTicketId)) {
+                index.add(ticket);
+            }
+        }
+    }
 
-                // Update train in database
-                List<Train> allTrains = DatabaseManager.loadTrains();
-                for (int i = 0; i < allTrains.size(); i++) {
-                    if (allTrains.get(i).getTrainId().equals(train.getTrainId())) {
-                        allTrains.set(i, train);
-                        break;
-                    }
-                }
-                DatabaseManager.saveTrains(allTrains);
+    static Ticket storedCopy(Ticket ticket) {
+        Ticket copy = new Ticket(ticket.getTicketId(), ticket.getUserId(), ticket.getSource(),
+                ticket.getDestination(), ticket.getDateOfTravel(), null);
+        Train train = ticket.getTrain();
+        if (train != null) {
+            copy.setTrain(new Train(train.getTrainId(), train.getTrainNo(), new ArrayList<>(),
+                    train.getStationTimes(), train.getStations()));
+        }
+        copy.setSeatRow(ticket.getSeatRow());
+        copy.setSeatCol(ticket.getSeatCol());
+        return copy;
+    }
 
-                return true;
+    /**
+     * Gets the full train for a ticket, or null if it can't be found; stored tickets only
+     * carry a seatless copy, which must never reach the seat inventory
+     */
+    private static Train trainOf(Ticket ticket) {
+        Train train = ticket.getTrain();
+        if (train != null && (train.getSeats() == null || train.getSeats().isEmpty())) {
+            Train full = DatabaseManager.loadTrain(train.getTrainId());
+            if (full == null || full.getSeats() == null || full.getSeats().isEmpty()) {
+                return null;
             }
+            ticket.setTrain(full);
+            return full;
+        }
+        return train;
+    }
 
-            return false;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
+    /**
+     * Gets the service date a ticket was sold for, treating unparseable dates as today
+     */
+    private static LocalDate serviceDateOf(Ticket ticket) {
+        try {
+            return LocalDate.parse(ticket.getDateOfTravel());
+        } catch (DateTimeParseException | NullPointerException e) {
+            return LocalDate.now();
+        }
+    }
+
+    /**
+     * Gives back seats claimed for a booking that then failed
+     */
+    private void releaseSeats(Train train, LocalDate date, List<SeatPosition> seats) {
+        for (SeatPosition seat : seats) {
+            seatInventory.release(train, date, seat.getRow(), seat.getCol());
+        }
+    }
+
+    /**
+     * Releases the first booked seat of a train, for tickets without seat information
+     */
+    private List<SeatPosition> releaseFirstBookedSeat(Train train, LocalDate date) {
+        SeatMapSnapshot seats = seatInventory.snapshot(train, date);
+        for (int i = 0; i < seats.getRowCount(); i++) {
+            for (int j = 0; j < seats.getSeatCount(i); j++) {
+                if (!seats.isAvailable(i, j) && seatInventory.release(train, date, i, j)) {
+                    return Collections.singletonList(new SeatPosition(i, j));
+                }
+            }
         }
+        return Collections.emptyList();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,791 @@
+package ticket.booking.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import ticket.booking.entities.SeatPosition;
+import ticket.booking.entities.Ticket;
+import ticket.booking.entities.Train;
+import ticket.booking.entities.TrainHeader;
+import ticket.booking.entities.User;
+import ticket.booking.logging.Log;
+import ticket.booking.logging.Logger;
+import ticket.booking.metrics.Counter;
+import ticket.booking.metrics.LatencyHistogram;
+import ticket.booking.metrics.Metrics;
+import ticket.booking.storage.AtomicFileWriter;
+import ticket.booking.util.DatabaseManager;
+import ticket.booking.util.IdGenerator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Waitlist and RAC queues for full trains, one pair per train and service date.
+ *
+ * Passengers are served strictly in join order: the first {@code racPerDate}
+ * waiting passengers hold RAC and everyone after them is waitlisted. When a seat
+ * frees up the head of RAC is confirmed and the head of the waitlist moves up
+ * to RAC. Both queues are sorted maps keyed by join sequence, so joining,
+ * leaving and promoting are all O(log n) even with tens of thousands waiting.
+ *
+ * Cancellations only flag the queue; a background worker drains flagged queues
+ * in batches, books the freed seats and persists the seat maps once per batch.
+ * While anyone is waiting the service refuses direct bookings for that date, so
+ * a freed seat cannot be taken by someone who arrives after the queue.
+ *
+ * Each entry keeps the passenger's source and destination, which their ticket
+ * carries on promotion. The seat itself is held over the whole route, like a
+ * direct booking's, because seat inventory sells seats for the whole route.
+ *
+ * A promoted passenger's ticket is written to their user record before the entry
+ * is confirmed; if that write fails the seat goes back and the passenger keeps
+ * their place. The seats are held under the queue's lock, but the write runs
+ * without it, so joins, cancels and position queries never wait on the disk. The waiting entries are saved to a state file shortly after each
+ * change and reloaded at startup. Each entry fixes its ticket ID when it joins, so
+ * an entry promoted just before a crash is recognised by its stored ticket.
+ *
+ * Sized by the {@code booking.waitlist.racPerDate} (default 8) and
+ * {@code booking.waitlist.maxPerDate} (default 100000) system properties; the
+ * state file comes from {@code booking.waitlist.file} (default {@code data/waitlist.json}).
+ */
+public class WaitlistEngine implements Closeable {
+    private static final Logger log = Log.getLogger(WaitlistEngine.class);
+    public static final String RAC_PROPERTY = "booking.waitlist.racPerDate";
+    public static final String MAX_PROPERTY = "booking.waitlist.maxPerDate";
+    public static final String FILE_PROPERTY = "booking.waitlist.file";
+    private static final long SAVE_INTERVAL_MILLIS = 200;
+
+    private static final Counter PROMOTED = Metrics.counter("waitlist.promoted");
+    private static final Counter REGRETS = Metrics.counter("waitlist.regret");
+    private static final LatencyHistogram BATCH_LATENCY = Metrics.histogram("waitlist.batch.latency");
+
+    private static volatile WaitlistEngine shared;
+
+    private final SeatInventory inventory;
+    private final int racPerDate;
+    private final int maxPerDate;
+    private final Runnable afterBatch;
+    private final TicketStore tickets;
+    private final Path stateFile;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final ConcurrentMap<String, ServiceQueue> queues = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, WaitlistEntry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Queue<WaitlistEntry>> entriesByUser = new ConcurrentHashMap<>();
+    private final BlockingQueue<ServiceQueue> flagged = new LinkedBlockingQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final IdGenerator ids = IdGenerator.getInstance();
+    private final LongAdder waiting = new LongAdder();
+    private final AtomicLong promotedTotal = new AtomicLong();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    private volatile boolean running;
+    private volatile boolean storeFailed;
+    private Thread worker;
+
+    /**
+     * Creates an engine that keeps promoted tickets for {@link #takeConfirmed} and saves nothing
+     */
+    public WaitlistEngine(SeatInventory inventory, int racPerDate, int maxPerDate, Runnable afterBatch) {
+        this(inventory, racPerDate, maxPerDate, afterBatch, TicketStore.NONE, null);
+    }
+
+    public WaitlistEngine(SeatInventory inventory, int racPerDate, int maxPerDate, Runnable afterBatch,
+                          TicketStore tickets, Path stateFile) {
+        this.inventory = inventory;
+        this.racPerDate = racPerDate;
+        this.maxPerDate = maxPerDate;
+        this.afterBatch = afterBatch;
+        this.tickets = tickets;
+        this.stateFile = stateFile;
+    }
+
+    /**
+     * Gets the process-wide engine, starting its promotion worker on first use.
+     * The booking side effects are subscribed first, so seats promoted from the
+     * restored queues are persisted like any other booking.
+     */
+    public static WaitlistEngine getInstance() {
+        WaitlistEngine engine = shared;
+        if (engine == null) {
+            synchronized (WaitlistEngine.class) {
+                engine = shared;
+                if (engine == null) {
+                    // The bus only delivers to subscribers that were there when an event was published
+                    BookingSideEffects.install();
+                    engine = new WaitlistEngine(SeatInventory.getInstance(),
+                            Integer.getInteger(RAC_PROPERTY, 8),
+                            Integer.getInteger(MAX_PROPERTY, 100_000),
+                            // Promotions publish seat events, and persistence follows from those
+                            () -> { },
+                            TicketStore.USERS,
+                            Paths.get(System.getProperty(FILE_PROPERTY, "data/waitlist.json")));
+                    engine.restore();
+                    engine.start();
+                    Metrics.gauge("waitlist.waiting", engine::getWaitingCount);
+                    shared = engine;
+                }
+            }
+        }
+        return engine;
+    }
+
+    /**
+     * Starts the background promotion worker
+     */
+    public synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::runWorker, "waitlist-promoter");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Adds a passenger travelling the train's whole route to the back of the queue for a train and date.
+     * Returns null if the date has departed or its waitlist is closed.
+     */
+    public WaitlistEntry join(Train train, LocalDate date, String userId) {
+        List<String> stations = train.getStations();
+        return join(train, date, userId, firstStop(stations), lastStop(stations));
+    }
+
+    /**
+     * Adds a passenger travelling from source to destination to the back of the queue for a train and date.
+     * Returns null if the date has departed, the train doesn't run from source to destination, or the waitlist is closed.
+     */
+    public WaitlistEntry join(Train train, LocalDate date, String userId, String source, String destination) {
+        if (date.isBefore(LocalDate.now())) {
+            return null;
+        }
+        if (!train.getStations().isEmpty() && !TrainHeader.of(train).servesRoute(source, destination)) {
+            log.warn("waitlist.routeRejected", "trainId", train.getTrainId(), "source", source,
+                    "destination", destination);
+            return null;
+        }
+        WaitlistEntry entry = enqueue(queueFor(train, date), userId, source, destination);
+        if (entry != null && inventory.snapshot(train, date).getAvailableSeats() > 0) {
+            // A seat freed up before this passenger joined; don't leave it idle
+            seatsReleased(train.getTrainId(), date);
+        }
+        return entry;
+    }
+
+    private WaitlistEntry enqueue(ServiceQueue queue, String userId, String source, String destination) {
+        Train train = queue.train;
+        LocalDate date = queue.date;
+        queue.lock.lock();
+        try {
+            int position = queue.rac.size() + queue.waitlist.size();
+            if (position >= maxPerDate) {
+                REGRETS.increment();
+                return null;
+            }
+            long seq = sequence.incrementAndGet();
+            boolean rac = queue.waitlist.isEmpty() && queue.rac.size() < racPerDate;
+            WaitlistEntry entry = new WaitlistEntry(ids.next("WL"), userId, train.getTrainId(), date,
+                    source, destination, seq,
+                    rac ? WaitlistStatus.RAC : WaitlistStatus.WAITLISTED,
+                    rac ? "RAC " + (queue.rac.size() + 1) : "WL " + (queue.waitlist.size() + 1),
+                    ids.next("TN"));
+            (rac ? queue.rac : queue.waitlist).put(seq, entry);
+            track(entry);
+            queue.updateSize();
+            dirty.set(true);
+            return entry;
+        } finally {
+            queue.lock.unlock();
+        }
+    }
+
+    /**
+     * Takes a passenger off the queue; returns false if the entry is unknown or no longer waiting
+     */
+    public boolean cancel(String entryId) {
+        WaitlistEntry entry = entries.get(entryId);
+        if (entry == null) {
+            return false;
+        }
+        ServiceQueue queue = queues.get(key(entry.getTrainId(), entry.getDate()));
+        if (queue == null) {
+            return false;
+        }
+        queue.lock.lock();
+        try {
+            WaitlistStatus status = entry.getStatus();
+            if (status == WaitlistStatus.RAC) {
+                queue.rac.remove(entry.getSequence());
+                refillRac(queue);
+            } else if (status == WaitlistStatus.WAITLISTED) {
+                queue.waitlist.remove(entry.getSequence());
+            } else {
+                return false;
+            }
+            drop(entry);
+            queue.updateSize();
+            return true;
+        } finally {
+            queue.lock.unlock();
+        }
+    }
+
+    /**
+     * Checks whether anyone is queued for a train on a date, in which case freed seats belong to them
+     */
+    public boolean hasWaiting(String trainId, LocalDate date) {
+        ServiceQueue queue = queues.get(key(trainId, date));
+        return queue != null && queue.size() > 0;
+    }
+
+    /**
+     * Flags a train's date after a cancellation; the worker promotes from it in its next batch
+     */
+    public void seatsReleased(String trainId, LocalDate date) {
+        ServiceQueue queue = queues.get(key(trainId, date));
+        if (queue != null && queue.size() > 0 && queue.flagged.compareAndSet(false, true)) {
+            flagged.add(queue);
+        }
+    }
+
+    /**
+     * Promotes from every flagged queue on the calling thread; returns the number of passengers confirmed
+     */
+    public int processPending() {
+        List<ServiceQueue> batch = new ArrayList<>();
+        flagged.drainTo(batch);
+        return promote(batch);
+    }
+
+    public WaitlistEntry getEntry(String entryId) {
+        return entries.get(entryId);
+    }
+
+    /**
+     * Gets a user's entries that are still waiting or confirmed but not yet collected
+     */
+    public List<WaitlistEntry> entriesFor(String userId) {
+        Queue<WaitlistEntry> queue = entriesByUser.get(userId);
+        if (queue == null) {
+            return Collections.emptyList();
+        }
+        List<WaitlistEntry> result = new ArrayList<>();
+        for (WaitlistEntry entry : queue) {
+            if (entry.getStatus() != WaitlistStatus.CANCELLED) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Hands over the tickets of a user's promoted entries, forgetting those entries
+     */
+    public List<Ticket> takeConfirmed(String userId) {
+        Queue<WaitlistEntry> queue = entriesByUser.get(userId);
+        if (queue == null) {
+            return Collections.emptyList();
+        }
+        List<Ticket> tickets = new ArrayList<>();
+        Iterator<WaitlistEntry> it = queue.iterator();
+        while (it.hasNext()) {
+            WaitlistEntry entry = it.next();
+            if (entry.getStatus() == WaitlistStatus.CONFIRMED) {
+                tickets.add(entry.getTicket());
+                it.remove();
+            } else if (entry.getStatus() == WaitlistStatus.CANCELLED) {
+                it.remove();
+            }
+        }
+        return tickets;
+    }
+
+    public int getRacCount(String trainId, LocalDate date) {
+        ServiceQueue queue = queues.get(key(trainId, date));
+        return queue == null ? 0 : queue.rac.size();
+    }
+
+    public int getWaitlistedCount(String trainId, LocalDate date) {
+        ServiceQueue queue = queues.get(key(trainId, date));
+        return queue == null ? 0 : queue.waitlist.size();
+    }
+
+    /**
+     * Gets the number of passengers promoted so far; sessions compare it to spot newly stored tickets
+     */
+    public long getPromotedCount() {
+        return promotedTotal.get();
+    }
+
+    /**
+     * Gets the number of passengers waiting across all trains and dates
+     */
+    public long getWaitingCount() {
+        return waiting.sum();
+    }
+
+    /**
+     * Drops the queues of service dates before the cutoff; their passengers never travelled
+     */
+    public void evictBefore(LocalDate cutoff) {
+        Iterator<ServiceQueue> it = queues.values().iterator();
+        while (it.hasNext()) {
+            ServiceQueue queue = it.next();
+            if (!queue.date.isBefore(cutoff)) {
+                continue;
+            }
+            it.remove();
+            queue.lock.lock();
+            try {
+                for (WaitlistEntry entry : queue.rac.values()) {
+                    drop(entry);
+                }
+                for (WaitlistEntry entry : queue.waitlist.values()) {
+                    drop(entry);
+                }
+                queue.rac.clear();
+                queue.waitlist.clear();
+                queue.updateSize();
+            } finally {
+                queue.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = worker;
+            worker = null;
+        }
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        processPending();
+        saveState();
+    }
+
+    /**
+     * Rebuilds the queues saved by an earlier run; returns the number of passengers put back.
+     * Departed dates, unknown trains and entries whose ticket was already stored are skipped.
+     */
+    public int restore() {
+        if (stateFile == null || !Files.exists(stateFile)) {
+            return 0;
+        }
+        JsonNode saved;
+        try {
+            saved = objectMapper.readTree(stateFile.toFile());
+        } catch (IOException e) {
+            log.warn("waitlist.restore.failed", e, "file", stateFile);
+            return 0;
+        }
+        Set<String> issued = tickets.storedTicketIds();
+        LocalDate today = LocalDate.now();
+        Map<String, List<JsonNode>> byTrain = new HashMap<>();
+        for (JsonNode node : saved) {
+            LocalDate date = LocalDate.parse(node.get("date").asText());
+            if (date.isBefore(today) || issued.contains(node.get("ticket_id").asText())) {
+                continue;
+            }
+            byTrain.computeIfAbsent(node.get("train_id").asText(), id -> new ArrayList<>()).add(node);
+        }
+
+        int restored = 0;
+        List<ServiceQueue> touched = new ArrayList<>();
+        for (Map.Entry<String, List<JsonNode>> trainNodes : byTrain.entrySet()) {
+            Train train = DatabaseManager.loadTrain(trainNodes.getKey());
+            if (train == null) {
+                continue;
+            }
+            List<WaitlistEntry> trainEntries = new ArrayList<>(trainNodes.getValue().size());
+            for (JsonNode node : trainNodes.getValue()) {
+                // Files saved before segments were recorded travel the whole route
+                trainEntries.add(new WaitlistEntry(node.get("entry_id").asText(), node.get("user_id").asText(),
+                        train.getTrainId(), LocalDate.parse(node.get("date").asText()),
+                        node.path("source").asText(firstStop(train.getStations())),
+                        node.path("destination").asText(lastStop(train.getStations())),
+                        node.get("sequence").asLong(), WaitlistStatus.WAITLISTED,
+                        node.get("joined_as").asText(), node.get("ticket_id").asText()));
+            }
+            trainEntries.sort(Comparator.comparingLong(WaitlistEntry::getSequence));
+            for (WaitlistEntry entry : trainEntries) {
+                ServiceQueue queue = queueFor(train, entry.getDate());
+                queue.lock.lock();
+                try {
+                    // Restored in join order, so RAC fills up again from the front
+                    queue.waitlist.put(entry.getSequence(), entry);
+                    refillRac(queue);
+                    queue.updateSize();
+                } finally {
+                    queue.lock.unlock();
+                }
+                track(entry);
+                sequence.accumulateAndGet(entry.getSequence(), Math::max);
+                if (!touched.contains(queue)) {
+                    touched.add(queue);
+                }
+                restored++;
+            }
+        }
+        for (ServiceQueue queue : touched) {
+            // Seats may have freed up while the app was down
+            if (inventory.snapshot(queue.train, queue.date).getAvailableSeats() > 0) {
+                seatsReleased(queue.train.getTrainId(), queue.date);
+            }
+        }
+        log.info("waitlist.restored", "passengers", restored, "file", stateFile);
+        return restored;
+    }
+
+    private void runWorker() {
+        List<ServiceQueue> batch = new ArrayList<>();
+        while (running) {
+            try {
+                // Wakes up now and then even without work, to save the queues after joins and cancels
+                ServiceQueue first = flagged.poll(SAVE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    flagged.drainTo(batch);
+                    promote(batch);
+                }
+                saveState();
+                if (storeFailed) {
+                    // The freed seats flag their queues again; don't hammer a failing database
+                    storeFailed = false;
+                    Thread.sleep(SAVE_INTERVAL_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                log.error("waitlist.batch.failed", e, "queues", batch.size());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes the waiting entries to the state file if anything changed since the last save
+     */
+    private void saveState() {
+        if (stateFile == null || !dirty.getAndSet(false)) {
+            return;
+        }
+        ArrayNode saved = objectMapper.createArrayNode();
+        for (WaitlistEntry entry : entries.values()) {
+            ObjectNode node = saved.addObject();
+            node.put("entry_id", entry.getEntryId());
+            node.put("user_id", entry.getUserId());
+            node.put("train_id", entry.getTrainId());
+            node.put("date", entry.getDate().toString());
+            node.put("source", entry.getSource());
+            node.put("destination", entry.getDestination());
+            node.put("sequence", entry.getSequence());
+            node.put("joined_as", entry.getJoinedAs());
+            node.put("ticket_id", entry.getTicketId());
+        }
+        try {
+            AtomicFileWriter.write(stateFile, objectMapper.writeValueAsBytes(saved));
+        } catch (IOException e) {
+            dirty.set(true);
+            log.warn("waitlist.save.failed", e, "file", stateFile);
+        }
+    }
+
+    private int promote(List<ServiceQueue> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        int promoted = 0;
+        for (ServiceQueue queue : batch) {
+            // Clear the flag first so a release during promotion queues another pass
+            queue.flagged.set(false);
+            promoted += promote(queue);
+        }
+        if (promoted > 0) {
+            PROMOTED.add(promoted);
+            promotedTotal.addAndGet(promoted);
+            afterBatch.run();
+            log.debug("waitlist.promoted", "queues", batch.size(), "passengers", promoted);
+        }
+        BATCH_LATENCY.recordSince(start);
+        return promoted;
+    }
+
+    /**
+     * Confirms passengers from the head of the queue for as long as seats are free.
+     * Their tickets are stored with their users first; if that fails nobody is confirmed.
+     */
+    private int promote(ServiceQueue queue) {
+        List<WaitlistEntry> heads = new ArrayList<>();
+        List<Ticket> issued = new ArrayList<>();
+        queue.lock.lock();
+        try {
+            while (!queue.rac.isEmpty() || !queue.waitlist.isEmpty()) {
+                TreeMap<Long, WaitlistEntry> head = queue.rac.isEmpty() ? queue.waitlist : queue.rac;
+                List<SeatPosition> seats = inventory.bookBestAvailable(queue.train, queue.date, 1, SeatPreference.ANY);
+                if (seats.isEmpty()) {
+                    break;
+                }
+                WaitlistEntry entry = head.pollFirstEntry().getValue();
+                // Out of the queue but not confirmed yet, so it can't be cancelled meanwhile
+                entry.setStatus(WaitlistStatus.PROMOTING);
+                SeatPosition seat = seats.get(0);
+                Ticket ticket = new Ticket(entry.getTicketId(), entry.getUserId(), entry.getSource(),
+                        entry.getDestination(), queue.date.toString(), queue.train);
+                ticket.setSeatRow(seat.getRow());
+                ticket.setSeatCol(seat.getCol());
+                heads.add(entry);
+                issued.add(ticket);
+                refillRac(queue);
+            }
+        } finally {
+            queue.updateSize();
+            queue.lock.unlock();
+        }
+        if (heads.isEmpty()) {
+            return 0;
+        }
+
+        // A full users-database write; the seats are already held, so the queue stays open meanwhile
+        Set<String> stored;
+        try {
+            stored = tickets.store(issued);
+        } catch (RuntimeException e) {
+            log.error("waitlist.store.error", e, "trainId", queue.train.getTrainId(), "date", queue.date);
+            stored = null;
+        }
+
+        queue.lock.lock();
+        try {
+            if (stored == null) {
+                putBack(queue, heads, issued);
+                return 0;
+            }
+            for (int i = 0; i < heads.size(); i++) {
+                WaitlistEntry entry = heads.get(i);
+                entry.confirm(issued.get(i));
+                entries.remove(entry.getEntryId());
+                waiting.decrement();
+                if (stored.contains(entry.getTicketId())) {
+                    // The ticket is with the user now; only unstored ones wait for takeConfirmed
+                    untrack(entry);
+                }
+            }
+            dirty.set(true);
+            return heads.size();
+        } finally {
+            queue.updateSize();
+            queue.lock.unlock();
+        }
+    }
+
+    /**
+     * Undoes a promotion whose tickets could not be stored: frees the seats and restores the queue order
+     */
+    private void putBack(ServiceQueue queue, List<WaitlistEntry> heads, List<Ticket> issued) {
+        storeFailed = true;
+        log.warn("waitlist.store.failed", "trainId", queue.train.getTrainId(), "date", queue.date,
+                "passengers", heads.size());
+        for (int i = 0; i < heads.size(); i++) {
+            Ticket ticket = issued.get(i);
+            inventory.release(queue.train, queue.date, ticket.getSeatRow(), ticket.getSeatCol());
+            WaitlistEntry entry = heads.get(i);
+            entry.setStatus(WaitlistStatus.RAC);
+            queue.rac.put(entry.getSequence(), entry);
+        }
+        while (queue.rac.size() > racPerDate) {
+            Map.Entry<Long, WaitlistEntry> last = queue.rac.pollLastEntry();
+            last.getValue().setStatus(WaitlistStatus.WAITLISTED);
+            queue.waitlist.put(last.getKey(), last.getValue());
+        }
+    }
+
+    /**
+     * Moves the head of the waitlist up to RAC while RAC has room
+     */
+    private void refillRac(ServiceQueue queue) {
+        while (queue.rac.size() < racPerDate && !queue.waitlist.isEmpty()) {
+            Map.Entry<Long, WaitlistEntry> head = queue.waitlist.pollFirstEntry();
+            head.getValue().setStatus(WaitlistStatus.RAC);
+            queue.rac.put(head.getKey(), head.getValue());
+        }
+    }
+
+    private void drop(WaitlistEntry entry) {
+        entry.setStatus(WaitlistStatus.CANCELLED);
+        entries.remove(entry.getEntryId());
+        untrack(entry);
+        waiting.decrement();
+        dirty.set(true);
+    }
+
+    private void track(WaitlistEntry entry) {
+        entries.put(entry.getEntryId(), entry);
+        entriesByUser.compute(entry.getUserId(), (id, queue) -> {
+            Queue<WaitlistEntry> result = queue != null ? queue : new ConcurrentLinkedQueue<>();
+            result.add(entry);
+            return result;
+        });
+        waiting.increment();
+    }
+
+    private void untrack(WaitlistEntry entry) {
+        entriesByUser.computeIfPresent(entry.getUserId(), (id, queue) -> {
+            queue.remove(entry);
+            return queue.isEmpty() ? null : queue;
+        });
+    }
+
+    private ServiceQueue queueFor(Train train, LocalDate date) {
+        String key = key(train.getTrainId(), date);
+        ServiceQueue queue = queues.get(key);
+        if (queue != null) {
+            return queue;
+        }
+        return queues.computeIfAbsent(key, k -> new ServiceQueue(train, date));
+    }
+
+    private static String firstStop(List<String> stations) {
+        return stations.isEmpty() ? null : stations.get(0);
+    }
+
+    private static String lastStop(List<String> stations) {
+        return stations.isEmpty() ? null : stations.get(stations.size() - 1);
+    }
+
+    private static String key(String trainId, LocalDate date) {
+        return trainId + '|' + date;
+    }
+
+    /**
+     * Where promoted tickets are stored before their passengers are confirmed
+     */
+    public interface TicketStore {
+        /** Keeps every ticket in memory for {@link #takeConfirmed}, for engines without a database */
+        TicketStore NONE = new TicketStore() {
+            @Override
+            public Set<String> store(List<Ticket> tickets) {
+                return Collections.emptySet();
+            }
+
+            @Override
+            public Set<String> storedTicketIds() {
+                return Collections.emptySet();
+            }
+        };
+
+        /** Adds the tickets to their users' records in the users database */
+        TicketStore USERS = new TicketStore() {
+            @Override
+            public Set<String> store(List<Ticket> tickets) {
+                return DatabaseManager.transaction(engine -> {
+                    List<User> users = engine.loadUsers();
+                    Set<String> stored = new HashSet<>();
+                    for (User user : users) {
+                        for (Ticket ticket : tickets) {
+                            if (user.getUserId().equals(ticket.getUserId())
+                                    && user.getTicketIndex().get(ticket.getTicketId()) == null) {
+                                user.addTicket(UserBookingService.storedCopy(ticket));
+                                stored.add(ticket.getTicketId());
+                            }
+                        }
+                    }
+                    if (!stored.isEmpty()) {
+                        engine.saveUsers(users);
+                    }
+                    return stored;
+                });
+            }
+
+            @Override
+            public Set<String> storedTicketIds() {
+                Set<String> ids = new HashSet<>();
+                for (User user : DatabaseManager.loadUsers()) {
+                    for (Ticket ticket : user.getTickets()) {
+                        ids.add(ticket.getTicketId());
+                    }
+                }
+                return ids;
+            }
+        };
+
+        /**
+         * Stores the tickets with their users; returns the IDs stored, or null if the write failed.
+         * Tickets of users the store doesn't know are left out of the result.
+         */
+        Set<String> store(List<Ticket> tickets);
+
+        /**
+         * Gets the IDs of every ticket already stored
+         */
+        Set<String> storedTicketIds();
+    }
+
+    /**
+     * RAC and waitlist for one train on one service date, both keyed by join sequence
+     */
+    private static final class ServiceQueue {
+        private final Train train;
+        private final LocalDate date;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final TreeMap<Long, WaitlistEntry> rac = new TreeMap<>();
+        private final TreeMap<Long, WaitlistEntry> waitlist = new TreeMap<>();
+        private final AtomicBoolean flagged = new AtomicBoolean();
+        // Read without the lock by hasWaiting and seatsReleased
+        private volatile int size;
+
+        private ServiceQueue(Train train, LocalDate date) {
+            this.train = train;
+            this.date = date;
+        }
+
+        private int size() {
+            return size;
+        }
+
+        /**
+         * Republishes the queue length; called under the lock after every change
+         */
+        private void updateSize() {
+            size = rac.size() + waitlist.size();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package ticket.booking.service;
+
+import ticket.booking.entities.Ticket;
+
+import java.time.LocalDate;
+
+/**
+ * One waitlisted passenger for a train on a service date.
+ *
+ * Entries are ordered by their global join sequence, which is what makes
+ * promotion first-come first-served. Status and ticket are written only by
+ * {@link WaitlistEngine} under the queue's lock and published through volatile fields.
+ */
+public final class WaitlistEntry {
+    private final String entryId;
+    private final String userId;
+    private final String trainId;
+    private final LocalDate date;
+    private final String source;
+    private final String destination;
+    private final long sequence;
+    private final String joinedAs;
+    private final String ticketId;
+    private volatile WaitlistStatus status;
+    private volatile Ticket ticket;
+
+    WaitlistEntry(String entryId, String userId, String trainId, LocalDate date, String source, String destination,
+                  long sequence, WaitlistStatus status, String joinedAs, String ticketId) {
+        this.entryId = entryId;
+        this.userId = userId;
+        this.trainId = trainId;
+        this.date = date;
+        this.source = source;
+        this.destination = destination;
+        this.sequence = sequence;
+        this.status = status;
+        this.joinedAs = joinedAs;
+        this.ticketId = ticketId;
+    }
+
+    public String getEntryId() {
+        return entryId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getTrainId() {
+        return trainId;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    /**
+     * Gets the station the passenger boards at
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Gets the station the passenger leaves the train at
+     */
+    public String getDestination() {
+        return destination;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets the position shown when the passenger joined, e.g. "RAC 3" or "WL 27"
+     */
+    public String getJoinedAs() {
+        return joinedAs;
+    }
+
+    /**
+     * Gets the ID the ticket will carry once promoted, fixed at join time so a restart can tell whether it was issued
+     */
+    public String getTicketId() {
+        return ticketId;
+    }
+
+    public WaitlistStatus getStatus() {
+        return status;
+    }
+
+    void setStatus(WaitlistStatus status) {
+        this.status = status;
+    }
+
+    /**
+     * Gets the ticket issued on promotion, or null while still waiting
+     */
+    public Ticket getTicket() {
+        return ticket;
+    }
+
+    void confirm(Ticket ticket) {
+        this.ticket = ticket;
+        this.status = WaitlistStatus.CONFIRMED;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s %s-%s on %s (%s, joined as %s)", entryId, trainId, source, destination, date,
+                status, joinedAs);
+    }
+}
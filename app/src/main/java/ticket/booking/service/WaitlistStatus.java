@@ -0,0 +1,15 @@
+package ticket.booking.service;
+
+/**
+ * Where a waitlisted passenger stands.
+ * RAC (reservation against cancellation) passengers are at the front of the
+ * queue and are confirmed before anyone still on the plain waitlist.
+ * PROMOTING passengers hold a seat while their ticket is being stored.
+ */
+public enum WaitlistStatus {
+    RAC,
+    WAITLISTED,
+    PROMOTING,
+    CONFIRMED,
+    CANCELLED
+}
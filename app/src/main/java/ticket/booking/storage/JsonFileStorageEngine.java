@@ -0,0 +1,248 @@
+package ticket.booking.storage;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import ticket.booking.entities.Train;
+import ticket.booking.entities.TrainHeader;
+import ticket.booking.entities.User;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Stores users and trains as two pretty-printed JSON documents, the original
+ * {@code data/users.json} / {@code data/trains.json} format.
+ *
+ * Saves are handed to a {@link PersistenceWriter}, which coalesces bursts and
+ * replaces each file atomically; loads see saves that are still queued.
+ * Train headers and single trains are served from a {@link TrainFileIndex}
+ * instead of parsing the whole catalog. Re-indexing after a change keeps the
+ * header of every train whose JSON is unchanged. Upserts splice the changed
+ * trains into the document's bytes without parsing the others.
+ */
+public class JsonFileStorageEngine implements StorageEngine {
+    public static final String USERS_FILE = "users.json";
+    public static final String TRAINS_FILE = "trains.json";
+
+    private static final TypeReference<List<User>> USER_LIST = new TypeReference<List<User>>() {};
+    private static final TypeReference<List<Train>> TRAIN_LIST = new TypeReference<List<Train>>() {};
+
+    private final Path usersFile;
+    private final Path trainsFile;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final PersistenceWriter writer;
+
+    private volatile TrainFileIndex trainIndex = TrainFileIndex.EMPTY;
+
+    // Saves staged by the transaction holding the write lock
+    private byte[] pendingUsers;
+    private byte[] pendingTrains;
+
+    public JsonFileStorageEngine(Path dataDir) {
+        this(dataDir, PersistenceWriter.getShared());
+    }
+
+    public JsonFileStorageEngine(Path dataDir, PersistenceWriter writer) {
+        this.usersFile = dataDir.resolve(USERS_FILE);
+        this.trainsFile = dataDir.resolve(TRAINS_FILE);
+        this.writer = writer;
+        objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+    }
+
+    @Override
+    public String getName() {
+        return "json";
+    }
+
+    @Override
+    public boolean hasUsers() {
+        return writer.latest(usersFile) != null || Files.exists(usersFile);
+    }
+
+    @Override
+    public boolean hasTrains() {
+        return writer.latest(trainsFile) != null || Files.exists(trainsFile);
+    }
+
+    @Override
+    public List<User> loadUsers() throws IOException {
+        byte[] staged = inOwnTransaction() ? pendingUsers : null;
+        if (staged == null) {
+            staged = writer.latest(usersFile);
+        }
+        if (staged != null) {
+            return objectMapper.readValue(staged, USER_LIST);
+        }
+        if (!Files.exists(usersFile)) {
+            return new ArrayList<>();
+        }
+        return objectMapper.readValue(usersFile.toFile(), USER_LIST);
+    }
+
+    @Override
+    public void saveUsers(List<User> users) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(users);
+        if (inOwnTransaction()) {
+            pendingUsers = json;
+            return;
+        }
+        writeLock.lock();
+        try {
+            write(usersFile, json);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Train> loadTrains() throws IOException {
+        byte[] staged = inOwnTransaction() ? pendingTrains : null;
+        if (staged == null) {
+            staged = writer.latest(trainsFile);
+        }
+        if (staged != null) {
+            return objectMapper.readValue(staged, TRAIN_LIST);
+        }
+        if (!Files.exists(trainsFile)) {
+            return new ArrayList<>();
+        }
+        return objectMapper.readValue(trainsFile.toFile(), TRAIN_LIST);
+    }
+
+    @Override
+    public void saveTrains(List<Train> trains) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(trains);
+        if (inOwnTransaction()) {
+            pendingTrains = json;
+            return;
+        }
+        writeLock.lock();
+        try {
+            write(trainsFile, json);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void upsertTrains(List<Train> trains) throws IOException {
+        // Each train serializes exactly as it sits in the pretty-printed list
+        Map<String, byte[]> records = new LinkedHashMap<>();
+        for (Train train : trains) {
+            records.put(train.getTrainId(), objectMapper.writeValueAsBytes(train));
+        }
+        transaction(engine -> {
+            TrainFileIndex index = currentTrainIndex();
+            byte[] document = index.getContents();
+            if (document == null && Files.exists(trainsFile)) {
+                // Index exactly the bytes being spliced, in case the file was edited in between
+                document = Files.readAllBytes(trainsFile);
+                index = TrainFileIndex.of(objectMapper.getFactory(), document, index);
+            }
+            byte[] spliced = document == null ? null : index.splice(document, records);
+            if (spliced == null) {
+                // A new train; rewrite the list once
+                saveTrains(StorageEngine.withUpserts(loadTrains(), trains));
+            } else {
+                pendingTrains = spliced;
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public List<TrainHeader> loadTrainHeaders() throws IOException {
+        return currentTrainIndex().getHeaders();
+    }
+
+    @Override
+    public Train loadTrain(String trainId) throws IOException {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            byte[] json = currentTrainIndex().read(trainId);
+            if (json == null) {
+                return null;
+            }
+            try {
+                Train train = objectMapper.readValue(json, Train.class);
+                if (trainId.equals(train.getTrainId())) {
+                    return train;
+                }
+            } catch (IOException e) {
+                // The file was replaced while reading; reindex and retry
+            }
+            trainIndex = TrainFileIndex.EMPTY;
+        }
+        throw new IOException("Trains file kept changing while loading " + trainId);
+    }
+
+    /**
+     * Returns an index over the newest trains document, rebuilding it only when that document changed
+     */
+    private TrainFileIndex currentTrainIndex() throws IOException {
+        TrainFileIndex index = trainIndex;
+        byte[] latest = inOwnTransaction() ? pendingTrains : null;
+        if (latest == null) {
+            latest = writer.latest(trainsFile);
+        }
+        if (latest != null) {
+            if (!index.isOver(latest)) {
+                index = TrainFileIndex.of(objectMapper.getFactory(), latest, index);
+                trainIndex = index;
+            }
+            return index;
+        }
+        if (!Files.exists(trainsFile)) {
+            return TrainFileIndex.EMPTY;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(trainsFile, BasicFileAttributes.class);
+        if (!index.isCurrent(attributes)) {
+            index = TrainFileIndex.of(objectMapper.getFactory(), trainsFile, index);
+            trainIndex = index;
+        }
+        return index;
+    }
+
+    @Override
+    public <T> T transaction(StorageTransaction<T> work) throws IOException {
+        if (inOwnTransaction()) {
+            return work.run(this); // Nested: join the outer transaction
+        }
+        writeLock.lock();
+        try {
+            T result = work.run(this);
+            if (pendingUsers != null) {
+                write(usersFile, pendingUsers);
+            }
+            if (pendingTrains != null) {
+                write(trainsFile, pendingTrains);
+            }
+            return result;
+        } finally {
+            pendingUsers = null;
+            pendingTrains = null;
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        writer.flush();
+    }
+
+    private boolean inOwnTransaction() {
+        return writeLock.isHeldByCurrentThread();
+    }
+
+    private void write(Path file, byte[] json) {
+        writer.submit(file, json);
+    }
+}
@@ -0,0 +1,389 @@
+package ticket.booking.storage;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ticket.booking.entities.Train;
+import ticket.booking.entities.TrainHeader;
+import ticket.booking.entities.User;
+import ticket.booking.logging.Log;
+import ticket.booking.logging.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, log-structured store for users and trains.
+ *
+ * Each user and train is one record keyed by its ID. Saving a list appends only
+ * the records whose JSON changed (plus tombstones for removed ones), so a booking
+ * writes one train record instead of rewriting the whole catalog. The latest
+ * bytes per key are indexed in memory; the log is replayed on open and compacted
+ * once dead records outweigh live ones.
+ *
+ * Record layout: kind (1 byte), key length (2), payload length (4), key, payload,
+ * CRC32 of everything before it (8). A torn or corrupt tail is truncated on open.
+ */
+public class LogStructuredStorageEngine implements StorageEngine {
+    private static final Logger log = Log.getLogger(LogStructuredStorageEngine.class);
+    public static final String LOG_FILE = "booking.log";
+
+    private static final byte USER = 'U';
+    private static final byte TRAIN = 'T';
+    private static final byte USER_DELETED = 'u';
+    private static final byte TRAIN_DELETED = 't';
+    private static final int HEADER_BYTES = 1 + 2 + 4;
+    private static final int CHECKSUM_BYTES = 8;
+    private static final long MIN_COMPACTION_BYTES = 1024 * 1024;
+
+    private final Path logFile;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private FileChannel channel;
+
+    // Latest payload per key, in first-insertion order
+    private volatile Map<String, byte[]> users = new LinkedHashMap<>();
+    private volatile Map<String, byte[]> trains = new LinkedHashMap<>();
+    private volatile Map<String, ParsedHeader> parsedHeaders = new LinkedHashMap<>();
+    private long liveBytes;
+
+    // Transaction state, only touched while holding the write lock
+    private Map<String, byte[]> usersBeforeTransaction;
+    private Map<String, byte[]> trainsBeforeTransaction;
+    private long liveBytesBeforeTransaction;
+    private long positionBeforeTransaction = -1;
+
+    public LogStructuredStorageEngine(Path dataDir) throws IOException {
+        Files.createDirectories(dataDir);
+        this.logFile = dataDir.resolve(LOG_FILE);
+        boolean fresh = !Files.exists(logFile);
+        this.channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        replay();
+
+        // First open: seed from the JSON files so both backends start from the same data
+        if (fresh) {
+            JsonFileStorageEngine json = new JsonFileStorageEngine(dataDir);
+            if (json.hasUsers()) {
+                saveUsers(json.loadUsers());
+            }
+            if (json.hasTrains()) {
+                saveTrains(json.loadTrains());
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "log";
+    }
+
+    @Override
+    public boolean hasUsers() {
+        return !users.isEmpty();
+    }
+
+    @Override
+    public boolean hasTrains() {
+        return !trains.isEmpty();
+    }
+
+    @Override
+    public List<User> loadUsers() throws IOException {
+        List<User> result = new ArrayList<>();
+        for (byte[] payload : users.values()) {
+            result.add(objectMapper.readValue(payload, User.class));
+        }
+        return result;
+    }
+
+    @Override
+    public void saveUsers(List<User> list) throws IOException {
+        Map<String, byte[]> records = new LinkedHashMap<>();
+        for (User user : list) {
+            String key = user.getUserId() != null ? user.getUserId() : user.getUsername();
+            records.put(key, objectMapper.writeValueAsBytes(user));
+        }
+        transaction(engine -> {
+            users = apply(users, records, USER, USER_DELETED, true);
+            return null;
+        });
+    }
+
+    @Override
+    public List<Train> loadTrains() throws IOException {
+        List<Train> result = new ArrayList<>();
+        for (byte[] payload : trains.values()) {
+            result.add(objectMapper.readValue(payload, Train.class));
+        }
+        return result;
+    }
+
+    @Override
+    public void saveTrains(List<Train> list) throws IOException {
+        Map<String, byte[]> records = new LinkedHashMap<>();
+        for (Train train : list) {
+            records.put(train.getTrainId(), objectMapper.writeValueAsBytes(train));
+        }
+        transaction(engine -> {
+            trains = apply(trains, records, TRAIN, TRAIN_DELETED, true);
+            return null;
+        });
+    }
+
+    @Override
+    public void upsertTrains(List<Train> list) throws IOException {
+        Map<String, byte[]> records = new LinkedHashMap<>();
+        for (Train train : list) {
+            records.put(train.getTrainId(), objectMapper.writeValueAsBytes(train));
+        }
+        transaction(engine -> {
+            trains = apply(trains, records, TRAIN, TRAIN_DELETED, false);
+            return null;
+        });
+    }
+
+    @Override
+    public List<TrainHeader> loadTrainHeaders() throws IOException {
+        Map<String, byte[]> current = trains;
+        Map<String, ParsedHeader> parsed = new LinkedHashMap<>(current.size());
+        List<TrainHeader> headers = new ArrayList<>(current.size());
+        Map<String, ParsedHeader> previous = parsedHeaders;
+
+        for (Map.Entry<String, byte[]> record : current.entrySet()) {
+            // Only records that changed since the last call are parsed again
+            ParsedHeader header = previous.get(record.getKey());
+            if (header == null || header.payload != record.getValue()) {
+                try (JsonParser parser = objectMapper.getFactory().createParser(record.getValue())) {
+                    parser.nextToken();
+                    header = new ParsedHeader(record.getValue(), TrainJson.readHeader(parser));
+                }
+            }
+            parsed.put(record.getKey(), header);
+            headers.add(header.header);
+        }
+        parsedHeaders = parsed;
+        return headers;
+    }
+
+    @Override
+    public Train loadTrain(String trainId) throws IOException {
+        byte[] payload = trains.get(trainId);
+        return payload == null ? null : objectMapper.readValue(payload, Train.class);
+    }
+
+    @Override
+    public <T> T transaction(StorageTransaction<T> work) throws IOException {
+        if (writeLock.isHeldByCurrentThread()) {
+            return work.run(this); // Nested: join the outer transaction
+        }
+        writeLock.lock();
+        try {
+            usersBeforeTransaction = users;
+            trainsBeforeTransaction = trains;
+            liveBytesBeforeTransaction = liveBytes;
+            positionBeforeTransaction = channel.size();
+            T result;
+            try {
+                result = work.run(this);
+            } catch (IOException | RuntimeException e) {
+                rollback();
+                throw e;
+            }
+            // One fsync for everything the transaction appended
+            if (channel.size() != positionBeforeTransaction) {
+                channel.force(false);
+            }
+            compactIfNeeded();
+            return result;
+        } finally {
+            usersBeforeTransaction = null;
+            trainsBeforeTransaction = null;
+            positionBeforeTransaction = -1;
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writeLock.lock();
+        try {
+            channel.close();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Appends changed and removed records and returns the new index
+     */
+    /**
+     * Appends the changed records; with {@code replaceAll}, keys missing from the records are deleted
+     */
+    private Map<String, byte[]> apply(Map<String, byte[]> current, Map<String, byte[]> records,
+                                      byte kind, byte deletedKind, boolean replaceAll) throws IOException {
+        Map<String, byte[]> next = new LinkedHashMap<>(current);
+        for (Map.Entry<String, byte[]> record : records.entrySet()) {
+            byte[] previous = current.get(record.getKey());
+            if (previous == null || !Arrays.equals(previous, record.getValue())) {
+                append(kind, record.getKey(), record.getValue());
+                next.put(record.getKey(), record.getValue());
+                liveBytes += record.getValue().length - (previous == null ? 0 : previous.length);
+            }
+        }
+        if (!replaceAll) {
+            return next;
+        }
+        Set<String> removed = new HashSet<>(current.keySet());
+        removed.removeAll(records.keySet());
+        for (String key : removed) {
+            append(deletedKind, key, new byte[0]);
+            liveBytes -= next.remove(key).length;
+        }
+        return next;
+    }
+
+    private void append(byte kind, String key, byte[] payload) throws IOException {
+        channel.write(ByteBuffer.wrap(encode(kind, key, payload)), channel.size());
+    }
+
+    private static byte[] encode(byte kind, String key, byte[] payload) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_BYTES + keyBytes.length + payload.length + CHECKSUM_BYTES);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(kind);
+        out.writeShort(keyBytes.length);
+        out.writeInt(payload.length);
+        out.write(keyBytes);
+        out.write(payload);
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Rebuilds the in-memory index from the log, truncating a torn or corrupt tail
+     */
+    private void replay() throws IOException {
+        Map<String, byte[]> replayedUsers = new LinkedHashMap<>();
+        Map<String, byte[]> replayedTrains = new LinkedHashMap<>();
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+
+        while (position + HEADER_BYTES <= size) {
+            header.clear();
+            channel.read(header, position);
+            header.flip();
+            byte kind = header.get();
+            int keyLength = header.getShort() & 0xFFFF;
+            int payloadLength = header.getInt();
+            long recordLength = (long) HEADER_BYTES + keyLength + payloadLength + CHECKSUM_BYTES;
+            if (payloadLength < 0 || position + recordLength > size) {
+                break;
+            }
+
+            ByteBuffer record = ByteBuffer.allocate((int) recordLength);
+            channel.read(record, position);
+            record.flip();
+            CRC32 crc = new CRC32();
+            crc.update(record.array(), 0, (int) recordLength - CHECKSUM_BYTES);
+            if (crc.getValue() != record.getLong((int) recordLength - CHECKSUM_BYTES)) {
+                break;
+            }
+
+            String key = new String(record.array(), HEADER_BYTES, keyLength, StandardCharsets.UTF_8);
+            byte[] payload = Arrays.copyOfRange(record.array(), HEADER_BYTES + keyLength, HEADER_BYTES + keyLength + payloadLength);
+            if (kind == USER) {
+                replayedUsers.put(key, payload);
+            } else if (kind == TRAIN) {
+                replayedTrains.put(key, payload);
+            } else if (kind == USER_DELETED) {
+                replayedUsers.remove(key);
+            } else if (kind == TRAIN_DELETED) {
+                replayedTrains.remove(key);
+            } else {
+                break;
+            }
+            position += recordLength;
+        }
+
+        if (position < size) {
+            log.warn("log.tail.truncated", "file", logFile, "bytes", size - position);
+            channel.truncate(position);
+            channel.force(true);
+        }
+        users = replayedUsers;
+        trains = replayedTrains;
+        liveBytes = payloadBytes(replayedUsers) + payloadBytes(replayedTrains);
+    }
+
+    private void rollback() throws IOException {
+        users = usersBeforeTransaction;
+        trains = trainsBeforeTransaction;
+        liveBytes = liveBytesBeforeTransaction;
+        channel.truncate(positionBeforeTransaction);
+    }
+
+    /**
+     * Rewrites the log with only live records once it is mostly garbage
+     */
+    private void compactIfNeeded() throws IOException {
+        long size = channel.size();
+        if (size < MIN_COMPACTION_BYTES || size < liveBytes * 4) {
+            return;
+        }
+        Path compacted = logFile.resolveSibling(LOG_FILE + ".compact");
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Map.Entry<String, byte[]> user : users.entrySet()) {
+                out.write(ByteBuffer.wrap(encode(USER, user.getKey(), user.getValue())));
+            }
+            for (Map.Entry<String, byte[]> train : trains.entrySet()) {
+                out.write(ByteBuffer.wrap(encode(TRAIN, train.getKey(), train.getValue())));
+            }
+            out.force(true);
+        }
+        // Swap the compacted log in atomically; the old log stays valid until the rename
+        channel.close();
+        Files.move(compacted, logFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        channel = FileChannel.open(logFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static long payloadBytes(Map<String, byte[]> records) {
+        long total = 0;
+        for (byte[] payload : records.values()) {
+            total += payload.length;
+        }
+        return total;
+    }
+
+    /**
+     * A train header together with the record it was parsed from
+     */
+    private static final class ParsedHeader {
+        private final byte[] payload;
+        private final TrainHeader header;
+
+        private ParsedHeader(byte[] payload, TrainHeader header) {
+            this.payload = payload;
+            this.header = header;
+        }
+    }
+}
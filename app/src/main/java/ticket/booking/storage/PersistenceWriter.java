@@ -0,0 +1,255 @@
+package ticket.booking.storage;
+
+import ticket.booking.logging.Log;
+import ticket.booking.logging.Logger;
+import ticket.booking.metrics.Counter;
+import ticket.booking.metrics.Metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Single background thread that owns all whole-file writes.
+ *
+ * Callers hand over the latest serialized contents of a file and return
+ * immediately. If the same file is saved again before the thread gets to it,
+ * only the newest contents are written, so a burst of bookings turns into one
+ * disk write. Writes of any file are spaced at least {@code minIntervalMillis}
+ * apart, capping the disk write rate under booking storms.
+ *
+ * A failed write stays pending, so readers keep seeing it through
+ * {@link #latest}, and is retried with a backoff that doubles up to
+ * {@value #MAX_RETRY_MILLIS} ms, unless newer contents for the file replace it.
+ * While any file is failing, {@link #getFailure()} returns the last error, the
+ * {@code persistence.failing} gauge counts the files, and {@link #flush()} throws.
+ *
+ * The interval comes from the {@code booking.persist.minIntervalMs} system property.
+ */
+public class PersistenceWriter {
+    private static final Logger log = Log.getLogger(PersistenceWriter.class);
+    public static final String MIN_INTERVAL_PROPERTY = "booking.persist.minIntervalMs";
+    private static final long DEFAULT_MIN_INTERVAL_MILLIS = 200;
+    private static final long MIN_RETRY_MILLIS = 100;
+    private static final long MAX_RETRY_MILLIS = 30_000;
+    private static final Counter FAILURES = Metrics.counter("persistence.write.failures");
+
+    private static volatile PersistenceWriter shared;
+
+    private final long minIntervalNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Map<Path, byte[]> pending = new LinkedHashMap<>();
+    private final Map<Path, byte[]> inFlight = new LinkedHashMap<>();
+    private final Thread thread;
+    private long lastWriteNanos;
+    private volatile long writeCount;
+    private int flushWaiters;
+    // Flush calls so far, and how many of them the last round started after
+    private long flushRequests;
+    private long flushesServed;
+    // Completed write rounds, and whether one is under way
+    private long rounds;
+    private boolean writing;
+    private long retryAtNanos;
+    private long backoffMillis;
+    private volatile IOException failure;
+    private volatile int failingFiles;
+    private boolean running = true;
+
+    public PersistenceWriter(long minIntervalMillis) {
+        this.minIntervalNanos = TimeUnit.MILLISECONDS.toNanos(minIntervalMillis);
+        this.lastWriteNanos = System.nanoTime() - minIntervalNanos;
+        this.thread = new Thread(this::run, "persistence-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Gets the process-wide writer, flushed on JVM shutdown
+     */
+    public static PersistenceWriter getShared() {
+        PersistenceWriter writer = shared;
+        if (writer == null) {
+            synchronized (PersistenceWriter.class) {
+                writer = shared;
+                if (writer == null) {
+                    writer = new PersistenceWriter(Long.getLong(MIN_INTERVAL_PROPERTY, DEFAULT_MIN_INTERVAL_MILLIS));
+                    PersistenceWriter toFlush = writer;
+                    Runtime.getRuntime().addShutdownHook(new Thread(toFlush::close, "persistence-writer-shutdown"));
+                    Metrics.gauge("persistence.writes", toFlush::getWriteCount);
+                    Metrics.gauge("persistence.failing", toFlush::getFailingFiles);
+                    shared = writer;
+                }
+            }
+        }
+        return writer;
+    }
+
+    /**
+     * Queues the file contents for writing, replacing any not-yet-written contents
+     */
+    public void submit(Path file, byte[] contents) {
+        lock.lock();
+        try {
+            if (!running) {
+                throw new IllegalStateException("Persistence writer is closed");
+            }
+            pending.put(file, contents);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns contents that were submitted but may not be on disk yet, or null.
+     * Readers use this so they always see their own saves.
+     */
+    public byte[] latest(Path file) {
+        lock.lock();
+        try {
+            byte[] contents = pending.get(file);
+            return contents != null ? contents : inFlight.get(file);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until everything submitted so far is on disk. Failed writes are retried
+     * at once; if one fails again, throws with its error and the contents stay pending.
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            flushWaiters++;
+            flushRequests++;
+            changed.signalAll();
+            // Only a round that starts after this call has tried everything submitted so far
+            long round = rounds + (writing ? 1 : 0);
+            while (!pending.isEmpty() || !inFlight.isEmpty()) {
+                if (failure != null && rounds > round) {
+                    throw new UncheckedIOException("Could not write " + failingFiles + " file(s)", failure);
+                }
+                changed.awaitUninterruptibly();
+            }
+        } finally {
+            flushWaiters--;
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of file writes performed so far
+     */
+    public long getWriteCount() {
+        return writeCount;
+    }
+
+    /**
+     * Last write error while any file is still failing, or null when every write went through
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Number of files whose latest write failed and is waiting to be retried
+     */
+    public int getFailingFiles() {
+        return failingFiles;
+    }
+
+    /**
+     * Writes out everything pending and stops the thread; contents that still can't be written are logged and dropped
+     */
+    public void close() {
+        try {
+            flush();
+        } catch (UncheckedIOException e) {
+            log.error("persistence.close.unwritten", e.getCause(), "files", failingFiles);
+        }
+        lock.lock();
+        try {
+            running = false;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            lock.lock();
+            try {
+                while (running && pending.isEmpty()) {
+                    changed.awaitUninterruptibly();
+                }
+                if (pending.isEmpty() || !running && failure != null) {
+                    return;
+                }
+                // Rate cap and retry backoff: let further saves coalesce until the interval has
+                // passed, unless someone is waiting for a flush; each flush skips the backoff once
+                long wait = Math.max(lastWriteNanos + minIntervalNanos, retryAtNanos) - System.nanoTime();
+                while (running && wait > 0 && (flushWaiters == 0 || failure != null && flushesServed == flushRequests)) {
+                    try {
+                        wait = changed.awaitNanos(wait);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                inFlight.putAll(pending);
+                pending.clear();
+                writing = true;
+                flushesServed = flushRequests;
+            } finally {
+                lock.unlock();
+            }
+
+            Map<Path, byte[]> failed = new LinkedHashMap<>();
+            IOException error = null;
+            for (Map.Entry<Path, byte[]> write : inFlight.entrySet()) {
+                try {
+                    AtomicFileWriter.write(write.getKey(), write.getValue());
+                    writeCount++;
+                } catch (IOException e) {
+                    log.error("persistence.write.failed", e, "file", write.getKey());
+                    FAILURES.increment();
+                    failed.put(write.getKey(), write.getValue());
+                    error = e;
+                }
+            }
+
+            lock.lock();
+            try {
+                lastWriteNanos = System.nanoTime();
+                for (Map.Entry<Path, byte[]> write : failed.entrySet()) {
+                    // Newer contents submitted meanwhile supersede the failed ones
+                    pending.putIfAbsent(write.getKey(), write.getValue());
+                }
+                if (failed.isEmpty()) {
+                    backoffMillis = 0;
+                    retryAtNanos = 0;
+                } else {
+                    backoffMillis = Math.min(Math.max(backoffMillis * 2, MIN_RETRY_MILLIS), MAX_RETRY_MILLIS);
+                    retryAtNanos = lastWriteNanos + TimeUnit.MILLISECONDS.toNanos(backoffMillis);
+                }
+                failure = error;
+                failingFiles = failed.size();
+                inFlight.clear();
+                writing = false;
+                rounds++;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
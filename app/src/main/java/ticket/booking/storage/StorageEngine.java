@@ -0,0 +1,104 @@
+package ticket.booking.storage;
+
+import ticket.booking.entities.Train;
+import ticket.booking.entities.TrainHeader;
+import ticket.booking.entities.User;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistence backend for users and trains.
+ *
+ * The engine is chosen once at startup (see {@link StorageEngines}) so the
+ * same workload can be run against different backends.
+ */
+public interface StorageEngine extends Closeable {
+
+    /**
+     * Short backend name, e.g. "json" or "log"
+     */
+    String getName();
+
+    /**
+     * Checks whether any user data has been stored yet
+     */
+    boolean hasUsers() throws IOException;
+
+    /**
+     * Checks whether any train data has been stored yet
+     */
+    boolean hasTrains() throws IOException;
+
+    List<User> loadUsers() throws IOException;
+
+    void saveUsers(List<User> users) throws IOException;
+
+    List<Train> loadTrains() throws IOException;
+
+    void saveTrains(List<Train> trains) throws IOException;
+
+    /**
+     * Stores the given trains, replacing those with the same ID, and leaves every other train as it is.
+     * Engines should override this to avoid materializing the whole catalog.
+     */
+    default void upsertTrains(List<Train> trains) throws IOException {
+        transaction(engine -> {
+            engine.saveTrains(withUpserts(engine.loadTrains(), trains));
+            return null;
+        });
+    }
+
+    /**
+     * Lists every train as a lightweight header, without seat maps or timetables.
+     * Engines should override this to avoid materializing full trains.
+     */
+    default List<TrainHeader> loadTrainHeaders() throws IOException {
+        List<TrainHeader> headers = new ArrayList<>();
+        for (Train train : loadTrains()) {
+            headers.add(TrainHeader.of(train));
+        }
+        return headers;
+    }
+
+    /**
+     * Loads a single full train, or returns null if it doesn't exist.
+     * Engines should override this to avoid materializing the whole catalog.
+     */
+    default Train loadTrain(String trainId) throws IOException {
+        for (Train train : loadTrains()) {
+            if (train.getTrainId().equals(trainId)) {
+                return train;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Runs the work exclusively against this engine. Loads inside the work see its
+     * own saves; the saves become visible to others together when it returns, and
+     * are discarded if it throws.
+     */
+    <T> T transaction(StorageTransaction<T> work) throws IOException;
+
+    /**
+     * Replaces the stored trains that share an ID with a changed one, in place, and appends the rest
+     */
+    static List<Train> withUpserts(List<Train> stored, List<Train> changed) {
+        Map<String, Train> pending = new LinkedHashMap<>();
+        for (Train train : changed) {
+            pending.put(train.getTrainId(), train);
+        }
+        List<Train> result = new ArrayList<>(stored.size() + pending.size());
+        for (Train train : stored) {
+            Train replacement = pending.remove(train.getTrainId());
+            result.add(replacement != null ? replacement : train);
+        }
+        result.addAll(pending.values());
+        return result;
+    }
+}
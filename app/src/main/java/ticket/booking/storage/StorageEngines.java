@@ -0,0 +1,38 @@
+package ticket.booking.storage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Creates the storage engine selected at startup.
+ *
+ * The backend is picked with the {@code booking.storage} system property:
+ * {@code json} (default) or {@code log}.
+ */
+public class StorageEngines {
+    public static final String STORAGE_PROPERTY = "booking.storage";
+
+    private StorageEngines() {}
+
+    /**
+     * Creates the engine named by the system property, storing data under the given directory
+     */
+    public static StorageEngine fromSystemProperties(String dataDir) throws IOException {
+        return create(System.getProperty(STORAGE_PROPERTY, "json"), Paths.get(dataDir));
+    }
+
+    /**
+     * Creates an engine by name
+     */
+    public static StorageEngine create(String name, Path dataDir) throws IOException {
+        switch (name.toLowerCase()) {
+            case "json":
+                return new JsonFileStorageEngine(dataDir);
+            case "log":
+                return new LogStructuredStorageEngine(dataDir);
+            default:
+                throw new IllegalArgumentException("Unknown storage engine: " + name);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package ticket.booking.storage;
+
+import java.io.IOException;
+
+/**
+ * A unit of work run inside {@link StorageEngine#transaction}
+ */
+public interface StorageTransaction<T> {
+    T run(StorageEngine engine) throws IOException;
+}
@@ -0,0 +1,225 @@
+package ticket.booking.storage;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import ticket.booking.entities.TrainHeader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * Header list plus the byte range of every train in a trains JSON document.
+ *
+ * Built with one streaming pass that skips seat maps and timetables, so only
+ * headers and offsets stay on the heap; a full train is parsed from its byte
+ * range when it is first needed. An index is either over an in-memory document
+ * (contents still queued for writing) or over a file version identified by its
+ * file key, size and modification time.
+ *
+ * Each range is checksummed without its {@code dated_seats} value. When a new
+ * version is indexed against the previous index, trains whose bytes did not
+ * change keep their header instance, so caches keyed by header stay warm for
+ * every untouched train. Seat maps are left out because the app itself writes
+ * them back after every booking batch, and dates on sale are served from live
+ * seat inventory rather than from the stored train; a seat write is not a
+ * catalog change.
+ */
+final class TrainFileIndex {
+    static final TrainFileIndex EMPTY = new TrainFileIndex(null, null, null, Collections.<TrainHeader>emptyList(),
+            Collections.<String, Range>emptyMap());
+
+    private final byte[] contents;
+    private final Path file;
+    private final BasicFileAttributes attributes;
+    private final List<TrainHeader> headers;
+    private final Map<String, Range> ranges;
+
+    private TrainFileIndex(byte[] contents, Path file, BasicFileAttributes attributes,
+                           List<TrainHeader> headers, Map<String, Range> ranges) {
+        this.contents = contents;
+        this.file = file;
+        this.attributes = attributes;
+        this.headers = headers;
+        this.ranges = ranges;
+    }
+
+    /**
+     * Indexes an in-memory document
+     */
+    static TrainFileIndex of(JsonFactory factory, byte[] contents) throws IOException {
+        return of(factory, contents, EMPTY);
+    }
+
+    /**
+     * Indexes an in-memory document, keeping the headers of trains unchanged since the previous index
+     */
+    static TrainFileIndex of(JsonFactory factory, byte[] contents, TrainFileIndex previous) throws IOException {
+        try (JsonParser parser = factory.createParser(contents)) {
+            return build(parser, contents, contents, null, null, previous);
+        }
+    }
+
+    /**
+     * Indexes the current version of a file
+     */
+    static TrainFileIndex of(JsonFactory factory, Path file) throws IOException {
+        return of(factory, file, EMPTY);
+    }
+
+    /**
+     * Indexes the current version of a file, keeping the headers of trains unchanged since the previous index
+     */
+    static TrainFileIndex of(JsonFactory factory, Path file, TrainFileIndex previous) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        // Read once to checksum the ranges; only the offsets are kept
+        byte[] document = Files.readAllBytes(file);
+        try (JsonParser parser = factory.createParser(document)) {
+            return build(parser, document, null, file, attributes, previous);
+        }
+    }
+
+    private static TrainFileIndex build(JsonParser parser, byte[] document, byte[] contents, Path file,
+                                        BasicFileAttributes attributes, TrainFileIndex previous) throws IOException {
+        List<TrainHeader> headers = new ArrayList<>();
+        Map<String, Range> ranges = new HashMap<>();
+        CRC32 crc = new CRC32();
+        long[] datedSeats = new long[2];
+        if (parser.nextToken() == JsonToken.START_ARRAY) {
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                long start = parser.getTokenLocation().getByteOffset();
+                datedSeats[0] = -1;
+                TrainHeader header = TrainJson.readHeader(parser, datedSeats);
+                long end = parser.getCurrentLocation().getByteOffset();
+                if (datedSeats[0] < 0) {
+                    // No seat map: the whole range is the identity
+                    datedSeats[0] = datedSeats[1] = end;
+                }
+                crc.reset();
+                crc.update(document, (int) start, (int) (datedSeats[0] - start));
+                crc.update(document, (int) datedSeats[1], (int) (end - datedSeats[1]));
+                long identityLength = (end - start) - (datedSeats[1] - datedSeats[0]);
+                Range old = previous.ranges.get(header.getTrainId());
+                if (old != null && old.identityLength == identityLength && old.checksum == crc.getValue()) {
+                    header = old.header;
+                }
+                headers.add(header);
+                ranges.put(header.getTrainId(), new Range(header, start, end, identityLength, crc.getValue()));
+            }
+        }
+        return new TrainFileIndex(contents, file, attributes, Collections.unmodifiableList(headers), ranges);
+    }
+
+    List<TrainHeader> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Checks whether this index was built from exactly this in-memory document
+     */
+    boolean isOver(byte[] document) {
+        return contents == document;
+    }
+
+    /**
+     * Checks whether this index still describes the file on disk
+     */
+    boolean isCurrent(BasicFileAttributes current) {
+        return contents == null && attributes != null
+                && Objects.equals(attributes.fileKey(), current.fileKey())
+                && attributes.size() == current.size()
+                && attributes.lastModifiedTime().equals(current.lastModifiedTime());
+    }
+
+    /**
+     * Gets the in-memory document this index is over, or null if it is over a file
+     */
+    byte[] getContents() {
+        return contents;
+    }
+
+    /**
+     * Replaces the JSON of the given trains in the indexed document and returns the new document.
+     * Returns null if any of them isn't in the document yet.
+     */
+    byte[] splice(byte[] document, Map<String, byte[]> replacements) {
+        List<Range> changed = new ArrayList<>(replacements.size());
+        for (String trainId : replacements.keySet()) {
+            Range range = ranges.get(trainId);
+            if (range == null) {
+                return null;
+            }
+            changed.add(range);
+        }
+        changed.sort((a, b) -> Long.compare(a.start, b.start));
+        ByteArrayOutputStream out = new ByteArrayOutputStream(document.length);
+        int copied = 0;
+        for (Range range : changed) {
+            out.write(document, copied, (int) range.start - copied);
+            byte[] json = replacements.get(range.header.getTrainId());
+            out.write(json, 0, json.length);
+            copied = (int) range.end;
+        }
+        out.write(document, copied, document.length - copied);
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads the raw JSON of one train, or returns null if it isn't in the document
+     */
+    byte[] read(String trainId) throws IOException {
+        Range range = ranges.get(trainId);
+        if (range == null) {
+            return null;
+        }
+        int length = (int) range.length();
+        if (contents != null) {
+            byte[] slice = new byte[length];
+            System.arraycopy(contents, (int) range.start, slice, 0, length);
+            return slice;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining() && channel.read(buffer, range.start + buffer.position()) > 0) {
+                // Keep reading until the whole range is in
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Where one train sits in the document, with the length and checksum of its bytes outside dated_seats
+     */
+    private static final class Range {
+        private final TrainHeader header;
+        private final long start;
+        private final long end;
+        private final long identityLength;
+        private final long checksum;
+
+        private Range(TrainHeader header, long start, long end, long identityLength, long checksum) {
+            this.header = header;
+            this.start = start;
+            this.end = end;
+            this.identityLength = identityLength;
+            this.checksum = checksum;
+        }
+
+        private long length() {
+            return end - start;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package ticket.booking.storage;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import ticket.booking.entities.TrainHeader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming helpers for reading train JSON without materializing seat maps
+ */
+final class TrainJson {
+
+    private TrainJson() {}
+
+    /**
+     * Reads a train object's header fields, skipping seats and station times.
+     * The parser must be positioned on the object's START_OBJECT and is left on its END_OBJECT.
+     */
+    static TrainHeader readHeader(JsonParser parser) throws IOException {
+        return readHeader(parser, null);
+    }
+
+    /**
+     * Reads a train object's header fields like {@link #readHeader(JsonParser)}, also storing the
+     * start and end byte offsets of the dated_seats value in {@code datedSeats} when it is present
+     */
+    static TrainHeader readHeader(JsonParser parser, long[] datedSeats) throws IOException {
+        String trainId = null;
+        String trainNo = null;
+        List<String> stations = new ArrayList<>();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("train_id".equals(field)) {
+                trainId = parser.getValueAsString();
+            } else if ("train_no".equals(field)) {
+                trainNo = parser.getValueAsString();
+            } else if ("stations".equals(field) && value == JsonToken.START_ARRAY) {
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    stations.add(parser.getValueAsString());
+                }
+            } else if ("dated_seats".equals(field) && datedSeats != null) {
+                datedSeats[0] = parser.getTokenLocation().getByteOffset();
+                parser.skipChildren();
+                datedSeats[1] = parser.getCurrentLocation().getByteOffset();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new TrainHeader(trainId, trainNo, stations);
+    }
+}
@@ -1,47 +1,85 @@
 package ticket.booking.util;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
 import ticket.booking.entities.Train;
+import ticket.booking.entities.TrainHeader;
+import ticket.booking.entities.TrainView;
 import ticket.booking.entities.User;
+import ticket.booking.logging.Log;
+import ticket.booking.logging.Logger;
+import ticket.booking.metrics.LatencyHistogram;
+import ticket.booking.metrics.Metrics;
+import ticket.booking.storage.StorageEngine;
+import ticket.booking.storage.StorageEngines;
+import ticket.booking.storage.StorageTransaction;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 /**
  * Manages database operations for the train booking system
  */
 public class DatabaseManager {
+    private static final Logger log = Log.getLogger(DatabaseManager.class);
     private static final String DATA_DIR = "data";
-    private static final String USERS_FILE = DATA_DIR + "/users.json";
-    private static final String TRAINS_FILE = DATA_DIR + "/trains.json";
-    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final LatencyHistogram LOAD_USERS_LATENCY = Metrics.histogram("db.loadUsers.latency");
+    private static final LatencyHistogram SAVE_USERS_LATENCY = Metrics.histogram("db.saveUsers.latency");
+    private static final LatencyHistogram LOAD_TRAINS_LATENCY = Metrics.histogram("db.loadTrains.latency");
+    private static final LatencyHistogram SAVE_TRAINS_LATENCY = Metrics.histogram("db.saveTrains.latency");
+    private static final LatencyHistogram LOAD_HEADERS_LATENCY = Metrics.histogram("db.loadTrainHeaders.latency");
+    private static final LatencyHistogram LOAD_TRAIN_LATENCY = Metrics.histogram("db.loadTrain.latency");
+    private static final LatencyHistogram TRANSACTION_LATENCY = Metrics.histogram("db.transaction.latency");
+    private static volatile StorageEngine storageEngine;
 
-    static {
-        objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+    /**
+     * Gets the storage engine, creating the one selected by the
+     * {@code booking.storage} system property on first use
+     */
+    public static StorageEngine getStorageEngine() {
+        StorageEngine engine = storageEngine;
+        if (engine == null) {
+            synchronized (DatabaseManager.class) {
+                engine = storageEngine;
+                if (engine == null) {
+                    try {
+                        engine = StorageEngines.fromSystemProperties(DATA_DIR);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Error opening storage engine", e);
+                    }
+                    storageEngine = engine;
+                }
+            }
+        }
+        return engine;
+    }
+
+    /**
+     * Replaces the storage engine, e.g. to run a benchmark against another backend
+     */
+    public static synchronized void setStorageEngine(StorageEngine engine) {
+        storageEngine = engine;
     }
 
     /**
      * Initialize the database
      */
     public static void initDatabase() {
-        try {
-            // Create data directory if it doesn't exist
-            Files.createDirectories(Paths.get(DATA_DIR));
+        initUsers();
+        initTrains();
+    }
 
-            // Check if users file exists, create it if not
-            File usersFile = new File(USERS_FILE);
-            if (!usersFile.exists()) {
+    /**
+     * Creates the default admin user if there are no users yet.
+     * Independent of {@link #initTrains()}, so startup runs the two in parallel.
+     */
+    public static void initUsers() {
+        try {
+            if (!getStorageEngine().hasUsers()) {
                 // Create default admin user
                 List<User> defaultUsers = new ArrayList<>();
                 defaultUsers.add(new User(
-                        "admin-" + java.util.UUID.randomUUID().toString(),
+                        IdGenerator.getInstance().next("admin-"),
                         "admin",
                         UserServiceUtil.hashPassword("admin123"),
                         "admin@trainbooking.com",
@@ -49,84 +87,146 @@ public class DatabaseManager {
                 ));
                 saveUsers(defaultUsers);
             }
+        } catch (Exception e) {
+            log.error("db.init.failed", e, "part", "users");
+        }
+    }
 
-            // Check if trains file exists, create it if not
-            File trainsFile = new File(TRAINS_FILE);
-            if (!trainsFile.exists()) {
+    /**
+     * Creates the seed trains if there are no trains yet, then runs the legacy migration
+     */
+    public static void initTrains() {
+        try {
+            if (!getStorageEngine().hasTrains()) {
                 // Create initial trains data
                 List<Train> initialTrains = createInitialTrainsData();
                 saveTrains(initialTrains);
             }
+
+            // Merge the trains TrainService used to keep in localDb, once
+            LegacyTrainMigration.migrateFromSystemProperties();
+
+            // Seats sold in a template belong to today, not to every future date
+            LegacyTrainMigration.undateTemplates();
         } catch (Exception e) {
-            System.err.println("Error initializing database: " + e.getMessage());
-            e.printStackTrace();
+            log.error("db.init.failed", e, "part", "trains");
         }
     }
 
     /**
-     * Loads users from the JSON database
+     * Loads users from the database
      */
     public static List<User> loadUsers() {
+        long start = System.nanoTime();
         try {
-            // Create directory if it doesn't exist
-            Files.createDirectories(Paths.get(DATA_DIR));
-
-            File file = new File(USERS_FILE);
-            if (!file.exists()) {
-                // Create empty users file if it doesn't exist
-                Files.write(Paths.get(USERS_FILE), "[]".getBytes());
-                return new ArrayList<>();
-            }
-
-            return objectMapper.readValue(file, new TypeReference<List<User>>() {});
+            return getStorageEngine().loadUsers();
         } catch (IOException e) {
-            System.err.println("Error loading users: " + e.getMessage());
+            log.error("db.loadUsers.failed", e, "engine", getStorageEngine().getName());
             return new ArrayList<>();
+        } finally {
+            LOAD_USERS_LATENCY.recordSince(start);
         }
     }
 
     /**
-     * Saves users to the JSON database
+     * Saves users to the database
      */
     public static void saveUsers(List<User> users) {
+        long start = System.nanoTime();
         try {
-            objectMapper.writeValue(new File(USERS_FILE), users);
+            getStorageEngine().saveUsers(users);
         } catch (IOException e) {
-            System.err.println("Error saving users: " + e.getMessage());
+            log.error("db.saveUsers.failed", e, "engine", getStorageEngine().getName());
+        } finally {
+            SAVE_USERS_LATENCY.recordSince(start);
         }
     }
 
     /**
-     * Loads trains from the JSON database
+     * Loads trains from the database
      */
     public static List<Train> loadTrains() {
+        long start = System.nanoTime();
         try {
-            // Create directory if it doesn't exist
-            Files.createDirectories(Paths.get(DATA_DIR));
-
-            File file = new File(TRAINS_FILE);
-            if (!file.exists()) {
-                // Create initial trains data if file doesn't exist
+            StorageEngine engine = getStorageEngine();
+            if (!engine.hasTrains()) {
+                // Create initial trains data if none are stored
                 List<Train> initialTrains = createInitialTrainsData();
-                objectMapper.writeValue(file, initialTrains);
+                engine.saveTrains(initialTrains);
                 return initialTrains;
             }
 
-            return objectMapper.readValue(file, new TypeReference<List<Train>>() {});
+            return engine.loadTrains();
         } catch (IOException e) {
-            System.err.println("Error loading trains: " + e.getMessage());
+            log.error("db.loadTrains.failed", e, "engine", getStorageEngine().getName());
             return createInitialTrainsData(); // Return default data on error
+        } finally {
+            LOAD_TRAINS_LATENCY.recordSince(start);
         }
     }
 
     /**
-     * Saves trains to the JSON database
+     * Loads lightweight headers for every train, without seat maps or timetables
+     */
+    public static List<TrainHeader> loadTrainHeaders() {
+        long start = System.nanoTime();
+        try {
+            StorageEngine engine = getStorageEngine();
+            if (!engine.hasTrains()) {
+                // Create initial trains data if none are stored
+                engine.saveTrains(createInitialTrainsData());
+            }
+            return engine.loadTrainHeaders();
+        } catch (IOException e) {
+            log.error("db.loadTrainHeaders.failed", e, "engine", getStorageEngine().getName());
+            return new ArrayList<>();
+        } finally {
+            LOAD_HEADERS_LATENCY.recordSince(start);
+        }
+    }
+
+    /**
+     * Loads one full train, or returns null if it doesn't exist or can't be read
+     */
+    public static Train loadTrain(String trainId) {
+        long start = System.nanoTime();
+        try {
+            return getStorageEngine().loadTrain(trainId);
+        } catch (IOException e) {
+            log.error("db.loadTrain.failed", e, "engine", getStorageEngine().getName(), "trainId", trainId);
+            return null;
+        } finally {
+            LOAD_TRAIN_LATENCY.recordSince(start);
+        }
+    }
+
+    /**
+     * Saves trains to the database
      */
     public static void saveTrains(List<Train> trains) {
+        long start = System.nanoTime();
+        try {
+            getStorageEngine().saveTrains(trains);
+        } catch (IOException e) {
+            log.error("db.saveTrains.failed", e, "engine", getStorageEngine().getName());
+        } finally {
+            SAVE_TRAINS_LATENCY.recordSince(start);
+        }
+    }
+
+    /**
+     * Runs a read-modify-write against the database as one transaction.
+     * Returns null if the transaction failed.
+     */
+    public static <T> T transaction(StorageTransaction<T> work) {
+        long start = System.nanoTime();
         try {
-            objectMapper.writeValue(new File(TRAINS_FILE), trains);
+            return getStorageEngine().transaction(work);
         } catch (IOException e) {
-            System.err.println("Error saving trains: " + e.getMessage());
+            log.error("db.transaction.failed", e, "engine", getStorageEngine().getName());
+            return null;
+        } finally {
+            TRANSACTION_LATENCY.recordSince(start);
         }
     }
 
@@ -154,59 +254,51 @@ public class DatabaseManager {
         List<Train> trains = new ArrayList<>();
 
         // Mumbai to Delhi Rajdhani Express
-        Train mumbaiRajdhani = new Train();
-        mumbaiRajdhani.setTrainId("rajdhani_mumbai");
-        mumbaiRajdhani.setTrainNo("12951");
-        mumbaiRajdhani.setSeats(createSeatLayout(4, 6));
-        mumbaiRajdhani.setStations(Arrays.asList("mumbai", "surat", "vadodara", "kota", "delhi"));
-        mumbaiRajdhani.getStationTimes().put("mumbai", "16:35:00");
-        mumbaiRajdhani.getStationTimes().put("surat", "19:45:00");
-        mumbaiRajdhani.getStationTimes().put("vadodara", "22:15:00");
-        mumbaiRajdhani.getStationTimes().put("kota", "02:30:00");
-        mumbaiRajdhani.getStationTimes().put("delhi", "06:15:00");
-        trains.add(mumbaiRajdhani);
+        trains.add(TrainView.builder("rajdhani_mumbai", "12951")
+                .stop("mumbai", "16:35:00")
+                .stop("surat", "19:45:00")
+                .stop("vadodara", "22:15:00")
+                .stop("kota", "02:30:00")
+                .stop("delhi", "06:15:00")
+                .seats(createSeatLayout(4, 6))
+                .build()
+                .toTrain());
 
         // Howrah (Kolkata) to Delhi Rajdhani Express
-        Train kolkataRajdhani = new Train();
-        kolkataRajdhani.setTrainId("rajdhani_kolkata");
-        kolkataRajdhani.setTrainNo("12301");
-        kolkataRajdhani.setSeats(createSeatLayout(4, 6));
-        kolkataRajdhani.setStations(Arrays.asList("kolkata", "dhanbad", "gaya", "patna", "mughalsarai", "delhi"));
-        kolkataRajdhani.getStationTimes().put("kolkata", "16:55:00");
-        kolkataRajdhani.getStationTimes().put("dhanbad", "20:30:00");
-        kolkataRajdhani.getStationTimes().put("gaya", "22:15:00");
-        kolkataRajdhani.getStationTimes().put("patna", "00:40:00");
-        kolkataRajdhani.getStationTimes().put("mughalsarai", "03:15:00");
-        kolkataRajdhani.getStationTimes().put("delhi", "10:00:00");
-        trains.add(kolkataRajdhani);
+        trains.add(TrainView.builder("rajdhani_kolkata", "12301")
+                .stop("kolkata", "16:55:00")
+                .stop("dhanbad", "20:30:00")
+                .stop("gaya", "22:15:00")
+                .stop("patna", "00:40:00")
+                .stop("mughalsarai", "03:15:00")
+                .stop("delhi", "10:00:00")
+                .seats(createSeatLayout(4, 6))
+                .build()
+                .toTrain());
 
         // Chennai to Delhi Rajdhani Express
-        Train chennaiRajdhani = new Train();
-        chennaiRajdhani.setTrainId("rajdhani_chennai");
-        chennaiRajdhani.setTrainNo("12433");
-        chennaiRajdhani.setSeats(createSeatLayout(4, 6));
-        chennaiRajdhani.setStations(Arrays.asList("chennai", "vijayawada", "nagpur", "bhopal", "jhansi", "delhi"));
-        chennaiRajdhani.getStationTimes().put("chennai", "06:10:00");
-        chennaiRajdhani.getStationTimes().put("vijayawada", "12:30:00");
-        chennaiRajdhani.getStationTimes().put("nagpur", "20:45:00");
-        chennaiRajdhani.getStationTimes().put("bhopal", "02:15:00");
-        chennaiRajdhani.getStationTimes().put("jhansi", "05:30:00");
-        chennaiRajdhani.getStationTimes().put("delhi", "10:55:00");
-        trains.add(chennaiRajdhani);
+        trains.add(TrainView.builder("rajdhani_chennai", "12433")
+                .stop("chennai", "06:10:00")
+                .stop("vijayawada", "12:30:00")
+                .stop("nagpur", "20:45:00")
+                .stop("bhopal", "02:15:00")
+                .stop("jhansi", "05:30:00")
+                .stop("delhi", "10:55:00")
+                .seats(createSeatLayout(4, 6))
+                .build()
+                .toTrain());
 
         // Bengaluru to Delhi Rajdhani Express
-        Train bengaluruRajdhani = new Train();
-        bengaluruRajdhani.setTrainId("rajdhani_bengaluru");
-        bengaluruRajdhani.setTrainNo("22691");
-        bengaluruRajdhani.setSeats(createSeatLayout(4, 6));
-        bengaluruRajdhani.setStations(Arrays.asList("bengaluru", "secunderabad", "nagpur", "bhopal", "jhansi", "delhi"));
-        bengaluruRajdhani.getStationTimes().put("bengaluru", "20:00:00");
-        bengaluruRajdhani.getStationTimes().put("secunderabad", "05:30:00");
-        bengaluruRajdhani.getStationTimes().put("nagpur", "12:15:00");
-        bengaluruRajdhani.getStationTimes().put("bhopal", "17:45:00");
-        bengaluruRajdhani.getStationTimes().put("jhansi", "21:30:00");
-        bengaluruRajdhani.getStationTimes().put("delhi", "05:55:00");
-        trains.add(bengaluruRajdhani);
+        trains.add(TrainView.builder("rajdhani_bengaluru", "22691")
+                .stop("bengaluru", "20:00:00")
+                .stop("secunderabad", "05:30:00")
+                .stop("nagpur", "12:15:00")
+                .stop("bhopal", "17:45:00")
+                .stop("jhansi", "21:30:00")
+                .stop("delhi", "05:55:00")
+                .seats(createSeatLayout(4, 6))
+                .build()
+                .toTrain());
 
         return trains;
     }
@@ -218,53 +310,45 @@ public class DatabaseManager {
         List<Train> trains = new ArrayList<>();
 
         // Delhi to Jaipur Shatabdi Express
-        Train delhiJaipurShatabdi = new Train();
-        delhiJaipurShatabdi.setTrainId("shatabdi_delhi_jaipur");
-        delhiJaipurShatabdi.setTrainNo("12015");
-        delhiJaipurShatabdi.setSeats(createSeatLayout(4, 6));
-        delhiJaipurShatabdi.setStations(Arrays.asList("delhi", "gurgaon", "alwar", "jaipur"));
-        delhiJaipurShatabdi.getStationTimes().put("delhi", "06:05:00");
-        delhiJaipurShatabdi.getStationTimes().put("gurgaon", "06:40:00");
-        delhiJaipurShatabdi.getStationTimes().put("alwar", "08:15:00");
-        delhiJaipurShatabdi.getStationTimes().put("jaipur", "10:05:00");
-        trains.add(delhiJaipurShatabdi);
+        trains.add(TrainView.builder("shatabdi_delhi_jaipur", "12015")
+                .stop("delhi", "06:05:00")
+                .stop("gurgaon", "06:40:00")
+                .stop("alwar", "08:15:00")
+                .stop("jaipur", "10:05:00")
+                .seats(createSeatLayout(4, 6))
+                .build()
+                .toTrain());
 
         // Delhi to Lucknow Shatabdi Express
-        Train delhiLucknowShatabdi = new Train();
-        delhiLucknowShatabdi.setTrainId("shatabdi_delhi_lucknow");
-        delhiLucknowShatabdi.setTrainNo("12003");
-        delhiLucknowShatabdi.setSeats(createSeatLayout(4, 6));
-        delhiLucknowShatabdi.setStations(Arrays.asList("delhi", "ghaziabad", "aligarh", "kanpur", "lucknow"));
-        delhiLucknowShatabdi.getStationTimes().put("delhi", "06:10:00");
-        delhiLucknowShatabdi.getStationTimes().put("ghaziabad", "06:40:00");
-        delhiLucknowShatabdi.getStationTimes().put("aligarh", "08:05:00");
-        delhiLucknowShatabdi.getStationTimes().put("kanpur", "10:45:00");
-        delhiLucknowShatabdi.getStationTimes().put("lucknow", "12:40:00");
-        trains.add(delhiLucknowShatabdi);
+        trains.add(TrainView.builder("shatabdi_delhi_lucknow", "12003")
+                .stop("delhi", "06:10:00")
+                .stop("ghaziabad", "06:40:00")
+                .stop("aligarh", "08:05:00")
+                .stop("kanpur", "10:45:00")
+                .stop("lucknow", "12:40:00")
+                .seats(createSeatLayout(4, 6))
+                .build()
+                .toTrain());
 
         // Mumbai to Ahmedabad Shatabdi Express
-        Train mumbaiAhmedabadShatabdi = new Train();
-        mumbaiAhmedabadShatabdi.setTrainId("shatabdi_mumbai_ahmedabad");
-        mumbaiAhmedabadShatabdi.setTrainNo("12009");
-        mumbaiAhmedabadShatabdi.setSeats(createSeatLayout(4, 6));
-        mumbaiAhmedabadShatabdi.setStations(Arrays.asList("mumbai", "borivali", "surat", "vadodara", "ahmedabad"));
-        mumbaiAhmedabadShatabdi.getStationTimes().put("mumbai", "06:25:00");
-        mumbaiAhmedabadShatabdi.getStationTimes().put("borivali", "07:00:00");
-        mumbaiAhmedabadShatabdi.getStationTimes().put("surat", "08:55:00");
-        mumbaiAhmedabadShatabdi.getStationTimes().put("vadodara", "10:35:00");
-        mumbaiAhmedabadShatabdi.getStationTimes().put("ahmedabad", "12:25:00");
-        trains.add(mumbaiAhmedabadShatabdi);
+        trains.add(TrainView.builder("shatabdi_mumbai_ahmedabad", "12009")
+                .stop("mumbai", "06:25:00")
+                .stop("borivali", "07:00:00")
+                .stop("surat", "08:55:00")
+                .stop("vadodara", "10:35:00")
+                .stop("ahmedabad", "12:25:00")
+                .seats(createSeatLayout(4, 6))
+                .build()
+                .toTrain());
 
         // Chennai to Bengaluru Shatabdi Express
-        Train chennaiBengaluruShatabdi = new Train();
-        chennaiBengaluruShatabdi.setTrainId("shatabdi_chennai_bengaluru");
-        chennaiBengaluruShatabdi.setTrainNo("12027");
-        chennaiBengaluruShatabdi.setSeats(createSeatLayout(4, 6));
-        chennaiBengaluruShatabdi.setStations(Arrays.asList("chennai", "katpadi", "bengaluru"));
-        chennaiBengaluruShatabdi.getStationTimes().put("chennai", "06:00:00");
-        chennaiBengaluruShatabdi.getStationTimes().put("katpadi", "08:10:00");
-        chennaiBengaluruShatabdi.getStationTimes().put("bengaluru", "11:00:00");
-        trains.add(chennaiBengaluruShatabdi);
+        trains.add(TrainView.builder("shatabdi_chennai_bengaluru", "12027")
+                .stop("chennai", "06:00:00")
+                .stop("katpadi", "08:10:00")
+                .stop("bengaluru", "11:00:00")
+                .seats(createSeatLayout(4, 6))
+                .build()
+                .toTrain());
 
         return trains;
     }
@@ -276,52 +360,44 @@ public class DatabaseManager {
         List<Train> trains = new ArrayList<>();
 
         // Mumbai to Howrah (Kolkata) Duronto Express
-        Train mumbaiKolkataDuronto = new Train();
-        mumbaiKolkataDuronto.setTrainId("duronto_mumbai_kolkata");
-        mumbaiKolkataDuronto.setTrainNo("12261");
-        mumbaiKolkataDuronto.setSeats(createSeatLayout(4, 6));
-        mumbaiKolkataDuronto.setStations(Arrays.asList("mumbai", "nagpur", "raipur", "kolkata"));
-        mumbaiKolkataDuronto.getStationTimes().put("mumbai", "11:05:00");
-        mumbaiKolkataDuronto.getStationTimes().put("nagpur", "22:30:00");
-        mumbaiKolkataDuronto.getStationTimes().put("raipur", "04:15:00");
-        mumbaiKolkataDuronto.getStationTimes().put("kolkata", "16:05:00");
-        trains.add(mumbaiKolkataDuronto);
+        trains.add(TrainView.builder("duronto_mumbai_kolkata", "12261")
+                .stop("mumbai", "11:05:00")
+                .stop("nagpur", "22:30:00")
+                .stop("raipur", "04:15:00")
+                .stop("kolkata", "16:05:00")
+                .seats(createSeatLayout(4, 6))
+                .build()
+                .toTrain());
 
         // Chennai to Coimbatore Duronto Express
-        Train chennaiCoimbatoreDuronto = new Train();
-        chennaiCoimbatoreDuronto.setTrainId("duronto_chennai_coimbatore");
-        chennaiCoimbatoreDuronto.setTrainNo("12243");
-        chennaiCoimbatoreDuronto.setSeats(createSeatLayout(4, 6));
-        chennaiCoimbatoreDuronto.setStations(Arrays.asList("chennai", "salem", "erode", "coimbatore"));
-        chennaiCoimbatoreDuronto.getStationTimes().put("chennai", "22:15:00");
-        chennaiCoimbatoreDuronto.getStationTimes().put("salem", "02:30:00");
-        chennaiCoimbatoreDuronto.getStationTimes().put("erode", "03:45:00");
-        chennaiCoimbatoreDuronto.getStationTimes().put("coimbatore", "05:30:00");
-        trains.add(chennaiCoimbatoreDuronto);
+        trains.add(TrainView.builder("duronto_chennai_coimbatore", "12243")
+                .stop("chennai", "22:15:00")
+                .stop("salem", "02:30:00")
+                .stop("erode", "03:45:00")
+                .stop("coimbatore", "05:30:00")
+                .seats(createSeatLayout(4, 6))
+                .build()
+                .toTrain());
 
         // Delhi to Jammu Duronto Express
-        Train delhiJammuDuronto = new Train();
-        delhiJammuDuronto.setTrainId("duronto_delhi_jammu");
-        delhiJammuDuronto.setTrainNo("12265");
-        delhiJammuDuronto.setSeats(createSeatLayout(4, 6));
-        delhiJammuDuronto.setStations(Arrays.asList("delhi", "ambala", "ludhiana", "jalandhar", "jammu"));
-        delhiJammuDuronto.getStationTimes().put("delhi", "22:00:00");
-        delhiJammuDuronto.getStationTimes().put("ambala", "00:30:00");
-        delhiJammuDuronto.getStationTimes().put("ludhiana", "02:15:00");
-        delhiJammuDuronto.getStationTimes().put("jalandhar", "03:30:00");
-        delhiJammuDuronto.getStationTimes().put("jammu", "07:00:00");
-        trains.add(delhiJammuDuronto);
+        trains.add(TrainView.builder("duronto_delhi_jammu", "12265")
+                .stop("delhi", "22:00:00")
+                .stop("ambala", "00:30:00")
+                .stop("ludhiana", "02:15:00")
+                .stop("jalandhar", "03:30:00")
+                .stop("jammu", "07:00:00")
+                .seats(createSeatLayout(4, 6))
+                .build()
+                .toTrain());
 
         // Bengaluru to Chennai Duronto Express
-        Train bengaluruChennaiDuronto = new Train();
-        bengaluruChennaiDuronto.setTrainId("duronto_bengaluru_chennai");
-        bengaluruChennaiDuronto.setTrainNo("12213");
-        bengaluruChennaiDuronto.setSeats(createSeatLayout(4, 6));
-        bengaluruChennaiDuronto.setStations(Arrays.asList("bengaluru", "katpadi", "chennai"));
-        bengaluruChennaiDuronto.getStationTimes().put("bengaluru", "22:15:00");
-        bengaluruChennaiDuronto.getStationTimes().put("katpadi", "01:30:00");
-        bengaluruChennaiDuronto.getStationTimes().put("chennai", "04:30:00");
-        trains.add(bengaluruChennaiDuronto);
+        trains.add(TrainView.builder("duronto_bengaluru_chennai", "12213")
+                .stop("bengaluru", "22:15:00")
+                .stop("katpadi", "01:30:00")
+                .stop("chennai", "04:30:00")
+                .seats(createSeatLayout(4, 6))
+                .build()
+                .toTrain());
 
         return trains;
     }
@@ -333,52 +409,44 @@ public class DatabaseManager {
         List<Train> trains = new ArrayList<>();
 
         // Delhi to Varanasi Vande Bharat Express
-        Train delhiVaranasiVandeBharat = new Train();
-        delhiVaranasiVandeBharat.setTrainId("vande_bharat_delhi_varanasi");
-        delhiVaranasiVandeBharat.setTrainNo("22435");
-        delhiVaranasiVandeBharat.setSeats(createSeatLayout(4, 6));
-        delhiVaranasiVandeBharat.setStations(Arrays.asList("delhi", "kanpur", "prayagraj", "varanasi"));
-        delhiVaranasiVandeBharat.getStationTimes().put("delhi", "06:00:00");
-        delhiVaranasiVandeBharat.getStationTimes().put("kanpur", "10:30:00");
-        delhiVaranasiVandeBharat.getStationTimes().put("prayagraj", "12:45:00");
-        delhiVaranasiVandeBharat.getStationTimes().put("varanasi", "14:00:00");
-        trains.add(delhiVaranasiVandeBharat);
+        trains.add(TrainView.builder("vande_bharat_delhi_varanasi", "22435")
+                .stop("delhi", "06:00:00")
+                .stop("kanpur", "10:30:00")
+                .stop("prayagraj", "12:45:00")
+                .stop("varanasi", "14:00:00")
+                .seats(createSeatLayout(4, 6))
+                .build()
+                .toTrain());
 
         // Mumbai to Ahmedabad Vande Bharat Express
-        Train mumbaiAhmedabadVandeBharat = new Train();
-        mumbaiAhmedabadVandeBharat.setTrainId("vande_bharat_mumbai_ahmedabad");
-        mumbaiAhmedabadVandeBharat.setTrainNo("20901");
-        mumbaiAhmedabadVandeBharat.setSeats(createSeatLayout(4, 6));
-        mumbaiAhmedabadVandeBharat.setStations(Arrays.asList("mumbai", "surat", "vadodara", "ahmedabad"));
-        mumbaiAhmedabadVandeBharat.getStationTimes().put("mumbai", "06:00:00");
-        mumbaiAhmedabadVandeBharat.getStationTimes().put("surat", "07:55:00");
-        mumbaiAhmedabadVandeBharat.getStationTimes().put("vadodara", "09:30:00");
-        mumbaiAhmedabadVandeBharat.getStationTimes().put("ahmedabad", "11:25:00");
-        trains.add(mumbaiAhmedabadVandeBharat);
+        trains.add(TrainView.builder("vande_bharat_mumbai_ahmedabad", "20901")
+                .stop("mumbai", "06:00:00")
+                .stop("surat", "07:55:00")
+                .stop("vadodara", "09:30:00")
+                .stop("ahmedabad", "11:25:00")
+                .seats(createSeatLayout(4, 6))
+                .build()
+                .toTrain());
 
         // Chennai to Mysuru Vande Bharat Express
-        Train chennaiMysuruVandeBharat = new Train();
-        chennaiMysuruVandeBharat.setTrainId("vande_bharat_chennai_mysuru");
-        chennaiMysuruVandeBharat.setTrainNo("20607");
-        chennaiMysuruVandeBharat.setSeats(createSeatLayout(4, 6));
-        chennaiMysuruVandeBharat.setStations(Arrays.asList("chennai", "bengaluru", "mysuru"));
-        chennaiMysuruVandeBharat.getStationTimes().put("chennai", "05:50:00");
-        chennaiMysuruVandeBharat.getStationTimes().put("bengaluru", "10:20:00");
-        chennaiMysuruVandeBharat.getStationTimes().put("mysuru", "12:30:00");
-        trains.add(chennaiMysuruVandeBharat);
+        trains.add(TrainView.builder("vande_bharat_chennai_mysuru", "20607")
+                .stop("chennai", "05:50:00")
+                .stop("bengaluru", "10:20:00")
+                .stop("mysuru", "12:30:00")
+                .seats(createSeatLayout(4, 6))
+                .build()
+                .toTrain());
 
         // Delhi to Bhopal Vande Bharat Express
-        Train delhiBhopalVandeBharat = new Train();
-        delhiBhopalVandeBharat.setTrainId("vande_bharat_delhi_bhopal");
-        delhiBhopalVandeBharat.setTrainNo("20173");
-        delhiBhopalVandeBharat.setSeats(createSeatLayout(4, 6));
-        delhiBhopalVandeBharat.setStations(Arrays.asList("delhi", "agra", "gwalior", "jhansi", "bhopal"));
-        delhiBhopalVandeBharat.getStationTimes().put("delhi", "06:00:00");
-        delhiBhopalVandeBharat.getStationTimes().put("agra", "08:15:00");
-        delhiBhopalVandeBharat.getStationTimes().put("gwalior", "09:45:00");
-        delhiBhopalVandeBharat.getStationTimes().put("jhansi", "10:45:00");
-        delhiBhopalVandeBharat.getStationTimes().put("bhopal", "13:30:00");
-        trains.add(delhiBhopalVandeBharat);
+        trains.add(TrainView.builder("vande_bharat_delhi_bhopal", "20173")
+                .stop("delhi", "06:00:00")
+                .stop("agra", "08:15:00")
+                .stop("gwalior", "09:45:00")
+                .stop("jhansi", "10:45:00")
+                .stop("bhopal", "13:30:00")
+                .seats(createSeatLayout(4, 6))
+                .build()
+                .toTrain());
 
         return trains;
     }
@@ -390,55 +458,47 @@ public class DatabaseManager {
         List<Train> trains = new ArrayList<>();
 
         // Mumbai to Goa Superfast Express
-        Train mumbaiGoaSuperfast = new Train();
-        mumbaiGoaSuperfast.setTrainId("superfast_mumbai_goa");
-        mumbaiGoaSuperfast.setTrainNo("12051");
-        mumbaiGoaSuperfast.setSeats(createSeatLayout(4, 6));
-        mumbaiGoaSuperfast.setStations(Arrays.asList("mumbai", "ratnagiri", "madgaon", "vasco_da_gama"));
-        mumbaiGoaSuperfast.getStationTimes().put("mumbai", "09:10:00");
-        mumbaiGoaSuperfast.getStationTimes().put("ratnagiri", "14:30:00");
-        mumbaiGoaSuperfast.getStationTimes().put("madgaon", "19:45:00");
-        mumbaiGoaSuperfast.getStationTimes().put("vasco_da_gama", "20:30:00");
-        trains.add(mumbaiGoaSuperfast);
+        trains.add(TrainView.builder("superfast_mumbai_goa", "12051")
+                .stop("mumbai", "09:10:00")
+                .stop("ratnagiri", "14:30:00")
+                .stop("madgaon", "19:45:00")
+                .stop("vasco_da_gama", "20:30:00")
+                .seats(createSeatLayout(4, 6))
+                .build()
+                .toTrain());
 
         // Delhi to Amritsar Superfast Express
-        Train delhiAmritsarSuperfast = new Train();
-        delhiAmritsarSuperfast.setTrainId("superfast_delhi_amritsar");
-        delhiAmritsarSuperfast.setTrainNo("12459");
-        delhiAmritsarSuperfast.setSeats(createSeatLayout(4, 6));
-        delhiAmritsarSuperfast.setStations(Arrays.asList("delhi", "ambala", "ludhiana", "jalandhar", "amritsar"));
-        delhiAmritsarSuperfast.getStationTimes().put("delhi", "07:20:00");
-        delhiAmritsarSuperfast.getStationTimes().put("ambala", "10:30:00");
-        delhiAmritsarSuperfast.getStationTimes().put("ludhiana", "12:15:00");
-        delhiAmritsarSuperfast.getStationTimes().put("jalandhar", "13:30:00");
-        delhiAmritsarSuperfast.getStationTimes().put("amritsar", "14:45:00");
-        trains.add(delhiAmritsarSuperfast);
+        trains.add(TrainView.builder("superfast_delhi_amritsar", "12459")
+                .stop("delhi", "07:20:00")
+                .stop("ambala", "10:30:00")
+                .stop("ludhiana", "12:15:00")
+                .stop("jalandhar", "13:30:00")
+                .stop("amritsar", "14:45:00")
+                .seats(createSeatLayout(4, 6))
+                .build()
+                .toTrain());
 
         // Chennai to Hyderabad Superfast Express
-        Train chennaiHyderabadSuperfast = new Train();
-        chennaiHyderabadSuperfast.setTrainId("superfast_chennai_hyderabad");
-        chennaiHyderabadSuperfast.setTrainNo("12603");
-        chennaiHyderabadSuperfast.setSeats(createSeatLayout(4, 6));
-        chennaiHyderabadSuperfast.setStations(Arrays.asList("chennai", "nellore", "ongole", "vijayawada", "hyderabad"));
-        chennaiHyderabadSuperfast.getStationTimes().put("chennai", "17:45:00");
-        chennaiHyderabadSuperfast.getStationTimes().put("nellore", "20:30:00");
-        chennaiHyderabadSuperfast.getStationTimes().put("ongole", "22:15:00");
-        chennaiHyderabadSuperfast.getStationTimes().put("vijayawada", "00:45:00");
-        chennaiHyderabadSuperfast.getStationTimes().put("hyderabad", "06:15:00");
-        trains.add(chennaiHyderabadSuperfast);
+        trains.add(TrainView.builder("superfast_chennai_hyderabad", "12603")
+                .stop("chennai", "17:45:00")
+                .stop("nellore", "20:30:00")
+                .stop("ongole", "22:15:00")
+                .stop("vijayawada", "00:45:00")
+                .stop("hyderabad", "06:15:00")
+                .seats(createSeatLayout(4, 6))
+                .build()
+                .toTrain());
 
         // Kolkata to Puri Superfast Express
-        Train kolkataPuriSuperfast = new Train();
-        kolkataPuriSuperfast.setTrainId("superfast_kolkata_puri");
-        kolkataPuriSuperfast.setTrainNo("12837");
-        kolkataPuriSuperfast.setSeats(createSeatLayout(4, 6));
-        kolkataPuriSuperfast.setStations(Arrays.asList("kolkata", "kharagpur", "balasore", "bhubaneswar", "puri"));
-        kolkataPuriSuperfast.getStationTimes().put("kolkata", "08:30:00");
-        kolkataPuriSuperfast.getStationTimes().put("kharagpur", "10:15:00");
-        kolkataPuriSuperfast.getStationTimes().put("balasore", "12:00:00");
-        kolkataPuriSuperfast.getStationTimes().put("bhubaneswar", "14:30:00");
-        kolkataPuriSuperfast.getStationTimes().put("puri", "16:00:00");
-        trains.add(kolkataPuriSuperfast);
+        trains.add(TrainView.builder("superfast_kolkata_puri", "12837")
+                .stop("kolkata", "08:30:00")
+                .stop("kharagpur", "10:15:00")
+                .stop("balasore", "12:00:00")
+                .stop("bhubaneswar", "14:30:00")
+                .stop("puri", "16:00:00")
+                .seats(createSeatLayout(4, 6))
+                .build()
+                .toTrain());
 
         return trains;
     }
@@ -450,55 +510,48 @@ public class DatabaseManager {
         List<Train> trains = new ArrayList<>();
 
         // Delhi to Chandigarh Passenger
-        Train delhiChandigarhPassenger = new Train();
-        delhiChandigarhPassenger.setTrainId("passenger_delhi_chandigarh");
-        delhiChandigarhPassenger.setTrainNo("54011");
-        delhiChandigarhPassenger.setSeats(createSeatLayout(4, 6));
-        delhiChandigarhPassenger.setStations(Arrays.asList("delhi", "panipat", "karnal", "ambala", "chandigarh"));
-        delhiChandigarhPassenger.getStationTimes().put("delhi", "05:55:00");
-        delhiChandigarhPassenger.getStationTimes().put("panipat", "07:30:00");
-        delhiChandigarhPassenger.getStationTimes().put("karnal", "08:45:00");
-        delhiChandigarhPassenger.getStationTimes().put("ambala", "10:30:00");
-        delhiChandigarhPassenger.getStationTimes().put("chandigarh", "12:00:00");
-        trains.add(delhiChandigarhPassenger);
+        trains.add(TrainView.builder("passenger_delhi_chandigarh", "54011")
+                .stop("delhi", "05:55:00")
+                .stop("panipat", "07:30:00")
+                .stop("karnal", "08:45:00")
+                .stop("ambala", "10:30:00")
+                .stop("chandigarh", "12:00:00")
+                .seats(createSeatLayout(4, 6))
+                .build()
+                .toTrain());
 
         // Mumbai to Pune Passenger
-        Train mumbaiPunePassenger = new Train();
-        mumbaiPunePassenger.setTrainId("passenger_mumbai_pune");
-        mumbaiPunePassenger.setTrainNo("51301");
-        mumbaiPunePassenger.setSeats(createSeatLayout(4, 6));
-        mumbaiPunePassenger.setStations(Arrays.asList("mumbai", "karjat", "lonavala", "pune"));
-        mumbaiPunePassenger.getStationTimes().put("mumbai", "07:15:00");
-        mumbaiPunePassenger.getStationTimes().put("karjat", "08:45:00");
-        mumbaiPunePassenger.getStationTimes().put("lonavala", "09:30:00");
-        mumbaiPunePassenger.getStationTimes().put("pune", "11:15:00");
-        trains.add(mumbaiPunePassenger);
+        trains.add(TrainView.builder("passenger_mumbai_pune", "51301")
+                .stop("mumbai", "07:15:00")
+                .stop("karjat", "08:45:00")
+                .stop("lonavala", "09:30:00")
+                .stop("pune", "11:15:00")
+                .seats(createSeatLayout(4, 6))
+                .build()
+                .toTrain());
 
         // Chennai to Pondicherry Passenger
-        Train chennaiPondicherryPassenger = new Train();
-        chennaiPondicherryPassenger.setTrainId("passenger_chennai_pondicherry");
-        chennaiPondicherryPassenger.setTrainNo("56037");
-        chennaiPondicherryPassenger.setSeats(createSeatLayout(4, 6));
-        chennaiPondicherryPassenger.setStations(Arrays.asList("chennai", "chengalpattu", "villupuram", "pondicherry"));
-        chennaiPondicherryPassenger.getStationTimes().put("chennai", "06:05:00");
-        chennaiPondicherryPassenger.getStationTimes().put("chengalpattu", "07:30:00");
-        chennaiPondicherryPassenger.getStationTimes().put("villupuram", "09:45:00");
-        chennaiPondicherryPassenger.getStationTimes().put("pondicherry", "11:00:00");
-        trains.add(chennaiPondicherryPassenger);
+        trains.add(TrainView.builder("passenger_chennai_pondicherry", "56037")
+                .stop("chennai", "06:05:00")
+                .stop("chengalpattu", "07:30:00")
+                .stop("villupuram", "09:45:00")
+                .stop("pondicherry", "11:00:00")
+                .seats(createSeatLayout(4, 6))
+                .build()
+                .toTrain());
 
         return trains;
     }
 
     /**
-     * Creates a seat layout with random availability
+     * Creates a template seat layout with every seat available; seats are sold per service date
      */
     private static List<List<Integer>> createSeatLayout(int rows, int cols) {
         List<List<Integer>> seats = new ArrayList<>();
         for (int i = 0; i < rows; i++) {
             List<Integer> row = new ArrayList<>();
             for (int j = 0; j < cols; j++) {
-                // Randomly set some seats as booked (1) and some as available (0)
-                row.add(Math.random() > 0.7 ? 1 : 0);
+                row.add(0);
             }
             seats.add(row);
         }
@@ -0,0 +1,128 @@
+package ticket.booking.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snowflake-style generator for ticket, waitlist and user IDs.
+ *
+ * An ID is a positive long: 41 bits of milliseconds since 2024-01-01 UTC,
+ * 10 bits of node ID and a 12-bit sequence. The timestamp and sequence are
+ * kept together in one {@link AtomicLong}, so taking an ID is a single CAS
+ * with no lock and no wait: each call takes the larger of "now" and "last + 1".
+ * IDs therefore rise strictly per node even across threads. If one
+ * millisecond runs out of its 4096 sequence numbers, the generator borrows the
+ * next millisecond instead of blocking, and the wall clock catches up.
+ *
+ * IDs are written as 13 characters of Crockford base32, optionally after a
+ * prefix. The width is fixed, so string order matches generation order.
+ *
+ * The node ID comes from the {@code booking.nodeId} system property
+ * (0-1023, default 0) and must be different on every process sharing a store.
+ */
+public final class IdGenerator {
+    public static final String NODE_PROPERTY = "booking.nodeId";
+    public static final long EPOCH_MILLIS = 1_704_067_200_000L; // 2024-01-01T00:00:00Z
+    public static final int NODE_BITS = 10;
+    public static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE = (1 << NODE_BITS) - 1;
+    public static final int ENCODED_LENGTH = 13;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final IdGenerator INSTANCE = new IdGenerator(Integer.getInteger(NODE_PROPERTY, 0));
+
+    private final long nodeBits;
+    // (milliseconds since the epoch << SEQUENCE_BITS) | sequence of the last ID handed out
+    private final AtomicLong last = new AtomicLong();
+
+    public IdGenerator(int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE) {
+            throw new IllegalArgumentException("Node ID must be between 0 and " + MAX_NODE + ": " + nodeId);
+        }
+        this.nodeBits = (long) nodeId << SEQUENCE_BITS;
+    }
+
+    /**
+     * Gets the process-wide generator
+     */
+    public static IdGenerator getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Takes the next ID
+     */
+    public long nextId() {
+        long now = (System.currentTimeMillis() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        while (true) {
+            long previous = last.get();
+            long next = Math.max(now, previous + 1);
+            if (last.compareAndSet(previous, next)) {
+                long millis = next >>> SEQUENCE_BITS;
+                return (millis << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    /**
+     * Takes the next ID and encodes it after a prefix, e.g. {@code TN01HX3K9Q0A002}
+     */
+    public String next(String prefix) {
+        return encode(prefix, nextId());
+    }
+
+    /**
+     * Writes an ID as 13 base32 characters after a prefix
+     */
+    public static String encode(String prefix, long id) {
+        int length = prefix.length();
+        char[] chars = new char[length + ENCODED_LENGTH];
+        prefix.getChars(0, length, chars, 0);
+        for (int i = chars.length - 1; i >= length; i--) {
+            chars[i] = ALPHABET[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Reads back the ID from an encoded string with the given prefix length
+     */
+    public static long decode(String encoded, int prefixLength) {
+        if (encoded.length() != prefixLength + ENCODED_LENGTH) {
+            throw new IllegalArgumentException("Not an encoded ID: " + encoded);
+        }
+        long id = 0;
+        for (int i = prefixLength; i < encoded.length(); i++) {
+            int digit = digit(encoded.charAt(i));
+            if (digit < 0) {
+                throw new IllegalArgumentException("Not an encoded ID: " + encoded);
+            }
+            id = (id << 5) | digit;
+        }
+        return id;
+    }
+
+    /**
+     * Gets the wall-clock time an ID was generated at (later if its millisecond was borrowed)
+     */
+    public static long timestampOf(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+
+    /**
+     * Gets the node that generated an ID
+     */
+    public static int nodeOf(long id) {
+        return (int) ((id >>> SEQUENCE_BITS) & MAX_NODE);
+    }
+
+    private static int digit(char c) {
+        for (int i = 0; i < ALPHABET.length; i++) {
+            if (ALPHABET[i] == Character.toUpperCase(c)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,173 @@
+package ticket.booking.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ticket.booking.entities.Train;
+import ticket.booking.logging.Log;
+import ticket.booking.logging.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * One-time merge of the old {@code TrainService} store into the shared catalog.
+ *
+ * {@code TrainService} used to keep its own copy of the trains in
+ * {@code localDb/trains.json}. Trains found there whose id the catalog doesn't
+ * already have (compared case-insensitively) are added in one transaction;
+ * trains the catalog already has keep the catalog's version. The old file is
+ * then renamed to {@code trains.json.migrated}, so the merge never runs twice.
+ *
+ * The old store's seat matrix was never tied to a service date, so it is kept
+ * as today's sold seats and the template layout starts with every seat free.
+ *
+ * The file is taken from the {@code booking.legacyTrains} system property,
+ * defaulting to the path {@code TrainService} used.
+ *
+ * Trains stored before seats were sold per service date have the same
+ * problem in the catalog itself: their sold seats sit in the template, so
+ * every new date would open with them taken. {@link #undateTemplates()}
+ * moves those to today's date too.
+ */
+public final class LegacyTrainMigration {
+    private static final Logger log = Log.getLogger(LegacyTrainMigration.class);
+    public static final String FILE_PROPERTY = "booking.legacyTrains";
+    public static final String DEFAULT_FILE = "app/src/main/java/ticket/booking/localDb/trains.json";
+    public static final String MIGRATED_SUFFIX = ".migrated";
+
+    private LegacyTrainMigration() {
+    }
+
+    /**
+     * Migrates the file configured by system properties, if it is still there
+     */
+    public static int migrateFromSystemProperties() {
+        return migrate(Paths.get(System.getProperty(FILE_PROPERTY, DEFAULT_FILE)));
+    }
+
+    /**
+     * Merges the trains in a legacy file into the catalog and retires the file.
+     * Returns how many trains were added, or -1 if the merge failed and the file was left in place.
+     */
+    public static int migrate(Path legacyFile) {
+        if (!Files.isRegularFile(legacyFile)) {
+            return 0;
+        }
+        List<Train> legacy;
+        try {
+            legacy = Files.size(legacyFile) == 0
+                    ? new ArrayList<>()
+                    : new ObjectMapper().readValue(legacyFile.toFile(), new TypeReference<List<Train>>() {});
+        } catch (IOException e) {
+            log.error("trains.migrate.unreadable", e, "file", legacyFile);
+            return -1;
+        }
+
+        Integer added = DatabaseManager.transaction(engine -> {
+            List<Train> trains = engine.hasTrains() ? engine.loadTrains() : new ArrayList<>();
+            Set<String> known = new HashSet<>();
+            for (Train train : trains) {
+                known.add(train.getTrainId().toLowerCase(Locale.ROOT));
+            }
+            int count = 0;
+            for (Train train : legacy) {
+                if (train.getTrainId() != null && known.add(train.getTrainId().toLowerCase(Locale.ROOT))) {
+                    trains.add(undated(train));
+                    count++;
+                }
+            }
+            if (count > 0) {
+                engine.saveTrains(trains);
+            }
+            return count;
+        });
+        if (added == null) {
+            return -1;
+        }
+
+        try {
+            Files.move(legacyFile, legacyFile.resolveSibling(legacyFile.getFileName() + MIGRATED_SUFFIX),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // Harmless: the next run finds every train already present and adds nothing
+            log.warn("trains.migrate.rename.failed", e, "file", legacyFile);
+        }
+        log.info("trains.migrated", "file", legacyFile, "found", legacy.size(), "added", added);
+        return added;
+    }
+
+    /**
+     * Moves seats sold in the template layout of stored trains to today's date
+     * and frees the template. Returns how many trains changed, or -1 if the
+     * update failed.
+     */
+    public static int undateTemplates() {
+        Integer changed = DatabaseManager.transaction(engine -> {
+            if (!engine.hasTrains()) {
+                return 0;
+            }
+            List<Train> trains = engine.loadTrains();
+            int count = 0;
+            for (Train train : trains) {
+                if (hasSoldSeats(train.getSeats())) {
+                    undated(train);
+                    count++;
+                }
+            }
+            if (count > 0) {
+                engine.saveTrains(trains);
+            }
+            return count;
+        });
+        if (changed == null) {
+            return -1;
+        }
+        if (changed > 0) {
+            log.info("trains.templates.undated", "trains", changed);
+        }
+        return changed;
+    }
+
+    private static boolean hasSoldSeats(List<List<Integer>> seats) {
+        if (seats != null) {
+            for (List<Integer> row : seats) {
+                for (Integer seat : row) {
+                    if (seat != null && seat != 0) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves a legacy seat matrix to today's date, unless today already has one, and frees the template layout
+     */
+    private static Train undated(Train train) {
+        List<List<Integer>> sold = train.getSeats();
+        if (sold == null || sold.isEmpty()) {
+            return train;
+        }
+        List<List<Integer>> layout = new ArrayList<>(sold.size());
+        for (List<Integer> row : sold) {
+            List<Integer> free = new ArrayList<>(row.size());
+            for (int i = 0; i < row.size(); i++) {
+                free.add(0);
+            }
+            layout.add(free);
+        }
+        train.getDatedSeats().putIfAbsent(LocalDate.now().toString(), sold);
+        train.setSeats(layout);
+        return train;
+    }
+}
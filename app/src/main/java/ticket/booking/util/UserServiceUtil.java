@@ -1,11 +1,14 @@
 package ticket.booking.util;
 
 import org.mindrot.jbcrypt.BCrypt;
+import ticket.booking.metrics.LatencyHistogram;
+import ticket.booking.metrics.Metrics;
 
 /**
  * Utility class for user service operations
  */
 public class UserServiceUtil {
+    private static final LatencyHistogram VERIFY_LATENCY = Metrics.histogram("auth.verifyPassword.latency");
 
     /**
      * Hashes a password using BCrypt
@@ -18,11 +21,14 @@ public class UserServiceUtil {
      * Verifies a password against a hashed password
      */
     public static boolean verifyPassword(String password, String hashedPassword) {
+        long start = System.nanoTime();
         try {
             return BCrypt.checkpw(password, hashedPassword);
         } catch (Exception e) {
             // Handle invalid hash format
             return false;
+        } finally {
+            VERIFY_LATENCY.recordSince(start);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,68 @@
+package ticket.booking;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AppStartupTest {
+
+    @Test
+    public void independentStagesOverlapAndDependentsWait() throws Exception {
+        // Each of the first two stages only finishes once the other has started
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        AtomicBoolean joinSawBoth = new AtomicBoolean();
+        AppStartup startup = new AppStartup()
+                .stage("users", () -> awaitOther(bothRunning))
+                .stage("trains", () -> awaitOther(bothRunning))
+                .stage("catalog", () -> joinSawBoth.set(bothRunning.getCount() == 0), "users", "trains");
+
+        assertTrue(startup.start().get(5, TimeUnit.SECONDS) == null);
+        assertTrue(joinSawBoth.get());
+        assertEquals(3, startup.getStageMillis().size());
+        assertTrue(startup.awaitReady(0, TimeUnit.SECONDS));
+
+        assertEquals(-1, startup.getInteractiveMillis());
+        startup.markInteractive();
+        assertTrue(startup.getInteractiveMillis() >= 0);
+        assertThrows(IllegalStateException.class, () -> startup.stage("late", () -> {}));
+    }
+
+    @Test
+    public void failedStageFailsReadinessAndSkipsDependents() throws Exception {
+        AtomicBoolean dependentRan = new AtomicBoolean();
+        AppStartup startup = new AppStartup()
+                .stage("trains", () -> {
+                    throw new IOException("disk full");
+                })
+                .stage("catalog", () -> dependentRan.set(true), "trains");
+
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> startup.start().get(5, TimeUnit.SECONDS));
+        assertTrue(failure.getCause().getCause() instanceof IOException);
+        assertFalse(dependentRan.get());
+        assertThrows(IllegalStateException.class, () -> startup.awaitReady(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void stagesMustNameEarlierStages() {
+        AppStartup startup = new AppStartup().stage("users", () -> {});
+        assertThrows(IllegalArgumentException.class, () -> startup.stage("catalog", () -> {}, "trains"));
+        assertThrows(IllegalArgumentException.class, () -> startup.stage("users", () -> {}));
+    }
+
+    private static void awaitOther(CountDownLatch bothRunning) throws InterruptedException {
+        bothRunning.countDown();
+        if (!bothRunning.await(5, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Stages ran one after the other");
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package ticket.booking;
+
+import ticket.booking.entities.Train;
+import ticket.booking.entities.TrainView;
+import ticket.booking.service.SeatMapSnapshot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Train fixtures shared by the tests and benchmarks
+ */
+public final class TestTrains {
+    public static final String TRAIN_NO = "99999";
+
+    private TestTrains() {}
+
+    /**
+     * Builds a train with every seat free, calling at the given stations without timetabled times
+     */
+    public static Train empty(String trainId, int coaches, int seatsPerCoach, String... stations) {
+        return train(trainId, seats(coaches, seatsPerCoach, SeatMapSnapshot.AVAILABLE), stations);
+    }
+
+    /**
+     * Builds a train with every seat sold
+     */
+    public static Train full(String trainId, int coaches, int seatsPerCoach, String... stations) {
+        return train(trainId, seats(coaches, seatsPerCoach, SeatMapSnapshot.BOOKED), stations);
+    }
+
+    /**
+     * Builds a mutable train from a seat layout
+     */
+    public static Train train(String trainId, List<List<Integer>> seats, String... stations) {
+        TrainView.Builder builder = TrainView.builder(trainId, TRAIN_NO).seats(seats);
+        for (String station : stations) {
+            builder.stop(station, null);
+        }
+        return builder.build().toTrain();
+    }
+
+    /**
+     * Builds a mutable seat layout of equal coaches with every seat set to the given state
+     */
+    public static List<List<Integer>> seats(int coaches, int seatsPerCoach, int state) {
+        List<List<Integer>> seats = new ArrayList<>(coaches);
+        for (int coach = 0; coach < coaches; coach++) {
+            seats.add(new ArrayList<>(Collections.nCopies(seatsPerCoach, state)));
+        }
+        return seats;
+    }
+}
@@ -0,0 +1,70 @@
+package ticket.booking.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import ticket.booking.TestTrains;
+import ticket.booking.entities.Train;
+import ticket.booking.service.AvailabilitySummary;
+import ticket.booking.service.SeatInventory;
+import ticket.booking.service.TrainCatalog;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Bytes and time per search result when a list view gets the whole {@code Train}
+ * (seat matrix included) versus the {@link AvailabilitySummary} projection.
+ */
+public class AvailabilityProjectionBenchmark {
+    private static final int TRAINS = 200;
+    private static final int COACHES = 18;
+    private static final int SEATS_PER_COACH = 72;
+    private static final int ROUNDS = 5;
+    private static final int ITERATIONS = 20;
+
+    public static void main(String[] args) throws Exception {
+        ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        LocalDate date = LocalDate.now().plusDays(7);
+        List<Train> trains = new ArrayList<>();
+        Random random = new Random(42);
+        for (int t = 0; t < TRAINS; t++) {
+            Train train = TestTrains.empty("rajdhani_bench_" + t, COACHES, SEATS_PER_COACH,
+                    "mumbai", "surat", "vadodara", "kota", "delhi");
+            trains.add(train);
+            // Roughly half full
+            for (int i = 0; i < COACHES * SEATS_PER_COACH / 2; i++) {
+                SeatInventory.getInstance().tryBook(train, date, random.nextInt(COACHES), random.nextInt(SEATS_PER_COACH));
+            }
+        }
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long trainBytes = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                for (Train train : trains) {
+                    // What callers did before: copy the live seat map onto the train and ship it
+                    train.setSeats(SeatInventory.getInstance().snapshot(train, date).toSeatList());
+                    trainBytes += mapper.writeValueAsBytes(train).length;
+                }
+            }
+            double trainNanos = (System.nanoTime() - start) / (double) (ITERATIONS * TRAINS);
+
+            long summaryBytes = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                for (Train train : trains) {
+                    summaryBytes += mapper.writeValueAsBytes(TrainCatalog.getInstance().availability(train, date)).length;
+                }
+            }
+            double summaryNanos = (System.nanoTime() - start) / (double) (ITERATIONS * TRAINS);
+
+            System.out.printf("round %d Train: %,7d bytes %,9.0f ns/result | summary: %,5d bytes %,7.0f ns/result%n",
+                    round, trainBytes / (ITERATIONS * TRAINS), trainNanos,
+                    summaryBytes / (ITERATIONS * TRAINS), summaryNanos);
+        }
+    }
+}
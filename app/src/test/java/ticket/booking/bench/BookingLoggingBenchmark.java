@@ -0,0 +1,85 @@
+package ticket.booking.bench;
+
+import ticket.booking.TestTrains;
+import ticket.booking.entities.Ticket;
+import ticket.booking.entities.Train;
+import ticket.booking.entities.User;
+import ticket.booking.logging.Log;
+import ticket.booking.logging.LogLevel;
+import ticket.booking.service.UserBookingService;
+import ticket.booking.storage.JsonFileStorageEngine;
+import ticket.booking.storage.PersistenceWriter;
+import ticket.booking.util.DatabaseManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Booking throughput with logging at DEBUG (one entry per booking) versus OFF.
+ */
+public class BookingLoggingBenchmark {
+    private static final int THREADS = 4;
+    private static final int ROUNDS = 5;
+    private static final long ROUND_MILLIS = 2_000;
+
+    public static void main(String[] args) throws Exception {
+        Path dataDir = Files.createTempDirectory("logging-bench");
+        System.setProperty(Log.FILE_PROPERTY, dataDir.resolve("bench.log").toString());
+        DatabaseManager.setStorageEngine(new JsonFileStorageEngine(dataDir, new PersistenceWriter(1_000)));
+
+        List<Train> trains = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            trains.add(TestTrains.empty("bench_" + t, 4, 6, "delhi", "agra"));
+        }
+        DatabaseManager.saveTrains(trains);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            for (LogLevel level : Arrays.asList(LogLevel.OFF, LogLevel.DEBUG)) {
+                Log.setLevel(level);
+                double perSecond = run(trains);
+                Log.flush();
+                System.out.printf("round %d logging=%-5s %,12.0f bookings/s (dropped %d)%n",
+                        round, level, perSecond, Log.getDroppedCount());
+            }
+        }
+    }
+
+    /**
+     * Each thread books and cancels seats on its own train for a fixed time
+     */
+    private static double run(List<Train> trains) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        long[] bookings = new long[THREADS];
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ROUND_MILLIS);
+
+        for (int t = 0; t < THREADS; t++) {
+            int id = t;
+            pool.submit(() -> {
+                UserBookingService service = new UserBookingService();
+                service.setCurrentUser(new User("bench-" + id, "bench" + id, "x", "bench@example.com", "0"));
+                Train train = trains.get(id);
+                while (System.nanoTime() < deadline) {
+                    List<Ticket> tickets = service.bookAdjacentSeats(train, 1);
+                    if (!tickets.isEmpty()) {
+                        service.cancelBooking(tickets.get(0).getTicketId());
+                        bookings[id]++;
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.MINUTES);
+
+        long total = 0;
+        for (long count : bookings) {
+            total += count;
+        }
+        return total * 1000.0 / ROUND_MILLIS;
+    }
+}
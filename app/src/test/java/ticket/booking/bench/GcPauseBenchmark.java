@@ -0,0 +1,184 @@
+package ticket.booking.bench;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import ticket.booking.TestTrains;
+import ticket.booking.entities.Train;
+import ticket.booking.service.OccupancyCounters;
+import ticket.booking.service.OffHeapSeatStore;
+import ticket.booking.service.SeatInventory;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GC pauses under sustained booking load, with the fleet's seat state on the
+ * heap ({@link SeatInventory}) versus off the heap ({@link OffHeapSeatStore}).
+ *
+ * Every (train, date) partition is opened first, then worker threads book and
+ * release random seats for a fixed time while GC notifications are recorded.
+ *
+ * Run e.g. as {@code java -Xmx2g -cp ... ticket.booking.bench.GcPauseBenchmark heap 2000 30}.
+ * Arguments: {@code heap|offheap [trains] [dates]}. Run each mode in its own JVM.
+ */
+public class GcPauseBenchmark {
+    private static final int COACHES = 20;
+    private static final int SEATS_PER_COACH = 50;
+    private static final int THREADS = 4;
+    private static final long RUN_MILLIS = 20_000;
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "offheap";
+        int trainCount = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        int dateCount = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        LocalDate firstDate = LocalDate.now().plusDays(1);
+
+        List<Train> trains = new ArrayList<>(trainCount);
+        for (int t = 0; t < trainCount; t++) {
+            trains.add(TestTrains.empty("gc_" + t, COACHES, SEATS_PER_COACH, "delhi", "agra"));
+        }
+        Store store = "heap".equals(mode) ? heapStore() : offHeapStore(trains);
+
+        // Open every partition before measuring, as a busy booking day would
+        for (Train train : trains) {
+            for (int d = 0; d < dateCount; d++) {
+                store.toggle(train, firstDate.plusDays(d), 0, 0);
+            }
+        }
+        System.gc();
+
+        PauseRecorder pauses = new PauseRecorder();
+        AtomicLong operations = new AtomicLong();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RUN_MILLIS);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            pool.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long done = 0;
+                while (System.nanoTime() < deadline) {
+                    Train train = trains.get(random.nextInt(trainCount));
+                    store.toggle(train, firstDate.plusDays(random.nextInt(dateCount)),
+                            random.nextInt(COACHES), random.nextInt(SEATS_PER_COACH));
+                    done++;
+                }
+                operations.addAndGet(done);
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.MINUTES);
+        pauses.stop();
+
+        long usedHeap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        System.out.printf("%s: %,d trains x %d dates x %d seats, heap used %,d MB%n",
+                mode, trainCount, dateCount, COACHES * SEATS_PER_COACH, usedHeap >> 20);
+        System.out.printf("  %,.0f seat changes/s%n", operations.get() * 1000.0 / RUN_MILLIS);
+        System.out.printf("  GC pauses: %d, total %d ms, max %d ms, p99 %d ms%n",
+                pauses.count(), pauses.total(), pauses.max(), pauses.percentile(0.99));
+    }
+
+    private interface Store {
+        /**
+         * Books the seat if free, else releases it, keeping occupancy roughly steady
+         */
+        void toggle(Train train, LocalDate date, int coach, int seat);
+    }
+
+    private static Store heapStore() {
+        SeatInventory inventory = new SeatInventory(new OccupancyCounters());
+        return (train, date, coach, seat) -> {
+            if (!inventory.tryBook(train, date, coach, seat)) {
+                inventory.release(train, date, coach, seat);
+            }
+        };
+    }
+
+    private static Store offHeapStore(List<Train> trains) {
+        OffHeapSeatStore store = new OffHeapSeatStore();
+        for (Train train : trains) {
+            store.register(train);
+        }
+        return (train, date, coach, seat) -> {
+            if (!store.tryBook(train.getTrainId(), date, coach, seat)) {
+                store.release(train.getTrainId(), date, coach, seat);
+            }
+        };
+    }
+
+    /**
+     * Collects pause durations from the collectors' GC notifications
+     */
+    private static final class PauseRecorder implements NotificationListener {
+        private final List<Long> pauses = Collections.synchronizedList(new ArrayList<>());
+        private final List<NotificationEmitter> emitters = new ArrayList<>();
+
+        private PauseRecorder() {
+            for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (bean instanceof NotificationEmitter) {
+                    NotificationEmitter emitter = (NotificationEmitter) bean;
+                    emitter.addNotificationListener(this, null, null);
+                    emitters.add(emitter);
+                }
+            }
+        }
+
+        @Override
+        public void handleNotification(javax.management.Notification notification, Object handback) {
+            if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                GarbageCollectionNotificationInfo info =
+                        GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                // Concurrent cycles report wall time, not a pause
+                if (!info.getGcName().contains("Concurrent") && !info.getGcName().contains("Cycles")) {
+                    pauses.add(info.getGcInfo().getDuration());
+                }
+            }
+        }
+
+        private void stop() throws Exception {
+            for (NotificationEmitter emitter : emitters) {
+                emitter.removeNotificationListener(this);
+            }
+        }
+
+        private int count() {
+            return pauses.size();
+        }
+
+        private long total() {
+            long total = 0;
+            for (long pause : snapshot()) {
+                total += pause;
+            }
+            return total;
+        }
+
+        private long max() {
+            List<Long> sorted = snapshot();
+            return sorted.isEmpty() ? 0 : sorted.get(sorted.size() - 1);
+        }
+
+        private long percentile(double p) {
+            List<Long> sorted = snapshot();
+            return sorted.isEmpty() ? 0 : sorted.get((int) Math.min(sorted.size() - 1, Math.ceil(p * sorted.size()) - 1));
+        }
+
+        private List<Long> snapshot() {
+            List<Long> sorted;
+            synchronized (pauses) {
+                sorted = new ArrayList<>(pauses);
+            }
+            Collections.sort(sorted);
+            return sorted;
+        }
+    }
+}
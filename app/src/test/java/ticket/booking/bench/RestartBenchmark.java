@@ -0,0 +1,96 @@
+package ticket.booking.bench;
+
+import ticket.booking.TestTrains;
+import ticket.booking.entities.Train;
+import ticket.booking.service.OccupancyCounters;
+import ticket.booking.service.SeatInventory;
+import ticket.booking.service.SeatLedger;
+import ticket.booking.service.SeatMapSnapshot;
+import ticket.booking.storage.JsonFileStorageEngine;
+import ticket.booking.storage.PersistenceWriter;
+import ticket.booking.util.DatabaseManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Time to first booking after a restart: reloading the trains JSON through
+ * {@link DatabaseManager#loadTrains} versus reopening a {@link SeatLedger}.
+ *
+ * Both stores first get the same fleet with every service date partly sold.
+ * Each restart is then timed from nothing to one booked seat.
+ *
+ * Arguments: {@code [trains] [dates]}.
+ */
+public class RestartBenchmark {
+    private static final int COACHES = 20;
+    private static final int SEATS_PER_COACH = 50;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int trainCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        int dateCount = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        LocalDate firstDate = LocalDate.now().plusDays(1);
+        Path dir = Files.createTempDirectory("restart-bench");
+
+        List<Train> trains = new ArrayList<>(trainCount);
+        for (int t = 0; t < trainCount; t++) {
+            trains.add(train("restart_" + t, firstDate, dateCount));
+        }
+        DatabaseManager.setStorageEngine(new JsonFileStorageEngine(dir, new PersistenceWriter(0)));
+        DatabaseManager.saveTrains(trains);
+        Path ledgerFile = dir.resolve("seats.ledger");
+        try (SeatLedger ledger = SeatLedger.open(ledgerFile)) {
+            for (Train train : trains) {
+                ledger.register(train);
+                for (int d = 0; d < dateCount; d++) {
+                    for (int coach = 0; coach < COACHES; coach += 2) {
+                        ledger.tryBook(train.getTrainId(), firstDate.plusDays(d), coach, 0);
+                    }
+                }
+            }
+        }
+        System.out.printf("%,d trains x %d dates x %d seats: trains.json %,d KB, ledger %,d KB%n",
+                trainCount, dateCount, COACHES * SEATS_PER_COACH,
+                Files.size(dir.resolve(JsonFileStorageEngine.TRAINS_FILE)) >> 10, Files.size(ledgerFile) >> 10);
+
+        String lastId = "restart_" + (trainCount - 1);
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            DatabaseManager.setStorageEngine(new JsonFileStorageEngine(dir, new PersistenceWriter(0)));
+            List<Train> loaded = DatabaseManager.loadTrains();
+            Train target = loaded.get(loaded.size() - 1);
+            boolean booked = new SeatInventory(new OccupancyCounters()).tryBook(target, firstDate, 1, 1);
+            double jsonMillis = (System.nanoTime() - start) / 1e6;
+
+            start = System.nanoTime();
+            boolean ledgerBooked;
+            try (SeatLedger ledger = SeatLedger.open(ledgerFile)) {
+                ledgerBooked = ledger.tryBook(lastId, firstDate, 1, 1 + round);
+                double ledgerMillis = (System.nanoTime() - start) / 1e6;
+                System.out.printf("round %d: JSON reload %,10.1f ms (booked %b)   ledger open %,8.1f ms (booked %b)%n",
+                        round, jsonMillis, booked, ledgerMillis, ledgerBooked);
+            }
+        }
+        DatabaseManager.setStorageEngine(null);
+    }
+
+    private static Train train(String id, LocalDate firstDate, int dateCount) {
+        Train train = TestTrains.empty(id, COACHES, SEATS_PER_COACH, "delhi", "agra");
+        Map<String, List<List<Integer>>> sold = new HashMap<>();
+        for (int d = 0; d < dateCount; d++) {
+            List<List<Integer>> seats = TestTrains.seats(COACHES, SEATS_PER_COACH, SeatMapSnapshot.AVAILABLE);
+            for (int i = 0; i < COACHES; i += 2) {
+                seats.get(i).set(0, SeatMapSnapshot.BOOKED);
+            }
+            sold.put(firstDate.plusDays(d).toString(), seats);
+        }
+        train.setDatedSeats(sold);
+        return train;
+    }
+}
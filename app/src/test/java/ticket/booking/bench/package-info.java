@@ -0,0 +1,7 @@
+/**
+ * Benchmarks comparing the implementations behind a change.
+ *
+ * None of these are unit tests: each is a main-method class, run from the test
+ * classpath, e.g. from the IDE.
+ */
+package ticket.booking.bench;
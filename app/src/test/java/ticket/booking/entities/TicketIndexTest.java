@@ -0,0 +1,135 @@
+package ticket.booking.entities;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ticket.booking.TestTrains;
+import ticket.booking.events.EventBus;
+import ticket.booking.service.SeatPreference;
+import ticket.booking.service.UserBookingService;
+import ticket.booking.storage.JsonFileStorageEngine;
+import ticket.booking.storage.PersistenceWriter;
+import ticket.booking.util.DatabaseManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TicketIndexTest {
+    private Path dataDir;
+
+    @AfterEach
+    public void deleteDataDir() throws IOException {
+        if (dataDir == null) {
+            return;
+        }
+        // Let the persistence subscriber finish with the temp database first
+        EventBus.getInstance().awaitDrained(5, TimeUnit.SECONDS);
+        DatabaseManager.setStorageEngine(null);
+        try (Stream<Path> files = Files.walk(dataDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void ordersByTravelDateAndFindsById() {
+        LocalDate today = LocalDate.of(2030, 1, 1);
+        List<Ticket> tickets = new ArrayList<>();
+        // A corporate account: thousands of tickets, added out of date order
+        for (int i = 0; i < 5_000; i++) {
+            tickets.add(ticket("TN" + i, today.plusDays((i * 7919L) % 365).toString()));
+        }
+        tickets.add(ticket("legacy", "2023-12-08T18:30:00Z"));
+        tickets.add(ticket("undated", "someday"));
+        TicketIndex index = new TicketIndex(tickets);
+        assertEquals(5_002, index.size());
+
+        List<Ticket> all = index.getAll();
+        assertEquals("undated", all.get(0).getTicketId());
+        assertEquals("legacy", all.get(1).getTicketId());
+        for (int i = 3; i < all.size(); i++) {
+            assertFalse(TicketIndex.travelDate(all.get(i)).isBefore(TicketIndex.travelDate(all.get(i - 1))));
+        }
+
+        LocalDate from = today.plusDays(300);
+        List<Ticket> upcoming = index.getUpcoming(from);
+        long expected = tickets.stream().filter(t -> !TicketIndex.travelDate(t).isBefore(from)).count();
+        assertEquals(expected, upcoming.size());
+        assertEquals(from, TicketIndex.travelDate(upcoming.get(0)));
+
+        Ticket ticket = index.get("TN1234");
+        assertSame(ticket, index.remove("TN1234"));
+        assertNull(index.get("TN1234"));
+        assertNull(index.remove("TN1234"));
+        assertEquals(5_001, index.getAll().size());
+    }
+
+    @Test
+    public void userStoresTicketsButNotTheIndex() throws IOException {
+        User user = new User("u1", "asha", "x", "asha@example.com", "0");
+        user.addTicket(ticket("TN2", "2030-05-02"));
+        user.addTicket(ticket("TN1", "2030-05-01"));
+
+        ObjectMapper mapper = new ObjectMapper();
+        String json = mapper.writeValueAsString(user);
+        assertFalse(json.contains("ticketIndex"));
+
+        User loaded = mapper.readValue(json, User.class);
+        assertEquals(Arrays.asList("TN1", "TN2"), ids(loaded.getTickets()));
+        loaded.removeTicket("TN1");
+        assertEquals(Collections.singletonList("TN2"), ids(loaded.getTickets()));
+    }
+
+    @Test
+    public void bookingsSurviveLogout() throws IOException {
+        dataDir = Files.createTempDirectory("tickets-test");
+        DatabaseManager.setStorageEngine(new JsonFileStorageEngine(dataDir, new PersistenceWriter(0)));
+        Train train = TestTrains.empty("T-idx", 1, 4, "delhi", "agra");
+        DatabaseManager.saveTrains(new ArrayList<>(Collections.singletonList(train)));
+        DatabaseManager.saveUsers(new ArrayList<>(Collections.singletonList(
+                new User("u-idx", "ravi", "x", "ravi@example.com", "0"))));
+        LocalDate date = LocalDate.now().plusDays(3);
+
+        UserBookingService first = new UserBookingService();
+        first.setCurrentUser(DatabaseManager.loadUsers().get(0));
+        List<Ticket> booked = first.bookBestAvailableSeats(train, date, 2, SeatPreference.ANY);
+        assertEquals(2, booked.size());
+
+        // A fresh login sees the tickets, stored without the train's seat map
+        User reloaded = DatabaseManager.loadUsers().get(0);
+        assertTrue(reloaded.getTickets().get(0).getTrain().getSeats().isEmpty());
+        UserBookingService second = new UserBookingService();
+        second.setCurrentUser(reloaded);
+        assertEquals(ids(booked), ids(second.getUpcomingTickets()));
+
+        assertTrue(second.cancelBooking(booked.get(0).getTicketId()));
+        assertEquals(1, DatabaseManager.loadUsers().get(0).getTickets().size());
+        assertEquals(3, second.getSeatMap(train, date).getAvailableSeats());
+    }
+
+    private static Ticket ticket(String id, String date) {
+        return new Ticket(id, "u1", "delhi", "agra", date, null);
+    }
+
+    private static List<String> ids(List<Ticket> tickets) {
+        List<String> ids = new ArrayList<>();
+        for (Ticket ticket : tickets) {
+            ids.add(ticket.getTicketId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,90 @@
+package ticket.booking.entities;
+
+import org.junit.jupiter.api.Test;
+import ticket.booking.TestTrains;
+import ticket.booking.service.SeatMapSnapshot;
+
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TrainViewTest {
+
+    @Test
+    public void viewOfStoredTrainKeepsRouteTimesAndSeats() {
+        List<List<Integer>> seats = TestTrains.seats(3, 40, SeatMapSnapshot.AVAILABLE);
+        seats.get(0).set(0, 1);
+        seats.get(2).set(39, 1);
+        Map<String, String> times = new HashMap<>();
+        times.put("mumbai", "16:35:00");
+        times.put("delhi", "06:15:00");
+        Train train = new Train("rajdhani_test", "12951", seats, times, Arrays.asList("Mumbai", "surat", "delhi"));
+
+        TrainView view = TrainView.of(train);
+        assertEquals("rajdhani_test", view.getTrainId());
+        assertEquals(3, view.getStopCount());
+        assertTrue(view.servesRoute("mumbai", "Delhi"));
+        assertFalse(view.servesRoute("delhi", "mumbai"));
+        assertEquals(LocalTime.of(16, 35), view.getTime("MUMBAI"));
+        assertNull(view.getTime("surat"));
+        assertNull(view.getTime("pune"));
+
+        assertEquals(3, view.getRowCount());
+        assertEquals(120, view.getTotalSeats());
+        assertTrue(view.isBooked(0, 0));
+        assertTrue(view.isBooked(2, 39));
+        assertFalse(view.isBooked(1, 0));
+        assertFalse(view.isBooked(2, 40));
+
+        // Changing the source afterwards doesn't reach the view
+        seats.get(1).set(0, 1);
+        times.put("surat", "19:45:00");
+        assertFalse(view.isBooked(1, 0));
+        assertNull(view.getTime("surat"));
+        assertThrows(UnsupportedOperationException.class, () -> view.getStations().add("pune"));
+    }
+
+    @Test
+    public void headerAndViewAgreeOnLoopRoutes() {
+        // A loop line calls at delhi twice; both use the first call
+        Train train = TestTrains.empty("loop_test", 1, 4, "delhi", "agra", "delhi", "jaipur");
+        TrainView view = TrainView.of(train);
+        TrainHeader header = TrainHeader.of(train);
+        assertEquals(0, view.getStopIndex("Delhi"));
+        assertEquals(0, header.getStopIndex("Delhi"));
+        for (String[] route : new String[][]{{"delhi", "agra"}, {"agra", "delhi"}, {"delhi", "jaipur"}, {"jaipur", "delhi"}}) {
+            assertEquals(view.servesRoute(route[0], route[1]), header.servesRoute(route[0], route[1]));
+        }
+        assertFalse(header.servesRoute("agra", "delhi"));
+    }
+
+    @Test
+    public void builtViewRoundTripsThroughTrain() {
+        TrainView view = TrainView.builder("shatabdi_test", "12001")
+                .stop("delhi", "06:00:00")
+                .stop("agra", "08:15")
+                .stop("bhopal", null)
+                .seats(Arrays.asList(Arrays.asList(0, 1, 0), Arrays.asList(1, 1)))
+                .build();
+
+        Train train = view.toTrain();
+        assertEquals(Arrays.asList("delhi", "agra", "bhopal"), train.getStations());
+        assertEquals("08:15:00", train.getStationTimes().get("agra"));
+        assertFalse(train.getStationTimes().containsKey("bhopal"));
+        assertEquals(Arrays.asList(Arrays.asList(0, 1, 0), Arrays.asList(1, 1)), train.getSeats());
+
+        TrainView again = TrainView.of(train);
+        assertEquals(view.getTime("agra"), again.getTime("agra"));
+        assertEquals(view.getTotalSeats(), again.getTotalSeats());
+        assertTrue(view.estimateHeapBytes() < TrainView.estimateHeapBytes(train));
+        assertThrows(IllegalStateException.class, () -> TrainView.builder(null, "1").build());
+    }
+}
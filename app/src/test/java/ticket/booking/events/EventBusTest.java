@@ -0,0 +1,138 @@
+package ticket.booking.events;
+
+import org.junit.jupiter.api.Test;
+import ticket.booking.TestTrains;
+import ticket.booking.entities.SeatPosition;
+import ticket.booking.entities.Train;
+import ticket.booking.service.OccupancyCounters;
+import ticket.booking.service.SeatInventory;
+import ticket.booking.service.SeatPreference;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EventBusTest {
+    private static final LocalDate DATE = LocalDate.now().plusDays(7);
+
+    @Test
+    public void everySubscriberSeesEveryEventInPublishOrder() throws Exception {
+        int producers = 4;
+        int perProducer = 20_000;
+        try (EventBus bus = new EventBus(64)) {
+            List<List<BookingEvent>> seen = new ArrayList<>();
+            AtomicInteger batches = new AtomicInteger();
+            for (int s = 0; s < 2; s++) {
+                List<BookingEvent> events = Collections.synchronizedList(new ArrayList<>());
+                seen.add(events);
+                bus.subscribe("test-" + s, batch -> {
+                    batches.incrementAndGet();
+                    events.addAll(batch);
+                });
+            }
+
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> threads = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                String trainId = "T" + p;
+                Thread thread = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < perProducer; i++) {
+                        bus.publish(BookingEvent.seatsBooked(trainId, DATE,
+                                Collections.singletonList(new SeatPosition(i, 0))));
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertTrue(bus.awaitDrained(10, TimeUnit.SECONDS));
+            assertEquals(0, bus.getLag());
+
+            for (List<BookingEvent> events : seen) {
+                assertEquals(producers * perProducer, events.size());
+                // Each producer's events arrive in the order it published them
+                Map<String, Integer> lastRow = new HashMap<>();
+                for (BookingEvent event : events) {
+                    int row = event.getSeats().get(0).getRow();
+                    Integer previous = lastRow.put(event.getTrainId(), row);
+                    assertEquals(previous == null ? 0 : previous + 1, row);
+                }
+            }
+            // Consumers that fall behind catch up in batches, not one event at a time
+            assertTrue(batches.get() < 2 * producers * perProducer);
+        }
+    }
+
+    @Test
+    public void fullRingHoldsPublishersBackInsteadOfDropping() throws Exception {
+        try (EventBus bus = new EventBus(8)) {
+            CountDownLatch release = new CountDownLatch(1);
+            List<BookingEvent> seen = Collections.synchronizedList(new ArrayList<>());
+            bus.subscribe("slow", batch -> {
+                release.await();
+                seen.addAll(batch);
+            });
+
+            int published = 0;
+            while (bus.tryPublish(BookingEvent.seatsReleased("T", DATE, Collections.<SeatPosition>emptyList()))) {
+                published++;
+            }
+            // The subscriber holds at most one batch in hand while the ring is full
+            assertTrue(published >= 8 && published <= 16, "published " + published);
+            assertFalse(bus.awaitDrained(50, TimeUnit.MILLISECONDS));
+
+            Thread blocked = new Thread(() -> bus.publish(
+                    BookingEvent.seatsReleased("T", DATE, Collections.<SeatPosition>emptyList())));
+            blocked.start();
+            blocked.join(100);
+            assertTrue(blocked.isAlive());
+
+            release.countDown();
+            blocked.join(5_000);
+            assertFalse(blocked.isAlive());
+            assertTrue(bus.awaitDrained(5, TimeUnit.SECONDS));
+            assertEquals(published + 1, seen.size());
+        }
+    }
+
+    @Test
+    public void inventoryPublishesEachSeatChange() throws Exception {
+        try (EventBus bus = new EventBus(1024)) {
+            List<BookingEvent> seen = Collections.synchronizedList(new ArrayList<>());
+            bus.subscribe("test", seen::addAll);
+            SeatInventory inventory = new SeatInventory(new OccupancyCounters(), bus);
+            Train train = TestTrains.empty("T-ev", 1, 4, "delhi", "agra");
+
+            assertTrue(inventory.tryBook(train, DATE, 0, 0));
+            assertFalse(inventory.tryBook(train, DATE, 0, 0));
+            assertEquals(2, inventory.bookBestAvailable(train, DATE, 2, SeatPreference.ANY).size());
+            assertTrue(inventory.release(train, DATE, 0, 0));
+            assertTrue(bus.awaitDrained(5, TimeUnit.SECONDS));
+
+            assertEquals(3, seen.size());
+            assertEquals(BookingEventType.SEATS_BOOKED, seen.get(0).getType());
+            assertEquals(2, seen.get(1).getSeats().size());
+            assertEquals(BookingEventType.SEATS_RELEASED, seen.get(2).getType());
+            assertEquals(DATE, seen.get(2).getDate());
+            assertEquals("T-ev", seen.get(2).getTrainId());
+        }
+    }
+}
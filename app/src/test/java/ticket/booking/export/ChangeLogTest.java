@@ -0,0 +1,112 @@
+package ticket.booking.export;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ticket.booking.entities.SeatPosition;
+import ticket.booking.events.BookingEvent;
+import ticket.booking.events.BookingEventType;
+import ticket.booking.events.EventBus;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ChangeLogTest {
+    private static final LocalDate DATE = LocalDate.of(2030, 6, 1);
+
+    private Path dir;
+
+    @BeforeEach
+    public void createDir() throws IOException {
+        dir = Files.createTempDirectory("export-test");
+    }
+
+    @AfterEach
+    public void deleteDir() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void busEventsAreReadBackFromAnyOffset() throws Exception {
+        try (EventBus bus = new EventBus(16); ChangeLog changeLog = new ChangeLog(dir)) {
+            changeLog.start(bus);
+            bus.publish(BookingEvent.seatsBooked("T1", DATE, Arrays.asList(new SeatPosition(0, 1), new SeatPosition(0, 2))));
+            bus.publish(BookingEvent.ticketsIssued("u1", "T1", DATE, Collections.singletonList(new SeatPosition(0, 1))));
+            bus.publish(BookingEvent.ticketCancelled("u1", "TK1", "T1", DATE, Collections.singletonList(new SeatPosition(0, 1))));
+            assertTrue(bus.awaitDrained(5, TimeUnit.SECONDS));
+
+            List<ChangeRecord> all = changeLog.read(0, 100);
+            assertEquals(3, all.size());
+            ChangeRecord booked = all.get(0);
+            assertEquals(0, booked.getOffset());
+            assertEquals(BookingEventType.SEATS_BOOKED, booked.getType());
+            assertEquals("T1", booked.getTrainId());
+            assertEquals(DATE, booked.getDate());
+            assertEquals(Arrays.asList(new SeatPosition(0, 1), new SeatPosition(0, 2)), booked.getSeats());
+            assertNull(booked.getUserId());
+            assertEquals("TK1", all.get(2).getTicketId());
+            assertEquals(changeLog.getEndOffset(), all.get(2).getNextOffset());
+
+            // Tail from the middle, then past the end
+            List<ChangeRecord> tail = changeLog.read(booked.getNextOffset(), 1);
+            assertEquals(1, tail.size());
+            assertEquals(BookingEventType.TICKETS_ISSUED, tail.get(0).getType());
+            assertEquals("u1", tail.get(0).getUserId());
+            assertTrue(changeLog.read(changeLog.getEndOffset(), 10).isEmpty());
+            assertThrows(IllegalArgumentException.class, () -> changeLog.read(1, 10));
+        }
+    }
+
+    @Test
+    public void consumerOffsetsSurviveReopen() throws Exception {
+        long next;
+        try (ChangeLog changeLog = new ChangeLog(dir)) {
+            assertEquals(0, changeLog.getCommittedOffset("reports"));
+            changeLog.onEvents(Collections.singletonList(BookingEvent.seatsReleased("T1", DATE,
+                    Collections.singletonList(new SeatPosition(2, 3)))));
+            next = changeLog.read(0, 1).get(0).getNextOffset();
+            changeLog.commit("reports", next);
+        }
+        try (ChangeLog changeLog = new ChangeLog(dir)) {
+            assertEquals(next, changeLog.getCommittedOffset("reports"));
+            assertEquals(next, changeLog.getEndOffset());
+            assertTrue(changeLog.read(changeLog.getCommittedOffset("reports"), 10).isEmpty());
+            assertThrows(IllegalArgumentException.class, () -> changeLog.commit("../escape", 0));
+        }
+    }
+
+    @Test
+    public void partialLastLineIsDroppedOnOpen() throws Exception {
+        long end;
+        try (ChangeLog changeLog = new ChangeLog(dir)) {
+            changeLog.onEvents(Collections.singletonList(BookingEvent.seatsBooked("T1", DATE,
+                    Collections.singletonList(new SeatPosition(0, 0)))));
+            end = changeLog.getEndOffset();
+        }
+        Files.write(dir.resolve(ChangeLog.LOG_FILE), "{\"offset\":".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        try (ChangeLog changeLog = new ChangeLog(dir)) {
+            assertEquals(end, changeLog.getEndOffset());
+            assertEquals(end, Files.size(changeLog.getLogFile()));
+            assertEquals(1, changeLog.read(0, 10).size());
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package ticket.booking.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentilesStayWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros * 1_000);
+        }
+
+        assertEquals(10_000, histogram.getCount());
+        assertWithin(5_000_000, histogram.getPercentileNanos(50));
+        assertWithin(9_900_000, histogram.getPercentileNanos(99));
+        assertEquals(10_000_000, histogram.getMaxNanos());
+        assertEquals(5_000_500, histogram.getMeanNanos(), 1);
+    }
+
+    @Test
+    public void bucketsCoverTheWholeRange() {
+        for (long value : new long[]{0, 1, 15, 16, 17, 1_000, 123_456_789, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(LatencyHistogram.upperBoundOf(index) >= value, "upper bound of " + value);
+            assertTrue(index == 0 || LatencyHistogram.upperBoundOf(index - 1) < value, "lower bound of " + value);
+        }
+    }
+
+    @Test
+    public void rendersRegisteredMetrics() {
+        Metrics.counter("test.events").add(3);
+        Metrics.histogram("test.latency").record(2_000);
+
+        String text = Metrics.render();
+
+        assertTrue(text.contains("test.events 3\n"));
+        assertTrue(text.contains("test.latency.count 1\n"));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected / 16, "expected ~" + expected + " got " + actual);
+    }
+}
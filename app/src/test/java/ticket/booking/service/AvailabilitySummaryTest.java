@@ -0,0 +1,56 @@
+package ticket.booking.service;
+
+import org.junit.jupiter.api.Test;
+import ticket.booking.TestTrains;
+import ticket.booking.entities.SeatPosition;
+import ticket.booking.entities.Train;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class AvailabilitySummaryTest {
+    private static final LocalDate DATE = LocalDate.of(2030, 6, 1);
+
+    @Test
+    public void premiumCoachesSitAtTheEndOfTheTrain() {
+        assertArrayEquals(new TravelClass[]{TravelClass.AC_THREE_TIER, TravelClass.AC_THREE_TIER,
+                TravelClass.AC_TWO_TIER, TravelClass.AC_FIRST}, CoachLayout.rowClasses("rajdhani_mumbai", 4));
+        assertArrayEquals(new TravelClass[]{TravelClass.SECOND_SITTING}, CoachLayout.rowClasses("passenger_x", 1));
+        assertEquals(TravelClass.AC_CHAIR_CAR, CoachLayout.cheapestClass("shatabdi_delhi_jaipur"));
+    }
+
+    @Test
+    public void summaryIsSeededFromSoldSeatsAndKeptCurrent() {
+        OccupancyCounters occupancy = new OccupancyCounters();
+        SeatInventory inventory = new SeatInventory(occupancy);
+        Train train = new Train("superfast_test", "1", TestTrains.seats(3, 4, SeatMapSnapshot.AVAILABLE), new HashMap<>(),
+                Arrays.asList("mumbai", "pune", "nagpur"));
+        // Two sleeper seats were sold before this process started
+        train.getDatedSeats().put(DATE.toString(), Arrays.asList(
+                Arrays.asList(1, 1, 0, 0), Arrays.asList(0, 0, 0, 0), Arrays.asList(0, 0, 0, 0)));
+
+        assertNull(occupancy.summarize("superfast_test", DATE));
+        inventory.snapshot(train, DATE);
+        AvailabilitySummary before = occupancy.summarize("superfast_test", DATE);
+        assertEquals(Arrays.asList(TravelClass.SLEEPER, TravelClass.AC_THREE_TIER, TravelClass.AC_TWO_TIER),
+                before.getClasses());
+        assertEquals(2, before.getFreeSeats(TravelClass.SLEEPER));
+        assertEquals(2, before.getSegmentCount());
+
+        inventory.tryBookAll(train, DATE, Arrays.asList(new SeatPosition(2, 0), new SeatPosition(2, 1)));
+        inventory.release(train, DATE, 0, 0);
+        AvailabilitySummary after = occupancy.summarize("superfast_test", DATE);
+        assertEquals(3, after.getFreeSeats(TravelClass.SLEEPER));
+        assertEquals(2, after.getFreeSeats(TravelClass.AC_TWO_TIER, 1, 2));
+        assertEquals(4, after.getFreeSeatsOnSegment(TravelClass.AC_THREE_TIER, 0));
+        assertEquals(9, after.getFreeSeats(0, 2));
+        assertEquals(inventory.snapshot(train, DATE).getAvailableSeats(), after.getFreeSeats(0, 2));
+        // Summaries are immutable once handed out
+        assertEquals(4, before.getFreeSeats(TravelClass.AC_TWO_TIER));
+    }
+}
@@ -0,0 +1,138 @@
+package ticket.booking.service;
+
+import org.junit.jupiter.api.Test;
+import ticket.booking.TestTrains;
+import ticket.booking.entities.SeatPosition;
+import ticket.booking.entities.Train;
+import ticket.booking.entities.TrainHeader;
+import ticket.booking.events.BookingEvent;
+import ticket.booking.events.EventBus;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BookingStatisticsTest {
+    private static final LocalDate DATE = LocalDate.of(2030, 6, 1);
+
+    @Test
+    public void seededTotalsFollowBookingsAndReleases() throws Exception {
+        Train train = TestTrains.empty("stats_west", 2, 4, "mumbai", "vadodara", "delhi");
+        train.getDatedSeats().put(DATE.toString(), Arrays.asList(Arrays.asList(1, 1, 0, 0), Arrays.asList(0, 0, 0, 0)));
+
+        BookingStatistics stats = new BookingStatistics(10);
+        stats.seed(Collections.singletonList(train));
+        OccupancyStats seeded = stats.getTrainStats("stats_west");
+        assertEquals(2, seeded.getBookedSeats());
+        assertEquals(8, seeded.getCapacity());
+        assertTrue(seeded.getRevenue() > 0);
+        assertEquals(0.25, seeded.getOccupancy(), 1e-9);
+        assertEquals(2, stats.getRouteStats("Mumbai", "Delhi").getBookedSeats());
+        assertEquals(2, stats.getRegionStats("West India").getBookedSeats());
+
+        try (EventBus bus = new EventBus(16)) {
+            bus.subscribe("statistics", stats);
+            SeatInventory inventory = new SeatInventory(new OccupancyCounters(), bus);
+            assertTrue(inventory.tryBook(train, DATE, 1, 0));
+            // A date first sold now counts its whole capacity
+            assertTrue(inventory.tryBookAll(train, DATE.plusDays(1), Arrays.asList(new SeatPosition(0, 0), new SeatPosition(0, 1))));
+            assertTrue(bus.awaitDrained(5, TimeUnit.SECONDS));
+
+            OccupancyStats booked = stats.getTrainStats("stats_west");
+            assertEquals(5, booked.getBookedSeats());
+            assertEquals(16, booked.getCapacity());
+            assertEquals(3, stats.getDayStats(DATE).getBookedSeats());
+            assertEquals(2, stats.getDayStats(DATE.plusDays(1)).getBookedSeats());
+            assertEquals(8, stats.getDayStats(DATE.plusDays(1)).getCapacity());
+            assertEquals(5, stats.getOverall().getBookedSeats());
+
+            assertTrue(inventory.release(train, DATE, 1, 0));
+            assertTrue(inventory.release(train, DATE.plusDays(1), 0, 0));
+            assertTrue(inventory.release(train, DATE.plusDays(1), 0, 1));
+            assertTrue(bus.awaitDrained(5, TimeUnit.SECONDS));
+            OccupancyStats released = stats.getTrainStats("stats_west");
+            assertEquals(2, released.getBookedSeats());
+            assertEquals(seeded.getRevenue(), released.getRevenue());
+        }
+    }
+
+    @Test
+    public void revenueIncludesTheDemandSurchargeAndReleasesGiveItBack() throws Exception {
+        Train train = TestTrains.empty("stats_demand", 1, 4, "mumbai", "delhi");
+        TravelClass travelClass = CoachLayout.rowClasses("stats_demand", 1)[0];
+        int published = FareEngine.getInstance().quote(TrainHeader.of(train), "mumbai", "delhi", travelClass, null).getTotalFare();
+
+        BookingStatistics stats = new BookingStatistics(10);
+        stats.seed(Collections.singletonList(train));
+        try (EventBus bus = new EventBus(16)) {
+            bus.subscribe("statistics", stats);
+            // The shared counters drive the shared fare engine's demand surcharge
+            SeatInventory inventory = new SeatInventory(OccupancyCounters.getInstance(), bus);
+            for (int seat = 0; seat < 4; seat++) {
+                assertTrue(inventory.tryBook(train, DATE, 0, seat));
+            }
+            assertTrue(bus.awaitDrained(5, TimeUnit.SECONDS));
+            assertTrue(stats.getTrainStats("stats_demand").getRevenue() > 4L * published);
+
+            for (int seat = 0; seat < 4; seat++) {
+                assertTrue(inventory.release(train, DATE, 0, seat));
+            }
+            assertTrue(bus.awaitDrained(5, TimeUnit.SECONDS));
+            assertEquals(0, stats.getTrainStats("stats_demand").getRevenue());
+        }
+    }
+
+    @Test
+    public void seatsTheSeedAlreadyCountedAreNotCountedAgain() {
+        Train train = TestTrains.empty("stats_seed", 1, 4, "mumbai", "delhi");
+        List<SeatPosition> first = Collections.singletonList(new SeatPosition(0, 0));
+        List<SeatPosition> second = Collections.singletonList(new SeatPosition(0, 1));
+        // Sold and persisted before the seed read, but still queued on the bus
+        BookingEvent queuedFirst = BookingEvent.seatsBooked("stats_seed", DATE, first, new int[]{700});
+        BookingEvent queuedSecond = BookingEvent.seatsBooked("stats_seed", DATE, second, new int[]{800});
+        BookingEvent queuedRelease = BookingEvent.seatsReleased("stats_seed", DATE, second);
+        train.getDatedSeats().put(DATE.toString(), Collections.singletonList(Arrays.asList(1, 0, 0, 0)));
+
+        BookingStatistics stats = new BookingStatistics(10);
+        stats.seed(Collections.singletonList(train));
+        OccupancyStats seeded = stats.getTrainStats("stats_seed");
+        assertEquals(1, seeded.getBookedSeats());
+
+        stats.onEvents(Arrays.asList(queuedFirst, queuedSecond, queuedRelease));
+        assertEquals(1, stats.getTrainStats("stats_seed").getBookedSeats());
+        assertEquals(seeded.getRevenue(), stats.getTrainStats("stats_seed").getRevenue());
+
+        // Later sales count at the fare they carry
+        stats.onEvents(Collections.singletonList(BookingEvent.seatsBooked("stats_seed", DATE,
+                Arrays.asList(new SeatPosition(0, 2), new SeatPosition(0, 3)), new int[]{1234, 1000})));
+        assertEquals(3, stats.getTrainStats("stats_seed").getBookedSeats());
+        assertEquals(seeded.getRevenue() + 2234, stats.getTrainStats("stats_seed").getRevenue());
+    }
+
+    @Test
+    public void topRoutesAreRankedByBookedSeats() {
+        Train west = TestTrains.empty("stats_a", 2, 4, "mumbai", "delhi");
+        Train south = TestTrains.empty("stats_b", 2, 4, "bangalore", "chennai");
+        Train east = TestTrains.empty("stats_c", 2, 4, "kolkata", "patna");
+        west.getDatedSeats().put(DATE.toString(), Arrays.asList(Arrays.asList(1, 0, 0, 0), Arrays.asList(0, 0, 0, 0)));
+        south.getDatedSeats().put(DATE.toString(), Arrays.asList(Arrays.asList(1, 1, 1, 0), Arrays.asList(0, 0, 0, 0)));
+        east.getDatedSeats().put(DATE.toString(), Arrays.asList(Arrays.asList(1, 1, 0, 0), Arrays.asList(0, 0, 0, 0)));
+
+        BookingStatistics stats = new BookingStatistics(2);
+        stats.seed(Arrays.asList(west, south, east));
+        List<OccupancyStats> top = stats.getTopRoutes();
+        assertEquals(2, top.size());
+        assertEquals(BookingStatistics.routeKey("bangalore", "chennai"), top.get(0).getKey());
+        assertEquals(BookingStatistics.routeKey("kolkata", "patna"), top.get(1).getKey());
+
+        List<SeatPosition> seats = Arrays.asList(new SeatPosition(1, 0), new SeatPosition(1, 1), new SeatPosition(1, 2));
+        stats.onEvents(Collections.singletonList(BookingEvent.seatsBooked("stats_a", DATE, seats)));
+        assertEquals(BookingStatistics.routeKey("mumbai", "delhi"), stats.getTopRoutes().get(0).getKey());
+        assertEquals(4, stats.getTopRoutes().get(0).getBookedSeats());
+    }
+}
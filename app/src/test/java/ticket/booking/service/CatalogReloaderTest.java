@@ -0,0 +1,158 @@
+package ticket.booking.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ticket.booking.entities.Train;
+import ticket.booking.entities.TrainHeader;
+import ticket.booking.storage.JsonFileStorageEngine;
+import ticket.booking.storage.PersistenceWriter;
+import ticket.booking.util.DatabaseManager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CatalogReloaderTest {
+    private static final String DATE = LocalDate.of(2030, 6, 1).toString();
+
+    private Path dataDir;
+
+    @BeforeEach
+    public void useTempDatabase() throws IOException {
+        dataDir = Files.createTempDirectory("reload-test");
+        DatabaseManager.setStorageEngine(new JsonFileStorageEngine(dataDir, new PersistenceWriter(0)));
+        List<Train> trains = new ArrayList<>();
+        trains.add(train("reload_a", "06:00:00"));
+        trains.add(train("reload_b", "07:00:00"));
+        trains.get(1).getDatedSeats().put(DATE, Collections.singletonList(Arrays.asList(1, 0)));
+        DatabaseManager.saveTrains(trains);
+    }
+
+    @AfterEach
+    public void deleteDataDir() throws IOException {
+        DatabaseManager.setStorageEngine(null);
+        try (Stream<Path> files = Files.walk(dataDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void editedFileReloadsOnlyChangedTrains() throws Exception {
+        TrainCatalog catalog = new TrainCatalog(16);
+        try (CatalogReloader reloader = new CatalogReloader(dataDir, catalog)) {
+            reloader.start();
+            Map<String, TrainHeader> before = byId(catalog.getHeaders());
+
+            // Edit a timetable behind the app's back
+            Path file = dataDir.resolve(JsonFileStorageEngine.TRAINS_FILE);
+            String json = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            Files.write(file, json.replace("06:00:00", "06:30:00").getBytes(StandardCharsets.UTF_8));
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (reloader.getReloadCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(1, reloader.getReloadCount());
+            TrainHeader changed = byId(catalog.getHeaders()).get("reload_a");
+            assertNotSame(before.get("reload_a"), changed);
+            assertEquals(LocalTime.of(6, 30), catalog.getView(changed).getTime("delhi"));
+            // The untouched train keeps its header, so its cached details stay warm
+            assertSame(before.get("reload_b"), byId(catalog.getHeaders()).get("reload_b"));
+            assertTrue(reloader.reload().isEmpty());
+        }
+    }
+
+    @Test
+    public void seatMapWritesAreNotCatalogChanges() throws Exception {
+        TrainCatalog catalog = new TrainCatalog(16);
+        try (CatalogReloader reloader = new CatalogReloader(dataDir, catalog)) {
+            reloader.start();
+            Map<String, TrainHeader> before = byId(catalog.getHeaders());
+
+            // What the app writes back after a booking batch: seat maps only, for a sold and a new date
+            DatabaseManager.transaction(engine -> {
+                Train stored = engine.loadTrain("reload_b");
+                stored.getDatedSeats().put(DATE, Collections.singletonList(Arrays.asList(1, 1)));
+                stored.getDatedSeats().put(LocalDate.of(2030, 6, 2).toString(), Collections.singletonList(Arrays.asList(0, 1)));
+                engine.upsertTrains(Collections.singletonList(stored));
+                return null;
+            });
+            Thread.sleep(500);
+
+            assertEquals(0, reloader.getReloadCount());
+            assertTrue(reloader.reload().isEmpty());
+            Map<String, TrainHeader> after = byId(catalog.getHeaders());
+            assertSame(before.get("reload_a"), after.get("reload_a"));
+            assertSame(before.get("reload_b"), after.get("reload_b"));
+            assertEquals(Collections.singletonList(Arrays.asList(1, 1)),
+                    DatabaseManager.loadTrain("reload_b").getDatedSeats().get(DATE));
+        }
+    }
+
+    @Test
+    public void droppedDeltaIsUpsertedAndMovedAside() throws Exception {
+        TrainCatalog catalog = new TrainCatalog(16);
+        try (CatalogReloader reloader = new CatalogReloader(dataDir, catalog)) {
+            reloader.start();
+            Map<String, TrainHeader> before = byId(catalog.getHeaders());
+
+            Path delta = dataDir.resolve(CatalogReloader.DELTA_FILE);
+            Files.write(delta, ("[{\"train_id\":\"reload_b\",\"train_no\":\"200\",\"seats\":[[0,0]],"
+                    + "\"station_times\":{\"delhi\":\"09:00:00\"},\"stations\":[\"delhi\",\"agra\"]},"
+                    + "{\"train_id\":\"reload_c\",\"train_no\":\"300\",\"seats\":[[0,0]],"
+                    + "\"stations\":[\"pune\",\"goa\"]}]").getBytes(StandardCharsets.UTF_8));
+            reloader.applyDelta();
+
+            assertFalse(Files.exists(delta));
+            assertTrue(Files.exists(dataDir.resolve(CatalogReloader.DELTA_FILE + CatalogReloader.APPLIED_SUFFIX)));
+            Map<String, TrainHeader> after = byId(catalog.getHeaders());
+            assertEquals(3, after.size());
+            assertSame(before.get("reload_a"), after.get("reload_a"));
+            assertNotNull(after.get("reload_c"));
+            assertEquals("200", after.get("reload_b").getTrainNo());
+            assertEquals(LocalTime.of(9, 0), catalog.getView(after.get("reload_b")).getTime("delhi"));
+            // Seats already sold survive a delta without any
+            assertEquals(Collections.singletonList(Arrays.asList(1, 0)),
+                    DatabaseManager.loadTrain("reload_b").getDatedSeats().get(DATE));
+
+            Files.write(delta, "not json".getBytes(StandardCharsets.UTF_8));
+            assertFalse(reloader.applyDelta());
+            assertTrue(Files.exists(dataDir.resolve(CatalogReloader.DELTA_FILE + CatalogReloader.REJECTED_SUFFIX)));
+        }
+    }
+
+    private static Map<String, TrainHeader> byId(List<TrainHeader> headers) {
+        Map<String, TrainHeader> result = new HashMap<>();
+        for (TrainHeader header : headers) {
+            result.put(header.getTrainId(), header);
+        }
+        return result;
+    }
+
+    private static Train train(String id, String departure) {
+        List<List<Integer>> seats = new ArrayList<>();
+        seats.add(new ArrayList<>(Arrays.asList(0, 0)));
+        Map<String, String> times = new HashMap<>();
+        times.put("delhi", departure);
+        return new Train(id, "100", seats, times, new ArrayList<>(Arrays.asList("delhi", "agra")));
+    }
+}
@@ -0,0 +1,93 @@
+package ticket.booking.service;
+
+import org.junit.jupiter.api.Test;
+import ticket.booking.TestTrains;
+import ticket.booking.entities.SeatPosition;
+import ticket.booking.entities.Train;
+import ticket.booking.entities.TrainHeader;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FareEngineTest {
+    private static final LocalDate DATE = LocalDate.of(2030, 5, 1);
+    private static final TrainHeader RAJDHANI = new TrainHeader("rajdhani_mumbai", "12951",
+            Arrays.asList("mumbai", "surat", "vadodara", "kota", "delhi"));
+
+    @Test
+    public void segmentDistancesComeFromPrefixSums() {
+        FareTable table = FareTable.of(RAJDHANI);
+        double whole = table.getDistanceKm("Mumbai", "Delhi");
+        assertEquals(whole, table.getRouteKm(), 1e-9);
+        assertEquals(whole, table.getDistanceKm("mumbai", "vadodara") + table.getDistanceKm("vadodara", "delhi"), 1e-6);
+        // Roughly the real 1,380 km by rail
+        assertTrue(whole > 1300 && whole < 1500, String.valueOf(whole));
+        assertEquals(-1, table.getDistanceKm("delhi", "mumbai"), 0);
+        assertEquals(-1, table.getDistanceKm("mumbai", "atlantis"), 0);
+    }
+
+    @Test
+    public void unknownStationsFallBackToAFixedHop() {
+        FareTable table = FareTable.of(new TrainHeader("T1", "1", Arrays.asList("delhi", "nowhere", "agra")));
+        assertEquals(2 * FareTable.UNKNOWN_HOP_KM, table.getDistanceKm("delhi", "agra"), 1e-9);
+    }
+
+    @Test
+    public void quotesScaleByClassAndTrainTypeWithSurcharges() {
+        FareEngine engine = new FareEngine();
+        FareQuote sleeper = engine.quote(RAJDHANI, "mumbai", "delhi", TravelClass.SLEEPER, DATE);
+        FareQuote first = engine.quote(RAJDHANI, "mumbai", "delhi", TravelClass.AC_FIRST, DATE);
+        assertEquals(Math.round(sleeper.getDistanceKm() * FareEngine.BASE_RATE_PER_KM * 1.25), sleeper.getBaseFare(), 1);
+        assertTrue(first.getTotalFare() > 6 * sleeper.getBaseFare());
+        assertEquals(TravelClass.SLEEPER.getReservationCharge() + TrainType.RAJDHANI.getSurcharge(), sleeper.getSurcharge());
+        assertNull(engine.quote(RAJDHANI, "delhi", "mumbai", TravelClass.SLEEPER, DATE));
+
+        engine.addSurcharge((train, fromStop, toStop, travelClass, date, baseFare) -> baseFare / 10);
+        FareQuote peak = engine.quote(RAJDHANI, "mumbai", "delhi", TravelClass.SLEEPER, DATE);
+        assertEquals(sleeper.getTotalFare() + sleeper.getBaseFare() / 10, peak.getTotalFare());
+    }
+
+    @Test
+    public void shortHopsPayTheMinimumDistanceAndTablesAreReused() {
+        FareEngine engine = new FareEngine();
+        TrainHeader local = new TrainHeader("passenger_delhi_gurgaon", "1", Arrays.asList("delhi", "gurgaon"));
+        FareQuote quote = engine.quote(local, "delhi", "gurgaon", TravelClass.SECOND_SITTING, DATE);
+        assertTrue(quote.getDistanceKm() < FareEngine.MIN_CHARGEABLE_KM);
+        assertEquals(Math.round(FareEngine.MIN_CHARGEABLE_KM * FareEngine.BASE_RATE_PER_KM * 0.6 * 0.8), quote.getBaseFare());
+        assertSame(engine.tableFor(local), engine.tableFor(local));
+    }
+
+    @Test
+    public void demandSurchargeFollowsLiveOccupancy() {
+        OccupancyCounters occupancy = new OccupancyCounters();
+        SeatInventory inventory = new SeatInventory(occupancy);
+        FareEngine engine = new FareEngine();
+        engine.addSurcharge(new DemandSurcharge(occupancy));
+        Train train = TestTrains.empty(RAJDHANI.getTrainId(), 2, 5, RAJDHANI.getStations().toArray(new String[0]));
+
+        int quiet = engine.quote(RAJDHANI, "surat", "kota", TravelClass.SLEEPER, DATE).getTotalFare();
+        List<SeatPosition> coach = Arrays.asList(new SeatPosition(0, 0), new SeatPosition(0, 1),
+                new SeatPosition(0, 2), new SeatPosition(0, 3), new SeatPosition(0, 4));
+        assertTrue(inventory.tryBookAll(train, DATE, coach));
+        assertTrue(inventory.tryBook(train, DATE, 1, 0));
+        assertTrue(inventory.tryBook(train, DATE, 1, 1));
+        assertEquals(5, occupancy.getBooked("rajdhani_mumbai", DATE, TravelClass.AC_TWO_TIER, 3));
+        assertEquals(2, occupancy.getBooked("rajdhani_mumbai", DATE, TravelClass.AC_FIRST, 3));
+        assertEquals(0.7, occupancy.getLoadFactor("rajdhani_mumbai", DATE, 1, 3), 1e-9);
+
+        FareQuote busy = engine.quote(RAJDHANI, "surat", "kota", TravelClass.SLEEPER, DATE);
+        assertEquals(quiet + Math.round(busy.getBaseFare() * 0.10), busy.getTotalFare());
+
+        assertTrue(inventory.release(train, DATE, 1, 1));
+        assertTrue(inventory.release(train, DATE, 1, 0));
+        assertTrue(inventory.release(train, DATE, 0, 4));
+        assertEquals(quiet, engine.quote(RAJDHANI, "surat", "kota", TravelClass.SLEEPER, DATE).getTotalFare());
+        assertEquals(0.5, DemandSurcharge.rateFor(0.95), 0);
+    }
+}
@@ -0,0 +1,180 @@
+package ticket.booking.service;
+
+import org.junit.jupiter.api.Test;
+import ticket.booking.TestTrains;
+import ticket.booking.entities.SeatPosition;
+import ticket.booking.entities.Train;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OffHeapSeatStoreTest {
+    private static final LocalDate DATE = LocalDate.of(2030, 6, 1);
+
+    @Test
+    public void booksAndReleasesByTrainDateCoachAndSeat() {
+        OffHeapSeatStore store = new OffHeapSeatStore(8, 4096);
+        store.register("T1", new int[]{72, 72, 3});
+
+        assertTrue(store.tryBook("T1", DATE, 1, 70));
+        assertFalse(store.tryBook("T1", DATE, 1, 70));
+        assertFalse(store.tryBook("T1", DATE, 2, 3));
+        assertTrue(store.isBooked("T1", DATE, 1, 70));
+        assertFalse(store.isBooked("T1", DATE.plusDays(1), 1, 70));
+        assertEquals(1, store.getBookedSeats("T1", DATE));
+
+        // All or nothing: the taken seat rolls back the ones before it
+        assertFalse(store.tryBookAll("T1", DATE, Arrays.asList(new SeatPosition(0, 0), new SeatPosition(1, 70))));
+        assertFalse(store.isBooked("T1", DATE, 0, 0));
+        assertTrue(store.tryBookAll("T1", DATE, Arrays.asList(new SeatPosition(0, 0), new SeatPosition(2, 2))));
+        assertEquals(3, store.getBookedSeats("T1", DATE));
+
+        SeatMapSnapshot snapshot = store.snapshot("T1", DATE);
+        assertEquals(147, snapshot.getTotalSeats());
+        assertEquals(144, snapshot.getAvailableSeats());
+        assertFalse(snapshot.isAvailable(2, 2));
+
+        assertTrue(store.release("T1", DATE, 1, 70));
+        assertFalse(store.release("T1", DATE, 1, 70));
+        assertFalse(store.release("T1", DATE.plusDays(2), 0, 0));
+        assertEquals(2, store.getBookedSeats("T1", DATE));
+
+        // Eight-day ring: a ninth date ahead collides with an open one
+        assertThrows(IllegalStateException.class, () -> store.tryBook("T1", DATE.plusDays(8), 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> store.tryBook("nope", DATE, 0, 0));
+        assertThrows(IllegalStateException.class, () -> store.register("T1", new int[]{10}));
+    }
+
+    @Test
+    public void evictedMemoryIsReusedZeroed() {
+        OffHeapSeatStore store = new OffHeapSeatStore(16, 1024);
+        store.register("T1", new int[]{64, 64});
+        for (int day = 0; day < 10; day++) {
+            assertTrue(store.tryBook("T1", DATE.plusDays(day), 1, 5));
+        }
+        long used = store.getUsedBytes();
+        assertEquals(10 * 3 * Long.BYTES, used);
+
+        assertEquals(5, store.evictBefore(DATE.plusDays(5)));
+        for (int day = 10; day < 15; day++) {
+            assertFalse(store.isBooked("T1", DATE.plusDays(day), 1, 5));
+            assertTrue(store.tryBook("T1", DATE.plusDays(day), 0, 1));
+            assertEquals(1, store.getBookedSeats("T1", DATE.plusDays(day)));
+        }
+        assertEquals(used, store.getUsedBytes());
+    }
+
+    @Test
+    public void evictionWaitsForBookingsThatMayStillSeeThePartition() throws InterruptedException {
+        OffHeapSeatStore store = new OffHeapSeatStore(16, 1024);
+        store.register("T1", new int[]{64});
+        assertTrue(store.tryBook("T1", DATE, 0, 5));
+
+        // A booking that found the partition before the eviction is still running
+        int reader = store.enter();
+        AtomicInteger evicted = new AtomicInteger(-1);
+        Thread evictor = new Thread(() -> evicted.set(store.evictBefore(DATE.plusDays(1))));
+        evictor.start();
+        evictor.join(200);
+        assertTrue(evictor.isAlive());
+        assertFalse(store.isBooked("T1", DATE, 0, 5));
+
+        store.exit(reader);
+        evictor.join(5000);
+        assertEquals(1, evicted.get());
+        assertTrue(store.tryBook("T1", DATE.plusDays(1), 0, 1));
+        assertEquals(1, store.getBookedSeats("T1", DATE.plusDays(1)));
+    }
+
+    @Test
+    public void newLayoutDropsTheOldPartitions() {
+        OffHeapSeatStore store = new OffHeapSeatStore(8, 4096);
+        store.register("T1", new int[]{10});
+        assertTrue(store.tryBook("T1", DATE, 0, 9));
+
+        assertTrue(store.relayout("T1", new int[]{10}));
+        assertTrue(store.isBooked("T1", DATE, 0, 9));
+        assertFalse(store.relayout("T1", new int[]{10, 20}));
+        assertFalse(store.contains("T1", DATE));
+        assertTrue(store.tryBook("T1", DATE, 1, 19));
+        assertEquals(30, store.getTotalSeats("T1"));
+    }
+
+    @Test
+    public void inventoryKeepsLiveDatesInTheStoreAcrossLayouts() {
+        OffHeapSeatStore store = new OffHeapSeatStore(8, 4096);
+        SeatInventory inventory = new SeatInventory();
+        inventory.attach(store);
+        Train train = TestTrains.empty("T-re", 2, 4);
+        assertTrue(inventory.tryBook(train, DATE, 0, 0));
+
+        // A seatless copy, as stored with tickets, leaves the layout alone
+        Train seatless = TestTrains.train("T-re", new ArrayList<>());
+        inventory.snapshot(seatless, DATE.plusDays(1));
+        assertTrue(store.isBooked("T-re", DATE, 0, 0));
+        assertTrue(inventory.tryBook(train, DATE, 1, 3));
+
+        // A real layout change re-seeds the dates already on sale
+        Train longer = TestTrains.empty("T-re", 3, 4);
+        assertTrue(inventory.tryBook(longer, DATE.plusDays(2), 2, 3));
+        assertEquals(12, store.getTotalSeats("T-re"));
+        assertTrue(store.isBooked("T-re", DATE, 0, 0));
+        assertTrue(store.isBooked("T-re", DATE, 1, 3));
+        assertTrue(inventory.release(train, DATE, 0, 0));
+        assertFalse(store.isBooked("T-re", DATE, 0, 0));
+
+        // Seats the new layout lacks stay on the heap only
+        Train shorter = TestTrains.empty("T-re", 1, 2);
+        inventory.snapshot(shorter, DATE.plusDays(3));
+        assertTrue(inventory.release(train, DATE, 1, 3));
+        assertTrue(inventory.tryBook(train, DATE, 0, 1));
+        assertTrue(store.isBooked("T-re", DATE, 0, 1));
+    }
+
+    @Test
+    public void concurrentBookersNeverDoubleSell() throws InterruptedException {
+        OffHeapSeatStore store = new OffHeapSeatStore();
+        int[] coaches = new int[20];
+        Arrays.fill(coaches, 50);
+        store.register("T1", coaches);
+
+        int threads = 8;
+        AtomicInteger sold = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int coach = 0; coach < 20; coach++) {
+                    for (int seat = 0; seat < 50; seat++) {
+                        if (store.tryBook("T1", DATE, coach, seat)) {
+                            sold.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(1000, sold.get());
+        assertEquals(1000, store.getBookedSeats("T1", DATE));
+        assertEquals(0, store.snapshot("T1", DATE).getAvailableSeats());
+    }
+}
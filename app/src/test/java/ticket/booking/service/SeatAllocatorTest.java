@@ -0,0 +1,68 @@
+package ticket.booking.service;
+
+import org.junit.jupiter.api.Test;
+import ticket.booking.entities.SeatPosition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class SeatAllocatorTest {
+    private final SeatAllocator allocator = new SeatAllocator();
+
+    @Test
+    public void summariesTrackEveryWrite() {
+        SeatMapSnapshot seats = layout(new int[][]{{0, 0, 0, 0, 0, 0}, {0, 0, 0, 0, 0, 0}})
+                .withSeats(Arrays.asList(new SeatPosition(0, 2), new SeatPosition(1, 5)), SeatMapSnapshot.BOOKED);
+
+        assertEquals(5, seats.getAvailableSeats(0));
+        assertEquals(3, seats.getLongestFreeRun(0));
+        assertEquals(5, seats.getLongestFreeRun(1));
+        assertEquals(10, seats.getAvailableSeats());
+
+        SeatMapSnapshot released = seats.withSeat(0, 2, SeatMapSnapshot.AVAILABLE);
+        assertEquals(6, released.getLongestFreeRun(0));
+        assertEquals(11, released.getAvailableSeats());
+    }
+
+    @Test
+    public void balancesLoadAcrossCoaches() {
+        SeatMapSnapshot seats = layout(new int[][]{{1, 0, 0, 0, 0, 1}, {0, 0, 0, 0, 0, 1}, {1, 1, 0, 0, 1, 1}});
+
+        List<SeatPosition> group = allocator.allocate(seats, 2, SeatPreference.ANY);
+
+        assertEquals(1, group.get(0).getRow());
+    }
+
+    @Test
+    public void honoursWindowAndAislePreferences() {
+        SeatMapSnapshot seats = layout(new int[][]{{1, 0, 0, 0, 0, 0}, {1, 1, 0, 0, 1, 0}});
+
+        assertEquals(Arrays.asList(new SeatPosition(0, 5)), allocator.allocate(seats, 1, SeatPreference.WINDOW));
+        assertEquals(Arrays.asList(new SeatPosition(0, 2)), allocator.allocate(seats, 1, SeatPreference.AISLE));
+        assertEquals(Arrays.asList(new SeatPosition(0, 4), new SeatPosition(0, 5)),
+                allocator.allocate(seats, 2, SeatPreference.WINDOW));
+    }
+
+    @Test
+    public void returnsNullWhenNoCoachFitsTheGroup() {
+        SeatMapSnapshot seats = layout(new int[][]{{0, 0, 1, 0, 0, 1}, {1, 0, 0, 1, 0, 0}});
+
+        assertNull(allocator.allocate(seats, 3, SeatPreference.ANY));
+    }
+
+    private static SeatMapSnapshot layout(int[][] rows) {
+        List<List<Integer>> seats = new ArrayList<>();
+        for (int[] row : rows) {
+            List<Integer> copy = new ArrayList<>();
+            for (int value : row) {
+                copy.add(value);
+            }
+            seats.add(copy);
+        }
+        return SeatMapSnapshot.of("T-alloc", seats);
+    }
+}
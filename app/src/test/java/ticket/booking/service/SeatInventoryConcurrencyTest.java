@@ -0,0 +1,275 @@
+package ticket.booking.service;
+
+import org.junit.jupiter.api.Test;
+import ticket.booking.TestTrains;
+import ticket.booking.entities.SeatPosition;
+import ticket.booking.entities.Train;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SeatInventoryConcurrencyTest {
+    private static final int WRITERS = 8;
+    private static final int READERS = 4;
+
+    @Test
+    public void everySeatIsSoldExactlyOnceAndReadersSeeConsistentVersions() throws Exception {
+        SeatInventory inventory = new SeatInventory();
+        Train train = TestTrains.empty("T-race", 20, 10);
+        int totalSeats = 200;
+
+        AtomicInteger[] winners = new AtomicInteger[totalSeats];
+        for (int i = 0; i < totalSeats; i++) {
+            winners[i] = new AtomicInteger();
+        }
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicReference<String> readerFailure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS + READERS);
+
+        for (int r = 0; r < READERS; r++) {
+            pool.submit(() -> {
+                long lastVersion = -1;
+                await(start);
+                while (writing.get()) {
+                    SeatMapSnapshot snapshot = inventory.snapshot(train);
+                    String problem = checkSnapshot(snapshot, lastVersion);
+                    if (problem != null) {
+                        readerFailure.compareAndSet(null, problem);
+                        return;
+                    }
+                    lastVersion = snapshot.getVersion();
+                }
+            });
+        }
+
+        List<Future<?>> writers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            writers.add(pool.submit(() -> {
+                await(start);
+                // Every writer races for every seat
+                for (int seat = 0; seat < totalSeats; seat++) {
+                    if (inventory.tryBook(train, seat / 10, seat % 10)) {
+                        winners[seat].incrementAndGet();
+                    }
+                }
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get(30, TimeUnit.SECONDS);
+        }
+        writing.set(false);
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertNull(readerFailure.get());
+        for (int seat = 0; seat < totalSeats; seat++) {
+            assertEquals(1, winners[seat].get(), "seat " + seat + " winners");
+        }
+        SeatMapSnapshot last = inventory.snapshot(train);
+        assertEquals(0, last.getAvailableSeats());
+        assertEquals(totalSeats, last.getVersion());
+    }
+
+    @Test
+    public void bookAndReleaseCyclesLeaveTheTrainEmpty() throws Exception {
+        SeatInventory inventory = new SeatInventory();
+        Train train = TestTrains.empty("T-cycle", 4, 6);
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS);
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger released = new AtomicInteger();
+
+        for (int w = 0; w < WRITERS; w++) {
+            pool.submit(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    int row = i % 4;
+                    int col = (i / 4) % 6;
+                    if (inventory.tryBook(train, row, col)) {
+                        booked.incrementAndGet();
+                        if (inventory.release(train, row, col)) {
+                            released.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        SeatMapSnapshot last = inventory.snapshot(train);
+        assertEquals(booked.get(), released.get());
+        assertEquals(24, last.getAvailableSeats());
+        assertEquals(booked.get() * 2L, last.getVersion());
+    }
+
+    @Test
+    public void snapshotsAreImmutableOnceRead() {
+        SeatInventory inventory = new SeatInventory();
+        Train train = TestTrains.empty("T-mvcc", 2, 2);
+
+        SeatMapSnapshot before = inventory.snapshot(train);
+        assertTrue(inventory.tryBook(train, 1, 1));
+        SeatMapSnapshot after = inventory.snapshot(train);
+
+        assertTrue(before.isAvailable(1, 1));
+        assertEquals(4, before.getAvailableSeats());
+        assertFalse(after.isAvailable(1, 1));
+        assertEquals(before.getVersion() + 1, after.getVersion());
+    }
+
+    @Test
+    public void batchBookingIsAllOrNothing() {
+        SeatInventory inventory = new SeatInventory();
+        Train train = TestTrains.empty("T-batch", 2, 6);
+        assertTrue(inventory.tryBook(train, 0, 2));
+
+        long before = inventory.snapshot(train).getVersion();
+        assertFalse(inventory.tryBookAll(train, Arrays.asList(new SeatPosition(0, 1), new SeatPosition(0, 2))));
+        assertEquals(before, inventory.snapshot(train).getVersion());
+        assertTrue(inventory.snapshot(train).isAvailable(0, 1));
+
+        assertTrue(inventory.tryBookAll(train, Arrays.asList(new SeatPosition(1, 0), new SeatPosition(1, 1))));
+        assertEquals(before + 1, inventory.snapshot(train).getVersion());
+        assertEquals(9, inventory.snapshot(train).getAvailableSeats());
+    }
+
+    @Test
+    public void adjacentBookingGoesToTheEmptiestCoach() {
+        SeatInventory inventory = new SeatInventory();
+        Train train = TestTrains.empty("T-group", 2, 6);
+        // Row 0 keeps a run of three, row 1 stays fully free
+        assertTrue(inventory.tryBookAll(train, Arrays.asList(new SeatPosition(0, 0), new SeatPosition(0, 4), new SeatPosition(0, 5))));
+
+        List<SeatPosition> seats = inventory.bookAdjacent(train, 3);
+        assertEquals(Arrays.asList(new SeatPosition(1, 0), new SeatPosition(1, 1), new SeatPosition(1, 2)), seats);
+        assertTrue(inventory.bookAdjacent(train, 7).isEmpty());
+    }
+
+    @Test
+    public void serviceDatesArePartitionedAndSeededLazily() {
+        SeatInventory inventory = new SeatInventory();
+        Train train = TestTrains.empty("T-dated", 1, 4);
+        LocalDate monday = LocalDate.of(2030, 1, 7);
+        LocalDate tuesday = monday.plusDays(1);
+        // Tuesday already has a seat sold in the database
+        train.getDatedSeats().put(tuesday.toString(), Arrays.asList(Arrays.asList(0, 0, 0, 1)));
+
+        assertTrue(inventory.snapshots("T-dated").isEmpty());
+        assertTrue(inventory.tryBook(train, monday, 0, 0));
+        assertTrue(inventory.snapshot(train, tuesday).isAvailable(0, 0));
+        assertFalse(inventory.tryBook(train, tuesday, 0, 3));
+        assertEquals(4, SeatMapSnapshot.of("T-dated", train.getSeats()).getAvailableSeats());
+        assertEquals(2, inventory.snapshots("T-dated").size());
+
+        Map<String, Map<LocalDate, SeatMapSnapshot>> evicted = inventory.evictBefore(tuesday);
+        assertEquals(3, evicted.get("T-dated").get(monday).getAvailableSeats());
+        assertEquals(Arrays.asList(tuesday), new ArrayList<>(inventory.snapshots("T-dated").keySet()));
+    }
+
+    @Test
+    public void racingFirstBookingsOfADateAreAllCounted() throws Exception {
+        OccupancyCounters occupancy = new OccupancyCounters();
+        SeatInventory inventory = new SeatInventory(occupancy);
+        Train train = TestTrains.empty("T-first", 1, WRITERS, "pune", "goa");
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS);
+        try {
+            for (int day = 0; day < 200; day++) {
+                LocalDate date = LocalDate.of(2030, 1, 1).plusDays(day);
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Boolean>> writers = new ArrayList<>();
+                for (int w = 0; w < WRITERS; w++) {
+                    int seat = w;
+                    // Every writer's booking may be the one that loads the date
+                    writers.add(pool.submit(() -> {
+                        await(start);
+                        return inventory.tryBook(train, date, 0, seat);
+                    }));
+                }
+                start.countDown();
+                for (Future<Boolean> writer : writers) {
+                    assertTrue(writer.get(10, TimeUnit.SECONDS));
+                }
+                int booked = 0;
+                for (TravelClass travelClass : TravelClass.values()) {
+                    booked += occupancy.getBooked("T-first", date, travelClass, 0);
+                }
+                assertEquals(WRITERS, booked, "date " + date);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void evictedDatesAreNotReseeded() {
+        SeatInventory inventory = new SeatInventory();
+        Train train = TestTrains.empty("T-evicted", 1, 4);
+        LocalDate monday = LocalDate.of(2030, 1, 7);
+        assertTrue(inventory.tryBook(train, monday, 0, 0));
+        inventory.evictBefore(monday.plusDays(1));
+        // What the archiver leaves behind in the train record
+        train.getDatedSeats().put(monday.toString(), Arrays.asList(Arrays.asList(1, 0, 0, 0)));
+
+        assertFalse(inventory.release(train, monday, 0, 0));
+        assertFalse(inventory.tryBook(train, monday, 0, 1));
+        assertFalse(inventory.tryBookAll(train, monday, Arrays.asList(new SeatPosition(0, 2))));
+        assertTrue(inventory.bookBestAvailable(train, monday, 1, SeatPreference.ANY).isEmpty());
+        assertFalse(inventory.snapshot(train, monday).isAvailable(0, 0));
+        assertTrue(inventory.snapshots("T-evicted").isEmpty());
+
+        // Dates from the cutoff on still take bookings
+        assertTrue(inventory.tryBook(train, monday.plusDays(1), 0, 1));
+    }
+
+    /**
+     * A snapshot is consistent if its cached counter matches its cells and the
+     * version never goes backwards. Only bookings happen in the race test, so the
+     * version also equals the number of booked seats.
+     */
+    private static String checkSnapshot(SeatMapSnapshot snapshot, long lastVersion) {
+        int available = 0;
+        for (int i = 0; i < snapshot.getRowCount(); i++) {
+            for (int j = 0; j < snapshot.getSeatCount(i); j++) {
+                if (snapshot.isAvailable(i, j)) {
+                    available++;
+                }
+            }
+        }
+        if (available != snapshot.getAvailableSeats()) {
+            return "torn snapshot at version " + snapshot.getVersion();
+        }
+        if (snapshot.getVersion() < lastVersion) {
+            return "version went backwards: " + lastVersion + " -> " + snapshot.getVersion();
+        }
+        if (snapshot.getTotalSeats() - available != snapshot.getVersion()) {
+            return "version " + snapshot.getVersion() + " does not match booked seats";
+        }
+        return null;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
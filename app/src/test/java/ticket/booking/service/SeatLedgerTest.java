@@ -0,0 +1,146 @@
+package ticket.booking.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ticket.booking.TestTrains;
+import ticket.booking.entities.SeatPosition;
+import ticket.booking.entities.Train;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SeatLedgerTest {
+    private static final LocalDate DATE = LocalDate.of(2030, 6, 1);
+    private static final int SERVICE_DAYS = 8;
+    private static final int MAX_TRAINS = 4;
+    private static final int CHUNK_BYTES = 64 * 1024;
+    // Header, train table and directories come first; the first partition follows
+    private static final long FIRST_PARTITION = 4096 + MAX_TRAINS * 256 + MAX_TRAINS * SERVICE_DAYS * 8;
+
+    private Path dir;
+    private Path file;
+
+    @BeforeEach
+    public void createDir() throws IOException {
+        dir = Files.createTempDirectory("ledger-test");
+        file = dir.resolve("seats.ledger");
+    }
+
+    @AfterEach
+    public void deleteDir() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    public void seatsSurviveRestartWithoutReplay() throws IOException {
+        try (SeatLedger ledger = open()) {
+            ledger.register("T1", new int[]{72, 72});
+            ledger.register("T2", new int[]{10});
+            assertTrue(ledger.tryBook("T1", DATE, 1, 70));
+            assertTrue(ledger.tryBookAll("T1", DATE.plusDays(1), Arrays.asList(new SeatPosition(0, 0), new SeatPosition(0, 1))));
+            assertTrue(ledger.tryBook("T2", DATE, 0, 9));
+            assertTrue(ledger.release("T2", DATE, 0, 9));
+        }
+
+        try (SeatLedger ledger = open()) {
+            assertTrue(ledger.wasCleanShutdown());
+            assertEquals(0, ledger.getTornPartitions());
+            assertEquals(2, ledger.getTrainCount());
+            assertTrue(ledger.isBooked("T1", DATE, 1, 70));
+            assertEquals(2, ledger.getBookedSeats("T1", DATE.plusDays(1)));
+            assertEquals(0, ledger.getBookedSeats("T2", DATE));
+            assertFalse(ledger.tryBook("T1", DATE, 1, 70));
+            assertTrue(ledger.tryBook("T1", DATE, 1, 71));
+
+            // Space of evicted dates is reused rather than growing the file
+            long size = Files.size(file);
+            assertEquals(2, ledger.evictBefore(DATE.plusDays(1)));
+            assertTrue(ledger.tryBook("T2", DATE.plusDays(3), 0, 0));
+            assertTrue(ledger.tryBook("T1", DATE.plusDays(4), 0, 0));
+            assertEquals(size, Files.size(file));
+        }
+    }
+
+    @Test
+    public void crashWithoutCloseIsRecoveredFromTheMapping() throws IOException {
+        SeatLedger crashed = open();
+        crashed.register("T1", new int[]{64});
+        assertTrue(crashed.tryBook("T1", DATE, 0, 3));
+        crashed.checkpoint();
+        assertTrue(crashed.tryBook("T1", DATE, 0, 4));
+
+        // The process "dies" here: no close, so the header still says open
+        try (SeatLedger ledger = open()) {
+            assertFalse(ledger.wasCleanShutdown());
+            assertEquals(0, ledger.getTornPartitions());
+            assertEquals(2, ledger.getBookedSeats("T1", DATE));
+        }
+        crashed.close();
+    }
+
+    @Test
+    public void tornPartitionsAndHeadersAreDetected() throws IOException {
+        try (SeatLedger ledger = open()) {
+            ledger.register("T1", new int[]{64});
+            assertTrue(ledger.tryBook("T1", DATE, 0, 3));
+        }
+        // Half a write landed: a seat bit changed behind the checkpointed CRC
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            raw.seek(FIRST_PARTITION + 16);
+            int seats = raw.read();
+            raw.seek(FIRST_PARTITION + 16);
+            raw.write(seats | 0x01);
+        }
+        try (SeatLedger ledger = open()) {
+            assertEquals(1, ledger.getTornPartitions());
+            assertEquals(1, ledger.getRepairedCounts());
+            assertEquals(2, ledger.getBookedSeats("T1", DATE));
+        }
+
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            raw.seek(13);
+            raw.write(0x7f);
+        }
+        assertThrows(IOException.class, this::open);
+    }
+
+    @Test
+    public void inventoryServesTheLedgerAfterARestart() throws IOException {
+        Train train = TestTrains.empty("T1", 2, 4, "delhi", "agra");
+        try (SeatLedger ledger = open()) {
+            SeatInventory inventory = new SeatInventory();
+            inventory.attach(ledger);
+            assertTrue(inventory.tryBook(train, DATE, 1, 2));
+            assertTrue(inventory.tryBookAll(train, DATE, Arrays.asList(new SeatPosition(0, 0), new SeatPosition(0, 1))));
+            assertTrue(inventory.release(train, DATE, 0, 1));
+            assertEquals(2, ledger.getBookedSeats("T1", DATE));
+        }
+
+        // The train's dated_seats never saw these bookings; the ledger did
+        try (SeatLedger ledger = open()) {
+            SeatInventory inventory = new SeatInventory();
+            inventory.attach(ledger);
+            SeatMapSnapshot seats = inventory.snapshot(train, DATE);
+            assertFalse(seats.isAvailable(1, 2));
+            assertFalse(seats.isAvailable(0, 0));
+            assertTrue(seats.isAvailable(0, 1));
+            assertFalse(inventory.tryBook(train, DATE, 1, 2));
+            assertThrows(IllegalStateException.class, () -> inventory.attach(ledger));
+        }
+    }
+
+    private SeatLedger open() throws IOException {
+        return SeatLedger.open(file, SERVICE_DAYS, MAX_TRAINS, CHUNK_BYTES);
+    }
+}
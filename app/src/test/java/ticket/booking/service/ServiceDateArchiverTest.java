@@ -0,0 +1,71 @@
+package ticket.booking.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ticket.booking.entities.Train;
+import ticket.booking.storage.JsonFileStorageEngine;
+import ticket.booking.storage.PersistenceWriter;
+import ticket.booking.util.DatabaseManager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ServiceDateArchiverTest {
+    private Path dataDir;
+
+    @BeforeEach
+    public void useTempDatabase() throws IOException {
+        dataDir = Files.createTempDirectory("archiver-test");
+        DatabaseManager.setStorageEngine(new JsonFileStorageEngine(dataDir, new PersistenceWriter(0)));
+    }
+
+    @AfterEach
+    public void deleteDataDir() throws IOException {
+        DatabaseManager.setStorageEngine(null);
+        try (Stream<Path> files = Files.walk(dataDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void departedDatesMoveToTheArchive() throws IOException {
+        LocalDate cutoff = LocalDate.of(2030, 3, 1);
+        Train train = new Train("T-arch", "00000", Collections.singletonList(Arrays.asList(0, 0)),
+                new HashMap<>(), new ArrayList<>());
+        train.getDatedSeats().put("2030-02-27", Arrays.asList(Arrays.asList(1, 0)));
+        train.getDatedSeats().put("2030-03-02", Arrays.asList(Arrays.asList(0, 1)));
+        DatabaseManager.saveTrains(Collections.singletonList(train));
+
+        // A live partition for a departed date wins over what was persisted
+        SeatInventory inventory = new SeatInventory();
+        assertTrue(inventory.tryBook(train, LocalDate.of(2030, 2, 27), 0, 1));
+        assertTrue(inventory.tryBook(train, LocalDate.of(2030, 2, 28), 0, 0));
+
+        ServiceDateArchiver archiver = new ServiceDateArchiver(dataDir.resolve("archive"), inventory);
+        assertEquals(2, archiver.archiveBefore(cutoff));
+        assertEquals(0, archiver.archiveBefore(cutoff));
+
+        List<String> records = Files.readAllLines(archiver.getArchiveFile(), StandardCharsets.UTF_8);
+        assertEquals(2, records.size());
+        assertTrue(records.get(0).contains("\"2030-02-27\"") && records.get(0).contains("[[1,1]]"), records.get(0));
+        assertTrue(records.get(1).contains("\"2030-02-28\""), records.get(1));
+
+        Train stored = DatabaseManager.loadTrains().get(0);
+        assertEquals(Collections.singleton("2030-03-02"), stored.getDatedSeats().keySet());
+        assertTrue(inventory.snapshots("T-arch").isEmpty());
+    }
+}
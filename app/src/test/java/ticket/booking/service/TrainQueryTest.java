@@ -0,0 +1,117 @@
+package ticket.booking.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ticket.booking.TestTrains;
+import ticket.booking.entities.Train;
+import ticket.booking.storage.JsonFileStorageEngine;
+import ticket.booking.storage.PersistenceWriter;
+import ticket.booking.util.DatabaseManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TrainQueryTest {
+    private static final LocalDate DATE = LocalDate.now().plusDays(10);
+    private Path dataDir;
+    private TrainCatalog catalog;
+
+    @BeforeEach
+    public void loadTrains() throws IOException {
+        dataDir = Files.createTempDirectory("query-test");
+        DatabaseManager.setStorageEngine(new JsonFileStorageEngine(dataDir, new PersistenceWriter(0)));
+        List<Train> trains = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            String type = i % 2 == 0 ? "shatabdi_" : "passenger_";
+            Map<String, String> times = new HashMap<>();
+            times.put("delhi", String.format("%02d:%02d:00", i % 24, (i * 7) % 60));
+            times.put("jaipur", String.format("%02d:%02d:00", (i + 4 + i % 3) % 24, (i * 7) % 60));
+            trains.add(new Train(type + "query_" + i, String.valueOf(10000 + i),
+                    TestTrains.seats(1, 1 + i % 5, SeatMapSnapshot.AVAILABLE), times, Arrays.asList("delhi", "jaipur")));
+        }
+        DatabaseManager.saveTrains(trains);
+        catalog = new TrainCatalog(16);
+    }
+
+    @AfterEach
+    public void deleteDataDir() throws IOException {
+        DatabaseManager.setStorageEngine(null);
+        try (Stream<Path> files = Files.walk(dataDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void cursorsWalkEveryRowOnceInOrder() {
+        for (TrainSortKey key : TrainSortKey.values()) {
+            List<TrainSummary> all = new ArrayList<>();
+            String cursor = null;
+            int pages = 0;
+            do {
+                TrainPage page = catalog.query(TrainQuery.builder("Delhi", "Jaipur").date(DATE)
+                        .sortBy(key).limit(7).after(cursor).build());
+                all.addAll(page.getItems());
+                cursor = page.getNextCursor();
+                pages++;
+            } while (cursor != null);
+
+            assertEquals(6, pages, key.name());
+            assertEquals(40, all.size(), key.name());
+            Set<String> ids = new HashSet<>();
+            TrainQuery order = TrainQuery.builder("delhi", "jaipur").sortBy(key).build();
+            for (int i = 0; i < all.size(); i++) {
+                assertTrue(ids.add(all.get(i).getTrainId()));
+                if (i > 0) {
+                    assertTrue(order.comparator().compare(all.get(i - 1), all.get(i)) < 0, key.name());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void filtersNarrowTheResults() {
+        TrainPage page = catalog.query(TrainQuery.builder("delhi", "jaipur").date(DATE)
+                .departingBetween(LocalTime.of(6, 0), LocalTime.of(11, 59))
+                .trainTypes(TrainType.SHATABDI)
+                .minAvailableSeats(3)
+                .maxDurationMinutes(5 * 60)
+                .limit(100).build());
+
+        assertFalse(page.getItems().isEmpty());
+        assertNull(page.getNextCursor());
+        assertEquals(page.getItems().size(), page.getMatched());
+        for (TrainSummary row : page.getItems()) {
+            assertEquals(TrainType.SHATABDI, row.getTrainType());
+            assertTrue(row.getDeparture().getHour() >= 6 && row.getDeparture().getHour() < 12, row.toString());
+            assertTrue(row.getAvailableSeats() >= 3, row.toString());
+            assertTrue(row.getDurationMinutes() <= 5 * 60, row.toString());
+            assertTrue(row.getFare().getTotalFare() > 0);
+        }
+    }
+
+    @Test
+    public void cursorsAreTiedToTheirSortKey() {
+        TrainPage page = catalog.query(TrainQuery.builder("delhi", "jaipur").date(DATE).limit(5).build());
+        assertThrows(IllegalArgumentException.class, () -> TrainQuery.builder("delhi", "jaipur")
+                .sortBy(TrainSortKey.FARE).after(page.getNextCursor()).build());
+    }
+}
@@ -0,0 +1,87 @@
+package ticket.booking.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ticket.booking.TestTrains;
+import ticket.booking.entities.SeatPosition;
+import ticket.booking.entities.Ticket;
+import ticket.booking.entities.Train;
+import ticket.booking.entities.User;
+import ticket.booking.events.EventBus;
+import ticket.booking.storage.JsonFileStorageEngine;
+import ticket.booking.storage.PersistenceWriter;
+import ticket.booking.util.DatabaseManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UserBookingServiceTest {
+    private static final LocalDate DATE = LocalDate.now().plusDays(20);
+
+    private Path dataDir;
+
+    @BeforeEach
+    public void useTempDatabase() throws IOException {
+        dataDir = Files.createTempDirectory("booking-test");
+        DatabaseManager.setStorageEngine(new JsonFileStorageEngine(dataDir, new PersistenceWriter(0)));
+    }
+
+    @AfterEach
+    public void deleteDataDir() throws IOException {
+        // Let the persistence subscriber finish before the engine goes away
+        EventBus.getInstance().awaitDrained(5, TimeUnit.SECONDS);
+        DatabaseManager.getStorageEngine().close();
+        DatabaseManager.setStorageEngine(null);
+        try (Stream<Path> files = Files.walk(dataDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void failedBookingGivesTheSeatsBack() {
+        Train train = TestTrains.empty("ubs_rollback", 2, 4, "delhi", "agra");
+        UserBookingService service = new UserBookingService();
+
+        // No one is logged in, so issuing the tickets fails after the seats are claimed
+        List<SeatPosition> seats = Collections.singletonList(new SeatPosition(1, 2));
+        assertTrue(service.bookSeats(train, DATE, seats).isEmpty());
+        assertTrue(SeatInventory.getInstance().snapshot(train, DATE).isAvailable(1, 2));
+    }
+
+    @Test
+    public void cancellationKeepsTheTicketUntilTheSeatIsFreed() {
+        Train train = TestTrains.empty("ubs_cancel", 2, 4, "delhi", "agra");
+        UserBookingService service = new UserBookingService();
+        service.setCurrentUser(new User("ubs-user", "ubs", "x", "ubs@example.com", "1"));
+
+        List<Ticket> tickets = service.bookSeats(train, DATE, Collections.singletonList(new SeatPosition(0, 1)));
+        assertEquals(1, tickets.size());
+        assertFalse(SeatInventory.getInstance().snapshot(train, DATE).isAvailable(0, 1));
+
+        // A ticket whose train can't be found stays with the user
+        Ticket orphan = new Ticket("TN-orphan", "ubs-user", "a", "b", DATE.toString(), null);
+        orphan.setSeatRow(0);
+        orphan.setSeatCol(0);
+        service.getCurrentUser().addTicket(orphan);
+        assertFalse(service.cancelBooking("TN-orphan"));
+        assertNotNull(service.getCurrentUser().getTicketIndex().get("TN-orphan"));
+
+        assertTrue(service.cancelBooking(tickets.get(0).getTicketId()));
+        assertTrue(SeatInventory.getInstance().snapshot(train, DATE).isAvailable(0, 1));
+        assertNull(service.getCurrentUser().getTicketIndex().get(tickets.get(0).getTicketId()));
+    }
+}
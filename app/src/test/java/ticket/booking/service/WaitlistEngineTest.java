@@ -0,0 +1,323 @@
+package ticket.booking.service;
+
+import org.junit.jupiter.api.Test;
+import ticket.booking.TestTrains;
+import ticket.booking.entities.Ticket;
+import ticket.booking.entities.Train;
+import ticket.booking.events.EventBus;
+import ticket.booking.storage.JsonFileStorageEngine;
+import ticket.booking.storage.PersistenceWriter;
+import ticket.booking.util.DatabaseManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WaitlistEngineTest {
+    private static final LocalDate DATE = LocalDate.now().plusDays(30);
+
+    @Test
+    public void cancellationsPromoteInJoinOrderAtScale() {
+        SeatInventory inventory = new SeatInventory();
+        AtomicInteger batches = new AtomicInteger();
+        WaitlistEngine engine = new WaitlistEngine(inventory, 10, 100_000, batches::incrementAndGet);
+        Train train = TestTrains.full("T-wl", 4, 10);
+
+        int passengers = 50_000;
+        List<WaitlistEntry> joined = new ArrayList<>(passengers);
+        for (int i = 0; i < passengers; i++) {
+            joined.add(engine.join(train, DATE, "user-" + i));
+        }
+        assertEquals("RAC 1", joined.get(0).getJoinedAs());
+        assertEquals("WL 1", joined.get(10).getJoinedAs());
+        assertEquals(10, engine.getRacCount("T-wl", DATE));
+        assertEquals(passengers - 10, engine.getWaitlistedCount("T-wl", DATE));
+
+        // People leaving the queue lets the waitlist move up into RAC
+        assertTrue(engine.cancel(joined.get(3).getEntryId()));
+        assertTrue(engine.cancel(joined.get(20_000).getEntryId()));
+        assertFalse(engine.cancel(joined.get(3).getEntryId()));
+        assertEquals(WaitlistStatus.RAC, joined.get(10).getStatus());
+
+        // Free a whole coach; nothing happens until the worker's batch runs
+        for (int col = 0; col < 10; col++) {
+            assertTrue(inventory.release(train, DATE, 2, col));
+            engine.seatsReleased("T-wl", DATE);
+        }
+        assertEquals(WaitlistStatus.RAC, joined.get(0).getStatus());
+        assertEquals(10, engine.processPending());
+        assertEquals(1, batches.get());
+
+        // Confirmed strictly in join order, skipping the cancelled passenger
+        for (int i = 0; i <= 10; i++) {
+            WaitlistStatus expected = i == 3 ? WaitlistStatus.CANCELLED : WaitlistStatus.CONFIRMED;
+            assertEquals(expected, joined.get(i).getStatus(), "passenger " + i);
+        }
+        assertEquals(WaitlistStatus.RAC, joined.get(11).getStatus());
+        assertEquals(0, inventory.snapshot(train, DATE).getAvailableSeats());
+        assertEquals(passengers - 12, engine.getWaitingCount());
+
+        Ticket ticket = engine.takeConfirmed("user-0").get(0);
+        assertEquals(DATE.toString(), ticket.getDateOfTravel());
+        assertEquals(2, (int) ticket.getSeatRow());
+        assertTrue(engine.takeConfirmed("user-0").isEmpty());
+    }
+
+    @Test
+    public void waitlistClosesAtItsLimit() {
+        WaitlistEngine engine = new WaitlistEngine(new SeatInventory(), 1, 2, () -> { });
+        Train train = TestTrains.full("T-cap", 1, 2);
+
+        assertEquals(WaitlistStatus.RAC, engine.join(train, DATE, "a").getStatus());
+        assertEquals(WaitlistStatus.WAITLISTED, engine.join(train, DATE, "b").getStatus());
+        assertNull(engine.join(train, DATE, "c"));
+        assertNull(engine.join(train, LocalDate.now().minusDays(1), "d"));
+    }
+
+    @Test
+    public void promotedTicketsCarryThePassengersSegment() throws IOException {
+        Path stateFile = Files.createTempDirectory("waitlist-segment-test").resolve("waitlist.json");
+        SeatInventory inventory = new SeatInventory();
+        WaitlistEngine engine = new WaitlistEngine(inventory, 1, 100, () -> { }, WaitlistEngine.TicketStore.NONE, stateFile);
+        Train train = TestTrains.full("T-seg", 1, 2, "mumbai", "vadodara", "delhi");
+
+        assertNull(engine.join(train, DATE, "a", "delhi", "mumbai"));
+        assertNull(engine.join(train, DATE, "a", "mumbai", "pune"));
+        WaitlistEntry whole = engine.join(train, DATE, "a");
+        WaitlistEntry part = engine.join(train, DATE, "b", "Vadodara", "Delhi");
+        assertEquals("mumbai", whole.getSource());
+        assertEquals("delhi", whole.getDestination());
+
+        assertTrue(inventory.release(train, DATE, 0, 0));
+        engine.seatsReleased("T-seg", DATE);
+        assertEquals(1, engine.processPending());
+        Ticket ticket = engine.takeConfirmed("a").get(0);
+        assertEquals("mumbai", ticket.getSource());
+        assertEquals("delhi", ticket.getDestination());
+        engine.close();
+
+        Path dataDir = Files.createTempDirectory("waitlist-segment-db");
+        DatabaseManager.setStorageEngine(new JsonFileStorageEngine(dataDir, new PersistenceWriter(0)));
+        try {
+            DatabaseManager.saveTrains(Collections.singletonList(train));
+            WaitlistEngine restarted = new WaitlistEngine(new SeatInventory(), 1, 100, () -> { },
+                    WaitlistEngine.TicketStore.NONE, stateFile);
+            assertEquals(1, restarted.restore());
+            WaitlistEntry restored = restarted.getEntry(part.getEntryId());
+            assertEquals("Vadodara", restored.getSource());
+            assertEquals("Delhi", restored.getDestination());
+        } finally {
+            DatabaseManager.getStorageEngine().close();
+            DatabaseManager.setStorageEngine(null);
+            try (Stream<Path> files = Files.walk(dataDir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    public void backgroundWorkerPromotesAfterRelease() throws InterruptedException {
+        SeatInventory inventory = new SeatInventory();
+        WaitlistEngine engine = new WaitlistEngine(inventory, 2, 100, () -> { });
+        engine.start();
+        try {
+            Train train = TestTrains.full("T-bg", 1, 2);
+            WaitlistEntry entry = engine.join(train, DATE, "a");
+            assertTrue(inventory.release(train, DATE, 0, 1));
+            engine.seatsReleased("T-bg", DATE);
+
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (entry.getStatus() != WaitlistStatus.CONFIRMED && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(WaitlistStatus.CONFIRMED, entry.getStatus());
+            assertEquals(1, (int) entry.getTicket().getSeatCol());
+        } finally {
+            engine.close();
+        }
+    }
+
+    @Test
+    public void queueStaysOpenWhileTicketsAreStored() throws Exception {
+        CountDownLatch storing = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        WaitlistEngine.TicketStore slowStore = new WaitlistEngine.TicketStore() {
+            @Override
+            public Set<String> store(List<Ticket> tickets) {
+                storing.countDown();
+                try {
+                    resume.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return Collections.emptySet();
+            }
+
+            @Override
+            public Set<String> storedTicketIds() {
+                return Collections.emptySet();
+            }
+        };
+        SeatInventory inventory = new SeatInventory();
+        WaitlistEngine engine = new WaitlistEngine(inventory, 1, 100, () -> { }, slowStore, null);
+        Train train = TestTrains.full("T-slow", 1, 2);
+        WaitlistEntry a = engine.join(train, DATE, "a");
+        WaitlistEntry b = engine.join(train, DATE, "b");
+        assertTrue(inventory.release(train, DATE, 0, 0));
+        engine.seatsReleased("T-slow", DATE);
+
+        ExecutorService promoter = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> promoted = promoter.submit(engine::processPending);
+            assertTrue(storing.await(5, TimeUnit.SECONDS));
+
+            // The store is stuck, yet the same date's queue answers at once
+            assertEquals(WaitlistStatus.PROMOTING, a.getStatus());
+            assertFalse(engine.cancel(a.getEntryId()));
+            assertEquals(1, engine.getRacCount("T-slow", DATE));
+            assertEquals(WaitlistStatus.RAC, b.getStatus());
+            assertNotNull(engine.join(train, DATE, "c"));
+            assertTrue(engine.cancel(b.getEntryId()));
+
+            resume.countDown();
+            assertEquals(1, (int) promoted.get(5, TimeUnit.SECONDS));
+            assertEquals(WaitlistStatus.CONFIRMED, a.getStatus());
+            assertEquals(0, (int) a.getTicket().getSeatCol());
+        } finally {
+            resume.countDown();
+            promoter.shutdownNow();
+        }
+    }
+
+    @Test
+    public void promotionsDuringStartupReachTheTrainsDatabase() throws Exception {
+        Path dataDir = Files.createTempDirectory("waitlist-startup-test");
+        DatabaseManager.setStorageEngine(new JsonFileStorageEngine(dataDir, new PersistenceWriter(0)));
+        try {
+            // The shared bootstrap subscribes persistence before any queue is restored
+            WaitlistEngine.getInstance();
+
+            Path stateFile = dataDir.resolve("waitlist.json");
+            Train train = TestTrains.full("T-boot", 1, 2);
+            DatabaseManager.saveTrains(Collections.singletonList(train));
+            WaitlistEngine before = new WaitlistEngine(new SeatInventory(), 1, 100, () -> { },
+                    WaitlistEngine.TicketStore.NONE, stateFile);
+            WaitlistEntry entry = before.join(train, DATE, "a");
+            before.close();
+
+            // A seat freed while the app was down
+            train.getDatedSeats().put(DATE.toString(), Collections.singletonList(Arrays.asList(1, 0)));
+            DatabaseManager.saveTrains(Collections.singletonList(train));
+
+            WaitlistEngine restarted = new WaitlistEngine(SeatInventory.getInstance(), 1, 100, () -> { },
+                    WaitlistEngine.TicketStore.NONE, stateFile);
+            assertEquals(1, restarted.restore());
+            assertEquals(1, restarted.processPending());
+            assertEquals(entry.getTicketId(), restarted.takeConfirmed("a").get(0).getTicketId());
+            assertTrue(EventBus.getInstance().awaitDrained(5, TimeUnit.SECONDS));
+
+            assertEquals(Collections.singletonList(Arrays.asList(1, 1)),
+                    DatabaseManager.loadTrain("T-boot").getDatedSeats().get(DATE.toString()));
+        } finally {
+            DatabaseManager.getStorageEngine().close();
+            DatabaseManager.setStorageEngine(null);
+            try (Stream<Path> files = Files.walk(dataDir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    public void promotedTicketsAreStoredAndQueuesSurviveARestart() throws IOException {
+        Path dataDir = Files.createTempDirectory("waitlist-test");
+        DatabaseManager.setStorageEngine(new JsonFileStorageEngine(dataDir, new PersistenceWriter(0)));
+        try {
+            Map<String, Ticket> stored = new ConcurrentHashMap<>();
+            AtomicBoolean failing = new AtomicBoolean();
+            WaitlistEngine.TicketStore store = new WaitlistEngine.TicketStore() {
+                @Override
+                public Set<String> store(List<Ticket> tickets) {
+                    if (failing.get()) {
+                        return null;
+                    }
+                    Set<String> ids = new HashSet<>();
+                    for (Ticket ticket : tickets) {
+                        stored.put(ticket.getTicketId(), ticket);
+                        ids.add(ticket.getTicketId());
+                    }
+                    return ids;
+                }
+
+                @Override
+                public Set<String> storedTicketIds() {
+                    return new HashSet<>(stored.keySet());
+                }
+            };
+            Path stateFile = dataDir.resolve("waitlist.json");
+            Train train = TestTrains.full("T-store", 1, 2);
+            DatabaseManager.saveTrains(Collections.singletonList(train));
+            SeatInventory inventory = new SeatInventory();
+            WaitlistEngine engine = new WaitlistEngine(inventory, 1, 100, () -> { }, store, stateFile);
+            WaitlistEntry a = engine.join(train, DATE, "a");
+            WaitlistEntry b = engine.join(train, DATE, "b");
+            WaitlistEntry c = engine.join(train, DATE, "c");
+
+            // A failed write frees the seat again and keeps the passenger first in line
+            failing.set(true);
+            assertTrue(inventory.release(train, DATE, 0, 0));
+            engine.seatsReleased("T-store", DATE);
+            assertEquals(0, engine.processPending());
+            assertEquals(WaitlistStatus.RAC, a.getStatus());
+            assertEquals(WaitlistStatus.WAITLISTED, b.getStatus());
+            assertTrue(inventory.snapshot(train, DATE).isAvailable(0, 0));
+
+            failing.set(false);
+            engine.seatsReleased("T-store", DATE);
+            assertEquals(1, engine.processPending());
+            assertEquals(WaitlistStatus.CONFIRMED, a.getStatus());
+            assertEquals(a.getTicketId(), stored.get(a.getTicketId()).getTicketId());
+            assertTrue(engine.entriesFor("a").isEmpty());
+            assertTrue(engine.takeConfirmed("a").isEmpty());
+            engine.close();
+
+            // b was promoted by a run that crashed before saving its queues
+            stored.put(b.getTicketId(), new Ticket(b.getTicketId(), "b", "x", "y", DATE.toString(), null));
+            WaitlistEngine restarted = new WaitlistEngine(new SeatInventory(), 1, 100, () -> { }, store, stateFile);
+            assertEquals(1, restarted.restore());
+            assertEquals(1, restarted.getRacCount("T-store", DATE));
+            assertEquals(c.getEntryId(), restarted.entriesFor("c").get(0).getEntryId());
+            assertEquals(WaitlistStatus.RAC, restarted.getEntry(c.getEntryId()).getStatus());
+            assertTrue(restarted.entriesFor("b").isEmpty());
+        } finally {
+            DatabaseManager.getStorageEngine().close();
+            DatabaseManager.setStorageEngine(null);
+            try (Stream<Path> files = Files.walk(dataDir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+}
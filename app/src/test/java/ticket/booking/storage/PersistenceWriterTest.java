@@ -0,0 +1,81 @@
+package ticket.booking.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PersistenceWriterTest {
+
+    @Test
+    public void burstsOfSavesCoalesceIntoFewWrites() throws IOException {
+        Path file = Files.createTempDirectory("writer-test").resolve("trains.json");
+        PersistenceWriter writer = new PersistenceWriter(50);
+        try {
+            for (int i = 0; i < 1_000; i++) {
+                writer.submit(file, ("[" + i + "]").getBytes(StandardCharsets.UTF_8));
+                // Once the writer has caught up, the disk holds the latest contents
+                byte[] latest = writer.latest(file);
+                assertEquals("[" + i + "]", new String(latest != null ? latest : Files.readAllBytes(file), StandardCharsets.UTF_8));
+            }
+            writer.flush();
+
+            assertEquals("[999]", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+            assertTrue(writer.getWriteCount() < 10, "writes: " + writer.getWriteCount());
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void failedWritesStayPendingAndAreRetried() throws IOException {
+        Path dir = Files.createTempDirectory("writer-failure-test");
+        // A plain file where the data directory should be makes every write fail
+        Path blocked = dir.resolve("data");
+        Files.write(blocked, new byte[0]);
+        Path file = blocked.resolve("users.json");
+        PersistenceWriter writer = new PersistenceWriter(0);
+        try {
+            writer.submit(file, "[1]".getBytes(StandardCharsets.UTF_8));
+            assertThrows(UncheckedIOException.class, writer::flush);
+            assertNotNull(writer.getFailure());
+            assertEquals(1, writer.getFailingFiles());
+            // Readers still see the save the disk refused
+            assertEquals("[1]", new String(writer.latest(file), StandardCharsets.UTF_8));
+
+            writer.submit(file, "[2]".getBytes(StandardCharsets.UTF_8));
+            Files.delete(blocked);
+            writer.flush();
+
+            assertEquals("[2]", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+            assertNull(writer.getFailure());
+            assertEquals(0, writer.getFailingFiles());
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void atomicWriteLeavesNoTempFilesBehind() throws IOException {
+        Path dir = Files.createTempDirectory("atomic-test");
+        Path file = dir.resolve("users.json");
+
+        AtomicFileWriter.write(file, "[]".getBytes(StandardCharsets.UTF_8));
+        AtomicFileWriter.write(file, "[1]".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("[1]", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.count());
+        }
+    }
+}
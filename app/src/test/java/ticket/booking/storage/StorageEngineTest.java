@@ -0,0 +1,175 @@
+package ticket.booking.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ticket.booking.entities.Train;
+import ticket.booking.entities.TrainHeader;
+import ticket.booking.entities.User;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StorageEngineTest {
+    private Path dataDir;
+
+    @BeforeEach
+    public void createDataDir() throws IOException {
+        dataDir = Files.createTempDirectory("storage-test");
+    }
+
+    @AfterEach
+    public void deleteDataDir() throws IOException {
+        try (Stream<Path> files = Files.walk(dataDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void bothEnginesRoundTripUsersAndTrains() throws IOException {
+        for (String name : Arrays.asList("json", "log")) {
+            try (StorageEngine engine = StorageEngines.create(name, dataDir.resolve(name))) {
+                assertFalse(engine.hasTrains());
+                engine.saveTrains(Arrays.asList(train("A", 0), train("B", 1)));
+                engine.saveUsers(Collections.singletonList(new User("u1", "asha", "hash", "a@x.in", "123")));
+            }
+            try (StorageEngine engine = StorageEngines.create(name, dataDir.resolve(name))) {
+                List<Train> trains = engine.loadTrains();
+                assertEquals(2, trains.size(), name);
+                assertEquals("B", trains.get(1).getTrainId(), name);
+                assertEquals(1, (int) trains.get(1).getSeats().get(0).get(0), name);
+                assertEquals("asha", engine.loadUsers().get(0).getUsername(), name);
+            }
+        }
+    }
+
+    @Test
+    public void logEngineAppendsOnlyChangedRecords() throws IOException {
+        try (StorageEngine engine = new LogStructuredStorageEngine(dataDir)) {
+            engine.saveTrains(Arrays.asList(train("A", 0), train("B", 0)));
+            long afterFirstSave = Files.size(dataDir.resolve(LogStructuredStorageEngine.LOG_FILE));
+
+            engine.saveTrains(Arrays.asList(train("A", 0), train("B", 1)));
+            long growth = Files.size(dataDir.resolve(LogStructuredStorageEngine.LOG_FILE)) - afterFirstSave;
+
+            assertTrue(growth < afterFirstSave, "only train B should be appended");
+            engine.saveTrains(Collections.singletonList(train("A", 0)));
+            assertEquals(1, engine.loadTrains().size());
+        }
+    }
+
+    @Test
+    public void logEngineDropsATornTail() throws IOException {
+        Path log = dataDir.resolve(LogStructuredStorageEngine.LOG_FILE);
+        try (StorageEngine engine = new LogStructuredStorageEngine(dataDir)) {
+            engine.saveTrains(Collections.singletonList(train("A", 0)));
+            engine.saveTrains(Collections.singletonList(train("A", 1)));
+        }
+        // Simulate a crash halfway through the last record
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        try (StorageEngine engine = new LogStructuredStorageEngine(dataDir)) {
+            assertEquals(0, (int) engine.loadTrains().get(0).getSeats().get(0).get(0));
+        }
+    }
+
+    @Test
+    public void failedTransactionsLeaveNoTrace() throws IOException {
+        for (String name : Arrays.asList("json", "log")) {
+            try (StorageEngine engine = StorageEngines.create(name, dataDir.resolve(name))) {
+                engine.saveTrains(Collections.singletonList(train("A", 0)));
+
+                assertThrows(IllegalStateException.class, () -> {
+                    try {
+                        engine.transaction(tx -> {
+                            tx.saveTrains(Collections.singletonList(train("A", 1)));
+                            assertEquals(1, (int) tx.loadTrains().get(0).getSeats().get(0).get(0));
+                            throw new IllegalStateException("abort");
+                        });
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+
+                assertEquals(0, (int) engine.loadTrains().get(0).getSeats().get(0).get(0), name);
+            }
+        }
+    }
+
+    @Test
+    public void headersAndSingleTrainsLoadWithoutTheWholeCatalog() throws IOException {
+        for (String name : Arrays.asList("json", "log")) {
+            try (StorageEngine engine = StorageEngines.create(name, dataDir.resolve(name))) {
+                engine.saveTrains(Arrays.asList(train("A", 0), train("B", 1)));
+
+                List<TrainHeader> headers = engine.loadTrainHeaders();
+                assertEquals(2, headers.size(), name);
+                assertEquals(Arrays.asList("delhi", "agra"), headers.get(1).getStations(), name);
+                assertTrue(headers.get(0).servesRoute("Delhi", "AGRA"), name);
+                assertEquals(1, (int) engine.loadTrain("B").getSeats().get(0).get(0), name);
+
+                // A save must be visible through the index straight away
+                engine.saveTrains(Arrays.asList(train("A", 0), train("B", 0), train("C", 1)));
+                assertEquals(3, engine.loadTrainHeaders().size(), name);
+                assertEquals(0, (int) engine.loadTrain("B").getSeats().get(0).get(0), name);
+                assertEquals(null, engine.loadTrain("missing"), name);
+            }
+            // And again once everything is on disk
+            try (StorageEngine engine = StorageEngines.create(name, dataDir.resolve(name))) {
+                assertEquals(1, (int) engine.loadTrain("C").getSeats().get(0).get(0), name);
+            }
+        }
+    }
+
+    @Test
+    public void upsertsLeaveOtherTrainsUntouched() throws IOException {
+        for (String name : Arrays.asList("json", "log")) {
+            try (StorageEngine engine = StorageEngines.create(name, dataDir.resolve(name))) {
+                engine.saveTrains(Arrays.asList(train("A", 0), train("B", 0), train("C", 0)));
+                List<TrainHeader> before = engine.loadTrainHeaders();
+
+                engine.upsertTrains(Collections.singletonList(train("B", 1)));
+                List<TrainHeader> after = engine.loadTrainHeaders();
+                assertSame(before.get(0), after.get(0), name);
+                assertSame(before.get(2), after.get(2), name);
+                assertEquals(1, (int) engine.loadTrain("B").getSeats().get(0).get(0), name);
+
+                // A train that isn't stored yet goes to the end
+                engine.upsertTrains(Arrays.asList(train("D", 1), train("A", 1)));
+                assertEquals(4, engine.loadTrainHeaders().size(), name);
+                assertEquals("D", engine.loadTrainHeaders().get(3).getTrainId(), name);
+            }
+            try (StorageEngine engine = StorageEngines.create(name, dataDir.resolve(name))) {
+                List<Train> trains = engine.loadTrains();
+                assertEquals(4, trains.size(), name);
+                assertEquals(1, (int) trains.get(0).getSeats().get(0).get(0), name);
+                assertEquals(1, (int) trains.get(1).getSeats().get(0).get(0), name);
+                assertEquals(0, (int) trains.get(2).getSeats().get(0).get(0), name);
+            }
+        }
+    }
+
+    private static Train train(String id, int firstSeat) {
+        List<List<Integer>> seats = new ArrayList<>();
+        seats.add(new ArrayList<>(Arrays.asList(firstSeat, 0, 0)));
+        return new Train(id, "1000" + id, seats, new HashMap<>(), new ArrayList<>(Arrays.asList("delhi", "agra")));
+    }
+}
@@ -0,0 +1,73 @@
+package ticket.booking.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IdGeneratorTest {
+
+    @Test
+    public void idsAreUniqueAndRiseAcrossThreads() throws InterruptedException {
+        IdGenerator generator = new IdGenerator(7);
+        int threads = 8;
+        int perThread = 250_000;
+        long[][] taken = new long[threads][perThread];
+        List<Thread> workers = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            long[] ids = taken[t];
+            Thread worker = new Thread(() -> {
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = generator.nextId();
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double perSecond = threads * (double) perThread / ((System.nanoTime() - start) / 1e9);
+
+        long[] all = new long[threads * perThread];
+        for (int t = 0; t < threads; t++) {
+            for (int i = 1; i < perThread; i++) {
+                assertTrue(taken[t][i] > taken[t][i - 1], "thread " + t + " went backwards");
+            }
+            System.arraycopy(taken[t], 0, all, t * perThread, perThread);
+        }
+        Arrays.sort(all);
+        for (int i = 1; i < all.length; i++) {
+            assertTrue(all[i] != all[i - 1], "duplicate id " + all[i]);
+        }
+        assertEquals(7, IdGenerator.nodeOf(all[0]));
+        assertTrue(perSecond > 200_000, "only " + (long) perSecond + " ids/s");
+    }
+
+    @Test
+    public void encodingIsCompactAndSortsLikeTheIds() {
+        IdGenerator generator = new IdGenerator(0);
+        long before = System.currentTimeMillis();
+        long first = generator.nextId();
+        long second = generator.nextId();
+
+        String a = IdGenerator.encode("TN", first);
+        String b = generator.next("TN");
+        assertEquals(2 + IdGenerator.ENCODED_LENGTH, a.length());
+        assertTrue(a.compareTo(b) < 0);
+        assertEquals(first, IdGenerator.decode(a, 2));
+        assertEquals(first, IdGenerator.decode(a.toLowerCase(), 2));
+        assertTrue(second > first);
+        assertTrue(IdGenerator.timestampOf(first) >= before);
+        assertTrue(IdGenerator.timestampOf(first) <= System.currentTimeMillis() + 1);
+
+        assertThrows(IllegalArgumentException.class, () -> IdGenerator.decode("TN123", 2));
+        assertThrows(IllegalArgumentException.class, () -> new IdGenerator(IdGenerator.MAX_NODE + 1));
+    }
+}
@@ -0,0 +1,105 @@
+package ticket.booking.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ticket.booking.entities.Train;
+import ticket.booking.service.TrainService;
+import ticket.booking.storage.JsonFileStorageEngine;
+import ticket.booking.storage.PersistenceWriter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LegacyTrainMigrationTest {
+    private Path dataDir;
+
+    @BeforeEach
+    public void useTempDatabase() throws IOException {
+        dataDir = Files.createTempDirectory("migration-test");
+        DatabaseManager.setStorageEngine(new JsonFileStorageEngine(dataDir, new PersistenceWriter(0)));
+    }
+
+    @AfterEach
+    public void deleteDataDir() throws IOException {
+        DatabaseManager.setStorageEngine(null);
+        try (Stream<Path> files = Files.walk(dataDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void legacyTrainsAreMergedOnceAndSharedWithSearch() throws IOException {
+        List<Train> stored = new ArrayList<>();
+        stored.add(train("shared", "delhi", "agra"));
+        DatabaseManager.saveTrains(stored);
+
+        Path legacy = dataDir.resolve("legacy-trains.json");
+        Files.write(legacy, ("[{\"train_id\":\"SHARED\",\"train_no\":\"1\",\"seats\":[[1,1]],\"stations\":[\"x\",\"y\"]},"
+                + "{\"train_id\":\"old_mail\",\"train_no\":\"2\",\"seats\":[[1,0,0]],"
+                + "\"stations\":[\"pune\",\"nashik\"]}]").getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(1, LegacyTrainMigration.migrate(legacy));
+        assertFalse(Files.exists(legacy));
+        assertTrue(Files.exists(dataDir.resolve("legacy-trains.json" + LegacyTrainMigration.MIGRATED_SUFFIX)));
+        // Gone, so a second start does nothing
+        assertEquals(0, LegacyTrainMigration.migrate(legacy));
+
+        List<Train> trains = DatabaseManager.loadTrains();
+        assertEquals(2, trains.size());
+        assertEquals(Arrays.asList("delhi", "agra"), trains.get(0).getStations());
+        Train migrated = trains.get(1);
+        assertEquals(Arrays.asList(Arrays.asList(0, 0, 0)), migrated.getSeats());
+        assertEquals(Arrays.asList(Arrays.asList(1, 0, 0)), migrated.getDatedSeats().get(LocalDate.now().toString()));
+
+        // TrainService reads and writes the same store
+        TrainService service = new TrainService();
+        assertEquals(1, service.searchTrains("Pune", "Nashik").size());
+        service.addTrain(train("new_express", "pune", "goa"));
+        assertEquals(3, DatabaseManager.loadTrains().size());
+        assertEquals(2, DatabaseManager.loadTrainHeaders().stream().filter(h -> h.servesRoute("pune", "nashik")
+                || h.servesRoute("pune", "goa")).count());
+    }
+
+    @Test
+    public void seatsSoldInTemplatesMoveToToday() {
+        String today = LocalDate.now().toString();
+        Train sold = train("sold_in_template", "delhi", "agra");
+        sold.getSeats().get(0).set(1, 1);
+        Train alreadyDated = train("already_dated", "pune", "goa");
+        alreadyDated.getSeats().get(0).set(0, 1);
+        alreadyDated.getDatedSeats().put(today, Arrays.asList(Arrays.asList(0, 1)));
+        DatabaseManager.saveTrains(new ArrayList<>(Arrays.asList(sold, alreadyDated, train("free", "x", "y"))));
+
+        assertEquals(2, LegacyTrainMigration.undateTemplates());
+        assertEquals(0, LegacyTrainMigration.undateTemplates());
+
+        Train moved = DatabaseManager.loadTrain("sold_in_template");
+        assertEquals(Arrays.asList(Arrays.asList(0, 0)), moved.getSeats());
+        assertEquals(Arrays.asList(Arrays.asList(0, 1)), moved.getDatedSeats().get(today));
+        // Today's own sales win over the template
+        Train dated = DatabaseManager.loadTrain("already_dated");
+        assertEquals(Arrays.asList(Arrays.asList(0, 0)), dated.getSeats());
+        assertEquals(Arrays.asList(Arrays.asList(0, 1)), dated.getDatedSeats().get(today));
+        assertTrue(DatabaseManager.loadTrain("free").getDatedSeats().isEmpty());
+    }
+
+    private static Train train(String id, String... stations) {
+        List<List<Integer>> seats = new ArrayList<>();
+        seats.add(new ArrayList<>(Arrays.asList(0, 0)));
+        return new Train(id, "100", seats, new HashMap<>(), new ArrayList<>(Arrays.asList(stations)));
+    }
+}